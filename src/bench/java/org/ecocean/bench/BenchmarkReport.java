@@ -0,0 +1,150 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean.bench;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Compares a JMH result file (-rf json) with a baseline result file and prints each benchmark's change. Exits with
+ * status 1 if any benchmark got slower than the baseline by more than the threshold percentage (10 by default) and
+ * by more than the two runs' error margins together, so that a build can stop on a regression.
+ * <p/>
+ * Usage: BenchmarkReport current.json baseline.json [thresholdPercent]
+ * <p/>
+ * To make a baseline, run the benchmarks on the deployed version and keep its target/jmh-result.json.
+ */
+public class BenchmarkReport {
+
+  //a benchmark's score in a result file
+  static class Result {
+    final String mode;
+    final double score;
+    final double error;
+    final String unit;
+
+    Result(String mode, double score, double error, String unit) {
+      this.mode = mode;
+      this.score = score;
+      this.error = error;
+      this.unit = unit;
+    }
+
+    //throughput is better when higher; times are better when lower
+    boolean higherIsBetter() {
+      return "thrpt".equals(mode);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.out.println("Usage: BenchmarkReport current.json baseline.json [thresholdPercent]");
+      System.exit(2);
+    }
+    double threshold = (args.length > 2) ? Double.parseDouble(args[2]) : 10;
+    File baselineFile = new File(args[1]);
+    if (!baselineFile.exists()) {
+      System.out.println("No baseline at " + baselineFile.getAbsolutePath() + "; copy " + args[0] + " there to compare later runs with this one.");
+      return;
+    }
+    int regressions = report(read(new File(args[0])), read(baselineFile), threshold, new StringBuffer());
+    System.exit((regressions > 0) ? 1 : 0);
+  }
+
+  static Map<String, Result> read(File file) throws Exception {
+    return parse(new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8")));
+  }
+
+  static Map<String, Result> parse(String json) throws Exception {
+    Map<String, Result> results = new TreeMap<String, Result>();
+    JSONArray runs = new JSONArray(json);
+    for (int i = 0; i < runs.length(); i++) {
+      JSONObject run = runs.getJSONObject(i);
+      JSONObject metric = run.getJSONObject("primaryMetric");
+      double error = metric.optDouble("scoreError", 0);
+      if (Double.isNaN(error)) {
+        error = 0;
+      }
+      results.put(key(run), new Result(run.optString("mode", "avgt"), metric.getDouble("score"), error, metric.optString("scoreUnit", "")));
+    }
+    return results;
+  }
+
+  //the benchmark's name and its parameters, in order
+  static String key(JSONObject run) throws Exception {
+    StringBuffer key = new StringBuffer(run.getString("benchmark").replace("org.ecocean.bench.", ""));
+    JSONObject params = run.optJSONObject("params");
+    if (params != null) {
+      TreeMap<String, String> sorted = new TreeMap<String, String>();
+      Iterator names = params.keys();
+      while (names.hasNext()) {
+        String name = (String) names.next();
+        sorted.put(name, params.getString(name));
+      }
+      for (Map.Entry<String, String> param : sorted.entrySet()) {
+        key.append(" " + param.getKey() + "=" + param.getValue());
+      }
+    }
+    return key.toString();
+  }
+
+  /**
+   * Prints the comparison to System.out, and also appends it to out, and returns the number of regressions.
+   */
+  static int report(Map<String, Result> current, Map<String, Result> baseline, double threshold, StringBuffer out) {
+    int regressions = 0;
+    out.append(String.format("%-70s %14s %14s %9s  %s%n", "Benchmark", "Baseline", "Current", "Change", ""));
+    for (Map.Entry<String, Result> entry : current.entrySet()) {
+      Result now = entry.getValue();
+      Result before = baseline.get(entry.getKey());
+      if ((before == null) || (before.score == 0)) {
+        out.append(String.format("%-70s %14s %14.3f %9s  %s%n", entry.getKey(), "-", now.score, "", "new " + now.unit));
+        continue;
+      }
+      double change = 100 * (now.score - before.score) / before.score;
+      double worse = now.higherIsBetter() ? -change : change;
+      boolean beyondError = Math.abs(now.score - before.score) > (now.error + before.error);
+      String verdict = "";
+      if (beyondError && (worse > threshold)) {
+        verdict = "REGRESSION";
+        regressions++;
+      } else if (beyondError && (worse < -threshold)) {
+        verdict = "improved";
+      }
+      out.append(String.format("%-70s %14.3f %14.3f %+8.1f%%  %s%n", entry.getKey(), before.score, now.score, change, verdict + " " + now.unit));
+    }
+    for (String name : baseline.keySet()) {
+      if (!current.containsKey(name)) {
+        out.append(String.format("%-70s %14.3f %14s %9s  %s%n", name, baseline.get(name).score, "-", "", "not run"));
+      }
+    }
+    out.append(regressions + " regression(s) beyond " + threshold + "%\n");
+    System.out.print(out);
+    return regressions;
+  }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import javax.jdo.PersistenceManager;
+
+import org.ecocean.Encounter;
+import org.ecocean.MarkedIndividual;
+import org.ecocean.Occurrence;
+import org.ecocean.Shepherd;
+import org.ecocean.SinglePhotoVideo;
+import org.ecocean.SuperSpot;
+import org.ecocean.genetics.Locus;
+import org.ecocean.genetics.MicrosatelliteMarkersAnalysis;
+import org.ecocean.genetics.TissueSample;
+
+/**
+ * Fills a context's database with a synthetic catalog: encounters with left-side spot patterns, the individuals they
+ * are resightings of, the occurrences they were seen in, and microsatellite genotypes for a share of them.
+ * <p/>
+ * Encounter, individual and occurrence IDs are numbered from 0 with the prefixes below, so a catalog can be extended
+ * to a larger size later, and scenarios can pick encounters by number. Objects are stored in transactions of about
+ * BATCH_SIZE encounters, each with a new Shepherd, so that a catalog of any size is built in constant memory.
+ */
+public class CatalogGenerator {
+
+  public static final String ENCOUNTER_PREFIX = "LT-E";
+  public static final String INDIVIDUAL_PREFIX = "LT-I";
+  public static final String OCCURRENCE_PREFIX = "LT-O";
+
+  public static final String[] LOCATION_IDS = {"1a", "1b", "2", "3", "4a", "4b", "5", "6"};
+  public static final String[] SEXES = {"male", "female", "unknown"};
+  public static final int NUM_LOCI = 12;
+
+  private static final int BATCH_SIZE = 500;
+
+  //shares of encounters that are of unidentified animals, and that have a tissue sample
+  private static final double UNASSIGNED_FRACTION = 0.3;
+  private static final double SAMPLED_FRACTION = 0.2;
+  private static final int MAX_RESIGHTINGS = 6;
+  private static final int MAX_OCCURRENCE_SIZE = 5;
+
+  private final String context;
+  private final SyntheticData data;
+  private final Random random;
+
+  public CatalogGenerator(String context, long seed) {
+    this.context = context;
+    this.data = new SyntheticData(seed);
+    this.random = new Random(seed);
+  }
+
+  public static String getEncounterID(int number) {
+    return ENCOUNTER_PREFIX + number;
+  }
+
+  /**
+   * Returns the number of encounters in the catalog, counting from 0 until one is missing.
+   */
+  public int countEncounters() {
+    Shepherd myShepherd = new Shepherd(context);
+    myShepherd.beginDBTransaction();
+    try {
+      int num = myShepherd.getNumEncounters();
+      //the database may hold other encounters too, so check that ours run up to num
+      while ((num > 0) && !myShepherd.isEncounter(getEncounterID(num - 1))) {
+        num--;
+      }
+      return num;
+    }
+    finally {
+      myShepherd.rollbackDBTransaction();
+      myShepherd.closeDBTransaction();
+    }
+  }
+
+  /**
+   * Adds encounters to the catalog until it has numEncounters of them, and returns the number added.
+   */
+  public int generate(int numEncounters) {
+    int first = countEncounters();
+    int next = first;
+    int individual = first;
+    int occurrence = first;
+    long start = System.currentTimeMillis();
+
+    while (next < numEncounters) {
+      Shepherd myShepherd = new Shepherd(context);
+      myShepherd.beginDBTransaction();
+      PersistenceManager pm = myShepherd.getPM();
+      try {
+        int batchEnd = Math.min(numEncounters, next + BATCH_SIZE);
+        Occurrence occ = null;
+        int occurrenceSize = 0;
+        while (next < batchEnd) {
+          //an individual and its resightings, or a single unidentified animal
+          boolean assigned = random.nextDouble() >= UNASSIGNED_FRACTION;
+          int sightings = assigned ? (1 + random.nextInt(MAX_RESIGHTINGS)) : 1;
+          sightings = Math.min(sightings, batchEnd - next);
+          ArrayList<SuperSpot> pattern = data.spotPattern(20 + random.nextInt(30));
+          int[] genotype = data.genotypes(1, NUM_LOCI, 2, 10)[0];
+          String sex = SEXES[random.nextInt(SEXES.length)];
+          MarkedIndividual indie = null;
+
+          for (int s = 0; s < sightings; s++) {
+            Encounter enc = newEncounter(next, sex, (s == 0) ? pattern : data.resighting(pattern, 5.0, 0.2));
+            if ((occ == null) || (occurrenceSize >= 1 + random.nextInt(MAX_OCCURRENCE_SIZE))) {
+              occ = new Occurrence(OCCURRENCE_PREFIX + (occurrence++), enc);
+              occurrenceSize = 1;
+              pm.makePersistent(occ);
+            }
+            else {
+              occ.addEncounter(enc);
+              occurrenceSize++;
+            }
+            enc.setOccurrenceID(occ.getOccurrenceID());
+            if (random.nextDouble() < SAMPLED_FRACTION) {
+              enc.addTissueSample(newTissueSample(enc.getEncounterNumber(), genotype));
+            }
+            pm.makePersistent(enc);
+
+            if (assigned) {
+              if (indie == null) {
+                indie = new MarkedIndividual(INDIVIDUAL_PREFIX + (individual++), enc);
+                enc.assignToMarkedIndividual(indie.getIndividualID());
+                pm.makePersistent(indie);
+              }
+              else {
+                indie.addEncounter(enc);
+              }
+            }
+            next++;
+          }
+        }
+        myShepherd.commitDBTransaction();
+      }
+      catch (Exception e) {
+        System.out.println("CatalogGenerator failed to store the encounters before " + getEncounterID(next) + ".");
+        e.printStackTrace();
+        myShepherd.rollbackDBTransaction();
+        myShepherd.closeDBTransaction();
+        return next - first;
+      }
+      myShepherd.closeDBTransaction();
+
+      long elapsed = Math.max(1, System.currentTimeMillis() - start);
+      System.out.println("CatalogGenerator: " + next + " of " + numEncounters + " encounters stored (" + ((next - first) * 1000L / elapsed) + " per second).");
+    }
+    return next - first;
+  }
+
+  private Encounter newEncounter(int number, String sex, ArrayList<SuperSpot> spots) {
+    int year = 1995 + random.nextInt(20);
+    int month = 1 + random.nextInt(12);
+    int day = 1 + random.nextInt(28);
+    String locationID = LOCATION_IDS[random.nextInt(LOCATION_IDS.length)];
+    Encounter enc = new Encounter(day, month, year, random.nextInt(24), "00", "", "Synthetic site " + locationID, "Load Test", "loadtest@example.org", new ArrayList<SinglePhotoVideo>());
+    enc.setEncounterNumber(getEncounterID(number));
+    enc.setLocationID(locationID);
+    enc.setSex(sex);
+    enc.setState("approved");
+    enc.setGenus("Rhincodon");
+    enc.setSpecificEpithet("typus");
+    enc.setDecimalLatitude(new Double(-25 + 10 * random.nextDouble()));
+    enc.setDecimalLongitude(new Double(110 + 10 * random.nextDouble()));
+    enc.setSpots(spots);
+    enc.setLeftReferenceSpots(data.referenceSpots());
+    enc.setNumLeftSpots(spots.size());
+    return enc;
+  }
+
+  private TissueSample newTissueSample(String encounterNumber, int[] genotype) {
+    TissueSample sample = new TissueSample(encounterNumber, "TS-" + encounterNumber);
+    ArrayList<Locus> loci = new ArrayList<Locus>(NUM_LOCI);
+    for (int l = 0; l < NUM_LOCI; l++) {
+      loci.add(new Locus("L" + l, new Integer(genotype[2 * l]), new Integer(genotype[2 * l + 1])));
+    }
+    sample.addGeneticAnalysis(new MicrosatelliteMarkersAnalysis("MS-" + encounterNumber, sample.getSampleID(), encounterNumber, loci));
+    return sample;
+  }
+
+}
@@ -0,0 +1,578 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServlet;
+
+import org.ecocean.CommonConfiguration;
+import org.ecocean.Encounter;
+import org.ecocean.EncounterQueryProcessor;
+import org.ecocean.IndividualQueryProcessor;
+import org.ecocean.Shepherd;
+import org.ecocean.ShepherdProperties;
+import org.ecocean.ShepherdRequest;
+import org.ecocean.grid.GridManager;
+import org.ecocean.grid.GridManagerFactory;
+import org.ecocean.grid.GridNode;
+import org.ecocean.grid.LatencyHistogram;
+import org.ecocean.grid.MatchObject;
+import org.ecocean.grid.ScanTask;
+import org.ecocean.grid.ScanWorkItem;
+import org.ecocean.grid.ScanWorkItemResult;
+import org.ecocean.servlet.ScanTaskHandler;
+import org.ecocean.servlet.WriteOutScanTask;
+import org.ecocean.servlet.export.EncounterSearchExportExcelFile;
+import org.ecocean.servlet.export.IndividualSearchExportCapture;
+import org.json.JSONObject;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+
+/**
+ * An end-to-end load test against a synthetic catalog, for sizing hardware and for checking changes against catalogs
+ * of production size (10,000 to 200,000 encounters).
+ * <p/>
+ * The catalog is built by CatalogGenerator in its own embedded database, chosen with a jdoconfig.properties override
+ * written to the working directory, so the test never touches a real catalog. It is kept between runs and only
+ * extended when a larger one is asked for, so that scenarios can be run again without rebuilding it.
+ * <p/>
+ * Everything runs in this JVM, through the same code the webapp runs:
+ * <ul>
+ * <li>scans: ScanTaskHandler addTask, the work items compared by in-process grid nodes that check out and check in
+ * work through the GridManager as remote nodes do, then WriteOutScanTask</li>
+ * <li>encounter and individual searches through EncounterQueryProcessor and IndividualQueryProcessor</li>
+ * <li>exports through EncounterSearchExportExcelFile and IndividualSearchExportCapture</li>
+ * </ul>
+ * Throughput and latency percentiles of each are printed and written as JSON. Settings are system properties:
+ * load.encounters, load.scans, load.concurrentScans, load.nodes, load.searches, load.exports, load.clients, load.seed,
+ * load.jdbcURL, load.scanTimeoutSeconds, load.report and load.context. Run it with the loadtest profile, e.g.
+ * <pre>
+ *   mvn -Ploadtest test -Dload.encounters=200000 -Dload.nodes=16
+ * </pre>
+ */
+public class CatalogLoadTest {
+
+  //first line of the jdoconfig.properties this test writes, so that it never replaces one it did not write
+  private static final String CONFIG_MARKER = "Written by CatalogLoadTest";
+
+  private final String context = System.getProperty("load.context", "context0");
+  private final int numEncounters = Integer.getInteger("load.encounters", 10000).intValue();
+  private final int numScans = Integer.getInteger("load.scans", 5).intValue();
+  private final int concurrentScans = Integer.getInteger("load.concurrentScans", 1).intValue();
+  private final int numNodes = Integer.getInteger("load.nodes", Runtime.getRuntime().availableProcessors()).intValue();
+  private final int numSearches = Integer.getInteger("load.searches", 40).intValue();
+  private final int numExports = Integer.getInteger("load.exports", 4).intValue();
+  private final int numClients = Integer.getInteger("load.clients", 4).intValue();
+  private final long seed = Long.getLong("load.seed", SyntheticData.DEFAULT_SEED).longValue();
+  private final long scanTimeoutMillis = 1000L * Long.getLong("load.scanTimeoutSeconds", 3600).longValue();
+
+  private final Random random = new Random(seed);
+  private final Map<String, Scenario> scenarios = new LinkedHashMap<String, Scenario>();
+
+  private File dataDir;
+  private MockServletContext servletContext;
+  private ScanTaskHandler scanTaskHandler;
+  private WriteOutScanTask writeOutScanTask;
+  private EncounterSearchExportExcelFile encounterExport;
+  private IndividualSearchExportCapture individualExport;
+  private volatile boolean nodesStopped = false;
+
+  /**
+   * The measurements of one kind of operation.
+   */
+  static class Scenario {
+    final String name;
+    final String unit;
+    final String itemName;
+    final LatencyHistogram latencies = new LatencyHistogram();
+    final AtomicLong items = new AtomicLong(0);
+    final AtomicInteger errors = new AtomicInteger(0);
+    volatile long wallMillis = 0;
+
+    Scenario(String name, String unit, String itemName) {
+      this.name = name;
+      this.unit = unit;
+      this.itemName = itemName;
+    }
+
+    double getPerSecond(long num) {
+      return (wallMillis > 0) ? (num * 1000.0 / wallMillis) : 0;
+    }
+  }
+
+  /**
+   * One operation of a scenario, the i-th of those run.
+   */
+  interface Operation {
+    void run(int i) throws Exception;
+  }
+
+  public static void main(String[] args) {
+    CatalogLoadTest test = new CatalogLoadTest();
+    int errors = 0;
+    try {
+      test.setUp();
+      test.generateCatalog();
+      test.runScans();
+      test.runSearches();
+      test.runExports();
+      errors = test.report();
+    }
+    catch (Exception e) {
+      System.out.println("CatalogLoadTest could not complete.");
+      e.printStackTrace();
+      errors = 1;
+    }
+    //the grid's executors are not daemon threads
+    System.exit((errors > 0) ? 1 : 0);
+  }
+
+  /**
+   * Points the context at the test's own database and sets up the servlets as the webapp would.
+   */
+  void setUp() throws Exception {
+    File webappsDir = new File("webapps").getAbsoluteFile();
+    String dataDirName = CommonConfiguration.getDataDirectoryName(context);
+    dataDir = new File(webappsDir, dataDirName);
+
+    String jdbcURL = System.getProperty("load.jdbcURL", "jdbc:derby:" + new File("loadtest_" + numEncounters).getAbsolutePath() + ";create=true");
+    writeDatabaseConfig(new File(dataDir, "WEB-INF/classes/bundles/jdoconfig.properties"), jdbcURL);
+
+    File webappRoot = new File(webappsDir, "wildbook");
+    webappRoot.mkdirs();
+    servletContext = new MockServletContext("file:" + webappRoot.getAbsolutePath());
+    scanTaskHandler = new ScanTaskHandler();
+    scanTaskHandler.init(new MockServletConfig(servletContext, "ScanTaskHandler"));
+    writeOutScanTask = new WriteOutScanTask();
+    writeOutScanTask.init(new MockServletConfig(servletContext, "WriteOutScanTask"));
+    encounterExport = new EncounterSearchExportExcelFile();
+    encounterExport.init(new MockServletConfig(servletContext, "EncounterSearchExportExcelFile"));
+    individualExport = new IndividualSearchExportCapture();
+    individualExport.init(new MockServletConfig(servletContext, "IndividualSearchExportCapture"));
+
+    System.out.println("CatalogLoadTest: " + numEncounters + " encounters in " + jdbcURL + ", " + numNodes + " grid nodes.");
+  }
+
+  //writes a copy of the context's jdoconfig.properties that uses the given database, where ShepherdPMF looks for one
+  private void writeDatabaseConfig(File configFile, String jdbcURL) throws IOException {
+    if (configFile.exists()) {
+      BufferedReader reader = new BufferedReader(new FileReader(configFile));
+      String firstLine = reader.readLine();
+      reader.close();
+      if ((firstLine == null) || !firstLine.equals("#" + CONFIG_MARKER)) {
+        throw new IOException(configFile.getAbsolutePath() + " was not written by CatalogLoadTest; run the test in a working directory of its own.");
+      }
+    }
+    Properties props = ShepherdProperties.getProperties("jdoconfig.properties", "", context);
+    props.setProperty("datanucleus.ConnectionURL", jdbcURL);
+    if (jdbcURL.startsWith("jdbc:h2:")) {
+      props.setProperty("datanucleus.ConnectionDriverName", "org.h2.Driver");
+    }
+    else if (jdbcURL.startsWith("jdbc:derby:")) {
+      props.setProperty("datanucleus.ConnectionDriverName", "org.apache.derby.jdbc.EmbeddedDriver");
+    }
+    props.setProperty("datanucleus.schema.autoCreateAll", "true");
+    configFile.getParentFile().mkdirs();
+    OutputStream out = new FileOutputStream(configFile);
+    try {
+      props.store(out, CONFIG_MARKER);
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  void generateCatalog() {
+    Scenario generate = scenario("generate", "ms", "encounters");
+    long start = System.currentTimeMillis();
+    int added = new CatalogGenerator(context, seed).generate(numEncounters);
+    generate.wallMillis = System.currentTimeMillis() - start;
+    generate.items.addAndGet(added);
+    if (added > 0) {
+      generate.latencies.record(generate.wallMillis);
+    }
+  }
+
+  /**
+   * Runs numScans scans, concurrentScans at a time, of randomly chosen encounters, while numNodes in-process nodes
+   * compare their work items.
+   */
+  void runScans() throws Exception {
+    if (numScans <= 0) {
+      return;
+    }
+    final Scenario addTask = scenario("scan.addTask", "ms", "tasks");
+    final Scenario compare = scenario("scan.compare", "us", "comparisons");
+    final Scenario writeOut = scenario("scan.writeOut", "ms", "tasks");
+    final Scenario scan = scenario("scan", "ms", "comparisons");
+
+    final ArrayList<String> encounterNumbers = new ArrayList<String>();
+    for (int i = 0; i < numScans; i++) {
+      encounterNumbers.add(CatalogGenerator.getEncounterID(random.nextInt(numEncounters)));
+    }
+    removeScanTasks(encounterNumbers);
+
+    GridManager gm = GridManagerFactory.getGridManager();
+    gm.setScanTaskLimit(Math.max(gm.getScanTaskLimit(), concurrentScans + 1));
+    ArrayList<Thread> nodes = new ArrayList<Thread>();
+    for (int n = 0; n < numNodes; n++) {
+      Thread node = new Thread(newNode("loadtest-node-" + n, compare), "loadtest-node-" + n);
+      node.setDaemon(true);
+      node.start();
+      nodes.add(node);
+    }
+
+    long start = System.currentTimeMillis();
+    runConcurrently(scan, concurrentScans, numScans, new Operation() {
+      public void run(int i) throws Exception {
+        scan(encounterNumbers.get(i), addTask, writeOut, scan);
+      }
+    });
+    compare.wallMillis = System.currentTimeMillis() - start;
+    addTask.wallMillis = compare.wallMillis;
+    writeOut.wallMillis = compare.wallMillis;
+
+    nodesStopped = true;
+    for (Thread node : nodes) {
+      node.join(10000);
+    }
+  }
+
+  //removes the scan tasks of an earlier run, which ScanTaskHandler would otherwise not add again
+  private void removeScanTasks(ArrayList<String> encounterNumbers) {
+    Shepherd myShepherd = new Shepherd(context);
+    myShepherd.beginDBTransaction();
+    try {
+      for (String encounterNumber : encounterNumbers) {
+        if (myShepherd.isScanTask("scanL" + encounterNumber)) {
+          myShepherd.getPM().deletePersistent(myShepherd.getScanTask("scanL" + encounterNumber));
+        }
+      }
+      myShepherd.commitDBTransaction();
+    }
+    catch (Exception e) {
+      System.out.println("CatalogLoadTest could not remove the scan tasks of an earlier run.");
+      e.printStackTrace();
+      myShepherd.rollbackDBTransaction();
+    }
+    myShepherd.closeDBTransaction();
+  }
+
+  private void scan(String encounterNumber, Scenario addTask, Scenario writeOut, Scenario scan) throws Exception {
+    String taskID = "scanL" + encounterNumber;
+    GridManager gm = GridManagerFactory.getGridManager();
+    //WriteOutScanTask writes its results into the encounter's directory
+    new File(Encounter.dir(dataDir, encounterNumber)).mkdirs();
+
+    long start = System.currentTimeMillis();
+    call(scanTaskHandler, "/ScanTaskHandler", "action", "addTask", "encounterNumber", encounterNumber, "writeThis", "true");
+    long added = System.currentTimeMillis();
+    addTask.latencies.record(added - start);
+
+    int numComparisons = getNumComparisons(taskID);
+    if (numComparisons < 0) {
+      throw new IllegalStateException("ScanTaskHandler did not add " + taskID);
+    }
+    addTask.items.incrementAndGet();
+
+    //the work items are created in the background, and compared by the nodes as they appear
+    long deadline = added + scanTimeoutMillis;
+    while (gm.getNumWorkItemsCompleteForTask(taskID) < numComparisons) {
+      if (System.currentTimeMillis() > deadline) {
+        gm.removeWorkItemsForTask(taskID);
+        throw new IllegalStateException(taskID + " did not finish within " + (scanTimeoutMillis / 1000) + " seconds.");
+      }
+      Thread.sleep(20);
+    }
+
+    long compared = System.currentTimeMillis();
+    call(writeOutScanTask, "/WriteOutScanTask", "number", taskID);
+    long end = System.currentTimeMillis();
+    writeOut.latencies.record(end - compared);
+    writeOut.items.incrementAndGet();
+    scan.latencies.record(end - start);
+    scan.items.addAndGet(numComparisons);
+  }
+
+  //returns the number of comparisons of a stored scan task, or -1 if there is no such task
+  private int getNumComparisons(String taskID) {
+    Shepherd myShepherd = new Shepherd(context);
+    myShepherd.beginDBTransaction();
+    try {
+      ScanTask st = myShepherd.isScanTask(taskID) ? myShepherd.getScanTask(taskID) : null;
+      return (st == null) ? -1 : st.getNumComparisons();
+    }
+    finally {
+      myShepherd.rollbackDBTransaction();
+      myShepherd.closeDBTransaction();
+    }
+  }
+
+  /**
+   * Returns a grid node that checks out groups of work items, compares them, and checks the results in, as
+   * ScanAppletSupport and ScanWorkItemResultsHandler do for a remote node.
+   */
+  private Runnable newNode(final String nodeIdentifier, final Scenario compare) {
+    final MockHttpServletRequest heartbeat = newRequest("/ScanAppletSupport", "nodeIdentifier", nodeIdentifier, "numProcessors", "1");
+    return new Runnable() {
+      public void run() {
+        GridManager gm = GridManagerFactory.getGridManager();
+        while (!nodesStopped) {
+          try {
+            gm.processHeartbeat(heartbeat);
+            GridNode nd = gm.getGridNode(nodeIdentifier);
+            ArrayList<ScanWorkItem> list = gm.getWorkItems(nd, gm.getNextGroupSize(nd), null);
+            if (list.size() == 0) {
+              Thread.sleep(20);
+              continue;
+            }
+            ArrayList<ScanWorkItemResult> results = new ArrayList<ScanWorkItemResult>(list.size());
+            for (ScanWorkItem swi : list) {
+              long start = System.nanoTime();
+              MatchObject mo = swi.execute();
+              compare.latencies.record((System.nanoTime() - start) / 1000);
+              results.add(new ScanWorkItemResult(swi.getTaskIdentifier(), swi.getUniqueNumber(), mo));
+            }
+            for (ScanWorkItemResult swir : results) {
+              gm.checkinResult(swir, nodeIdentifier);
+            }
+            nd.checkin(results.size());
+            gm.incrementCompletedWorkItems(results.size());
+            compare.items.addAndGet(results.size());
+          }
+          catch (InterruptedException ie) {
+            return;
+          }
+          catch (Exception e) {
+            compare.errors.incrementAndGet();
+            System.out.println("CatalogLoadTest node " + nodeIdentifier + " failed to compare a group of work items.");
+            e.printStackTrace();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Runs encounter and individual searches by location code, numClients at a time.
+   */
+  void runSearches() throws Exception {
+    if (numSearches <= 0) {
+      return;
+    }
+    final Scenario encounters = scenario("search.encounters", "ms", "encounters");
+    final Scenario individuals = scenario("search.individuals", "ms", "individuals");
+    final String[] locations = pickLocations(numSearches);
+
+    runConcurrently(encounters, numClients, numSearches, new Operation() {
+      public void run(int i) throws Exception {
+        Shepherd myShepherd = new Shepherd(context);
+        myShepherd.beginDBTransaction();
+        try {
+          long start = System.currentTimeMillis();
+          int num = EncounterQueryProcessor.processQuery(myShepherd, newRequest("/SearchResults.jsp", "locationCodeField", locations[i], "male", "on", "female", "on", "unknown", "on"), "year descending, month descending, day descending").getResult().size();
+          encounters.latencies.record(System.currentTimeMillis() - start);
+          encounters.items.addAndGet(num);
+        }
+        finally {
+          myShepherd.rollbackDBTransaction();
+          myShepherd.closeDBTransaction();
+        }
+      }
+    });
+
+    runConcurrently(individuals, numClients, numSearches, new Operation() {
+      public void run(int i) throws Exception {
+        Shepherd myShepherd = new Shepherd(context);
+        myShepherd.beginDBTransaction();
+        try {
+          long start = System.currentTimeMillis();
+          int num = IndividualQueryProcessor.processQuery(myShepherd, newRequest("/individualSearchResults.jsp", "locationCodeField", locations[i]), "").getResult().size();
+          individuals.latencies.record(System.currentTimeMillis() - start);
+          individuals.items.addAndGet(num);
+        }
+        finally {
+          myShepherd.rollbackDBTransaction();
+          myShepherd.closeDBTransaction();
+        }
+      }
+    });
+  }
+
+  /**
+   * Runs CSV encounter exports and CAPTURE individual exports by location code, numClients at a time.
+   */
+  void runExports() throws Exception {
+    if (numExports <= 0) {
+      return;
+    }
+    final Scenario encounters = scenario("export.encounters", "ms", "bytes");
+    final Scenario individuals = scenario("export.individuals", "ms", "bytes");
+    final String[] locations = pickLocations(numExports);
+
+    runConcurrently(encounters, numClients, numExports, new Operation() {
+      public void run(int i) throws Exception {
+        long start = System.currentTimeMillis();
+        MockHttpServletResponse response = call(encounterExport, "/EncounterSearchExportExcelFile", "format", "csv", "locationCodeField", locations[i], "male", "on", "female", "on", "unknown", "on");
+        encounters.latencies.record(System.currentTimeMillis() - start);
+        encounters.items.addAndGet(response.getContentAsByteArray().length);
+      }
+    });
+
+    runConcurrently(individuals, numClients, numExports, new Operation() {
+      public void run(int i) throws Exception {
+        long start = System.currentTimeMillis();
+        MockHttpServletResponse response = call(individualExport, "/IndividualSearchExportCapture", "locationCodeField", locations[i], "year1", "1995", "month1", "1", "year2", "2014", "month2", "12");
+        individuals.latencies.record(System.currentTimeMillis() - start);
+        individuals.items.addAndGet(response.getContentAsByteArray().length);
+      }
+    });
+  }
+
+  private String[] pickLocations(int num) {
+    String[] locations = new String[num];
+    for (int i = 0; i < num; i++) {
+      locations[i] = CatalogGenerator.LOCATION_IDS[random.nextInt(CatalogGenerator.LOCATION_IDS.length)];
+    }
+    return locations;
+  }
+
+  /**
+   * Runs numOperations operations on numThreads threads, counting those that fail as errors of the scenario, and sets
+   * its wall clock time.
+   */
+  private void runConcurrently(final Scenario scenario, int numThreads, int numOperations, final Operation operation) throws InterruptedException {
+    ExecutorService es = Executors.newFixedThreadPool(Math.max(1, numThreads));
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < numOperations; i++) {
+      final int index = i;
+      es.execute(new Runnable() {
+        public void run() {
+          try {
+            operation.run(index);
+          }
+          catch (Exception e) {
+            scenario.errors.incrementAndGet();
+            System.out.println("CatalogLoadTest: " + scenario.name + " " + index + " failed.");
+            e.printStackTrace();
+          }
+        }
+      });
+    }
+    es.shutdown();
+    es.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    scenario.wallMillis = System.currentTimeMillis() - start;
+  }
+
+  //a request with the given parameter names and values, as the webapp would receive it
+  private MockHttpServletRequest newRequest(String uri, String... params) {
+    MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", uri);
+    request.setRemoteAddr("127.0.0.1");
+    request.addParameter("context", context);
+    for (int i = 0; i + 1 < params.length; i += 2) {
+      request.addParameter(params[i], params[i + 1]);
+    }
+    return request;
+  }
+
+  //calls a servlet as ShepherdFilter would, and returns its response
+  private MockHttpServletResponse call(HttpServlet servlet, String uri, String... params) throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ShepherdRequest shepherdRequest = ShepherdRequest.begin("GET " + uri, false);
+    try {
+      servlet.service(newRequest(uri, params), response);
+    }
+    finally {
+      shepherdRequest.end(true);
+    }
+    if (response.getStatus() >= 400) {
+      throw new IllegalStateException(uri + " returned status " + response.getStatus());
+    }
+    return response;
+  }
+
+  private Scenario scenario(String name, String unit, String itemName) {
+    Scenario scenario = new Scenario(name, unit, itemName);
+    scenarios.put(name, scenario);
+    return scenario;
+  }
+
+  /**
+   * Prints the throughput and latency percentiles of each scenario, writes them as JSON to load.report, and returns
+   * the number of errors.
+   */
+  int report() throws Exception {
+    int errors = 0;
+    JSONObject json = new JSONObject();
+    json.put("encounters", numEncounters);
+    json.put("nodes", numNodes);
+    json.put("clients", numClients);
+
+    System.out.println();
+    System.out.println(String.format("%-20s %7s %7s %9s %14s %5s %9s %9s %9s %9s %9s", "scenario", "ops", "errors", "ops/s", "items/s", "unit", "mean", "p50", "p90", "p99", "max"));
+    for (Scenario s : scenarios.values()) {
+      LatencyHistogram h = s.latencies;
+      System.out.println(String.format("%-20s %7d %7d %9.2f %14s %5s %9.1f %9d %9d %9d %9d", s.name, h.getCount(), s.errors.get(), s.getPerSecond(h.getCount()), String.format("%.1f %s", s.getPerSecond(s.items.get()), s.itemName), s.unit, h.getMean(), h.getPercentile(50), h.getPercentile(90), h.getPercentile(99), h.getMax()));
+      errors += s.errors.get();
+
+      JSONObject result = h.toJSON();
+      result.put("unit", s.unit);
+      result.put("errors", s.errors.get());
+      result.put("wallMillis", s.wallMillis);
+      result.put("items", s.items.get());
+      result.put("itemName", s.itemName);
+      result.put("opsPerSecond", s.getPerSecond(h.getCount()));
+      result.put("itemsPerSecond", s.getPerSecond(s.items.get()));
+      json.put(s.name, result);
+    }
+
+    File reportFile = new File(System.getProperty("load.report", "loadtest-" + numEncounters + ".json"));
+    FileWriter out = new FileWriter(reportFile);
+    try {
+      out.write(json.toString(2));
+    }
+    finally {
+      out.close();
+    }
+    System.out.println();
+    System.out.println("CatalogLoadTest: results written to " + reportFile.getAbsolutePath());
+    return errors;
+  }
+
+}
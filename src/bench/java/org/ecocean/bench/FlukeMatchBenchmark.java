@@ -0,0 +1,116 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.ecostats.flukes.Fluke;
+import com.ecostats.flukes.FlukeIndex;
+import com.ecostats.flukes.FlukeMatch;
+import com.ecostats.flukes.Matrix2D;
+import com.ecostats.flukes.TraceCompare;
+
+/**
+ * Times matching a fluke tracing against a catalog, sequentially with processCatalog and in parallel with
+ * scoreCatalog, and the Matrix2D work each comparison does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FlukeMatchBenchmark {
+
+  @Param({"100", "1000"})
+  public int catalogSize;
+
+  @Param({"10", "40"})
+  public int pointsPerSide;
+
+  private TraceCompare tc;
+  private List<Fluke> catalog;
+  private Fluke test;
+  private RealVector distanceKnown;
+  private RealVector markTypesKnown;
+  private RealVector distanceTest;
+  private RealVector markTypesTest;
+
+  @Setup
+  public void generate() {
+    SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED + catalogSize + pointsPerSide);
+    tc = new TraceCompare();
+    catalog = new ArrayList<Fluke>(catalogSize);
+    for (int i = 0; i < catalogSize; i++) {
+      Fluke fluke = data.fluke(pointsPerSide);
+      fluke.setEncounter("enc" + i);
+      //as FlukeCatalog keeps them, with their indexes computed
+      tc.getIndex(fluke);
+      catalog.add(fluke);
+    }
+    test = data.fluke(pointsPerSide);
+    tc.getIndex(test);
+
+    FlukeIndex known = catalog.get(0).getIndex();
+    distanceKnown = known.getDistances().mapDivide(6000).mapAdd(0.5);
+    markTypesKnown = known.getMarkTypes();
+    distanceTest = test.getIndex().getDistances();
+    markTypesTest = test.getIndex().getMarkTypes();
+  }
+
+  @Benchmark
+  public TreeSet<Fluke> processCatalog() {
+    return tc.processCatalog(catalog, test);
+  }
+
+  @Benchmark
+  public List<FlukeMatch> scoreCatalog() {
+    return tc.scoreCatalog(catalog, test, 100);
+  }
+
+  @Benchmark
+  public FlukeIndex computeIndex() {
+    return tc.computeIndex(test);
+  }
+
+  @Benchmark
+  public Matrix2D distanceMatrix() {
+    return tc.distanceMatrix(distanceKnown, markTypesKnown, distanceTest, markTypesTest);
+  }
+
+  @Benchmark
+  public Matrix2D findAndSort() {
+    Matrix2D dismat = tc.distanceMatrix(distanceKnown, markTypesKnown, distanceTest, markTypesTest);
+    Matrix2D nzv = dismat.find(0, Matrix2D.GT);
+    return (nzv == null) ? dismat : nzv.multiply(-1).sort(2).multiply(-1);
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ecocean.genetics.FStatistics;
+import org.ecocean.genetics.distance.DistSAD;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Times the shared allele distance between every pair of a set of genotypes, as the relatedness analyses compute it,
+ * and the F-statistics of one locus over populations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GeneticsBenchmark {
+
+  static final int PLOIDY = 2;
+  static final int ALLELES_PER_LOCUS = 12;
+  static final int POPULATIONS = 4;
+
+  @Param({"100", "500"})
+  public int individuals;
+
+  @Param({"10", "30"})
+  public int loci;
+
+  private int[][] genotypes;
+  private int[] populations;
+
+  @Setup
+  public void generate() {
+    SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED + individuals + loci);
+    genotypes = data.genotypes(individuals, loci, PLOIDY, ALLELES_PER_LOCUS);
+    populations = data.populations(individuals, POPULATIONS);
+  }
+
+  @Benchmark
+  public double distSADMatrix() {
+    double sum = 0;
+    for (int i = 0; i < individuals; i++) {
+      for (int j = i + 1; j < individuals; j++) {
+        sum += DistSAD.calculate(genotypes[i], genotypes[j], PLOIDY);
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double fStatistics() {
+    double theta = 0;
+    for (int l = 0; l < loci; l++) {
+      FStatistics fs = new FStatistics(POPULATIONS);
+      for (int i = 0; i < individuals; i++) {
+        fs.loadIndividual(genotypes[i][l * PLOIDY], genotypes[i][l * PLOIDY + 1], populations[i]);
+      }
+      theta += fs.getTheta();
+    }
+    return theta;
+  }
+
+}
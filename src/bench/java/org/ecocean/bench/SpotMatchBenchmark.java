@@ -0,0 +1,103 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.ecocean.SuperSpot;
+import org.ecocean.grid.EncounterLite;
+import org.ecocean.grid.I3SMatchObject;
+import org.ecocean.grid.MatchObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Times one spot-pattern comparison, as a ScanWorkItem makes it, with the Groth and I3S algorithms.
+ * <p/>
+ * Both algorithms rescale the spots they are given, so the encounters are rebuilt from the generated spots before
+ * each comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpotMatchBenchmark {
+
+  //the settings ScanTaskHandler gives each ScanWorkItem
+  static final double EPSILON = 0.01;
+  static final double R = 8;
+  static final double SIZELIM = 0.85;
+  static final double MAX_TRIANGLE_ROTATION = 10;
+  static final double C = 0.99;
+
+  @Param({"10", "50", "100", "200"})
+  public int spots;
+
+  private ArrayList<SuperSpot> existingSpots;
+  private ArrayList<SuperSpot> newSpots;
+  private ArrayList<SuperSpot> existingReferences;
+  private ArrayList<SuperSpot> newReferences;
+
+  private EncounterLite existing;
+  private EncounterLite newEncounter;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED + spots);
+    existingSpots = data.spotPattern(spots);
+    newSpots = data.resighting(existingSpots, 5, 0.1);
+    existingReferences = data.referenceSpots();
+    newReferences = data.referenceSpots();
+  }
+
+  @Setup(Level.Invocation)
+  public void reset() {
+    SyntheticData data = new SyntheticData(0);
+    existing = data.encounter(copy(existingSpots), copy(existingReferences));
+    newEncounter = data.encounter(copy(newSpots), copy(newReferences));
+  }
+
+  private static ArrayList<SuperSpot> copy(ArrayList<SuperSpot> spots) {
+    ArrayList<SuperSpot> copy = new ArrayList<SuperSpot>(spots.size());
+    for (SuperSpot spot : spots) {
+      copy.add(new SuperSpot(spot.getTheSpot().getClone()));
+    }
+    return copy;
+  }
+
+  @Benchmark
+  public MatchObject getPointsForBestMatch() {
+    SuperSpot[] newspotsTemp = (SuperSpot[]) newEncounter.getSpots().toArray(new SuperSpot[0]);
+    return existing.getPointsForBestMatch(newspotsTemp, EPSILON, R, SIZELIM, MAX_TRIANGLE_ROTATION, C, true, false);
+  }
+
+  @Benchmark
+  public I3SMatchObject i3sScan() {
+    return existing.i3sScan(newEncounter, false);
+  }
+
+}
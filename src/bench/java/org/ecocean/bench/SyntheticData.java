@@ -0,0 +1,169 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.ecocean.Spot;
+import org.ecocean.SuperSpot;
+import org.ecocean.grid.EncounterLite;
+
+import com.ecostats.flukes.FinTrace;
+import com.ecostats.flukes.Fluke;
+
+/**
+ * Seeded generators of the data the benchmarks run on, so that every run, and the baseline it is compared with, works
+ * on the same spot patterns, tracings and genotypes.
+ */
+public class SyntheticData {
+
+  public static final long DEFAULT_SEED = 20141031L;
+
+  //mark types that start or are a feature, and the type that ends each ranged feature (or 0 if it has none)
+  private static final int[] FEATURES = {FinTrace.NICK, FinTrace.GOUGE, FinTrace.SCALLOP, FinTrace.WAVE, FinTrace.SCAR, FinTrace.HOLE};
+  private static final int[] FEATURE_ENDS = {0, FinTrace.GOUGE_END, FinTrace.SCALLOP_END, FinTrace.WAVE_END, 0, 0};
+
+  private final Random random;
+
+  public SyntheticData(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Returns numSpots spots scattered over a 1000 x 400 flank, as a spot-pattern photo of a shark would give.
+   */
+  public ArrayList<SuperSpot> spotPattern(int numSpots) {
+    ArrayList<SuperSpot> spots = new ArrayList<SuperSpot>(numSpots);
+    for (int i = 0; i < numSpots; i++) {
+      spots.add(new SuperSpot(new Spot(0, 1000 * random.nextDouble(), 400 * random.nextDouble())));
+    }
+    return spots;
+  }
+
+  /**
+   * Returns a copy of spots with each moved by up to jitter in each direction and a fraction of them dropped, as a
+   * second photo of the same animal would give.
+   */
+  public ArrayList<SuperSpot> resighting(ArrayList<SuperSpot> spots, double jitter, double dropFraction) {
+    ArrayList<SuperSpot> copy = new ArrayList<SuperSpot>(spots.size());
+    for (SuperSpot spot : spots) {
+      if (random.nextDouble() >= dropFraction) {
+        copy.add(new SuperSpot(new Spot(0, spot.getCentroidX() + jitter * (2 * random.nextDouble() - 1), spot.getCentroidY() + jitter * (2 * random.nextDouble() - 1))));
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Returns the three reference spots: the fifth gill slit, the front of the pelvic fin and the base of the dorsal.
+   */
+  public ArrayList<SuperSpot> referenceSpots() {
+    ArrayList<SuperSpot> spots = new ArrayList<SuperSpot>(3);
+    spots.add(new SuperSpot(new Spot(0, 20 + 10 * random.nextDouble(), 200 + 10 * random.nextDouble())));
+    spots.add(new SuperSpot(new Spot(0, 950 + 10 * random.nextDouble(), 350 + 10 * random.nextDouble())));
+    spots.add(new SuperSpot(new Spot(0, 500 + 10 * random.nextDouble(), 10 + 10 * random.nextDouble())));
+    return spots;
+  }
+
+  /**
+   * Returns an EncounterLite with left-side spots and reference spots, as ScanWorkItem compares them.
+   */
+  public EncounterLite encounter(ArrayList<SuperSpot> spots, ArrayList<SuperSpot> references) {
+    EncounterLite enc = new EncounterLite();
+    enc.processLeftSpots(spots);
+    enc.processLeftReferenceSpots(references);
+    return enc;
+  }
+
+  /**
+   * Returns a fluke tracing with pointsPerSide points on each side, each running from the tip to the notch, and
+   * randomly placed nicks, scars, holes, gouges, scallops and waves between them.
+   * <p/>
+   * Missing and invisible parts are left out, as TraceCompare.getCorr does not yet handle them.
+   */
+  public Fluke fluke(int pointsPerSide) {
+    FinTrace left = side(pointsPerSide, 20, 390);
+    FinTrace right = side(pointsPerSide, 750, 390);
+    left.setNotchOpen(random.nextBoolean());
+    right.setNotchOpen(left.getNotchOpen());
+    left.setCurled(random.nextInt(10) == 0);
+    right.setCurled(random.nextInt(10) == 0);
+    return new Fluke(left, right);
+  }
+
+  //a side from the tip at tipX to the notch at notchX
+  private FinTrace side(int numPoints, double tipX, double notchX) {
+    numPoints = Math.max(3, numPoints);
+    double[] x = new double[numPoints];
+    double[] y = new double[numPoints];
+    double[] types = new double[numPoints];
+    for (int i = 0; i < numPoints; i++) {
+      double t = (double) i / (numPoints - 1);
+      x[i] = tipX + t * (notchX - tipX);
+      y[i] = 80 - 30 * Math.sin(Math.PI * t) + 4 * random.nextGaussian();
+      types[i] = FinTrace.POINT;
+    }
+    types[0] = FinTrace.TIP;
+    types[numPoints - 1] = FinTrace.NOTCH;
+    int i = 1;
+    while (i < numPoints - 1) {
+      int f = random.nextInt(FEATURES.length);
+      if ((FEATURE_ENDS[f] != 0) && (i + 1 < numPoints - 1)) {
+        types[i] = FEATURES[f];
+        types[i + 1] = FEATURE_ENDS[f];
+        i += 2;
+      } else {
+        types[i] = FEATURES[(FEATURE_ENDS[f] != 0) ? 0 : f];
+        i++;
+      }
+    }
+    return new FinTrace(x, y, types);
+  }
+
+  /**
+   * Returns the genotypes of numIndividuals individuals at numLoci loci, as the allele lists DistSAD compares: ploidy
+   * alleles per locus, each one of allelesPerLocus values.
+   */
+  public int[][] genotypes(int numIndividuals, int numLoci, int ploidy, int allelesPerLocus) {
+    int[][] genes = new int[numIndividuals][numLoci * ploidy];
+    for (int i = 0; i < numIndividuals; i++) {
+      for (int l = 0; l < numLoci; l++) {
+        for (int p = 0; p < ploidy; p++) {
+          //alleles are numbered per locus, as microsatellite lengths are
+          genes[i][l * ploidy + p] = 100 + 2 * random.nextInt(allelesPerLocus);
+        }
+      }
+    }
+    return genes;
+  }
+
+  /**
+   * Returns a population label in [0, numPopulations) for each of numIndividuals individuals.
+   */
+  public int[] populations(int numIndividuals, int numPopulations) {
+    int[] labels = new int[numIndividuals];
+    for (int i = 0; i < numIndividuals; i++) {
+      labels[i] = random.nextInt(numPopulations);
+    }
+    return labels;
+  }
+
+}
@@ -83,18 +83,25 @@ public class FinTraceServlet extends HttpServlet {
 		    	// get a query object to locate the current fluke tracing if any
 		    	Query<Fluke> query = getFlukeTracing(datasource, encounter_id, photo_id);
 		    	List<Fluke> flukequery = query.asList();
+		    	// the values used for matching are computed once here, and stored with the tracing
+		    	TraceCompare tc = new TraceCompare();
 		    	if (flukequery.size()==0){ // the object does not exist in the database, so add it
 			    	Fluke fluke = new Fluke(finTraceLeft,finTraceRight);
 			    	fluke.setEncounter(encounter_id);
 			    	fluke.setPhoto(photo_id);
+			    	fluke.setIndex(tc.computeIndex(fluke));
 			    	datasource.datastore().save(fluke);		    		
+			    	FlukeCatalog.update(fluke);
 			    	out.println("Fin tracing saved.");
 		    	}else{ // update the existing stored object 
 		    		Fluke fluke = flukequery.get(0);
 		    		fluke.setLeftFluke(finTraceLeft);
 		    		fluke.setRightFluke(finTraceRight);
-		    		datasource.datastore().update(fluke, datasource.datastore().createUpdateOperations(Fluke.class).set("left_fluke", finTraceLeft).set("right_fluke", finTraceRight));
+		    		FlukeIndex index = tc.computeIndex(fluke);
+		    		fluke.setIndex(index);
+		    		datasource.datastore().update(fluke, datasource.datastore().createUpdateOperations(Fluke.class).set("left_fluke", finTraceLeft).set("right_fluke", finTraceRight).set("index", index));
 		    		//datasource.datastore().update(fluke, datasource.datastore().createUpdateOperations(Fluke.class).set("right_fluke", finTraceRight));
+		    		FlukeCatalog.update(fluke);
 			    	out.println("Fin tracing updated.");
 		    	}
 		    }
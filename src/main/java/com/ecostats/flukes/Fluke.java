@@ -57,6 +57,8 @@ public class Fluke implements java.io.Serializable {
   private FinTrace left_fluke;
   @Embedded("right_fluke")
   private FinTrace right_fluke;
+  @Embedded("index")
+  private FlukeIndex index; // values derived from the tracing for matching, see TraceCompare.computeIndex
   private double matchvalue = 0;
 
   /**
@@ -90,6 +92,23 @@ public class Fluke implements java.io.Serializable {
     this.setMarkTypes(mark_types);
   }
 
+  /**
+   * Fluke Constructor
+   * <p/>
+   * Comments: Creates a shallow copy of a Fluke, sharing its tracings and index, with a match value of zero.
+   * @param orig Fluke : the Fluke to copy
+   */
+  public Fluke(Fluke orig) {
+    this.id = orig.id;
+    this.encounter = orig.encounter;
+    this.individual = orig.individual;
+    this.photo = orig.photo;
+    this.mark_types = orig.mark_types;
+    this.left_fluke = orig.left_fluke;
+    this.right_fluke = orig.right_fluke;
+    this.index = orig.index;
+  }
+
   /**
    * Fluke Public Methods
    */  
@@ -355,6 +374,7 @@ public class Fluke implements java.io.Serializable {
    */
   public void setLeftFluke(FinTrace trace) {
     this.left_fluke = trace;
+    this.index = null;
   }
 
   /**
@@ -363,6 +383,7 @@ public class Fluke implements java.io.Serializable {
    */
   public void setRightFluke(FinTrace trace) {
     this.right_fluke = trace;
+    this.index = null;
   }
 
   /**
@@ -449,6 +470,22 @@ public class Fluke implements java.io.Serializable {
     this.photo = new String(photo);
   }
 
+  /**
+   * Gets the values derived from the tracing for matching
+   * @return FlukeIndex, or null if not yet computed
+   */
+  public FlukeIndex getIndex() {
+    return this.index;
+  }
+
+  /**
+   * Sets the values derived from the tracing for matching. Must be recomputed whenever the tracing changes.
+   * @param index FlukeIndex
+   */
+  public void setIndex(FlukeIndex index) {
+    this.index = index;
+  }
+
   /**
    * Gets the match value comparison value relative to other flukes in the database
    * @return double value of the calculated matching value
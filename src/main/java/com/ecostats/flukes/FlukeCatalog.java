@@ -0,0 +1,100 @@
+/**
+ * @author Ecological Software Solutions LLC
+ * @version 0.1 Alpha
+ * @copyright 2014
+ * @license This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.ecostats.flukes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+
+/**
+ * FlukeCatalog
+ * <p/>
+ * The stored Fluke tracings, with their FlukeIndex, kept in memory so that a match does not load and index the whole
+ * catalog again. The catalog is loaded on first use and reloaded once it is older than REBUILD_MILLIS; in between,
+ * FinTraceServlet passes it each tracing it saves. Indexes missing or of an older version are computed on load and
+ * written back to the database.
+ */
+public class FlukeCatalog {
+
+  public static final long REBUILD_MILLIS = 60 * 60 * 1000L;
+
+  private static LinkedHashMap<ObjectId, Fluke> flukes = null;
+  private static long builtAt = 0;
+
+  /**
+   * Returns the catalog's flukes, loading it first if needed. The flukes are shared by all callers and must not be
+   * changed, so they should be compared with TraceCompare.scoreCatalog; to use TraceCompare.processCatalog, which
+   * sets their match values, copy them first with new Fluke(fluke).
+   * @param datasource FlukeMongodb : the database to load the catalog from
+   * @param tc TraceCompare : used to compute missing indexes
+   * @return List of Fluke : a read-only list
+   */
+  public static synchronized List<Fluke> getFlukes(FlukeMongodb datasource, TraceCompare tc) {
+    if ((flukes == null) || ((System.currentTimeMillis() - builtAt) > REBUILD_MILLIS)) {
+      load(datasource, tc);
+    }
+    return Collections.unmodifiableList(new ArrayList<Fluke>(flukes.values()));
+  }
+
+  /**
+   * Replaces a saved fluke in the catalog, if it is loaded. The fluke should have a current index.
+   * @param fluke Fluke : the fluke just saved
+   */
+  public static synchronized void update(Fluke fluke) {
+    if ((flukes != null) && (fluke.getId() != null)) {
+      flukes.put(fluke.getId(), fluke);
+    }
+  }
+
+  /**
+   * Discards the catalog, so that it is loaded again on next use.
+   */
+  public static synchronized void invalidate() {
+    flukes = null;
+  }
+
+  private static void load(FlukeMongodb datasource, TraceCompare tc) {
+    LinkedHashMap<ObjectId, Fluke> loaded = new LinkedHashMap<ObjectId, Fluke>();
+    int recomputed = 0;
+    for (Fluke fluke : datasource.datastore().createQuery(Fluke.class).asList()) {
+      if ((fluke.getIndex() == null) || (!fluke.getIndex().isCurrent())) {
+        FlukeIndex index = tc.computeIndex(fluke);
+        fluke.setIndex(index);
+        try {
+          datasource.datastore().update(fluke, datasource.datastore().createUpdateOperations(Fluke.class).set("index", index));
+        } catch (Exception e) {
+          System.out.println("FlukeCatalog could not store the index of fluke " + fluke.getId());
+          e.printStackTrace();
+        }
+        recomputed++;
+      }
+      loaded.put(fluke.getId(), fluke);
+    }
+    if (recomputed > 0) {
+      System.out.println("FlukeCatalog computed the indexes of " + recomputed + " of " + loaded.size() + " flukes.");
+    }
+    flukes = loaded;
+    builtAt = System.currentTimeMillis();
+  }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * @author Ecological Software Solutions LLC
+ * @version 0.1 Alpha
+ * @copyright 2014
+ * @license This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.ecostats.flukes;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * FlukeIndex
+ * <p/>
+ * The values TraceCompare derives from a single Fluke tracing: its distance index, its mark types without the tip
+ * and notch, its notch and curl array and its "pt" value. They are computed by TraceCompare.computeIndex() when a
+ * tracing is saved and stored with the Fluke, so that a match only has to compare them pairwise.
+ * <p/>
+ * Increase VERSION whenever TraceCompare changes how any of these values are computed; stored indexes of an older
+ * version are then recomputed when next used.
+ */
+public class FlukeIndex implements java.io.Serializable {
+
+  private static final long serialVersionUID = 4736925260861304711L;
+
+  public final static int VERSION = 1;
+
+  private int version;
+  private boolean control_points; // whether the left fluke has the tip and notch points a match needs
+  private double[] distances;
+  private double[] mark_types; // null if the tracing has too few points on a side to be matched
+  private double[] notch_curl;
+  private double pt;
+
+  /**
+   * FlukeIndex Constructor
+   * <p/>
+   * Comments: Basic constructor method, used when loading from the database.
+   */
+  public FlukeIndex() {
+  }
+
+  /**
+   * FlukeIndex Constructor
+   * <p/>
+   * @param control_points boolean : whether the tracing has a left tip and notch
+   * @param distances double[] : the distance index of the tracing
+   * @param mark_types double[] : the mark types without tip and notch, or null if they could not be computed
+   * @param notch_curl double[] : the notch and curl array of the fluke
+   * @param pt double : the "pt" value of the fluke
+   */
+  public FlukeIndex(boolean control_points, double[] distances, double[] mark_types, double[] notch_curl, double pt) {
+    this.version = VERSION;
+    this.control_points = control_points;
+    this.distances = distances;
+    this.mark_types = mark_types;
+    this.notch_curl = notch_curl;
+    this.pt = pt;
+  }
+
+  /**
+   * Returns true if the index was computed by the current version of TraceCompare
+   * @return boolean
+   */
+  public boolean isCurrent() {
+    return this.version == VERSION;
+  }
+
+  /**
+   * Returns true if the tracing can be compared with others: it has a left tip and notch, and enough points on each
+   * side for its mark types.
+   * @return boolean
+   */
+  public boolean isMatchable() {
+    return this.control_points && (this.mark_types != null);
+  }
+
+  public int getVersion() {
+    return this.version;
+  }
+
+  public boolean hasControlPoints() {
+    return this.control_points;
+  }
+
+  /**
+   * Same as TraceCompare.tracingDistanceIndex for the fluke
+   * @return RealVector : a copy of the distance index
+   */
+  public RealVector getDistances() {
+    return new ArrayRealVector(this.distances);
+  }
+
+  /**
+   * Same as TraceCompare.markTypesNoNotchTip for the fluke
+   * @return RealVector : a copy of the mark types, or null
+   */
+  public RealVector getMarkTypes() {
+    return (this.mark_types == null) ? null : new ArrayRealVector(this.mark_types);
+  }
+
+  /**
+   * Same as Fluke.notchCurl
+   * @return double[] : a copy of the notch and curl array
+   */
+  public double[] getNotchCurl() {
+    return this.notch_curl.clone();
+  }
+
+  /**
+   * Same as TraceCompare.getFlukePt for the fluke
+   * @return double : the "pt" value
+   */
+  public double getPt() {
+    return this.pt;
+  }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * @author Ecological Software Solutions LLC
+ * @version 0.1 Alpha
+ * @copyright 2014
+ * @license This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.ecostats.flukes;
+
+/**
+ * FlukeMatch
+ * <p/>
+ * The immutable score of one catalog Fluke against a test Fluke, as returned by TraceCompare.scoreCatalog.
+ * Matches are ordered best first: by descending score, then by fluke ID and direction, so that flukes with equal
+ * scores are all kept.
+ */
+public final class FlukeMatch implements Comparable<FlukeMatch>, java.io.Serializable {
+
+  private static final long serialVersionUID = -5212358890164120815L;
+
+  public final static int FORWARD = 0; // the catalog fluke compared in its own direction
+  public final static int REVERSE = 1; // the catalog fluke compared in the reverse direction
+
+  private final String fluke_id;
+  private final String encounter;
+  private final double score;
+  private final int direction;
+
+  /**
+   * FlukeMatch Constructor
+   * <p/>
+   * @param fluke_id String : the ID of the catalog fluke
+   * @param encounter String : the encounter of the catalog fluke
+   * @param score double : the match value of the catalog fluke
+   * @param direction int : FORWARD or REVERSE, the direction that gave the score
+   */
+  public FlukeMatch(String fluke_id, String encounter, double score, int direction) {
+    this.fluke_id = fluke_id;
+    this.encounter = encounter;
+    this.score = score;
+    this.direction = direction;
+  }
+
+  public String getFlukeId() {
+    return this.fluke_id;
+  }
+
+  public String getEncounter() {
+    return this.encounter;
+  }
+
+  public double getScore() {
+    return this.score;
+  }
+
+  public int getDirection() {
+    return this.direction;
+  }
+
+  @Override
+  public int compareTo(FlukeMatch other) {
+    int c = Double.compare(other.score, this.score);
+    if (c == 0) {
+      c = String.valueOf(this.fluke_id).compareTo(String.valueOf(other.fluke_id));
+    }
+    if (c == 0) {
+      c = (this.direction < other.direction) ? -1 : ((this.direction == other.direction) ? 0 : 1);
+    }
+    return c;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof FlukeMatch)) {
+      return false;
+    }
+    return this.compareTo((FlukeMatch) o) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    long bits = Double.doubleToLongBits(this.score);
+    return (31 * (31 * String.valueOf(this.fluke_id).hashCode() + (int) (bits ^ (bits >>> 32)))) + this.direction;
+  }
+
+  @Override
+  public String toString() {
+    return this.fluke_id + " (" + this.encounter + "): " + this.score + ((this.direction == REVERSE) ? " reversed" : "");
+  }
+
+}
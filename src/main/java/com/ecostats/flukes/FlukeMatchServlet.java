@@ -2,9 +2,9 @@ package com.ecostats.flukes;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.TreeSet;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -27,6 +27,7 @@ import org.mongodb.morphia.query.Query;
 //@WebServlet(description = "Attempts to matches a tracing with other tracings", urlPatterns = { "/FlukeMatchServlet" })
 public class FlukeMatchServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
+	private static final int MAX_MATCHES = 100; // the most matches returned for a tracing
        
     /**
      * @see HttpServlet#HttpServlet()
@@ -62,18 +63,20 @@ public class FlukeMatchServlet extends HttpServlet {
 		    	}else{ // get all tracings in the database and do a compare to the current fluke trace
 		    		// set the current fluke trace
 		    		Fluke fluke = flukequery.get(0);
-		    		// build a query of fluke traces to compare to the current fluke
-			    	Query<Fluke> query_flukes = datasource.datastore().createQuery(Fluke.class);
-			    	// remove the current fluke trace from the query result (i.e. do not compare itself)		
-			    	query_flukes.field("encounter").notEqual(encounter_id); 
-			    	// VERY RAM using and inefficient! Update to a cursor method at some point
-			    	List<Fluke> flukes = query_flukes.asList();
+		    		TraceCompare tc = new TraceCompare();
+		    		// get the indexed catalog of fluke traces to compare to the current fluke
+			    	List<Fluke> flukes = new ArrayList<Fluke>();
+			    	for (Fluke known : FlukeCatalog.getFlukes(datasource, tc)){
+			    		// remove the current fluke trace from the catalog (i.e. do not compare itself)
+			    		if (!encounter_id.equals(known.getEncounter())){
+			    			flukes.add(known);
+			    		}
+			    	}
 			    	if (flukes.size()==0){
 			    		out.println("No fluke traces found to compare");
 			    	}else{
 			    		// do the trace comparison
-			    		TraceCompare tc = new TraceCompare();
-			    		TreeSet<Fluke> matches = tc.processCatalog(flukes,fluke);
+			    		List<FlukeMatch> matches = tc.scoreCatalog(flukes,fluke,MAX_MATCHES);
 			    		if (matches == null){ 
 			    			out.println("The fluke to test has no assigned node features types. Please assign features types to one or more nodes on the fluke other than tip and notch.");
 			    		}else if (matches.size()>0){
@@ -98,26 +101,26 @@ public class FlukeMatchServlet extends HttpServlet {
 	 * @return json String 
 	 * @throws JSONException
 	 */
-	public String identifyMatches(TreeSet<Fluke> matches) throws JSONException {
+	public String identifyMatches(List<FlukeMatch> matches) throws JSONException {
 		String context="context0";
 		Shepherd myShepherd = new Shepherd(context);
 		myShepherd.beginDBTransaction();
 		JSONObject result = new JSONObject();
 		try{
-			Fluke matched_fluke;
+			FlukeMatch matched_fluke;
 			Encounter encounter;
 			String individual_id;
 			JSONArray encounters = new JSONArray();
 			JSONArray individuals = new JSONArray();
-			Iterator<Fluke> iterator = matches.iterator();
+			Iterator<FlukeMatch> iterator = matches.iterator();
 			while (iterator.hasNext()){
 				matched_fluke=iterator.next();
 				encounter = myShepherd.getEncounter(matched_fluke.getEncounter());
 				individual_id = encounter.isAssignedToMarkedIndividual();
 				if (individual_id.equals("Unassigned")){
-					encounters.put("ID: "+matched_fluke.getEncounter()+",  Rank: "+matched_fluke.getMatchValue());
+					encounters.put("ID: "+matched_fluke.getEncounter()+",  Rank: "+matched_fluke.getScore());
 				}else{
-					individuals.put("ID: "+individual_id+",  Rank: "+matched_fluke.getMatchValue());
+					individuals.put("ID: "+individual_id+",  Rank: "+matched_fluke.getScore());
 				}
 			}
 			result.put("individuals", individuals);
@@ -22,9 +22,13 @@ package com.ecostats.flukes;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
@@ -32,7 +36,6 @@ import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.MatrixUtils;
 
 import com.ecostats.flukes.Matrix2D;
-import com.reijns.I3S.Affine;
 
 /**
  * TraceCompare
@@ -509,165 +512,325 @@ public class TraceCompare {
     return v;       
   }
   
-  private RealVector getTransformedDistances(Fluke known, Fluke test){
-	  FinTrace fin_left;
-	  FinTrace fin_right;
-	  RealVector result;
-	  // To re-scale one Fluke on the other, we need three control points to create the transform matrix.
-	  // The most likely to be comparable are the fluke tips and notch. So use the built in methods
-	  // of the FinTrace class to return just the tip and notch of the left fluke and the tip of the right fluke.
-	  int[] l = {FinTrace.TIP,FinTrace.NOTCH};
-	  fin_left = known.getLeftFluke().returnMarkType(l);
-	  fin_right = known.getLeftFluke().returnMarkType(FinTrace.TIP);
-	  if (fin_left.getX().length<2){ return null;}
-	  double from1x = fin_left.getX()[0];
-	  double from1y = fin_left.getY()[0];
-	  double from2x = fin_left.getX()[1];
-	  double from2y = fin_left.getY()[1];
-	  if (fin_right.getX().length==0){ return null;}
-	  double from3x = fin_right.getX()[0]; 
-	  double from3y = fin_right.getY()[0];
-	  fin_left = test.getLeftFluke().returnMarkType(l);
-	  fin_right = test.getLeftFluke().returnMarkType(FinTrace.TIP);
-	  if (fin_left.getX().length<2){ return null;}
-	  double to1x = fin_left.getX()[0];
-	  double to1y = fin_left.getY()[0];
-	  double to2x = fin_left.getX()[1];
-	  double to2y = fin_left.getY()[1];
-	  if (fin_right.getX().length==0){ return null;}
-	  double to3x = fin_right.getX()[0]; 
-	  double to3y = fin_right.getY()[0];
-	  // use the com.reijns.I3S.Affine method to get the transformation matrix
-	  double[] ident_matrix = {0,0,0,0,0,0}; 
-	  Affine.calcAffine(from1x, from1y, from2x, from2y, from3x, from3y, to1x, to1y, to2x, to2y, to3x, to3y, ident_matrix);
-	  // compute the transformation of each point in the known Fluke (save to change this class values, as changes will not be saved to the database).
-	  this.doAffine(fin_left,ident_matrix);
-	  this.doAffine(fin_right,ident_matrix);
-	  // for comparisons, get the relative calculated distances between nodes base on this transformed node locations.
-	  result = this.tracingDistanceIndex(known);
-	  return result;
-  }
-
-  /**
-   * @param matrix
-   */
-  private void doAffine(FinTrace fin, double[] matrix) {
-	  double x,y;
-	  for (int i = 0; i < fin.size(); i++) {
-		  x = fin.getX(i);
-		  y = fin.getY(i);		
-		  x = matrix[0] * x + matrix[1] * y + matrix[2];
-		  y = matrix[3] * x + matrix[4] * y + matrix[5];
-		  fin.setX(i, x);
-		  fin.setY(i, y);
-	  }
+  /**
+   * Returns true if the left fluke has the tip and notch points used as control points in a comparison.
+   * Note: the original comparison computed an affine transform from these points, but applied it to copies of the
+   * points, so only their presence affects the result.
+   * @param fluke Fluke : the Fluke to check
+   * @return boolean
+   */
+  public boolean hasControlPoints(Fluke fluke){
+    int[] l = {FinTrace.TIP,FinTrace.NOTCH};
+    return (fluke.getLeftFluke().returnMarkType(l).getX().length>=2) && (fluke.getLeftFluke().returnMarkType(FinTrace.TIP).getX().length>0);
+  }
+
+  /**
+   * Computes the values of a Fluke that processCatalog compares, which only depend on its tracing.
+   * @param fluke Fluke : the Fluke to index
+   * @return FlukeIndex : the computed values
+   */
+  public FlukeIndex computeIndex(Fluke fluke){
+    double[] mark_types = null;
+    double pt = 0;
+    try{
+      mark_types = this.markTypesNoNotchTip(fluke).toArray();
+      pt = this.getFlukePt(fluke);
+    }catch (Exception e){
+      // a side with fewer than two points has no mark types between tip and notch, so the fluke cannot be matched
+      mark_types = null;
+    }
+    return new FlukeIndex(this.hasControlPoints(fluke), this.tracingDistanceIndex(fluke).toArray(), mark_types, fluke.notchCurl(), pt);
+  }
+
+  /**
+   * Returns the index stored with a Fluke, computing it and setting it on the Fluke if it is missing or out of date.
+   * @param fluke Fluke : the Fluke to index
+   * @return FlukeIndex : the current index of the fluke
+   */
+  public FlukeIndex getIndex(Fluke fluke){
+    FlukeIndex index = fluke.getIndex();
+    if ((index == null) || (!index.isCurrent())){
+      index = this.computeIndex(fluke);
+      fluke.setIndex(index);
+    }
+    return index;
   }
 
   /**
    * The Fluke comparison method. Given an input parameter test_fluke, check all input parameter flukes
    * to see if test_fluke matches any of them.
+   * <p/>
+   * Note: this sets the match value of every compared Fluke, and flukes with equal match values are kept only once,
+   * so it must not be given flukes shared with other threads. See scoreCatalog for a method that does neither.
    * @param flukes Flukes : a Flukes class of flukes (from a database)
    * @param test_fluke Fluke : the Fluke to test
    * @return TreeSet : a sorted set of possible matching Flukes
    */
   public TreeSet<Fluke> processCatalog(List<Fluke> flukes, Fluke test_fluke){
-    /*
-     * Note: This method should be refactored more; into more sub-methods that encapsulate logic better by variable
-     */
-    double corrx;
-    double corrc;
-    int test_directions = 2;
     TreeSet<Fluke> ts = new TreeSet<Fluke>(new MatchComparator());
-    // variables
-    double[] mv = {0, 0};
-    RealVector marktypes_known; // distance vector of known flukes from database
-    RealVector distance_test = this.tracingDistanceIndex(test_fluke);
-    if (distance_test.getDimension()==0){
+    TestTrace test = this.getTestTrace(test_fluke);
+    if (test==null){
     	// either the fluke to test has no data, or there are no node tags identifying the fluke structures
     	return null;
     }
-    RealVector marktypes_test = this.markTypesNoNotchTip(test_fluke);
-    double ptx = this.getPtx(test_fluke);
+    if (!test.control_points){
+    	// no known fluke can be compared to a test fluke without a left tip and notch
+    	return ts;
+    }
     // processing
     for (int c=0;c<flukes.size();c++){
       Fluke fluke = flukes.get(c);      
-      RealVector distance_known = this.getTransformedDistances(fluke, test_fluke); //this.tracingDistanceIndex(fluke); //.getVectorPositions(Fluke.ALL); // distance_known is the distance index vector from a known fluke to compare with the test fluke
-      if (distance_known == null){
+      FlukeIndex index_known = this.getIndex(fluke);
+      if (!index_known.isMatchable()){
     	  continue;
       }
-      marktypes_known = this.markTypesNoNotchTip(fluke); // mark_types is an list of vectors with values of mark type (so mark_types is a vector of mark types for the current catalog record)    
-      int length_mark_types = marktypes_known.getDimension(); // lengths of the array of mark type values (i.e. mark_types is an array of numbers)
-      int length_mark_types_test_fluke = distance_test.getDimension();
-      // test_direction = 1 do just one pass, else if test_direction = 2 test both directions (i.e. reverse)
-      for (int test_direction=0; test_direction<test_directions; test_direction++){ 
-          double[] notch_curl_temp = fluke.notchCurl(); // return the notch and fluke tips curl information array
-          // swap data around depending on the direction of the test along the fluke
-          if (test_direction==2){
-              marktypes_known = this.reverseVector(marktypes_known); // reverse the order              
-              distance_known = distance_known.mapMultiply(-1);
-              // just reverse the left and right curl parts (index 2 and 3 of zero based array)
-              double t = notch_curl_temp[2];
-              notch_curl_temp[2] = notch_curl_temp[3];
-              notch_curl_temp[3] = t;
-          }
-          RealMatrix notch_curl = this.transpose(notch_curl_temp);
-          distance_known = distance_known.mapDivide(6000).mapAdd(HALF_VALUE); // why divide by the constant of 6000? (from original code)
-          Matrix2D tm = new Matrix2D(test_fluke.notchCurlVector());
-          Matrix2D cm = new Matrix2D(notch_curl.getColumnMatrix(0));
-          // Note: RealMatrix * RealMatrix uses pre-multiple, Matlab uses post-multiply, so reverse the order.
-          RealMatrix notch_curl_compare = cm.transpose().multiply(tm).scalarMultiply(HALF_VALUE);
-          // Note: tm and cm are 1x4 and 4x1 matrices, so their multiplication should be a matrix with a single value
-          mv[test_direction] = notch_curl_compare.getEntry(0, 0); //match value of notches, curled flukes
-          if ((length_mark_types*length_mark_types_test_fluke)>0){
-             Matrix2D dismat = this.distanceMatrix(distance_known, marktypes_known, distance_test, marktypes_test);
-             // The find method of Matlab returns a vector of [original row, original column, value] for each found value. 
-             // See the Matrix2D.find method for more details. 
-             Matrix2D nzv = dismat.find(0,Matrix2D.GT); // return a matrix of all dismat values greater than zero
-             if (nzv==null){continue;} // continue to next database fluke if there is no valid dismat data
-             nzv = nzv.multiply(-1).sort(2).multiply(-1); // this sorts negative values in ascending order         
-             Matrix2D qt1 = new Matrix2D(distance_test.getDimension(),1); // create a single column matrix
-             Matrix2D qt2 = new Matrix2D(1,marktypes_known.getDimension()); // create a single row matrix  
-             qt1.fillMatrix(1);
-             qt2.fillMatrix(1);
-             for (int l=0;l<nzv.getRowDimension();l++){ //Match value of points
-               // Matrix2D only stores double values, but since columns 0 and 1 are row and column references safe to cast to int.
-               int row = (int)nzv.getEntry(l, 0); 
-               int col = (int)nzv.getEntry(l, 1);
-               // sum current mv values (based on current test direction) only if qt1 and at2 are both non-zero
-               if (qt1.getEntry(row,0)*qt2.getEntry(0,col)>0){ 
-                  mv[test_direction] = mv[test_direction] + nzv.getEntry(l,2); 
-                  // set qt1 and qt2 to zero to prevent these value references from being re-used again in the mv sum value
-                  qt1.setEntry(row, 0, 0);
-                  qt2.setEntry(0, col, 0);
-               }
-             } 
-             // get "corr" values for test_fluke (x) and current fluke (c)
-             corrx = getCorr(distance_test, distance_known, marktypes_known, marktypes_test);
-             corrc = getCorr(distance_known, distance_test, marktypes_test, marktypes_known);     
-          }else{
-             corrx = 0;
-             corrc = 0;
-          }
-          double ptx_corrx = ptx-corrx;
-          double ptc_corrc = getFlukePt(fluke)-corrc;
-          // get max value for the current test direction
-          if (ptx_corrx>ptc_corrc){
-            mv[test_direction] = mv[test_direction]/ptx_corrx;
-          }else{
-            mv[test_direction] = mv[test_direction]/ptc_corrc;
-          }
-      }
-      // get the max value in either test direction
-      int mv_max = 0;
-      if (mv[1]>mv[0]){
-        mv_max = 1;
-      } 
+      double[] mv = this.scoreIndex(test, index_known);
       // set the "matchvalue" result between test_fluke and the current fluke from Flukes to fluke
-      fluke.setMatchValue(mv[mv_max]);
+      fluke.setMatchValue(mv[this.bestDirection(mv)]);
       ts.add(fluke);
     }
     return ts;
   }
+
+  /**
+   * The thread safe Fluke comparison method. Scores test_fluke against every fluke in flukes, splitting the flukes
+   * between the threads of a shared fork-join pool, and returns the top_k best matches. Neither the flukes nor
+   * test_fluke are changed, so the flukes may be shared between concurrent calls. Flukes with equal scores are all
+   * returned.
+   * @param flukes List<Fluke> : the flukes to compare test_fluke with, which should have current indexes
+   * @param test_fluke Fluke : the Fluke to test
+   * @param top_k int : the most matches to return, or 0 for all of them
+   * @return List<FlukeMatch> : the matches in descending order of score, empty if test_fluke has no left tip and
+   * notch, or null if test_fluke has no data or no mark types
+   */
+  public List<FlukeMatch> scoreCatalog(List<Fluke> flukes, Fluke test_fluke, int top_k){
+    TestTrace test = this.getTestTrace(test_fluke);
+    if (test==null){
+      return null;
+    }
+    List<FlukeMatch> matches = new ArrayList<FlukeMatch>();
+    if (!test.control_points){
+      return matches;
+    }
+    int limit = (top_k>0) ? top_k : Integer.MAX_VALUE;
+    matches.addAll(SCORING_POOL.invoke(new ScoreTask(this, test, flukes, 0, flukes.size(), limit)));
+    Collections.sort(matches);
+    return matches;
+  }
+
+  /**
+   * The values of the test fluke that are compared with each catalog fluke, which are computed once per match.
+   */
+  private static class TestTrace {
+    private boolean control_points;
+    private RealVector distances;
+    private RealVector mark_types;
+    private double ptx;
+    private Matrix2D tm;
+  }
+
+  /**
+   * Returns the values of test_fluke that it is compared by, or null if it has no data or no mark types.
+   */
+  private TestTrace getTestTrace(Fluke test_fluke){
+    // the values of each fluke that depend only on its tracing come from its stored index
+    FlukeIndex index_test = test_fluke.getIndex();
+    if ((index_test == null) || (!index_test.isCurrent())){
+      index_test = this.computeIndex(test_fluke);
+    }
+    TestTrace test = new TestTrace();
+    test.distances = index_test.getDistances();
+    test.mark_types = index_test.getMarkTypes();
+    if (test.distances.getDimension()==0 || test.mark_types==null){
+      return null;
+    }
+    test.control_points = index_test.hasControlPoints();
+    if (test.control_points){
+      test.ptx = this.getPtx(test_fluke);
+      test.tm = new Matrix2D(new ArrayRealVector(index_test.getNotchCurl()));
+    }
+    return test;
+  }
+
+  /**
+   * Returns the match values of the test fluke against a known fluke in each test direction. Uses only local
+   * variables and the read-only setup of this class, so it may be called by several threads at once.
+   * @param test TestTrace : the test fluke, which must have control points
+   * @param index_known FlukeIndex : the index of the known fluke, which must be matchable
+   * @return double[] : the match value in each test direction
+   */
+  private double[] scoreIndex(TestTrace test, FlukeIndex index_known){
+    double corrx;
+    double corrc;
+    int test_directions = 2;
+    double[] mv = {0, 0};
+    RealVector distance_test = test.distances;
+    RealVector marktypes_test = test.mark_types;
+    RealVector distance_known = index_known.getDistances(); // distance_known is the distance index vector from a known fluke to compare with the test fluke
+    RealVector marktypes_known = index_known.getMarkTypes(); // mark_types is an list of vectors with values of mark type (so mark_types is a vector of mark types for the current catalog record)    
+    int length_mark_types = marktypes_known.getDimension(); // lengths of the array of mark type values (i.e. mark_types is an array of numbers)
+    int length_mark_types_test_fluke = distance_test.getDimension();
+    // test_direction = 1 do just one pass, else if test_direction = 2 test both directions (i.e. reverse)
+    for (int test_direction=0; test_direction<test_directions; test_direction++){ 
+        double[] notch_curl_temp = index_known.getNotchCurl(); // return the notch and fluke tips curl information array
+        // swap data around depending on the direction of the test along the fluke
+        if (test_direction==2){
+            marktypes_known = this.reverseVector(marktypes_known); // reverse the order              
+            distance_known = distance_known.mapMultiply(-1);
+            // just reverse the left and right curl parts (index 2 and 3 of zero based array)
+            double t = notch_curl_temp[2];
+            notch_curl_temp[2] = notch_curl_temp[3];
+            notch_curl_temp[3] = t;
+        }
+        RealMatrix notch_curl = this.transpose(notch_curl_temp);
+        distance_known = distance_known.mapDivide(6000).mapAdd(HALF_VALUE); // why divide by the constant of 6000? (from original code)
+        Matrix2D cm = new Matrix2D(notch_curl.getColumnMatrix(0));
+        // Note: RealMatrix * RealMatrix uses pre-multiple, Matlab uses post-multiply, so reverse the order.
+        RealMatrix notch_curl_compare = cm.transpose().multiply(test.tm).scalarMultiply(HALF_VALUE);
+        // Note: tm and cm are 1x4 and 4x1 matrices, so their multiplication should be a matrix with a single value
+        mv[test_direction] = notch_curl_compare.getEntry(0, 0); //match value of notches, curled flukes
+        if ((length_mark_types*length_mark_types_test_fluke)>0){
+           Matrix2D dismat = this.distanceMatrix(distance_known, marktypes_known, distance_test, marktypes_test);
+           // The find method of Matlab returns a vector of [original row, original column, value] for each found value. 
+           // See the Matrix2D.find method for more details. 
+           Matrix2D nzv = dismat.find(0,Matrix2D.GT); // return a matrix of all dismat values greater than zero
+           if (nzv==null){continue;} // continue to next test direction if there is no valid dismat data
+           nzv = nzv.multiply(-1).sort(2).multiply(-1); // this sorts negative values in ascending order         
+           Matrix2D qt1 = new Matrix2D(distance_test.getDimension(),1); // create a single column matrix
+           Matrix2D qt2 = new Matrix2D(1,marktypes_known.getDimension()); // create a single row matrix  
+           qt1.fillMatrix(1);
+           qt2.fillMatrix(1);
+           for (int l=0;l<nzv.getRowDimension();l++){ //Match value of points
+             // Matrix2D only stores double values, but since columns 0 and 1 are row and column references safe to cast to int.
+             int row = (int)nzv.getEntry(l, 0); 
+             int col = (int)nzv.getEntry(l, 1);
+             // sum current mv values (based on current test direction) only if qt1 and at2 are both non-zero
+             if (qt1.getEntry(row,0)*qt2.getEntry(0,col)>0){ 
+                mv[test_direction] = mv[test_direction] + nzv.getEntry(l,2); 
+                // set qt1 and qt2 to zero to prevent these value references from being re-used again in the mv sum value
+                qt1.setEntry(row, 0, 0);
+                qt2.setEntry(0, col, 0);
+             }
+           } 
+           // get "corr" values for test_fluke (x) and current fluke (c)
+           corrx = getCorr(distance_test, distance_known, marktypes_known, marktypes_test);
+           corrc = getCorr(distance_known, distance_test, marktypes_test, marktypes_known);     
+        }else{
+           corrx = 0;
+           corrc = 0;
+        }
+        double ptx_corrx = test.ptx-corrx;
+        double ptc_corrc = index_known.getPt()-corrc;
+        // get max value for the current test direction
+        if (ptx_corrx>ptc_corrc){
+          mv[test_direction] = mv[test_direction]/ptx_corrx;
+        }else{
+          mv[test_direction] = mv[test_direction]/ptc_corrc;
+        }
+    }
+    return mv;
+  }
+
+  /**
+   * Returns the test direction with the max match value
+   */
+  private int bestDirection(double[] mv){
+    return (mv[1]>mv[0]) ? FlukeMatch.REVERSE : FlukeMatch.FORWARD;
+  }
+
+  /**
+   * Shared by all scoreCatalog calls, so that concurrent matches together use one thread per core.
+   */
+  private static final ForkJoinPool SCORING_POOL = new ForkJoinPool();
+
+  /**
+   * Scores a range of the catalog, splitting it in two until it is at most SPLIT_SIZE flukes, and returns the best
+   * matches of the range in a heap of at most limit matches, worst first.
+   */
+  private static class ScoreTask extends RecursiveTask<PriorityQueue<FlukeMatch>> {
+
+    private static final long serialVersionUID = 1L;
+    private static final int SPLIT_SIZE = 64;
+
+    private final TraceCompare tc;
+    private final TestTrace test;
+    private final List<Fluke> flukes;
+    private final int from;
+    private final int to;
+    private final int limit;
+
+    ScoreTask(TraceCompare tc, TestTrace test, List<Fluke> flukes, int from, int to, int limit) {
+      this.tc = tc;
+      this.test = test;
+      this.flukes = flukes;
+      this.from = from;
+      this.to = to;
+      this.limit = limit;
+    }
+
+    @Override
+    protected PriorityQueue<FlukeMatch> compute() {
+      if ((to - from) <= SPLIT_SIZE) {
+        PriorityQueue<FlukeMatch> heap = new PriorityQueue<FlukeMatch>(Math.min(limit, SPLIT_SIZE) + 1, Collections.reverseOrder());
+        for (int c = from; c < to; c++) {
+          FlukeMatch match = score(flukes.get(c));
+          if (match != null) {
+            offer(heap, match, limit);
+          }
+        }
+        return heap;
+      }
+      int middle = (from + to) >>> 1;
+      ScoreTask left = new ScoreTask(tc, test, flukes, from, middle, limit);
+      left.fork();
+      PriorityQueue<FlukeMatch> heap = new ScoreTask(tc, test, flukes, middle, to, limit).compute();
+      PriorityQueue<FlukeMatch> other = left.join();
+      if (other.size() > heap.size()) {
+        PriorityQueue<FlukeMatch> t = heap;
+        heap = other;
+        other = t;
+      }
+      for (FlukeMatch match : other) {
+        offer(heap, match, limit);
+      }
+      return heap;
+    }
+
+    //returns null if the fluke cannot be compared
+    private FlukeMatch score(Fluke fluke) {
+      // an index missing from a fluke is computed but not set on it, since the fluke may be shared
+      FlukeIndex index_known = fluke.getIndex();
+      try {
+        if ((index_known == null) || (!index_known.isCurrent())) {
+          index_known = tc.computeIndex(fluke);
+        }
+        if (!index_known.isMatchable()) {
+          return null;
+        }
+        double[] mv = tc.scoreIndex(test, index_known);
+        int direction = tc.bestDirection(mv);
+        if (Double.isNaN(mv[direction])) {
+          return null;
+        }
+        return new FlukeMatch(String.valueOf(fluke.getId()), fluke.getEncounter(), mv[direction], direction);
+      } catch (RuntimeException e) {
+        // one bad tracing should not fail the whole match
+        System.out.println("TraceCompare could not score fluke " + fluke.getId() + ": " + e.toString());
+        return null;
+      }
+    }
+
+    //adds match to heap, then drops the worst match if heap has more than limit
+    private static void offer(PriorityQueue<FlukeMatch> heap, FlukeMatch match, int limit) {
+      if (heap.size() < limit) {
+        heap.add(match);
+      } else if (match.compareTo(heap.peek()) < 0) {
+        heap.poll();
+        heap.add(match);
+      }
+    }
+
+  }
   
   /**
    * Get a correction factor for missing or invisible parts.
@@ -0,0 +1,226 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.jdo.Query;
+
+/**
+ * A sparse individual x individual association matrix: how many occurrences each pair of marked individuals was
+ * sighted in together, and how many occurrences each individual was sighted in.
+ * <p/>
+ * One index is kept per context. It is built with a single projection query the first time it is needed, then kept
+ * current by the servlets that change which individuals an occurrence contains, which call
+ * {@link #updateOccurrence(String, String, Collection)} or {@link #removeOccurrence(String, String)} after they commit.
+ */
+public class AssociationIndex extends ContextIndex {
+
+  private static final Registry<AssociationIndex> indexes = new Registry<AssociationIndex>() {
+    protected AssociationIndex build(Shepherd myShepherd) {
+      return AssociationIndex.build(myShepherd);
+    }
+  };
+
+  //occurrenceID -> the distinct individuals sighted in it
+  private HashMap<String, String[]> occurrenceMembers = new HashMap<String, String[]>();
+  //individualID -> number of occurrences it was sighted in
+  private HashMap<String, int[]> sightings = new HashMap<String, int[]>();
+  //individualID -> individualID -> number of occurrences they were sighted in together; stored in both directions
+  private HashMap<String, HashMap<String, int[]>> together = new HashMap<String, HashMap<String, int[]>>();
+
+  AssociationIndex() {
+  }
+
+  /**
+   * Returns the index of the Shepherd's context, building it within the Shepherd's current transaction if it does
+   * not exist yet or is due to be rebuilt.
+   */
+  public static AssociationIndex getIndex(Shepherd myShepherd) {
+    return indexes.getIndex(myShepherd);
+  }
+
+  /**
+   * Records the individuals currently in an occurrence, as returned by
+   * Occurrence.getMarkedIndividualNamesForThisOccurrence(). Servlets read the names before committing a change to the
+   * occurrence's encounters, or to the individual assignments of those encounters, and pass them here after the
+   * commit succeeds.
+   */
+  public static void updateOccurrence(String context, String occurrenceID, Collection<String> individualIDs) {
+    AssociationIndex index = getBuiltIndex(context);
+    if ((index != null) && (occurrenceID != null)) {
+      index.setOccurrence(occurrenceID, individualIDs);
+    }
+  }
+
+  /**
+   * Forgets an occurrence that has been deleted.
+   */
+  public static void removeOccurrence(String context, String occurrenceID) {
+    AssociationIndex index = getBuiltIndex(context);
+    if ((index != null) && (occurrenceID != null)) {
+      index.setOccurrence(occurrenceID, new ArrayList<String>());
+    }
+  }
+
+  private static AssociationIndex getBuiltIndex(String context) {
+    return indexes.getBuiltIndex(context);
+  }
+
+  private static AssociationIndex build(Shepherd myShepherd) {
+    AssociationIndex index = new AssociationIndex();
+    String filter = "SELECT occurrenceID, enc.individualID FROM org.ecocean.Occurrence WHERE encounters.contains(enc) && enc.individualID != null && enc.individualID != \"Unassigned\" VARIABLES org.ecocean.Encounter enc";
+    Query query = myShepherd.getPM().newQuery(filter);
+    try {
+      HashMap<String, ArrayList<String>> members = new HashMap<String, ArrayList<String>>();
+      Collection c = (Collection) query.execute();
+      Iterator it = c.iterator();
+      while (it.hasNext()) {
+        Object[] row = (Object[]) it.next();
+        ArrayList<String> individuals = members.get((String) row[0]);
+        if (individuals == null) {
+          individuals = new ArrayList<String>();
+          members.put((String) row[0], individuals);
+        }
+        individuals.add((String) row[1]);
+      }
+      for (Map.Entry<String, ArrayList<String>> entry : members.entrySet()) {
+        index.setOccurrence(entry.getKey(), entry.getValue());
+      }
+    }
+    catch (Exception e) {
+      System.out.println("Exception building the association index!");
+      e.printStackTrace();
+    }
+    finally {
+      query.closeAll();
+    }
+    return index;
+  }
+
+  /**
+   * Replaces the members of an occurrence, adjusting the sighting and pair counts by the difference.
+   */
+  synchronized void setOccurrence(String occurrenceID, Collection<String> individualIDs) {
+    String[] oldMembers = occurrenceMembers.remove(occurrenceID);
+    if (oldMembers != null) {
+      adjust(oldMembers, -1);
+    }
+    String[] newMembers = new TreeSet<String>(individualIDs).toArray(new String[0]);
+    if (newMembers.length > 0) {
+      occurrenceMembers.put(occurrenceID, newMembers);
+      adjust(newMembers, 1);
+    }
+  }
+
+  private void adjust(String[] members, int delta) {
+    for (int i = 0; i < members.length; i++) {
+      increment(sightings, members[i], delta);
+      HashMap<String, int[]> row = together.get(members[i]);
+      if (row == null) {
+        row = new HashMap<String, int[]>();
+        together.put(members[i], row);
+      }
+      for (int j = 0; j < members.length; j++) {
+        if (j != i) {
+          increment(row, members[j], delta);
+        }
+      }
+      if (row.isEmpty()) {
+        together.remove(members[i]);
+      }
+    }
+  }
+
+  private static void increment(HashMap<String, int[]> counts, String key, int delta) {
+    int[] count = counts.get(key);
+    if (count == null) {
+      count = new int[1];
+      counts.put(key, count);
+    }
+    count[0] += delta;
+    if (count[0] <= 0) {
+      counts.remove(key);
+    }
+  }
+
+  /**
+   * Returns the number of occurrences in which the two individuals were both sighted.
+   */
+  public synchronized int getNumCooccurrences(String individualID1, String individualID2) {
+    HashMap<String, int[]> row = together.get(individualID1);
+    if (row == null) {
+      return 0;
+    }
+    int[] count = row.get(individualID2);
+    return (count == null) ? 0 : count[0];
+  }
+
+  /**
+   * Returns the number of occurrences in which the individual was sighted.
+   */
+  public synchronized int getNumOccurrences(String individualID) {
+    int[] count = sightings.get(individualID);
+    return (count == null) ? 0 : count[0];
+  }
+
+  /**
+   * Returns the half-weight association index of two individuals, x / (x + (ya + yb) / 2), where x is the number of
+   * occurrences they were sighted in together and ya and yb the numbers they were each sighted in without the other.
+   * Occurrences are the sampling periods, so the count of separate sightings in the same period is always 0.
+   */
+  public synchronized double getHalfWeightIndex(String individualID1, String individualID2) {
+    int total = getNumOccurrences(individualID1) + getNumOccurrences(individualID2);
+    if (total == 0) {
+      return 0;
+    }
+    return 2.0 * getNumCooccurrences(individualID1, individualID2) / total;
+  }
+
+  /**
+   * Returns the individuals sighted in at least one occurrence with the given individual, mapped to the number of
+   * such occurrences, most frequent first.
+   */
+  public synchronized ArrayList<Map.Entry> getAssociates(String individualID) {
+    ArrayList<Map.Entry> associates = new ArrayList<Map.Entry>();
+    HashMap<String, int[]> row = together.get(individualID);
+    if (row != null) {
+      for (Map.Entry<String, int[]> entry : row.entrySet()) {
+        associates.add(new AbstractMap.SimpleImmutableEntry<String, Integer>(entry.getKey(), new Integer(entry.getValue()[0])));
+      }
+    }
+    Collections.sort(associates, new Comparator<Map.Entry>() {
+      public int compare(Map.Entry e1, Map.Entry e2) {
+        int byCount = ((Integer) e2.getValue()).compareTo((Integer) e1.getValue());
+        return (byCount != 0) ? byCount : ((String) e1.getKey()).compareTo((String) e2.getKey());
+      }
+    });
+    return associates;
+  }
+
+}
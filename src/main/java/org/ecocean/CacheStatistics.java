@@ -0,0 +1,117 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Hit and miss counts of the lookups by ID that Shepherd makes for each persistent class of a context.
+ * <p/>
+ * A lookup is a hit when the object was served without reading the datastore, that is from the level 2 cache of the
+ * context's PersistenceManagerFactory, and a miss when it had to be read. ShepherdPMF keeps one instance per context.
+ */
+public class CacheStatistics {
+
+  //class name -> {hits, misses}
+  private TreeMap<String, long[]> lookups = new TreeMap<String, long[]>();
+  private long since = System.currentTimeMillis();
+
+  public synchronized void record(String className, boolean hit) {
+    long[] counts = lookups.get(className);
+    if (counts == null) {
+      counts = new long[2];
+      lookups.put(className, counts);
+    }
+    counts[hit ? 0 : 1]++;
+  }
+
+  public synchronized long getHits(String className) {
+    long[] counts = lookups.get(className);
+    return (counts == null) ? 0 : counts[0];
+  }
+
+  public synchronized long getMisses(String className) {
+    long[] counts = lookups.get(className);
+    return (counts == null) ? 0 : counts[1];
+  }
+
+  public synchronized long getTotalHits() {
+    long total = 0;
+    for (long[] counts : lookups.values()) {
+      total += counts[0];
+    }
+    return total;
+  }
+
+  public synchronized long getTotalMisses() {
+    long total = 0;
+    for (long[] counts : lookups.values()) {
+      total += counts[1];
+    }
+    return total;
+  }
+
+  /**
+   * Returns the fraction of the lookups of the class that were hits, or 0 if there were none.
+   */
+  public synchronized double getHitRatio(String className) {
+    return ratio(getHits(className), getMisses(className));
+  }
+
+  public synchronized double getTotalHitRatio() {
+    return ratio(getTotalHits(), getTotalMisses());
+  }
+
+  private static double ratio(long hits, long misses) {
+    return ((hits + misses) == 0) ? 0 : ((double) hits / (hits + misses));
+  }
+
+  public synchronized void reset() {
+    lookups.clear();
+    since = System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the counts as {"since": millis, "hits": n, "misses": n, "hitRatio": r, "classes": {className: {"hits": n,
+   * "misses": n, "hitRatio": r}}}.
+   */
+  public synchronized JSONObject toJSON() throws JSONException {
+    JSONObject json = new JSONObject();
+    json.put("since", since);
+    json.put("hits", getTotalHits());
+    json.put("misses", getTotalMisses());
+    json.put("hitRatio", getTotalHitRatio());
+    JSONObject classes = new JSONObject();
+    for (Map.Entry<String, long[]> entry : lookups.entrySet()) {
+      JSONObject counts = new JSONObject();
+      counts.put("hits", entry.getValue()[0]);
+      counts.put("misses", entry.getValue()[1]);
+      counts.put("hitRatio", ratio(entry.getValue()[0], entry.getValue()[1]));
+      classes.put(entry.getKey(), counts);
+    }
+    json.put("classes", classes);
+    return json;
+  }
+
+}
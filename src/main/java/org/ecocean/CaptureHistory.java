@@ -0,0 +1,162 @@
+package org.ecocean;
+
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Builds mark-recapture capture histories for MarkedIndividuals over a fixed set of capture sessions.
+ * <p/>
+ * Calling <code>MarkedIndividual.wasSightedInPeriod</code> for every individual and session walks all of the individual's
+ * encounters and builds two GregorianCalendars per call. Instead, the session boundaries are computed once here, each
+ * individual's encounter timestamps are sorted into a <code>long[]</code>, and the timestamps are binned into the sessions
+ * in a single merge pass. Session bounds are inclusive and use the same calendar arithmetic as <code>wasSightedInPeriod</code>,
+ * so histories are identical to those the exporters produced before.
+ * <p/>
+ * Sessions may overlap and need not be given in chronological order.
+ *
+ * @see org.ecocean.servlet.export.SimpleCMROutput
+ * @see org.ecocean.servlet.export.IndividualSearchExportCapture
+ */
+public class CaptureHistory {
+
+  private long[] sessionStarts;
+  private long[] sessionEnds;
+
+  //session indices sorted by start time, used by the merge pass
+  private int[] sessionOrder;
+
+  /**
+   * @param sessionStarts the first millisecond of each session, inclusive
+   * @param sessionEnds the last millisecond of each session, inclusive
+   */
+  public CaptureHistory(long[] sessionStarts, long[] sessionEnds) {
+    if (sessionStarts.length != sessionEnds.length) {
+      throw new IllegalArgumentException("CaptureHistory needs the same number of session starts and ends.");
+    }
+    this.sessionStarts = sessionStarts.clone();
+    this.sessionEnds = sessionEnds.clone();
+
+    //sort session indices by start; an insertion sort is fine for the few dozen sessions of a CMR study
+    int numSessions = sessionStarts.length;
+    sessionOrder = new int[numSessions];
+    for (int i = 0; i < numSessions; i++) {
+      int j = i;
+      while ((j > 0) && (this.sessionStarts[sessionOrder[j - 1]] > this.sessionStarts[i])) {
+        sessionOrder[j] = sessionOrder[j - 1];
+        j--;
+      }
+      sessionOrder[j] = i;
+    }
+  }
+
+  public int getNumSessions() {
+    return sessionStarts.length;
+  }
+
+  /**
+   * Returns the millisecond timestamp that <code>new GregorianCalendar(year, month, day)</code> represents.
+   * As with <code>wasSightedInPeriod</code>, month is zero-based and out-of-range days roll over into the next month.
+   */
+  public static long toMillis(int year, int month, int day) {
+    return (new GregorianCalendar(year, month, day)).getTimeInMillis();
+  }
+
+  /**
+   * Returns the sorted encounter timestamps of an individual, optionally restricted to encounters whose locationID equals locCode.
+   *
+   * @param locCode the locationID to match, or null for all encounters
+   */
+  public static long[] getSortedTimestamps(MarkedIndividual indie, String locCode) {
+    Vector encounters = indie.getEncounters();
+    int numEncounters = encounters.size();
+    long[] timestamps = new long[numEncounters];
+    int count = 0;
+    for (int c = 0; c < numEncounters; c++) {
+      Encounter temp = (Encounter) encounters.get(c);
+      if (locCode != null) {
+        String locationID = temp.getLocationID();
+        if ((locationID == null) || (locationID.trim().equals("")) || (!locationID.trim().equals(locCode))) {
+          continue;
+        }
+      }
+      timestamps[count] = temp.getDateInMilliseconds();
+      count++;
+    }
+    if (count < numEncounters) {
+      timestamps = Arrays.copyOf(timestamps, count);
+    }
+    Arrays.sort(timestamps);
+    return timestamps;
+  }
+
+  /**
+   * Determines in which sessions an individual was sighted.
+   *
+   * @param sortedTimestamps encounter timestamps in ascending order, as returned by getSortedTimestamps
+   * @return one flag per session, in the order the sessions were given to the constructor
+   */
+  public boolean[] getHistory(long[] sortedTimestamps) {
+    int numSessions = sessionStarts.length;
+    boolean[] history = new boolean[numSessions];
+    int t = 0;
+    for (int k = 0; k < numSessions; k++) {
+      int s = sessionOrder[k];
+      //sessions are visited by ascending start, so the first timestamp at or after the start only ever moves forward
+      while ((t < sortedTimestamps.length) && (sortedTimestamps[t] < sessionStarts[s])) {
+        t++;
+      }
+      if (t == sortedTimestamps.length) {
+        break;
+      }
+      history[s] = (sortedTimestamps[t] <= sessionEnds[s]);
+    }
+    return history;
+  }
+
+  /**
+   * Returns the capture history of an individual as a string of ones and zeros, one character per session.
+   *
+   * @param locCode the locationID to match, or null for all encounters
+   */
+  public String getHistoryString(MarkedIndividual indie, String locCode) {
+    return toHistoryString(getHistory(getSortedTimestamps(indie, locCode)));
+  }
+
+  public static String toHistoryString(boolean[] history) {
+    char[] chars = new char[history.length];
+    for (int i = 0; i < history.length; i++) {
+      chars[i] = history[i] ? '1' : '0';
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Returns true if any of the sorted timestamps falls between start and end, inclusive.
+   */
+  public static boolean wasSightedBetween(long[] sortedTimestamps, long start, long end) {
+    int index = Arrays.binarySearch(sortedTimestamps, start);
+    if (index >= 0) {
+      return true;
+    }
+    int insertionPoint = -(index + 1);
+    return (insertionPoint < sortedTimestamps.length) && (sortedTimestamps[insertionPoint] <= end);
+  }
+
+  /**
+   * Builds the histories of several individuals at once.
+   *
+   * @param locCode the locationID to match, or null for all encounters
+   * @return one history per individual, in the same order
+   */
+  public boolean[][] getHistories(List<MarkedIndividual> individuals, String locCode) {
+    int numIndividuals = individuals.size();
+    boolean[][] histories = new boolean[numIndividuals][];
+    for (int i = 0; i < numIndividuals; i++) {
+      histories[i] = getHistory(getSortedTimestamps(individuals.get(i), locCode));
+    }
+    return histories;
+  }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Base of the in-memory indexes kept per context, such as AssociationIndex, CommunityIndex and FacetIndex.
+ * <p/>
+ * Each index class holds its indexes in a {@link Registry}, which builds the index of a context within the current
+ * transaction of the Shepherd that first needs it. The index classes are kept current by the servlets or Shepherd
+ * methods that change what they index. Since data can also be changed by paths that do not notify them, an index is
+ * rebuilt once it is older than REBUILD_MILLIS, and bulk operations such as imports and deleting all data call
+ * {@link #invalidateAll(String)} when they finish.
+ */
+public abstract class ContextIndex {
+
+  public static final long REBUILD_MILLIS = 60 * 60 * 1000L;
+
+  private static final ArrayList<Registry> registries = new ArrayList<Registry>();
+
+  private final long builtAt;
+
+  protected ContextIndex() {
+    builtAt = System.currentTimeMillis();
+  }
+
+  boolean isExpired() {
+    return (System.currentTimeMillis() - builtAt) > REBUILD_MILLIS;
+  }
+
+  /**
+   * Called, within the Shepherd's current transaction, each time the index is returned by its Registry, so that an
+   * index can reload parts it has marked stale. Does nothing by default.
+   */
+  protected void refresh(Shepherd myShepherd) {
+  }
+
+  /**
+   * Discards every index of a context, so that each is rebuilt the next time it is needed. Call this after changing
+   * many objects in ways the indexes are not told about.
+   */
+  public static void invalidateAll(String context) {
+    synchronized (registries) {
+      for (Registry registry : registries) {
+        registry.invalidate(context);
+      }
+    }
+  }
+
+  /**
+   * Keeps one index per context of one index class.
+   */
+  public static abstract class Registry<T extends ContextIndex> {
+
+    private final HashMap<String, T> indexes = new HashMap<String, T>();
+
+    protected Registry() {
+      synchronized (registries) {
+        registries.add(this);
+      }
+    }
+
+    /**
+     * Builds a new index of the Shepherd's context within the Shepherd's current transaction.
+     */
+    protected abstract T build(Shepherd myShepherd);
+
+    /**
+     * Returns the index of the Shepherd's context, building it if it does not exist yet or is due to be rebuilt.
+     */
+    public T getIndex(Shepherd myShepherd) {
+      synchronized (indexes) {
+        T index = indexes.get(myShepherd.getContext());
+        if ((index == null) || index.isExpired()) {
+          index = build(myShepherd);
+          indexes.put(myShepherd.getContext(), index);
+        }
+        index.refresh(myShepherd);
+        return index;
+      }
+    }
+
+    /**
+     * Returns the index of a context if it has been built, or null, so that changes are only recorded in indexes
+     * that exist.
+     */
+    public T getBuiltIndex(String context) {
+      synchronized (indexes) {
+        return indexes.get(context);
+      }
+    }
+
+    void invalidate(String context) {
+      synchronized (indexes) {
+        indexes.remove(context);
+      }
+    }
+
+  }
+
+}
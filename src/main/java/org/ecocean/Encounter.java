@@ -28,6 +28,7 @@ import java.util.StringTokenizer;
 import java.util.TreeMap;
 import java.util.Vector;
 import java.util.GregorianCalendar;
+import java.util.Iterator;
 import java.io.*;
 
 import org.ecocean.genetics.*;
@@ -1909,6 +1910,14 @@ public class Encounter implements java.io.Serializable {
 		return blk;
 	}
 
+	//as blocked, but only says whether there is one, stopping at the first; for results read a page at a time
+	public static boolean anyBlocked(Iterator<Encounter> encs, HttpServletRequest request) {
+		while (encs.hasNext()) {
+			if (!encs.next().canUserAccess(request)) return true;
+		}
+		return false;
+	}
+
 
 /*
 in short, this rebuilds (or builds for the first time) ALL *derived* images (etc?) for this encounter.
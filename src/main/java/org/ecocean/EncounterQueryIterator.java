@@ -0,0 +1,156 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.jdo.Query;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Iterates the results of an encounter search one page at a time instead of materializing them all.
+ * <p/>
+ * Each page is fetched with a ranged JDOQL query. Before the next page is fetched, the previous page is evicted from the
+ * PersistenceManager so that exports of very large result sets run in roughly constant memory. The filters that
+ * <code>EncounterQueryProcessor</code> applies in Java after the query are applied here to each encounter as it is read.
+ * <p/>
+ * A transaction must already be open on the supplied <code>Shepherd</code>. Encounters returned by {@link #next()} are only
+ * guaranteed to be usable until the following call to {@link #hasNext()}.
+ *
+ * @see EncounterQueryProcessor#processQueryIterator(Shepherd, HttpServletRequest, String, int)
+ */
+public class EncounterQueryIterator implements Iterator<Encounter> {
+
+  public static final int DEFAULT_PAGE_SIZE = 500;
+
+  private Shepherd myShepherd;
+  private HttpServletRequest request;
+  private String filter;
+  private String order;
+  private Map<String, Object> paramMap;
+  private String queryPrettyPrint;
+  private int pageSize;
+
+  private long pageStart = 0;
+  private List<Encounter> page = new ArrayList<Encounter>();
+  private int pageIndex = 0;
+  private boolean lastPage = false;
+  private Encounter nextEncounter;
+  private Query query;
+
+  public EncounterQueryIterator(Shepherd myShepherd, HttpServletRequest request, String filter, String order, Map<String, Object> paramMap, String queryPrettyPrint, int pageSize) {
+    this.myShepherd = myShepherd;
+    this.request = request;
+    this.filter = filter;
+    this.order = order;
+    this.paramMap = (paramMap == null) ? new HashMap<String, Object>() : paramMap;
+    this.queryPrettyPrint = queryPrettyPrint;
+    this.pageSize = (pageSize > 0) ? pageSize : DEFAULT_PAGE_SIZE;
+  }
+
+  public String getJDOQLRepresentation() {
+    return filter;
+  }
+
+  public String getQueryPrettyPrint() {
+    return queryPrettyPrint;
+  }
+
+  public boolean hasNext() {
+    while (nextEncounter == null) {
+      if (pageIndex >= page.size()) {
+        if (lastPage || !fetchPage()) {
+          return false;
+        }
+      }
+      Encounter candidate = page.get(pageIndex);
+      pageIndex++;
+      if (EncounterQueryProcessor.passesPostFilters(myShepherd, request, candidate)) {
+        nextEncounter = candidate;
+      }
+    }
+    return true;
+  }
+
+  public Encounter next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Encounter enc = nextEncounter;
+    nextEncounter = null;
+    return enc;
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException("EncounterQueryIterator is read-only.");
+  }
+
+  /**
+   * Releases the underlying query and any encounters still held by the current page.
+   */
+  public void close() {
+    releasePage();
+    query = null;
+    lastPage = true;
+  }
+
+  private boolean fetchPage() {
+    releasePage();
+    try {
+      //the same compiled query is re-executed for every page with a new range
+      if (query == null) {
+        query = QueryTemplateCache.newQuery(myShepherd.getPM(), filter, order);
+      }
+      query.setRange(pageStart, pageStart + pageSize);
+      Collection c = (Collection) QueryTemplateCache.executeWithMap(query, filter, order, paramMap);
+      page = new ArrayList<Encounter>(c);
+    }
+    catch (Exception e) {
+      System.out.println("Error encountered when trying to fetch a page of encounters in EncounterQueryIterator. Ending iteration.");
+      e.printStackTrace();
+      page = new ArrayList<Encounter>();
+    }
+    pageIndex = 0;
+    pageStart += pageSize;
+    if (page.size() < pageSize) {
+      lastPage = true;
+    }
+    return page.size() > 0;
+  }
+
+  private void releasePage() {
+    if (query != null) {
+      query.closeAll();
+    }
+    if (page.size() > 0) {
+      //let the previous page be garbage collected rather than held in the PM's level one cache
+      myShepherd.getPM().evictAll(page);
+      page = new ArrayList<Encounter>();
+    }
+    pageIndex = 0;
+  }
+
+}
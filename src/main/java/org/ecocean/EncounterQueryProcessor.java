@@ -2,14 +2,17 @@ package org.ecocean;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
 import java.util.Vector;
 
 import java.io.*;
@@ -31,24 +34,62 @@ public class EncounterQueryProcessor {
 
   private static final String SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE = "SELECT FROM org.ecocean.Encounter WHERE ";
 
+  //how long processQueryPaged keeps a search's result count in the session
+  public static final long COUNT_CACHE_MILLIS = 5 * 60 * 1000;
+
+  //the session and request attribute holding the SearchSummary of the last search paged through
+  private static final String SEARCH_SUMMARY_ATTRIBUTE = "encounterSearchSummary";
+
+  /**
+   * The result count of a paged search and, once a page has asked for them, its sighting counts. A session keeps only
+   * the summary of its latest search, so paging through one search reuses it without the session growing.
+   */
+  static class SearchSummary implements Serializable {
+    final String key;
+    final long time;
+    final int count;
+    int[] sightingCounts;
+
+    SearchSummary(String key, long time, int count) {
+      this.key = key;
+      this.time = time;
+      this.count = count;
+    }
+  }
+
   public static String queryStringBuilder(HttpServletRequest request, StringBuffer prettyPrint, Map<String, Object> paramMap){
+    Shepherd myShepherd=new Shepherd(ServletUtilities.getContext(request));
+    myShepherd.beginDBTransaction();
+    try{
+      return queryStringBuilder(myShepherd, request, prettyPrint, paramMap);
+    }
+    finally{
+      myShepherd.rollbackDBTransaction();
+      myShepherd.closeDBTransaction();
+    }
+  }
+
+  /**
+   * Builds the query of the search form, looking up keywords and loci with the caller's Shepherd and leaving its
+   * transaction as it is.
+   */
+  public static String queryStringBuilder(Shepherd myShepherd, HttpServletRequest request, StringBuffer prettyPrint, Map<String, Object> paramMap){
     String filter= SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE;
     String jdoqlVariableDeclaration = "";
-    String parameterDeclaration = "";
     
     
     String context="context0";
     context=ServletUtilities.getContext(request);
     
-    Shepherd myShepherd=new Shepherd(context);
 
   //filter for location------------------------------------------
     if((request.getParameter("locationField")!=null)&&(!request.getParameter("locationField").equals(""))) {
       String locString=request.getParameter("locationField").toLowerCase().replaceAll("%20", " ").trim();
+      String locParam=addParameter(paramMap, "locationField", locString);
       if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){
-        filter+="(verbatimLocality.toLowerCase().indexOf('"+locString+"') != -1)";
+        filter+="(verbatimLocality.toLowerCase().indexOf("+locParam+") != -1)";
       }
-      else{filter+=" && (verbatimLocality.toLowerCase().indexOf('"+locString+"') != -1)";}
+      else{filter+=" && (verbatimLocality.toLowerCase().indexOf("+locParam+") != -1)";}
       prettyPrint.append("locationField contains \""+locString+"\".<br />");
     }
     //end location filter--------------------------------------------------------------------------------------
@@ -58,21 +99,7 @@ public class EncounterQueryProcessor {
     String[] usernames=request.getParameterValues("username");
     if((usernames!=null)&&(!usernames[0].equals("None"))){
           prettyPrint.append("Assigned to one of the following usernames: ");
-          int kwLength=usernames.length;
-            String locIDFilter="(";
-            for(int kwIter=0;kwIter<kwLength;kwIter++) {
-              String kwParam=usernames[kwIter].replaceAll("%20", " ").trim();
-              if(!kwParam.equals("")){
-                if(locIDFilter.equals("(")){
-                  locIDFilter+=" submitterID == \""+kwParam+"\"";
-                }
-                else{
-                  locIDFilter+=" || submitterID == \""+kwParam+"\"";
-                }
-                prettyPrint.append(kwParam+" ");
-              }
-            }
-            locIDFilter+=" )";
+          String locIDFilter="("+addParameter(paramMap, "usernames", getListValues(usernames, prettyPrint))+".contains(submitterID))";
             if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+=locIDFilter;}
             else{filter+=(" && "+locIDFilter);}
             prettyPrint.append("<br />");
@@ -146,21 +173,7 @@ public class EncounterQueryProcessor {
     String[] locCodes=request.getParameterValues("locationCodeField");
     if((locCodes!=null)&&(!locCodes[0].equals("None"))){
           prettyPrint.append("locationCodeField is one of the following: ");
-          int kwLength=locCodes.length;
-            String locIDFilter="(";
-            for(int kwIter=0;kwIter<kwLength;kwIter++) {
-              String kwParam=locCodes[kwIter].replaceAll("%20", " ").trim();
-              if(!kwParam.equals("")){
-                if(locIDFilter.equals("(")){
-                  locIDFilter+=" locationID == \""+kwParam+"\"";
-                }
-                else{
-                  locIDFilter+=" || locationID == \""+kwParam+"\"";
-                }
-                prettyPrint.append(kwParam+" ");
-              }
-            }
-            locIDFilter+=" )";
+          String locIDFilter="("+addParameter(paramMap, "locCodes", getListValues(locCodes, prettyPrint))+".contains(locationID))";
             if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+=locIDFilter;}
             else{filter+=(" && "+locIDFilter);}
             prettyPrint.append("<br />");
@@ -173,21 +186,7 @@ public class EncounterQueryProcessor {
     String[] states=request.getParameterValues("state");
     if((states!=null)&&(!states[0].equals("None"))){
           prettyPrint.append("State is one of the following: ");
-          int kwLength=states.length;
-            String locIDFilter="(";
-            for(int kwIter=0;kwIter<kwLength;kwIter++) {
-              String kwParam=states[kwIter].replaceAll("%20", " ").trim();
-              if(!kwParam.equals("")){
-                if(locIDFilter.equals("(")){
-                  locIDFilter+=" state == \""+kwParam+"\"";
-                }
-                else{
-                  locIDFilter+=" || state == \""+kwParam+"\"";
-                }
-                prettyPrint.append(kwParam+" ");
-              }
-            }
-            locIDFilter+=" )";
+          String locIDFilter="("+addParameter(paramMap, "states", getListValues(states, prettyPrint))+".contains(state))";
             if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+=locIDFilter;}
             else{filter+=(" && "+locIDFilter);}
             prettyPrint.append("<br />");
@@ -202,7 +201,7 @@ public class EncounterQueryProcessor {
     if((individualID!=null)&&(!individualID[0].equals(""))&&(!individualID[0].equals("None"))){
           prettyPrint.append("Individual ID is one of the following: ");
           int kwLength=individualID.length;
-            String locIDFilter="(";
+            ArrayList<String> individualIDs=new ArrayList<String>();
             for(int kwIter=0;kwIter<kwLength;kwIter++) {
               String kwParamMaster=individualID[kwIter].replaceAll("%20", " ").trim();
               
@@ -211,19 +210,14 @@ public class EncounterQueryProcessor {
               for(int k=0;k<numTokens;k++){
                 String kwParam=str.nextToken().trim();
                 if(!kwParam.equals("")){
-                  if(locIDFilter.equals("(")){
-                    locIDFilter+=" individualID == \""+kwParam+"\"";
-                  }
-                  else{
-                    locIDFilter+=" || individualID == \""+kwParam+"\"";
-                  }
+                  individualIDs.add(kwParam);
                   prettyPrint.append(kwParam+" ");
                 }
               
               }
               
             }
-            locIDFilter+=" )";
+            String locIDFilter="("+addParameter(paramMap, "individualIDs", individualIDs)+".contains(individualID))";
             if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+=locIDFilter;}
             else{filter+=(" && "+locIDFilter);}
             prettyPrint.append("<br />");
@@ -239,23 +233,7 @@ public class EncounterQueryProcessor {
     String[] patterningCodes=request.getParameterValues("patterningCodeField");
     if((patterningCodes!=null)&&(!patterningCodes[0].equals("None"))){
           prettyPrint.append("Patterning code is one of the following: ");
-          int kwLength=patterningCodes.length;
-            String patterningCodeFilter="(";
-            for(int kwIter=0;kwIter<kwLength;kwIter++) {
-
-              String kwParam=patterningCodes[kwIter].replaceAll("%20", " ").trim();
-              if(!kwParam.equals("")){
-                if(patterningCodeFilter.equals("(")){
-                  patterningCodeFilter+=" patterningCode == \""+kwParam+"\"";
-                }
-                else{
-
-                  patterningCodeFilter+=" || patterningCode == \""+kwParam+"\"";
-                }
-                prettyPrint.append(kwParam+" ");
-              }
-            }
-            patterningCodeFilter+=" )";
+          String patterningCodeFilter="("+addParameter(paramMap, "patterningCodes", getListValues(patterningCodes, prettyPrint))+".contains(patterningCode))";
 
 
             if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+=patterningCodeFilter;}
@@ -270,21 +248,7 @@ public class EncounterQueryProcessor {
     String[] behaviors=request.getParameterValues("behaviorField");
     if((behaviors!=null)&&(!behaviors[0].equals("None"))){
           prettyPrint.append("behaviorField is one of the following: ");
-          int kwLength=behaviors.length;
-            String locIDFilter="(";
-            for(int kwIter=0;kwIter<kwLength;kwIter++) {
-              String kwParam=behaviors[kwIter].replaceAll("%20", " ").trim();
-              if(!kwParam.equals("")){
-                if(locIDFilter.equals("(")){
-                  locIDFilter+=" behavior == \""+kwParam+"\"";
-                }
-                else{
-                  locIDFilter+=" || behavior == \""+kwParam+"\"";
-                }
-                prettyPrint.append(kwParam+" ");
-              }
-            }
-            locIDFilter+=" )";
+          String locIDFilter="("+addParameter(paramMap, "behaviors", getListValues(behaviors, prettyPrint))+".contains(behavior))";
             if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+=locIDFilter;}
             else{filter+=(" && "+locIDFilter);}
             prettyPrint.append("<br />");
@@ -311,11 +275,8 @@ public class EncounterQueryProcessor {
           prettyPrint.append("<br/>");
           String metalTagVar = "metalTag" + metalTagsInQuery++;
           metalTagFilter.append("(metalTags.contains(" + metalTagVar + ") && ");
-          metalTagFilter.append(metalTagVar + ".location == " + Util.quote(metalTagLocation));
-          String jdoParam = "tagNumber" + metalTagsInQuery;
-          metalTagFilter.append(" && " + metalTagVar + ".tagNumber == " + jdoParam + ")");
-          paramMap.put(jdoParam, value);
-          parameterDeclaration = updateParametersDeclaration(parameterDeclaration, "String " + jdoParam);
+          metalTagFilter.append(metalTagVar + ".location == " + addParameter(paramMap, metalTagVar + "Location", metalTagLocation));
+          metalTagFilter.append(" && " + metalTagVar + ".tagNumber == " + addParameter(paramMap, "tagNumber" + metalTagsInQuery, value) + ")");
         }
       }
     }
@@ -330,7 +291,7 @@ public class EncounterQueryProcessor {
     }
 
     // We don't do metal tags (above) in processTagFilters because of the dependency on jdoqlVariableDeclaration
-    String tagFilters = processTagFilters(request, prettyPrint);
+    String tagFilters = processTagFilters(request, prettyPrint, paramMap);
     if (tagFilters.length() > 0) {
       if (!filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)) {
         filter += " && ";
@@ -343,21 +304,7 @@ public class EncounterQueryProcessor {
     String[] stages=request.getParameterValues("lifeStageField");
     if((stages!=null)&&(!stages[0].equals("None"))&&(!stages[0].equals(""))){
           prettyPrint.append("lifeStage is one of the following: ");
-          int kwLength=stages.length;
-            String stageFilter="(";
-            for(int kwIter=0;kwIter<kwLength;kwIter++) {
-              String kwParam=stages[kwIter].replaceAll("%20", " ").trim();
-              if(!kwParam.equals("")){
-                if(stageFilter.equals("(")){
-                  stageFilter+=" lifeStage == \""+kwParam+"\"";
-                }
-                else{
-                  stageFilter+=" || lifeStage == \""+kwParam+"\"";
-                }
-                prettyPrint.append(kwParam+" ");
-              }
-            }
-            stageFilter+=" ) ";
+          String stageFilter="("+addParameter(paramMap, "stages", getListValues(stages, prettyPrint))+".contains(lifeStage))";
             if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+=stageFilter;}
             else{filter+=(" && "+stageFilter);}
             prettyPrint.append("<br />");
@@ -368,21 +315,7 @@ public class EncounterQueryProcessor {
     String[] countries=request.getParameterValues("country");
     if((countries!=null)&&(!countries[0].equals("None"))&&(!countries[0].equals(""))){
           prettyPrint.append("Country is one of the following: ");
-          int kwLength=countries.length;
-            String stageFilter="(";
-            for(int kwIter=0;kwIter<kwLength;kwIter++) {
-              String kwParam=countries[kwIter].replaceAll("%20", " ").trim();
-              if(!kwParam.equals("")){
-                if(stageFilter.equals("(")){
-                  stageFilter+=" country == \""+kwParam+"\"";
-                }
-                else{
-                  stageFilter+=" || country == \""+kwParam+"\"";
-                }
-                prettyPrint.append(kwParam+" ");
-              }
-            }
-            stageFilter+=" ) ";
+          String stageFilter="("+addParameter(paramMap, "countries", getListValues(countries, prettyPrint))+".contains(country))";
             if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+=stageFilter;}
             else{filter+=(" && "+stageFilter);}
             prettyPrint.append("<br />");
@@ -433,8 +366,9 @@ public class EncounterQueryProcessor {
               measurementFilter.append("&&");
             }
             String measurementVar = "measurement" + measurementsInQuery++;
+            String valueParam = addParameter(paramMap, measurementVar + "Value", parseDoubleParameter(value));
             measurementFilter.append("measurements.contains(" + measurementVar + ") && ");
-            measurementFilter.append( "("+measurementVar + ".value " + operator + " " + value+")");
+            measurementFilter.append( "("+measurementVar + ".value " + operator + " " + valueParam+")");
             measurementFilter.append(" && (" + measurementVar + ".type == ");
             measurementFilter.append("\"" + measurementDesc.getType() + "\")");
             atLeastOneMeasurement = true;
@@ -511,8 +445,9 @@ public class EncounterQueryProcessor {
               bioMeasurementFilter.append("&&");
             }
             String measurementVar = "biomeasurement" + bioMeasurementsInQuery++;
+            String valueParam = addParameter(paramMap, measurementVar + "Value", parseDoubleParameter(value));
             bioMeasurementFilter.append(" & dce322.analyses.contains(" + measurementVar + ")  ");
-            bioMeasurementFilter.append( " && ( "+measurementVar + ".value " + operator + " " + value+" )");
+            bioMeasurementFilter.append( " && ( "+measurementVar + ".value " + operator + " " + valueParam+" )");
             bioMeasurementFilter.append(" && ( " + measurementVar + ".measurementType == ");
             bioMeasurementFilter.append("\"" + measurementDesc.getType() + "\" )");
             bioAtLeastOneMeasurement = true;
@@ -555,22 +490,7 @@ public class EncounterQueryProcessor {
     String[] verbatimEventDates=request.getParameterValues("verbatimEventDateField");
     if((verbatimEventDates!=null)&&(!verbatimEventDates[0].equals("None"))){
           prettyPrint.append("verbatimEventDateField is one of the following: ");
-          int kwLength=verbatimEventDates.length;
-            String locIDFilter="(";
-            for(int kwIter=0;kwIter<kwLength;kwIter++) {
-
-              String kwParam=verbatimEventDates[kwIter].replaceAll("%20", " ").trim();
-              if(!kwParam.equals("")){
-                if(locIDFilter.equals("(")){
-                  locIDFilter+=" verbatimEventDate == \""+kwParam+"\"";
-                }
-                else{
-                  locIDFilter+=" || verbatimEventDate == \""+kwParam+"\"";
-                }
-                prettyPrint.append(kwParam+" ");
-              }
-            }
-            locIDFilter+=" )";
+          String locIDFilter="("+addParameter(paramMap, "verbatimEventDates", getListValues(verbatimEventDates, prettyPrint))+".contains(verbatimEventDate))";
             if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+=locIDFilter;}
             else{filter+=(" && "+locIDFilter);}
             prettyPrint.append("<br />");
@@ -595,8 +515,9 @@ public class EncounterQueryProcessor {
     //TissueSample sampleID filters-------------------------------------------------
     if((request.getParameter("tissueSampleID")!=null)&&(!request.getParameter("tissueSampleID").trim().equals(""))){
           prettyPrint.append("Has biological sample with ID: "+request.getParameter("tissueSampleID"));
-            if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+="tissueSamples.contains(dce123) && (dce123.sampleID.toLowerCase().indexOf('"+request.getParameter("tissueSampleID").trim().toLowerCase()+"') != -1)";}
-            else if (filter.indexOf("tissueSamples.contains(dce)")==-1){filter+=(" && tissueSamples.contains(dce123) && (dce123.sampleID.toLowerCase().indexOf('"+request.getParameter("tissueSampleID").trim().toLowerCase()+"') != -1) ");}
+            String sampleID=request.getParameter("tissueSampleID").trim().toLowerCase();
+            if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+="tissueSamples.contains(dce123) && (dce123.sampleID.toLowerCase().indexOf("+addParameter(paramMap, "tissueSampleID", sampleID)+") != -1)";}
+            else if (filter.indexOf("tissueSamples.contains(dce)")==-1){filter+=(" && tissueSamples.contains(dce123) && (dce123.sampleID.toLowerCase().indexOf("+addParameter(paramMap, "tissueSampleID", sampleID)+") != -1) ");}
             prettyPrint.append("<br />");
             if(jdoqlVariableDeclaration.equals("")){jdoqlVariableDeclaration=" VARIABLES org.ecocean.genetics.TissueSample dce123";}
             else if(!jdoqlVariableDeclaration.contains("org.ecocean.genetics.TissueSample dce123")){jdoqlVariableDeclaration+=";org.ecocean.genetics.TissueSample dce123";}
@@ -625,7 +546,6 @@ public class EncounterQueryProcessor {
 
     //------------------------------------------------------------------
     //keyword filters-------------------------------------------------
-    myShepherd.beginDBTransaction();
     String[] keywords=request.getParameterValues("keyword");
     String photoKeywordOperator = "&&";
     if((request.getParameter("photoKeywordOperator")!=null)&&(request.getParameter("photoKeywordOperator").equals("_OR_"))){photoKeywordOperator = "||";}
@@ -647,11 +567,12 @@ public class EncounterQueryProcessor {
               String locIDFilter="(";
               String kwParam=keywords[kwIter].replaceAll("%20", " ").trim();
               if(!kwParam.equals("")){
+                String wordParam=addParameter(paramMap, "word"+kwIter+"Name", kwParam);
                 if(locIDFilter.equals("(")){
-                  locIDFilter+=" word"+kwIter+".indexname == \""+kwParam+"\" ";
+                  locIDFilter+=" word"+kwIter+".indexname == "+wordParam+" ";
                 }
                 else{
-                  locIDFilter+=" "+photoKeywordOperator+" word"+kwIter+".indexname == \""+kwParam+"\" ";
+                  locIDFilter+=" "+photoKeywordOperator+" word"+kwIter+".indexname == "+wordParam+" ";
                 }
                 Keyword kw=myShepherd.getKeyword(kwParam.trim());
                 prettyPrint.append("\""+kw.getReadableName()+"\" ");
@@ -682,8 +603,6 @@ public class EncounterQueryProcessor {
 
             prettyPrint.append("<br />");
       }
-    myShepherd.rollbackDBTransaction();
-    myShepherd.closeDBTransaction();
 
     //end photo keyword filters-----------------------------------------------
 
@@ -691,7 +610,6 @@ public class EncounterQueryProcessor {
 
     //------------------------------------------------------------------
     //ms markers filters-------------------------------------------------
-      myShepherd.beginDBTransaction();
       ArrayList<String> markers=myShepherd.getAllLoci();
         int numMarkers=markers.size();
         String theseMarkers="";
@@ -716,7 +634,8 @@ public class EncounterQueryProcessor {
                     Integer relaxValue=new Integer(request.getParameter("alleleRelaxValue"));
                     Integer upperValue=thisInt+relaxValue;
                     Integer lowerValue=thisInt-relaxValue;
-                    locIDFilter+=(" && ("+marker.replaceAll("-", "")+".allele"+alleleNum+" >= "+lowerValue+")"+" && ("+marker.replaceAll("-", "")+".allele"+alleleNum+" <= "+upperValue+")");
+                    String alleleParam=marker.replaceAll("-", "")+"Allele"+alleleNum;
+                    locIDFilter+=(" && ("+marker.replaceAll("-", "")+".allele"+alleleNum+" >= "+addParameter(paramMap, alleleParam+"Min", lowerValue)+")"+" && ("+marker.replaceAll("-", "")+".allele"+alleleNum+" <= "+addParameter(paramMap, alleleParam+"Max", upperValue)+")");
 
                   }
                   catch(Exception e){
@@ -757,8 +676,6 @@ public class EncounterQueryProcessor {
           theseMarkers+="<br />";
           prettyPrint.append(theseMarkers);
         }
-        myShepherd.rollbackDBTransaction();
-        myShepherd.closeDBTransaction();
     //end ms markers filters-----------------------------------------------
 
 
@@ -766,8 +683,9 @@ public class EncounterQueryProcessor {
     //filter for alternate ID------------------------------------------
     if((request.getParameter("alternateIDField")!=null)&&(!request.getParameter("alternateIDField").equals(""))) {
       String altID=request.getParameter("alternateIDField").replaceAll("%20", " ").trim().toLowerCase();
-      if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+="otherCatalogNumbers.toLowerCase().indexOf('"+altID+"') != -1";}
-      else{filter+=" && otherCatalogNumbers.toLowerCase().indexOf('"+altID+"') != -1";}
+      String altIDParam=addParameter(paramMap, "alternateID", altID);
+      if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+="otherCatalogNumbers.toLowerCase().indexOf("+altIDParam+") != -1";}
+      else{filter+=" && otherCatalogNumbers.toLowerCase().indexOf("+altIDParam+") != -1";}
       prettyPrint.append("alternateID field contains \""+altID+"\".<br />");
     }
 
@@ -776,22 +694,7 @@ public class EncounterQueryProcessor {
     String[] haplotypes=request.getParameterValues("haplotypeField");
     if((haplotypes!=null)&&(!haplotypes[0].equals("None"))){
           prettyPrint.append("Haplotype is one of the following: ");
-          int kwLength=haplotypes.length;
-            String locIDFilter="(";
-            for(int kwIter=0;kwIter<kwLength;kwIter++) {
-
-              String kwParam=haplotypes[kwIter].replaceAll("%20", " ").trim();
-              if(!kwParam.equals("")){
-                if(locIDFilter.equals("(")){
-                  locIDFilter+=" analysis.haplotype == \""+kwParam+"\" ";
-                }
-                else{
-                  locIDFilter+=" || analysis.haplotype == \""+kwParam+"\" ";
-                }
-                prettyPrint.append(kwParam+" ");
-              }
-            }
-            locIDFilter+=" )";
+          String locIDFilter="("+addParameter(paramMap, "haplotypes", getListValues(haplotypes, prettyPrint))+".contains(analysis.haplotype))";
             if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+="tissueSamples.contains(dce) && dce.analyses.contains(analysis) && "+locIDFilter;}
             else{
               if(filter.indexOf("tissueSamples.contains(dce)")==-1){filter+=" && tissueSamples.contains(dce)";}
@@ -820,22 +723,7 @@ public class EncounterQueryProcessor {
     String[] genSexes=request.getParameterValues("geneticSexField");
     if((genSexes!=null)&&(!genSexes[0].equals("None"))){
           prettyPrint.append("Genetic determination of sex is one of the following: ");
-          int kwLength=genSexes.length;
-            String locIDFilter="(";
-            for(int kwIter=0;kwIter<kwLength;kwIter++) {
-
-              String kwParam=genSexes[kwIter].replaceAll("%20", " ").trim();
-              if(!kwParam.equals("")){
-                if(locIDFilter.equals("(")){
-                  locIDFilter+=" sexanalysis.sex == \""+kwParam+"\" ";
-                }
-                else{
-                  locIDFilter+=" || sexanalysis.sex == \""+kwParam+"\" ";
-                }
-                prettyPrint.append(kwParam+" ");
-              }
-            }
-            locIDFilter+=" )";
+          String locIDFilter="("+addParameter(paramMap, "genSexes", getListValues(genSexes, prettyPrint))+".contains(sexanalysis.sex))";
             if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+="tissueSamples.contains(dce9) && dce9.analyses.contains(sexanalysis) && "+locIDFilter;}
             else{
               if(filter.indexOf("tissueSamples.contains(dce9)")==-1){filter+=" && tissueSamples.contains(dce9)";}
@@ -871,10 +759,11 @@ public class EncounterQueryProcessor {
 					genus=tokenizer.nextToken();
 					specificEpithet=tokenizer.nextToken();
 
-					if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+="genus == '"+genus+"' ";}
-					else{filter+=" && genus == '"+genus+"' ";}
+					String genusParam=addParameter(paramMap, "genusName", genus);
+					if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+="genus == "+genusParam+" ";}
+					else{filter+=" && genus == "+genusParam+" ";}
 
-					filter+=" && specificEpithet == '"+specificEpithet+"' ";
+					filter+=" && specificEpithet == "+addParameter(paramMap, "specificEpithetName", specificEpithet)+" ";
 
 	      			prettyPrint.append("genus and species are \""+genusSpecies+"\".<br />");
 
@@ -887,8 +776,9 @@ public class EncounterQueryProcessor {
     //filter for identificationRemarks------------------------------------------
     if((request.getParameter("identificationRemarksField")!=null)&&(!request.getParameter("identificationRemarksField").equals(""))) {
       String idRemarks=request.getParameter("identificationRemarksField").trim();
-      if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+="identificationRemarks.startsWith('"+idRemarks+"')";}
-      else{filter+=" && identificationRemarks.startsWith('"+idRemarks+"')";}
+      String idRemarksParam=addParameter(paramMap, "idRemarksPrefix", idRemarks);
+      if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+="identificationRemarks.startsWith("+idRemarksParam+")";}
+      else{filter+=" && identificationRemarks.startsWith("+idRemarksParam+")";}
       prettyPrint.append("identificationRemarks starts with \""+idRemarks+"\".<br />");
 
     }
@@ -934,7 +824,8 @@ public class EncounterQueryProcessor {
     //submitter or photographer name filter------------------------------------------
     if((request.getParameter("nameField")!=null)&&(!request.getParameter("nameField").equals(""))) {
       String nameString=request.getParameter("nameField").replaceAll("%20"," ").toLowerCase().trim();
-      String filterString="((recordedBy.toLowerCase().indexOf('"+nameString+"') != -1)||(submitterEmail.toLowerCase().indexOf('"+nameString+"') != -1)||(photographerName.toLowerCase().indexOf('"+nameString+"') != -1)||(photographerEmail.toLowerCase().indexOf('"+nameString+"') != -1))";
+      String nameParam=addParameter(paramMap, "nameField", nameString);
+      String filterString="((recordedBy.toLowerCase().indexOf("+nameParam+") != -1)||(submitterEmail.toLowerCase().indexOf("+nameParam+") != -1)||(photographerName.toLowerCase().indexOf("+nameParam+") != -1)||(photographerEmail.toLowerCase().indexOf("+nameParam+") != -1))";
       if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){filter+=filterString;}
       else{filter+=(" && "+filterString);}
       prettyPrint.append("nameField contains: \""+nameString+"\"<br />");
@@ -1027,10 +918,12 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
     GregorianCalendar gcMin=new GregorianCalendar(minYear, (minMonth-1), minDay, 0, 0);
     GregorianCalendar gcMax=new GregorianCalendar(maxYear, (maxMonth-1), maxDay, 23, 59);
 
+    String minDateParam=addParameter(paramMap, "minDateInMilliseconds", new Long(gcMin.getTimeInMillis()));
+    String maxDateParam=addParameter(paramMap, "maxDateInMilliseconds", new Long(gcMax.getTimeInMillis()));
     if(filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)){
-      filter+="((dateInMilliseconds >= "+gcMin.getTimeInMillis()+") && (dateInMilliseconds <= "+gcMax.getTimeInMillis()+"))";
+      filter+="((dateInMilliseconds >= "+minDateParam+") && (dateInMilliseconds <= "+maxDateParam+"))";
     }
-    else{filter+=" && ((dateInMilliseconds >= "+gcMin.getTimeInMillis()+") && (dateInMilliseconds <= "+gcMax.getTimeInMillis()+"))";
+    else{filter+=" && ((dateInMilliseconds >= "+minDateParam+") && (dateInMilliseconds <= "+maxDateParam+"))";
     }
 
     //filter for sex------------------------------------------
@@ -1067,9 +960,7 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
         if (!filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)) {
           filter += " && ";
         }
-        filter += "(releaseDate >= releaseDateFrom)";
-        parameterDeclaration = updateParametersDeclaration(parameterDeclaration, "java.util.Date releaseDateFrom");
-        paramMap.put("releaseDateFrom", releaseDateFrom);
+        filter += "(releaseDate >= " + addParameter(paramMap, "releaseDateFrom", releaseDateFrom) + ")";
         prettyPrint.append("release date >= " + simpleDateFormat.format(releaseDateFrom));
       } catch (Exception e) {
         e.printStackTrace();
@@ -1081,9 +972,7 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
         if (!filter.equals(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE)) {
           filter += " && ";
         }
-        filter += "(releaseDate <= releaseDateTo)";
-        parameterDeclaration = updateParametersDeclaration(parameterDeclaration, "java.util.Date releaseDateTo");
-        paramMap.put("releaseDateTo", releaseDateTo);
+        filter += "(releaseDate <= " + addParameter(paramMap, "releaseDateTo", releaseDateTo) + ")";
         prettyPrint.append("releaseDate <= " + simpleDateFormat.format(releaseDateTo));
       } catch (Exception e) {
         e.printStackTrace();
@@ -1115,14 +1004,19 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
                   double sw_lat = (new Double(request.getParameter("sw_lat"))).doubleValue();
                   double sw_long=(new Double(request.getParameter("sw_long"))).doubleValue();
 
+                  String neLatParam=addParameter(paramMap, "ne_lat", new Double(ne_lat));
+                  String neLongParam=addParameter(paramMap, "ne_long", new Double(ne_long));
+                  String swLatParam=addParameter(paramMap, "sw_lat", new Double(sw_lat));
+                  String swLongParam=addParameter(paramMap, "sw_long", new Double(sw_long));
+
                   if((sw_long>0)&&(ne_long<0)){
                     //if(!((encLat<=ne_lat)&&(encLat>=sw_lat)&&((encLong<=ne_long)||(encLong>=sw_long)))){
 
                       //process lats
-                      thisLocalFilter+="(decimalLatitude <= "+request.getParameter("ne_lat")+") && (decimalLatitude >= "+request.getParameter("sw_lat")+")";
+                      thisLocalFilter+="(decimalLatitude <= "+neLatParam+") && (decimalLatitude >= "+swLatParam+")";
 
                       //process longs
-                      thisLocalFilter+=" && ((decimalLongitude <= "+request.getParameter("ne_long")+") || (decimalLongitude >= "+request.getParameter("sw_long")+"))";
+                      thisLocalFilter+=" && ((decimalLongitude <= "+neLongParam+") || (decimalLongitude >= "+swLongParam+"))";
 
 
 
@@ -1132,10 +1026,10 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
                     //if(!((encLat<=ne_lat)&&(encLat>=sw_lat)&&(encLong<=ne_long)&&(encLong>=sw_long))){
 
                     //process lats
-                    thisLocalFilter+="(decimalLatitude <= "+request.getParameter("ne_lat")+") && (decimalLatitude >= "+request.getParameter("sw_lat")+")";
+                    thisLocalFilter+="(decimalLatitude <= "+neLatParam+") && (decimalLatitude >= "+swLatParam+")";
 
                     //process longs
-                    thisLocalFilter+=" && (decimalLongitude <= "+request.getParameter("ne_long")+") && (decimalLongitude >= "+request.getParameter("sw_long")+")";
+                    thisLocalFilter+=" && (decimalLongitude <= "+neLongParam+") && (decimalLongitude >= "+swLongParam+")";
 
 
 
@@ -1177,7 +1071,7 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
 
     filter+=jdoqlVariableDeclaration;
 
-    filter += parameterDeclaration;
+    filter += getParametersDeclaration(paramMap);
 
     return filter;
 
@@ -1189,9 +1083,6 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
     Iterator<Encounter> allEncounters;
 
 
-		String currentUser = null;
-		if (request.getUserPrincipal() != null) currentUser = request.getUserPrincipal().getName();
-
     //Extent<Encounter> encClass=myShepherd.getPM().getExtent(Encounter.class, true);
     //Query query=myShepherd.getPM().newQuery(encClass);
     //if(!order.equals("")){query.setOrdering(order);}
@@ -1202,15 +1093,22 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
 
     Map<String,Object> paramMap = new HashMap<String, Object>();
 
-    filter=queryStringBuilder(request, prettyPrint, paramMap);
-
-    Query query=myShepherd.getPM().newQuery(filter);
-    if(!order.equals("")){query.setOrdering(order);}
+    filter=queryStringBuilder(myShepherd, request, prettyPrint, paramMap);
 
+    Query query=null;
     if(!filter.trim().equals("")){
         //filter="("+filter+")";
         //query.setFilter(filter);
-        allEncounters=myShepherd.getAllEncounters(query, paramMap);
+        try{
+          query=QueryTemplateCache.newQuery(myShepherd.getPM(), filter, order);
+          Collection c=(Collection)QueryTemplateCache.executeWithMap(query, filter, order, paramMap);
+          allEncounters=(new ArrayList<Encounter>(c)).iterator();
+        }
+        catch(Exception e){
+          System.out.println("Error encountered when trying to execute the encounter search query. Returning a null collection.");
+          e.printStackTrace();
+          allEncounters=null;
+        }
     }
     else{
       allEncounters=myShepherd.getAllEncountersNoFilter();
@@ -1231,32 +1129,16 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
 
 
 
-  //filter for encounters of MarkedIndividuals that have been resighted------------------------------------------
-    if((request.getParameter("resightOnly")!=null)&&(request.getParameter("numResights")!=null)) {
-      int numResights=1;
-
-      try{
-        numResights=(new Integer(request.getParameter("numResights"))).intValue();
-        prettyPrint.append("numResights is > "+numResights+".<br />");
-        }
-      catch(NumberFormatException nfe) {nfe.printStackTrace();}
-
-      for(int q=0;q<rEncounters.size();q++) {
-        Encounter rEnc=(Encounter)rEncounters.get(q);
-        //if(rEnc.isAssignedToMarkedIndividual().equals("Unassigned")){
-          //rEncounters.remove(q);
-          //q--;
-        //}
-        //else{
-          MarkedIndividual s=myShepherd.getMarkedIndividual(rEnc.isAssignedToMarkedIndividual());
-          if(s.totalEncounters()<numResights) {
-            rEncounters.remove(q);
-            q--;
-          }
-        //}
+  //apply the filters that cannot be expressed in JDOQL------------------------------------------
+    appendPostFilterPrettyPrint(request, prettyPrint);
+    for(int q=0;q<rEncounters.size();q++) {
+      Encounter rEnc=(Encounter)rEncounters.get(q);
+      if(!passesPostFilters(myShepherd, request, rEnc)) {
+        rEncounters.remove(q);
+        q--;
       }
     }
-  //end if resightOnly--------------------------------------------------------------------------------------
+  //end Java-side filters--------------------------------------------------------------------------------------
 
 
 
@@ -1315,32 +1197,144 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
   //end keyword filters-----------------------------------------------
 */
 
-  	//start photo filename filtering
-  	    if((request.getParameter("filenameField")!=null)&&(!request.getParameter("filenameField").equals(""))) {
 
-  	      //clean the input string to create its equivalent as if it had been submitted through the web form
-  	      String nameString=ServletUtilities.cleanFileName(ServletUtilities.preventCrossSiteScriptingAttacks(request.getParameter("filenameField").trim()));
+  	if(query!=null){query.closeAll();}
 
-  	           for(int q=0;q<rEncounters.size();q++) {
-		         Encounter rEnc=(Encounter)rEncounters.get(q);
-		         int numPhotos=rEnc.getAdditionalImageNames().size();
-		         boolean hasPhoto=false;
-		         for(int i=0;i<numPhotos;i++){
-					 String thisPhoto=(String)rEnc.getAdditionalImageNames().get(i);
-					 if(thisPhoto.equals(nameString)){hasPhoto=true;}
-				}
-		         if(!hasPhoto){
-		           rEncounters.remove(q);
-		           q--;
-		         }
-               }
-  	      prettyPrint.append("filenameField contains: \""+nameString+"\"<br />");
+
+		logCollaborationAccess(request, rEncounters, prettyPrint.toString());
+
+    return (new EncounterQueryResult(rEncounters,filter,prettyPrint.toString()));
+
+  }
+
+  /**
+   * Paged counterpart of processQuery for pages that display part of the result. The returned result is backed by a
+   * PagedQueryList, so displaying rows i to j costs one range query and nothing outside that page is loaded.
+   * catalogNumber is appended to the ordering so that pages are stable.
+   * <p/>
+   * If cacheCount is true, the number of results is counted once and kept in the session for COUNT_CACHE_MILLIS, so
+   * paging back and forth through the same search does not count it again. Only the latest search of a session is
+   * kept, along with its sighting counts once getSightingCounts has computed them.
+   * <p/>
+   * Unlike processQuery, collaboration access is not logged here for the whole result; pages should call
+   * logCollaborationAccess for the encounters they actually display.
+   */
+  public static EncounterQueryResult processQueryPaged(Shepherd myShepherd, HttpServletRequest request, String order, int pageSize, boolean cacheCount){
+    StringBuffer prettyPrint=new StringBuffer("");
+    Map<String,Object> paramMap = new HashMap<String, Object>();
+    String filter=queryStringBuilder(myShepherd, request, prettyPrint, paramMap);
+    appendPostFilterPrettyPrint(request, prettyPrint);
+
+    PagedQueryList.PostFilter<Encounter> postFilter=null;
+    if(hasPostFilters(request)){
+      final Shepherd shepherd=myShepherd;
+      final HttpServletRequest req=request;
+      postFilter=new PagedQueryList.PostFilter<Encounter>(){
+        public boolean accept(Encounter candidate){
+          return passesPostFilters(shepherd, req, candidate);
+        }
+      };
+    }
+    String ordering=PagedQueryList.getStableOrdering(order, "catalogNumber");
+    PagedQueryList<Encounter> rEncounters=new PagedQueryList<Encounter>(myShepherd.getPM(), filter, ordering, paramMap, pageSize, postFilter);
+
+    if(cacheCount){
+      HttpSession session=request.getSession();
+      String countKey=filter+paramMap.toString()+(postFilter==null ? "" : request.getQueryString());
+      SearchSummary summary=(SearchSummary)session.getAttribute(SEARCH_SUMMARY_ATTRIBUTE);
+      long now=System.currentTimeMillis();
+      if((summary!=null)&&summary.key.equals(countKey)&&((now-summary.time)<COUNT_CACHE_MILLIS)){
+        rEncounters.setCachedSize(summary.count);
+      }
+      else{
+        summary=new SearchSummary(countKey, now, rEncounters.size());
+        session.setAttribute(SEARCH_SUMMARY_ATTRIBUTE, summary);
+      }
+      request.setAttribute(SEARCH_SUMMARY_ATTRIBUTE, summary);
+    }
+
+    return (new EncounterQueryResult(rEncounters,filter,prettyPrint.toString()));
+  }
+
+  /**
+   * Returns the encounters of a page of the result of processQueryPaged, from index from up to, but not including,
+   * index to. The page may have fewer rows than the result's size() says, if that is a count cached in the session and
+   * encounters have since left the result; the cached count is then dropped so that the next page counts it again.
+   */
+  public static List<Encounter> getPage(HttpServletRequest request, List<Encounter> rEncounters, int from, int to){
+    if(!(rEncounters instanceof PagedQueryList)){
+      to=Math.min(to, rEncounters.size());
+      return (from<to) ? rEncounters.subList(Math.max(0, from), to) : new ArrayList<Encounter>();
+    }
+    PagedQueryList<Encounter> paged=(PagedQueryList<Encounter>)rEncounters;
+    boolean counted=paged.isSizeKnown();
+    List<Encounter> page=paged.getRange(from, to);
+    if(counted&&!paged.isSizeKnown()){
+      //the page came back short of the cached count
+      HttpSession session=request.getSession(false);
+      if(session!=null){
+        session.removeAttribute(SEARCH_SUMMARY_ATTRIBUTE);
       }
+      request.removeAttribute(SEARCH_SUMMARY_ATTRIBUTE);
+    }
+    return page;
+  }
+
+  /**
+   * Returns the number of identified unique, unidentified and daily duplicate encounters in the result of
+   * processQueryPaged, in that order. They are computed over the whole result, with a projection query unless it is
+   * post-filtered, so pages should only ask for them when they show them; with a cached count they are computed once
+   * per search rather than once per page.
+   */
+  public static int[] getSightingCounts(HttpServletRequest request, List<Encounter> rEncounters){
+    SearchSummary summary=(SearchSummary)request.getAttribute(SEARCH_SUMMARY_ATTRIBUTE);
+    if((summary!=null)&&(summary.sightingCounts!=null)){
+      return summary.sightingCounts;
+    }
 
-	//end photo filename filtering
+    List<Object> sightings;
+    if((rEncounters instanceof PagedQueryList)&&(!((PagedQueryList<Encounter>)rEncounters).hasPostFilter())){
+      //project just the fields needed rather than loading every encounter
+      sightings=((PagedQueryList<Encounter>)rEncounters).getProjection("individualID, year, month, day");
+    }
+    else{
+      sightings=new ArrayList<Object>();
+      for(int q=0;q<rEncounters.size();q++){
+        Encounter rEnc=rEncounters.get(q);
+        sightings.add(new Object[]{rEnc.getIndividualID(), rEnc.getYear(), rEnc.getMonth(), rEnc.getDay()});
+      }
+    }
+    int[] counts=new int[3];
+    HashSet<String> uniqueEncounters=new HashSet<String>();
+    for(int q=0;q<sightings.size();q++){
+      Object[] sighting=(Object[])sightings.get(q);
+      if((sighting[0]!=null)&&(!sighting[0].equals("Unassigned"))){
+        String assemblage=sighting[0]+":"+sighting[1]+":"+sighting[2]+":"+sighting[3];
+        if(uniqueEncounters.add(assemblage)){counts[0]++;}
+        else{counts[2]++;}
+      }
+      else{counts[1]++;}
+    }
 
-  	query.closeAll();
+    if(summary!=null){
+      summary.sightingCounts=counts;
+      //set again so that a session that is replicated or persisted stores the counts too
+      HttpSession session=request.getSession(false);
+      if((session!=null)&&(session.getAttribute(SEARCH_SUMMARY_ATTRIBUTE)==summary)){
+        session.setAttribute(SEARCH_SUMMARY_ATTRIBUTE, summary);
+      }
+    }
+    return counts;
+  }
 
+  /**
+   * Logs, for each encounter owned by a user who has an approved collaboration with the current user, that the current
+   * user has seen it in the results of the query described by queryPrettyPrint.
+   */
+  public static void logCollaborationAccess(HttpServletRequest request, List<Encounter> rEncounters, String queryPrettyPrint){
+		String currentUser = null;
+		if (request.getUserPrincipal() != null) currentUser = request.getUserPrincipal().getName();
+		if ((currentUser == null) || currentUser.equals("")) return;
 
 		//silo security logging
 		ArrayList collabs = Collaboration.collaborationsForCurrentUser(request);
@@ -1365,7 +1359,7 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
 					Writer logw = null;
 					try {
 						logw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(userDir, "collaboration.log"), true)));
-						logw.write(now.getTime() + "\t" + currentUser + "\t" + rEnc.getCatalogNumber() + "\t" + url + "\t" + prettyPrint.toString() + "\n");
+						logw.write(now.getTime() + "\t" + currentUser + "\t" + rEnc.getCatalogNumber() + "\t" + url + "\t" + queryPrettyPrint + "\n");
 					} catch (IOException ex) {
 						System.out.println(ex);
 					} finally {
@@ -1374,16 +1368,76 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
 				}
 			}
 		}
+  }
 
-    return (new EncounterQueryResult(rEncounters,filter,prettyPrint.toString()));
+  /**
+   * Streaming counterpart of processQuery. Rather than loading every matching Encounter into a Vector, the returned
+   * iterator reads the results in pages of pageSize and releases each page before fetching the next one.
+   * Collaboration logging is not performed, so callers should only use this for exports that check
+   * Encounter.canUserAccess on each row.
+   */
+  public static EncounterQueryIterator processQueryIterator(Shepherd myShepherd, HttpServletRequest request, String order, int pageSize){
+    StringBuffer prettyPrint=new StringBuffer("");
+    Map<String,Object> paramMap = new HashMap<String, Object>();
+    String filter=queryStringBuilder(myShepherd, request, prettyPrint, paramMap);
+    appendPostFilterPrettyPrint(request, prettyPrint);
+    return new EncounterQueryIterator(myShepherd, request, filter, order, paramMap, prettyPrint.toString(), pageSize);
+  }
 
+  private static boolean hasPostFilters(HttpServletRequest request){
+    return ((request.getParameter("resightOnly")!=null)&&(request.getParameter("numResights")!=null))
+      || ((request.getParameter("filenameField")!=null)&&(!request.getParameter("filenameField").equals("")));
   }
 
+  /**
+   * Applies the search filters that cannot be expressed in JDOQL (resighting count and photo filename) to a single Encounter.
+   */
+  static boolean passesPostFilters(Shepherd myShepherd, HttpServletRequest request, Encounter rEnc){
 
-  private static String processTagFilters(HttpServletRequest request, StringBuffer prettyPrint) {
+    //filter for encounters of MarkedIndividuals that have been resighted
+    if((request.getParameter("resightOnly")!=null)&&(request.getParameter("numResights")!=null)) {
+      int numResights=1;
+      try{
+        numResights=(new Integer(request.getParameter("numResights"))).intValue();
+      }
+      catch(NumberFormatException nfe) {}
+      MarkedIndividual s=myShepherd.getMarkedIndividual(rEnc.isAssignedToMarkedIndividual());
+      if((s==null)||(s.totalEncounters()<numResights)) {
+        return false;
+      }
+    }
+
+    //photo filename filter
+    if((request.getParameter("filenameField")!=null)&&(!request.getParameter("filenameField").equals(""))) {
+      //clean the input string to create its equivalent as if it had been submitted through the web form
+      String nameString=ServletUtilities.cleanFileName(ServletUtilities.preventCrossSiteScriptingAttacks(request.getParameter("filenameField").trim()));
+      if(!rEnc.getAdditionalImageNames().contains(nameString)){
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static void appendPostFilterPrettyPrint(HttpServletRequest request, StringBuffer prettyPrint){
+    if((request.getParameter("resightOnly")!=null)&&(request.getParameter("numResights")!=null)) {
+      try{
+        int numResights=(new Integer(request.getParameter("numResights"))).intValue();
+        prettyPrint.append("numResights is > "+numResights+".<br />");
+      }
+      catch(NumberFormatException nfe) {nfe.printStackTrace();}
+    }
+    if((request.getParameter("filenameField")!=null)&&(!request.getParameter("filenameField").equals(""))) {
+      String nameString=ServletUtilities.cleanFileName(ServletUtilities.preventCrossSiteScriptingAttacks(request.getParameter("filenameField").trim()));
+      prettyPrint.append("filenameField contains: \""+nameString+"\"<br />");
+    }
+  }
+
+
+  private static String processTagFilters(HttpServletRequest request, StringBuffer prettyPrint, Map<String, Object> paramMap) {
     StringBuilder sb = new StringBuilder();
-    sb.append(processAcousticTagFilter(request, prettyPrint));
-    String satelliteTagFilter = processSatelliteTagFilter(request, prettyPrint);
+    sb.append(processAcousticTagFilter(request, prettyPrint, paramMap));
+    String satelliteTagFilter = processSatelliteTagFilter(request, prettyPrint, paramMap);
     if (satelliteTagFilter.length() > 0) {
       if (sb.length() > 0) {
         sb.append(" && ");
@@ -1395,7 +1449,7 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
 
 
   private static String processSatelliteTagFilter(HttpServletRequest request,
-      StringBuffer prettyPrint) {
+      StringBuffer prettyPrint, Map<String, Object> paramMap) {
     StringBuilder sb = new StringBuilder();
     String name = request.getParameter("satelliteTagName");
     if (name != null && name.length() > 0 && !"None".equals(name)) {
@@ -1404,7 +1458,7 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
       prettyPrint.append("<br/>");
       sb.append('(');
       sb.append("satelliteTag.name == ");
-      sb.append(Util.quote(name));
+      sb.append(addParameter(paramMap, "satelliteTagName", name));
       sb.append(')');
     }
     String serialNumber = request.getParameter("satelliteTagSerial");
@@ -1417,7 +1471,7 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
       }
       sb.append('(');
       sb.append("satelliteTag.serialNumber == ");
-      sb.append(Util.quote(serialNumber));
+      sb.append(addParameter(paramMap, "satelliteTagSerial", serialNumber));
       sb.append(')');
     }
     String argosPttNumber = request.getParameter("satelliteTagArgosPttNumber");
@@ -1430,14 +1484,14 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
       }
       sb.append('(');
       sb.append("satelliteTag.argosPttNumber == ");
-      sb.append(Util.quote(argosPttNumber));
+      sb.append(addParameter(paramMap, "satelliteTagArgosPttNumber", argosPttNumber));
       sb.append(')');
     }
     return sb.toString();
   }
 
   private static String processAcousticTagFilter(HttpServletRequest request,
-      StringBuffer prettyPrint) {
+      StringBuffer prettyPrint, Map<String, Object> paramMap) {
     StringBuilder tagFilter = new StringBuilder();
     String acousticTagSerial = request.getParameter("acousticTagSerial");
     if (acousticTagSerial != null && acousticTagSerial.length() > 0) {
@@ -1446,7 +1500,7 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
       prettyPrint.append("<br/>");
       tagFilter.append('(');
       tagFilter.append("acousticTag.serialNumber == ");
-      tagFilter.append(Util.quote(acousticTagSerial));
+      tagFilter.append(addParameter(paramMap, "acousticTagSerial", acousticTagSerial));
       tagFilter.append(')');
     }
     String acousticTagId = request.getParameter("acousticTagId");
@@ -1459,7 +1513,7 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
       }
       tagFilter.append('(');
       tagFilter.append("acousticTag.idNumber == ");
-      tagFilter.append(Util.quote(acousticTagId));
+      tagFilter.append(addParameter(paramMap, "acousticTagId", acousticTagId));
       tagFilter.append(')');
     }
     return tagFilter.toString();
@@ -1480,19 +1534,81 @@ This code is no longer necessary with Charles Overbeck's new multi-measurement f
     return sb.toString();
   }
 
-  private static String updateParametersDeclaration(
-      String parameterDeclaration, String typeAndVariable) {
-    StringBuilder sb = new StringBuilder(parameterDeclaration);
-    if (parameterDeclaration.length() == 0) {
-      sb.append(" PARAMETERS ");
+  /**
+   * Stores a value entered in the search form in paramMap and returns the name of the query parameter that stands for it.
+   * Values are never written into the JDOQL itself, so searches that differ only in the values entered produce the same
+   * query template and share one compiled query plan.
+   */
+  private static String addParameter(Map<String, Object> paramMap, String prefix, Object value) {
+    String name = prefix;
+    int suffix = 1;
+    while (paramMap.containsKey(name)) {
+      name = prefix + suffix;
+      suffix++;
     }
-    else {
-      sb.append(", ");
+    paramMap.put(name, value);
+    return name;
+  }
+
+  /**
+   * Returns the non-blank values of a multi-valued search field for use as a collection parameter, adding each to prettyPrint.
+   */
+  private static List<String> getListValues(String[] values, StringBuffer prettyPrint) {
+    ArrayList<String> list = new ArrayList<String>();
+    for (int i = 0; i < values.length; i++) {
+      String value = values[i].replaceAll("%20", " ").trim();
+      if (!value.equals("")) {
+        list.add(value);
+        prettyPrint.append(value + " ");
+      }
+    }
+    return list;
+  }
+
+  private static Double parseDoubleParameter(String value) {
+    try {
+      return new Double(value);
+    }
+    catch (NumberFormatException nfe) {
+      System.out.println("EncounterQueryProcessor could not parse the search value " + value + " as a number.");
+      return new Double(Double.NaN);
+    }
+  }
+
+  /**
+   * Declares the parameters in paramMap, in name order so that the same set of filters always produces the same query.
+   */
+  static String getParametersDeclaration(Map<String, Object> paramMap) {
+    if (paramMap.isEmpty()) {
+      return "";
+    }
+    StringBuilder sb = new StringBuilder(" PARAMETERS ");
+    boolean first = true;
+    for (String name : new TreeSet<String>(paramMap.keySet())) {
+      if (!first) {
+        sb.append(", ");
+      }
+      sb.append(getParameterType(paramMap.get(name)));
+      sb.append(' ');
+      sb.append(name);
+      first = false;
     }
-    sb.append(typeAndVariable);
     return sb.toString();
   }
 
+  private static String getParameterType(Object value) {
+    if (value instanceof Collection) {
+      return "java.util.Collection";
+    }
+    if (value instanceof Date) {
+      return "java.util.Date";
+    }
+    if (value == null) {
+      return "String";
+    }
+    return value.getClass().getName();
+  }
+
 
 
 }
@@ -19,11 +19,13 @@
 
 package org.ecocean;
 
+import java.util.List;
 import java.util.Vector;
 
 public class EncounterQueryResult {
 
   private Vector<Encounter> result;
+  private List<Encounter> resultList;
   private String jdoqlRepresentation;
   private String queryPrettyPrint;
 
@@ -31,12 +33,42 @@ public class EncounterQueryResult {
     this.result = result;
     this.jdoqlRepresentation = jdoqlRepresentation;
     this.queryPrettyPrint = queryPrettyPrint;
+    this.resultList = result;
   }
 
+  /**
+   * @param resultList the matching encounters, typically a lazily loaded PagedQueryList
+   */
+  public EncounterQueryResult(List<Encounter> resultList, String jdoqlRepresentation, String queryPrettyPrint) {
+    this.resultList = resultList;
+    this.jdoqlRepresentation = jdoqlRepresentation;
+    this.queryPrettyPrint = queryPrettyPrint;
+  }
+
+  /**
+   * Returns every matching encounter. If the result was created lazily, this loads the whole result with one query;
+   * callers that only display part of it should use getResultList() instead.
+   */
   public Vector<Encounter> getResult() {
+    if (result == null) {
+      //a PagedQueryList evicts each page as it moves to the next, so load the whole result with one query instead
+      if (resultList instanceof PagedQueryList) {
+        result = new Vector<Encounter>(((PagedQueryList<Encounter>) resultList).getAll());
+      }
+      else {
+        result = new Vector<Encounter>(resultList);
+      }
+    }
     return result;
   }
 
+  /**
+   * Returns the matching encounters without loading those that are never accessed.
+   */
+  public List<Encounter> getResultList() {
+    return resultList;
+  }
+
   public String getJDOQLRepresentation() {
     return jdoqlRepresentation;
   }
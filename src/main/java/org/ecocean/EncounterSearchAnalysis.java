@@ -0,0 +1,297 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.ecocean.Util.MeasurementDesc;
+import org.ecocean.genetics.BiologicalMeasurement;
+
+/**
+ * Computes the charts and summaries of encounters/searchResultsAnalysis.jsp for a set of encounter search results in a
+ * single pass: haplotype, sex, species, country and assigned user distributions, the discovery curve of marked
+ * individuals, weekly frequency, and measurement and biological measurement statistics overall and by sex.
+ * <p/>
+ * When the results are a PagedQueryList whose query can be grouped, the sex, species, country and user counts are
+ * computed by GROUP BY queries in the database instead, and the pass over the encounters skips them.
+ *
+ * @see IndividualSearchAnalysis
+ */
+public class EncounterSearchAnalysis {
+
+  public static final String MALE = "male";
+  public static final String FEMALE = "female";
+  public static final String UNKNOWN = "unknown";
+
+  private FacetCounts haplotypes;
+  private FacetCounts sexes;
+  private FacetCounts species;
+  private FacetCounts countries;
+  private FacetCounts users;
+
+  //discovery curve points: number of encounters read when each new marked individual appeared, and the total so far
+  private int[] discoveryEncounters = new int[64];
+  private int[] discoveryIndividuals = new int[64];
+  private int numDiscoveryPoints = 0;
+  private HashSet<String> markedIndividuals = new HashSet<String>();
+
+  //encounters per week of the year, indexed 1 to 53
+  private int[] weeklyFrequency = new int[54];
+
+  private List<MeasurementDesc> measurementTypes;
+  private SummaryStatistics[][] measurementStatistics;
+  private List<MeasurementDesc> bioMeasurementTypes;
+  private SummaryStatistics[][] bioMeasurementStatistics;
+
+  private int numEncounters = 0;
+  private int numBlocked = 0;
+  private boolean facetsPushedDown = false;
+
+  //indices of the second dimension of the statistics arrays
+  private static final int ALL = 0;
+  private static final int MALES = 1;
+  private static final int FEMALES = 2;
+
+  public EncounterSearchAnalysis(List<String> haplotypes, List<String> genusSpecies, List<String> countries, List<String> usernames, List<MeasurementDesc> measurementTypes, List<MeasurementDesc> bioMeasurementTypes) {
+    this.haplotypes = new FacetCounts(haplotypes, false);
+    this.sexes = new FacetCounts(Arrays.asList(MALE, FEMALE, UNKNOWN), false);
+    this.species = new FacetCounts(genusSpecies, false);
+    this.countries = new FacetCounts(countries, false);
+    this.users = new FacetCounts(usernames, false);
+    this.measurementTypes = measurementTypes;
+    this.measurementStatistics = newStatistics(measurementTypes.size());
+    this.bioMeasurementTypes = bioMeasurementTypes;
+    this.bioMeasurementStatistics = newStatistics(bioMeasurementTypes.size());
+  }
+
+  /**
+   * Creates an analysis set up with the haplotypes, species, countries, users and measurement types of a context.
+   */
+  public static EncounterSearchAnalysis forContext(Shepherd myShepherd, String context) {
+    ArrayList<String> genusSpecies = new ArrayList<String>();
+    for (String thisSpecies : CommonConfiguration.getSequentialPropertyValues("genusSpecies", context)) {
+      StringTokenizer tokenizer = new StringTokenizer(thisSpecies, " ");
+      if (tokenizer.countTokens() >= 2) {
+        thisSpecies = tokenizer.nextToken() + " " + tokenizer.nextToken().replaceAll(",", "").replaceAll("_", " ");
+      }
+      genusSpecies.add(thisSpecies);
+    }
+    ArrayList<String> usernames = new ArrayList<String>();
+    for (User user : myShepherd.getAllUsers()) {
+      usernames.add(user.getUsername());
+    }
+    return new EncounterSearchAnalysis(myShepherd.getAllHaplotypes(), genusSpecies, myShepherd.getAllCountries(), usernames,
+      Util.findMeasurementDescs("en", context), Util.findBiologicalMeasurementDescs("en", context));
+  }
+
+  /**
+   * Analyzes the encounters in one pass. A PagedQueryList is read page by page, so only one page is in memory at a time.
+   *
+   * @param request if not null, encounters the current user may not access are counted in getNumBlocked()
+   */
+  public void analyze(List<Encounter> encounters, HttpServletRequest request) {
+    if ((encounters instanceof PagedQueryList) && ((PagedQueryList<Encounter>) encounters).isGroupable()) {
+      try {
+        pushDownFacets((PagedQueryList<Encounter>) encounters);
+        facetsPushedDown = true;
+      }
+      catch (Exception e) {
+        System.out.println("EncounterSearchAnalysis could not group the search query in the database, so it will count the facets itself.");
+        e.printStackTrace();
+        sexes.clear();
+        species.clear();
+        countries.clear();
+        users.clear();
+      }
+    }
+    int size = encounters.size();
+    for (int i = 0; i < size; i++) {
+      Encounter enc = encounters.get(i);
+      if ((request != null) && (!enc.canUserAccess(request))) {
+        numBlocked++;
+      }
+      add(enc);
+    }
+  }
+
+  /**
+   * Adds a single encounter to the analysis.
+   */
+  public void add(Encounter thisEnc) {
+    numEncounters++;
+
+    //discovery curve
+    String individualID = thisEnc.getIndividualID();
+    if ((individualID != null) && (!individualID.equals("Unassigned")) && (markedIndividuals.add(individualID.trim()))) {
+      addDiscoveryPoint(numEncounters, markedIndividuals.size());
+    }
+
+    //weekly frequency
+    if ((thisEnc.getYear() > 0) && (thisEnc.getMonth() > 0) && (thisEnc.getDay() > 0)) {
+      GregorianCalendar cal = new GregorianCalendar(thisEnc.getYear(), thisEnc.getMonth(), thisEnc.getDay());
+      weeklyFrequency[cal.get(Calendar.WEEK_OF_YEAR)]++;
+    }
+
+    if (thisEnc.getHaplotype() != null) {
+      haplotypes.increment(thisEnc.getHaplotype().trim());
+    }
+
+    int sexIndex = -1;
+    if (MALE.equals(thisEnc.getSex())) {
+      sexIndex = MALES;
+    }
+    else if (FEMALE.equals(thisEnc.getSex())) {
+      sexIndex = FEMALES;
+    }
+
+    if (!facetsPushedDown) {
+      sexes.increment(getSexFacet(thisEnc.getSex()));
+      if ((thisEnc.getGenus() != null) && (thisEnc.getSpecificEpithet() != null)) {
+        species.increment(thisEnc.getGenus() + " " + thisEnc.getSpecificEpithet());
+      }
+      countries.increment(thisEnc.getCountry());
+      users.increment(thisEnc.getSubmitterID());
+    }
+
+    for (int b = 0; b < measurementStatistics.length; b++) {
+      Measurement measurement = thisEnc.getMeasurement(measurementTypes.get(b).getType());
+      if (measurement != null) {
+        addValue(measurementStatistics[b], sexIndex, measurement.getValue().doubleValue());
+      }
+    }
+    for (int b = 0; b < bioMeasurementStatistics.length; b++) {
+      BiologicalMeasurement measurement = thisEnc.getBiologicalMeasurement(bioMeasurementTypes.get(b).getType());
+      if (measurement != null) {
+        addValue(bioMeasurementStatistics[b], sexIndex, measurement.getValue().doubleValue());
+      }
+    }
+  }
+
+  private void pushDownFacets(PagedQueryList<Encounter> encounters) {
+    for (Object row : encounters.getProjection("sex, count(this)", "sex")) {
+      Object[] values = (Object[]) row;
+      sexes.add(getSexFacet((String) values[0]), ((Number) values[1]).intValue());
+    }
+    for (Object row : encounters.getProjection("genus, specificEpithet, count(this)", "genus, specificEpithet")) {
+      Object[] values = (Object[]) row;
+      if ((values[0] != null) && (values[1] != null)) {
+        species.add(values[0] + " " + values[1], ((Number) values[2]).intValue());
+      }
+    }
+    for (Object row : encounters.getProjection("country, count(this)", "country")) {
+      Object[] values = (Object[]) row;
+      countries.add((String) values[0], ((Number) values[1]).intValue());
+    }
+    for (Object row : encounters.getProjection("submitterID, count(this)", "submitterID")) {
+      Object[] values = (Object[]) row;
+      users.add((String) values[0], ((Number) values[1]).intValue());
+    }
+  }
+
+  private static String getSexFacet(String sex) {
+    if (MALE.equals(sex) || FEMALE.equals(sex)) {
+      return sex;
+    }
+    return UNKNOWN;
+  }
+
+  private void addDiscoveryPoint(int encounters, int individuals) {
+    if (numDiscoveryPoints == discoveryEncounters.length) {
+      discoveryEncounters = Arrays.copyOf(discoveryEncounters, numDiscoveryPoints * 2);
+      discoveryIndividuals = Arrays.copyOf(discoveryIndividuals, numDiscoveryPoints * 2);
+    }
+    discoveryEncounters[numDiscoveryPoints] = encounters;
+    discoveryIndividuals[numDiscoveryPoints] = individuals;
+    numDiscoveryPoints++;
+  }
+
+  private static void addValue(SummaryStatistics[] statistics, int sexIndex, double value) {
+    statistics[ALL].addValue(value);
+    if (sexIndex > 0) {
+      statistics[sexIndex].addValue(value);
+    }
+  }
+
+  private static SummaryStatistics[][] newStatistics(int numTypes) {
+    SummaryStatistics[][] statistics = new SummaryStatistics[numTypes][3];
+    for (int b = 0; b < numTypes; b++) {
+      for (int s = 0; s < 3; s++) {
+        statistics[b][s] = new SummaryStatistics();
+      }
+    }
+    return statistics;
+  }
+
+  public int getNumEncounters() {return numEncounters;}
+
+  public int getNumBlocked() {return numBlocked;}
+
+  public FacetCounts getHaplotypes() {return haplotypes;}
+
+  /** Counts of "male", "female" and "unknown", which includes encounters with no sex recorded. */
+  public FacetCounts getSexes() {return sexes;}
+
+  /** Counts by "Genus specificEpithet". */
+  public FacetCounts getSpecies() {return species;}
+
+  public FacetCounts getCountries() {return countries;}
+
+  /** Counts by submitterID. */
+  public FacetCounts getUsers() {return users;}
+
+  public int getNumMarkedIndividuals() {return markedIndividuals.size();}
+
+  public int getNumDiscoveryPoints() {return numDiscoveryPoints;}
+
+  public int getDiscoveryPointEncounters(int i) {return discoveryEncounters[i];}
+
+  public int getDiscoveryPointIndividuals(int i) {return discoveryIndividuals[i];}
+
+  /**
+   * @param week the week of the year, from 1 to 53
+   */
+  public int getWeeklyFrequency(int week) {return weeklyFrequency[week];}
+
+  public List<MeasurementDesc> getMeasurementTypes() {return measurementTypes;}
+
+  public List<MeasurementDesc> getBioMeasurementTypes() {return bioMeasurementTypes;}
+
+  public SummaryStatistics getMeasurementStatistics(int typeIndex) {return measurementStatistics[typeIndex][ALL];}
+
+  public SummaryStatistics getMaleMeasurementStatistics(int typeIndex) {return measurementStatistics[typeIndex][MALES];}
+
+  public SummaryStatistics getFemaleMeasurementStatistics(int typeIndex) {return measurementStatistics[typeIndex][FEMALES];}
+
+  public SummaryStatistics getBioMeasurementStatistics(int typeIndex) {return bioMeasurementStatistics[typeIndex][ALL];}
+
+  public SummaryStatistics getMaleBioMeasurementStatistics(int typeIndex) {return bioMeasurementStatistics[typeIndex][MALES];}
+
+  public SummaryStatistics getFemaleBioMeasurementStatistics(int typeIndex) {return bioMeasurementStatistics[typeIndex][FEMALES];}
+
+}
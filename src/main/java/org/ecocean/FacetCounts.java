@@ -0,0 +1,122 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Counts occurrences of String values, such as the haplotypes or countries of a set of search results.
+ * <p/>
+ * Each distinct value is given a slot in an <code>int[]</code> the first time it is seen, so counting does not box or
+ * re-insert an Integer for every increment the way a <code>Hashtable&lt;String,Integer&gt;</code> does.
+ * Values are reported in the order their slots were created.
+ */
+public class FacetCounts {
+
+  private HashMap<String, Integer> slots = new HashMap<String, Integer>();
+  private ArrayList<String> values = new ArrayList<String>();
+  private int[] counts = new int[16];
+  private boolean acceptsNewValues;
+
+  /**
+   * Creates counts that accept any value.
+   */
+  public FacetCounts() {
+    this.acceptsNewValues = true;
+  }
+
+  /**
+   * Creates counts for a fixed set of values, each starting at zero.
+   *
+   * @param acceptsNewValues if false, values not in knownValues are silently ignored
+   */
+  public FacetCounts(List<String> knownValues, boolean acceptsNewValues) {
+    this.acceptsNewValues = true;
+    for (String value : knownValues) {
+      if (value != null) {
+        getSlot(value);
+      }
+    }
+    this.acceptsNewValues = acceptsNewValues;
+  }
+
+  public void increment(String value) {
+    add(value, 1);
+  }
+
+  public void add(String value, int amount) {
+    if (value == null) {
+      return;
+    }
+    int slot = getSlot(value);
+    if (slot >= 0) {
+      counts[slot] += amount;
+    }
+  }
+
+  public boolean contains(String value) {
+    return slots.containsKey(value);
+  }
+
+  /**
+   * Returns the count of a value, or 0 if it has not been counted.
+   */
+  public int get(String value) {
+    Integer slot = slots.get(value);
+    return (slot == null) ? 0 : counts[slot.intValue()];
+  }
+
+  public List<String> getValues() {
+    return values;
+  }
+
+  public int getTotal() {
+    int total = 0;
+    for (int i = 0; i < values.size(); i++) {
+      total += counts[i];
+    }
+    return total;
+  }
+
+  public void clear() {
+    Arrays.fill(counts, 0);
+  }
+
+  private int getSlot(String value) {
+    Integer slot = slots.get(value);
+    if (slot != null) {
+      return slot.intValue();
+    }
+    if (!acceptsNewValues) {
+      return -1;
+    }
+    int newSlot = values.size();
+    if (newSlot == counts.length) {
+      counts = Arrays.copyOf(counts, counts.length * 2);
+    }
+    values.add(value);
+    slots.put(value, Integer.valueOf(newSlot));
+    return newSlot;
+  }
+
+}
@@ -0,0 +1,336 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.jdo.Query;
+import javax.jdo.listener.DeleteLifecycleListener;
+import javax.jdo.listener.InstanceLifecycleEvent;
+import javax.jdo.listener.StoreLifecycleListener;
+
+import org.ecocean.genetics.Locus;
+import org.ecocean.genetics.MicrosatelliteMarkersAnalysis;
+import org.ecocean.genetics.MitochondrialDNAAnalysis;
+import org.ecocean.genetics.SexAnalysis;
+
+/**
+ * The distinct values of the encounter and genetic fields offered as choices by the search forms, such as
+ * locationIDs, countries and haplotypes.
+ * <p/>
+ * One index is kept per context. It is built with one projection query over the encounters, and one distinct query
+ * for each genetic field, the first time it is needed. After that, each Shepherd collects the encounters its
+ * transaction stores or deletes, and whether it touched genetic analyses, with a {@link Changes} listener, and
+ * passes them to the index when the transaction commits. The genetic values are then reloaded on next use.
+ * <p/>
+ * Values are counted exactly as stored, since searches match them exactly, so spellings that differ only in case are
+ * each listed. They are ordered without regard to case, with such spellings next to each other.
+ */
+public class FacetIndex extends ContextIndex {
+
+  //the Encounter fields whose distinct values are kept
+  public static final String[] ENCOUNTER_FIELDS = {"locationID", "country", "genus", "specificEpithet", "behavior", "verbatimEventDate", "recordedBy", "patterningCode", "lifeStage"};
+
+  private static final Registry<FacetIndex> indexes = new Registry<FacetIndex>() {
+    protected FacetIndex build(Shepherd myShepherd) {
+      return FacetIndex.build(myShepherd);
+    }
+  };
+
+  //orders values ignoring case, then tells apart those that differ only in case
+  static final Comparator<String> VALUE_ORDER = new Comparator<String>() {
+    public int compare(String a, String b) {
+      int c = String.CASE_INSENSITIVE_ORDER.compare(a, b);
+      return (c != 0) ? c : a.compareTo(b);
+    }
+  };
+
+  //catalogNumber -> its values of ENCOUNTER_FIELDS
+  private HashMap<String, String[]> encounters = new HashMap<String, String[]>();
+  //one map per field of ENCOUNTER_FIELDS: value -> number of encounters with the value
+  private ArrayList<TreeMap<String, int[]>> counts = new ArrayList<TreeMap<String, int[]>>();
+  private ArrayList<String> haplotypes;
+  private ArrayList<String> geneticSexes;
+  private ArrayList<String> loci;
+  private boolean geneticsStale = true;
+
+  FacetIndex() {
+    for (int i = 0; i < ENCOUNTER_FIELDS.length; i++) {
+      counts.add(new TreeMap<String, int[]>(VALUE_ORDER));
+    }
+  }
+
+  /**
+   * Returns the index of the Shepherd's context, building it, or reloading its genetic values, within the Shepherd's
+   * current transaction if needed.
+   */
+  public static FacetIndex getIndex(Shepherd myShepherd) {
+    return indexes.getIndex(myShepherd);
+  }
+
+  protected void refresh(Shepherd myShepherd) {
+    if (isGeneticsStale()) {
+      loadGenetics(myShepherd);
+    }
+  }
+
+  /**
+   * Records the encounters a commit created or changed, as returned by getFacetValues(), and those it deleted.
+   */
+  public static void updateEncounters(String context, Map<String, String[]> changed, Collection<String> removed) {
+    FacetIndex index = getBuiltIndex(context);
+    if (index != null) {
+      for (Map.Entry<String, String[]> entry : changed.entrySet()) {
+        index.setEncounter(entry.getKey(), entry.getValue());
+      }
+      for (String catalogNumber : removed) {
+        index.setEncounter(catalogNumber, null);
+      }
+    }
+  }
+
+  /**
+   * Marks the haplotypes, genetic sexes and loci of a context to be reloaded the next time they are needed.
+   */
+  public static void geneticsChanged(String context) {
+    FacetIndex index = getBuiltIndex(context);
+    if (index != null) {
+      index.setGeneticsStale();
+    }
+  }
+
+  private static FacetIndex getBuiltIndex(String context) {
+    return indexes.getBuiltIndex(context);
+  }
+
+  /**
+   * Returns the encounter's values of ENCOUNTER_FIELDS, in that order.
+   */
+  public static String[] getFacetValues(Encounter enc) {
+    return new String[]{enc.getLocationID(), enc.getCountry(), enc.getGenus(), enc.getSpecificEpithet(), enc.getBehavior(), enc.getVerbatimEventDate(), enc.getRecordedBy(), enc.getPatterningCode(), enc.getLifeStage()};
+  }
+
+  private static FacetIndex build(Shepherd myShepherd) {
+    FacetIndex index = new FacetIndex();
+    StringBuffer result = new StringBuffer("catalogNumber");
+    for (int i = 0; i < ENCOUNTER_FIELDS.length; i++) {
+      result.append(", " + ENCOUNTER_FIELDS[i]);
+    }
+    Query query = myShepherd.getPM().newQuery("SELECT " + result + " FROM org.ecocean.Encounter");
+    try {
+      Collection c = (Collection) query.execute();
+      Iterator it = c.iterator();
+      while (it.hasNext()) {
+        Object[] row = (Object[]) it.next();
+        String[] values = new String[ENCOUNTER_FIELDS.length];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = (String) row[i + 1];
+        }
+        index.setEncounter((String) row[0], values);
+      }
+    }
+    catch (Exception e) {
+      System.out.println("Exception building the facet index!");
+      e.printStackTrace();
+    }
+    finally {
+      query.closeAll();
+    }
+    return index;
+  }
+
+  private void loadGenetics(Shepherd myShepherd) {
+    ArrayList<String> newHaplotypes = getDistinct(myShepherd, MitochondrialDNAAnalysis.class, "haplotype");
+    ArrayList<String> newGeneticSexes = getDistinct(myShepherd, SexAnalysis.class, "sex");
+    ArrayList<String> newLoci = getDistinct(myShepherd, Locus.class, "name");
+    synchronized (this) {
+      haplotypes = newHaplotypes;
+      geneticSexes = newGeneticSexes;
+      loci = newLoci;
+      geneticsStale = false;
+    }
+  }
+
+  private static ArrayList<String> getDistinct(Shepherd myShepherd, Class cls, String field) {
+    Query q = myShepherd.getPM().newQuery(cls);
+    q.setResult("distinct " + field);
+    q.setFilter(field + " != null");
+    q.setOrdering(field + " ascending");
+    try {
+      return new ArrayList<String>((Collection) q.execute());
+    }
+    catch (Exception e) {
+      System.out.println("Exception loading the distinct values of " + cls.getName() + "." + field + " for the facet index!");
+      e.printStackTrace();
+      return new ArrayList<String>();
+    }
+    finally {
+      q.closeAll();
+    }
+  }
+
+  synchronized boolean isGeneticsStale() {
+    return geneticsStale;
+  }
+
+  synchronized void setGeneticsStale() {
+    geneticsStale = true;
+  }
+
+  /**
+   * Replaces the values an encounter contributes to the index. Passing null removes it.
+   */
+  synchronized void setEncounter(String catalogNumber, String[] values) {
+    String[] old = encounters.remove(catalogNumber);
+    if (old != null) {
+      adjust(old, -1);
+    }
+    if (values != null) {
+      encounters.put(catalogNumber, values);
+      adjust(values, 1);
+    }
+  }
+
+  private void adjust(String[] values, int delta) {
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        continue;
+      }
+      TreeMap<String, int[]> fieldCounts = counts.get(i);
+      int[] count = fieldCounts.get(values[i]);
+      if (count == null) {
+        count = new int[1];
+        fieldCounts.put(values[i], count);
+      }
+      count[0] += delta;
+      if (count[0] <= 0) {
+        fieldCounts.remove(values[i]);
+      }
+    }
+  }
+
+  /**
+   * Returns the distinct non-null values of one of ENCOUNTER_FIELDS, in ascending order ignoring case.
+   */
+  public synchronized ArrayList<String> getValues(String field) {
+    for (int i = 0; i < ENCOUNTER_FIELDS.length; i++) {
+      if (ENCOUNTER_FIELDS[i].equals(field)) {
+        return new ArrayList<String>(counts.get(i).keySet());
+      }
+    }
+    throw new IllegalArgumentException("The facet index does not keep the values of " + field);
+  }
+
+  /**
+   * Returns the number of encounters with the value in one of ENCOUNTER_FIELDS.
+   */
+  public synchronized int getCount(String field, String value) {
+    for (int i = 0; i < ENCOUNTER_FIELDS.length; i++) {
+      if (ENCOUNTER_FIELDS[i].equals(field)) {
+        int[] count = counts.get(i).get(value);
+        return (count == null) ? 0 : count[0];
+      }
+    }
+    return 0;
+  }
+
+  public synchronized ArrayList<String> getHaplotypes() {
+    return (haplotypes == null) ? new ArrayList<String>() : new ArrayList<String>(haplotypes);
+  }
+
+  public synchronized ArrayList<String> getGeneticSexes() {
+    return (geneticSexes == null) ? new ArrayList<String>() : new ArrayList<String>(geneticSexes);
+  }
+
+  public synchronized ArrayList<String> getLoci() {
+    return (loci == null) ? new ArrayList<String>() : new ArrayList<String>(loci);
+  }
+
+  /**
+   * Collects the changes a PersistenceManager's transaction makes to the values the index keeps. Shepherd registers
+   * one for CLASSES on each PersistenceManager it opens, applies it after each commit, and clears it on rollback.
+   * The listener is only called for instances of those classes as they are flushed, so transactions that do not
+   * touch them pay nothing.
+   */
+  static class Changes implements StoreLifecycleListener, DeleteLifecycleListener {
+
+    static final Class[] CLASSES = {Encounter.class, MitochondrialDNAAnalysis.class, SexAnalysis.class, MicrosatelliteMarkersAnalysis.class, Locus.class};
+
+    private HashMap<String, String[]> changed = new HashMap<String, String[]>();
+    private ArrayList<String> removed = new ArrayList<String>();
+    private boolean geneticsChanged = false;
+
+    public void preStore(InstanceLifecycleEvent event) {
+      Object source = event.getSource();
+      if (source instanceof Encounter) {
+        Encounter enc = (Encounter) source;
+        changed.put(enc.getCatalogNumber(), getFacetValues(enc));
+      }
+      else {
+        geneticsChanged = true;
+      }
+    }
+
+    public void postStore(InstanceLifecycleEvent event) {
+    }
+
+    public void preDelete(InstanceLifecycleEvent event) {
+      Object source = event.getSource();
+      if (source instanceof Encounter) {
+        String catalogNumber = ((Encounter) source).getCatalogNumber();
+        changed.remove(catalogNumber);
+        removed.add(catalogNumber);
+      }
+      else {
+        geneticsChanged = true;
+      }
+    }
+
+    public void postDelete(InstanceLifecycleEvent event) {
+    }
+
+    /**
+     * Passes the collected changes to the index of the context, if it has been built, and clears them.
+     */
+    void apply(String context) {
+      if (!changed.isEmpty() || !removed.isEmpty()) {
+        updateEncounters(context, changed, removed);
+      }
+      if (geneticsChanged) {
+        geneticsChanged(context);
+      }
+      clear();
+    }
+
+    void clear() {
+      changed.clear();
+      removed.clear();
+      geneticsChanged = false;
+    }
+
+  }
+
+}
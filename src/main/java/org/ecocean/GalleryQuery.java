@@ -0,0 +1,369 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.Query;
+import javax.servlet.http.HttpServletRequest;
+
+import org.ecocean.servlet.ServletUtilities;
+
+/**
+ * Pages through the images and videos of a set of encounters with one ranged query per page and one COUNT query,
+ * with the keyword, filename and file type conditions of the thumbnail galleries evaluated in the datastore.
+ * <p/>
+ * For the results of an encounter search, the search's own filter is joined to <code>Encounter.images</code>, so the
+ * gallery follows the search ordering without loading the encounters at all. For any other set of encounters, their
+ * catalog numbers are passed as a collection parameter, at most MAX_ENCOUNTERS_PER_QUERY at a time: one grouped COUNT
+ * gives the images per encounter, and each page then loads only the images of the encounters it overlaps.
+ * <p/>
+ * Galleries are numbered from 1, like the startNum and endNum parameters of the thumbnail pages.
+ */
+public class GalleryQuery {
+
+  public static final int MAX_ENCOUNTERS_PER_QUERY = 1000;
+
+  //the same extensions, matched the same way, as Shepherd.isAcceptableImageFile and isAcceptableVideoFile
+  private static final String[] MEDIA_EXTENSIONS = new String[]{".jpg", ".gif", ".jpeg", ".jpe", ".bmp", ".png", ".mov", ".avi", "mpg", ".wmv", ".mp4", ".flv"};
+
+  private static final String SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE = "SELECT FROM org.ecocean.Encounter WHERE ";
+  private static final String IMAGE_VARIABLE = "galleryImage";
+
+  private Shepherd myShepherd;
+  private boolean matchesNothing = false;
+  private Map<String, Object> paramMap = new HashMap<String, Object>();
+
+  //join form: the query over encounters, projecting their images
+  private String joinQuery;
+  private String joinOrdering;
+
+  //list form: the media condition over SinglePhotoVideo, the encounters in gallery order, and their image counts
+  private String mediaFilter;
+  private List<String> encounterNumbers;
+  private int[] encounterCounts;
+
+  private int cachedCount = -1;
+
+  private GalleryQuery(Shepherd myShepherd) {
+    this.myShepherd = myShepherd;
+  }
+
+  /**
+   * Creates a gallery of the images of the given encounters.
+   *
+   * @param keywords readable or index names of keywords, any one of which an image must have; empty, or containing
+   * "None", to accept any image
+   * @param filename if not null, only images with this filename are accepted
+   */
+  public static GalleryQuery forEncounterNumbers(Shepherd myShepherd, List<String> encounterNumbers, String[] keywords, String filename) {
+    GalleryQuery gallery = new GalleryQuery(myShepherd);
+    gallery.mediaFilter = gallery.buildMediaFilter("", keywords, filename);
+    gallery.encounterNumbers = encounterNumbers;
+    return gallery;
+  }
+
+  /**
+   * Creates a gallery of the images of the encounters returned by an encounter iterator, in iteration order.
+   */
+  public static GalleryQuery forEncounters(Shepherd myShepherd, Iterator encounters, String[] keywords, String filename) {
+    ArrayList<String> encounterNumbers = new ArrayList<String>();
+    while (encounters.hasNext()) {
+      encounterNumbers.add(((Encounter) encounters.next()).getCatalogNumber());
+    }
+    return forEncounterNumbers(myShepherd, encounterNumbers, keywords, filename);
+  }
+
+  /**
+   * Creates a gallery of the images of the encounters matched by an encounter search, ordered as the search is.
+   * <p/>
+   * Searches whose filter joins through VARIABLES, or that have post filters, could return an image more than once
+   * from a join, so their encounters are read page by page and passed as catalog numbers instead.
+   */
+  public static GalleryQuery forEncounterSearch(Shepherd myShepherd, PagedQueryList<Encounter> encounters, String[] keywords, String filename) {
+    String filter = encounters.getFilter();
+    if ((!encounters.isGroupable()) || (!filter.startsWith(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE))) {
+      return forEncounters(myShepherd, encounters.iterator(), keywords, filename);
+    }
+
+    GalleryQuery gallery = new GalleryQuery(myShepherd);
+    gallery.paramMap.putAll(encounters.getParameters());
+    String condition = filter.substring(SELECT_FROM_ORG_ECOCEAN_ENCOUNTER_WHERE.length());
+    int parametersStart = condition.indexOf(" PARAMETERS ");
+    if (parametersStart != -1) {
+      condition = condition.substring(0, parametersStart);
+    }
+    String mediaCondition = gallery.buildMediaFilter(IMAGE_VARIABLE + ".", keywords, filename);
+
+    StringBuffer query = new StringBuffer("SELECT " + IMAGE_VARIABLE + " FROM org.ecocean.Encounter WHERE ");
+    if (!condition.trim().equals("")) {
+      query.append("(" + condition + ") && ");
+    }
+    query.append("images.contains(" + IMAGE_VARIABLE + ") && " + mediaCondition);
+    query.append(" VARIABLES org.ecocean.SinglePhotoVideo " + IMAGE_VARIABLE);
+    query.append(EncounterQueryProcessor.getParametersDeclaration(gallery.paramMap));
+    gallery.joinQuery = query.toString();
+    gallery.joinOrdering = encounters.getOrdering() + ", " + IMAGE_VARIABLE + ".dataCollectionEventID ascending";
+    return gallery;
+  }
+
+  /**
+   * Returns the filename filter of a thumbnail search request, or null if it does not have one.
+   */
+  public static String getFilename(HttpServletRequest request) {
+    if ((request.getParameter("filenameField") != null) && (!request.getParameter("filenameField").equals(""))) {
+      return ServletUtilities.cleanFileName(ServletUtilities.preventCrossSiteScriptingAttacks(request.getParameter("filenameField").trim()));
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of images and videos in the gallery.
+   */
+  public int count() {
+    if (cachedCount < 0) {
+      if (matchesNothing) {
+        cachedCount = 0;
+      }
+      else if (joinQuery != null) {
+        cachedCount = (int) executeCount(joinQuery, "count(" + IMAGE_VARIABLE + ")", paramMap);
+      }
+      else {
+        cachedCount = 0;
+        for (int count : getEncounterCounts()) {
+          cachedCount += count;
+        }
+      }
+    }
+    return cachedCount;
+  }
+
+  /**
+   * Returns the images and videos numbered startNum to endNum, inclusive.
+   */
+  public ArrayList<SinglePhotoVideo> getPage(int startNum, int endNum) {
+    ArrayList<SinglePhotoVideo> page = new ArrayList<SinglePhotoVideo>();
+    long from = Math.max(1, startNum) - 1;
+    long to = endNum;
+    if (matchesNothing || (to <= from)) {
+      return page;
+    }
+    if (joinQuery != null) {
+      page.addAll(executeRange(joinQuery, joinOrdering, paramMap, from, to));
+      return page;
+    }
+
+    //find the encounters whose images overlap the range, then load just those images
+    int[] counts = getEncounterCounts();
+    ArrayList<String> pageEncounters = new ArrayList<String>();
+    long firstOffset = -1;
+    long offset = 0;
+    for (int e = 0; (e < counts.length) && (offset < to); e++) {
+      if ((counts[e] > 0) && (offset + counts[e] > from)) {
+        if (firstOffset < 0) {
+          firstOffset = offset;
+        }
+        pageEncounters.add(encounterNumbers.get(e));
+      }
+      offset += counts[e];
+    }
+    HashMap<String, List<SinglePhotoVideo>> imagesByEncounter = new HashMap<String, List<SinglePhotoVideo>>();
+    for (int i = 0; i < pageEncounters.size(); i += MAX_ENCOUNTERS_PER_QUERY) {
+      Map<String, Object> chunkParams = getChunkParameters(pageEncounters.subList(i, Math.min(pageEncounters.size(), i + MAX_ENCOUNTERS_PER_QUERY)));
+      for (SinglePhotoVideo spv : executeRange(getChunkQuery(), "correspondingEncounterNumber ascending, dataCollectionEventID ascending", chunkParams, 0, Long.MAX_VALUE)) {
+        List<SinglePhotoVideo> images = imagesByEncounter.get(spv.getCorrespondingEncounterNumber());
+        if (images == null) {
+          images = new ArrayList<SinglePhotoVideo>();
+          imagesByEncounter.put(spv.getCorrespondingEncounterNumber(), images);
+        }
+        images.add(spv);
+      }
+    }
+    offset = firstOffset;
+    for (String encounterNumber : pageEncounters) {
+      List<SinglePhotoVideo> images = imagesByEncounter.get(encounterNumber);
+      if (images == null) {
+        continue;
+      }
+      for (SinglePhotoVideo spv : images) {
+        if ((offset >= from) && (offset < to)) {
+          page.add(spv);
+        }
+        offset++;
+      }
+    }
+    return page;
+  }
+
+  /**
+   * Returns the number of acceptable images of each encounter, in gallery order, counted with one grouped query per
+   * MAX_ENCOUNTERS_PER_QUERY encounters.
+   */
+  private int[] getEncounterCounts() {
+    if (encounterCounts == null) {
+      HashMap<String, Integer> countsByEncounter = new HashMap<String, Integer>();
+      if (!matchesNothing) {
+        for (int i = 0; i < encounterNumbers.size(); i += MAX_ENCOUNTERS_PER_QUERY) {
+          String template = getChunkQuery();
+          Query query = myShepherd.getPM().newQuery(template);
+          try {
+            query.setResult("correspondingEncounterNumber, count(this)");
+            query.setGrouping("correspondingEncounterNumber");
+            query.compile();
+            Collection rows = (Collection) QueryTemplateCache.executeWithMap(query, template + " RESULT correspondingEncounterNumber, count(this) GROUP BY correspondingEncounterNumber", null,
+              getChunkParameters(encounterNumbers.subList(i, Math.min(encounterNumbers.size(), i + MAX_ENCOUNTERS_PER_QUERY))));
+            for (Object row : rows) {
+              Object[] values = (Object[]) row;
+              countsByEncounter.put((String) values[0], ((Number) values[1]).intValue());
+            }
+          }
+          finally {
+            query.closeAll();
+          }
+        }
+      }
+      encounterCounts = new int[encounterNumbers.size()];
+      for (int e = 0; e < encounterCounts.length; e++) {
+        Integer count = countsByEncounter.get(encounterNumbers.get(e));
+        encounterCounts[e] = (count == null) ? 0 : count.intValue();
+      }
+    }
+    return encounterCounts;
+  }
+
+  private String getChunkQuery() {
+    HashMap<String, Object> declared = new HashMap<String, Object>(paramMap);
+    declared.put("galleryEncounterNumbers", new ArrayList<String>());
+    return "SELECT FROM org.ecocean.SinglePhotoVideo WHERE galleryEncounterNumbers.contains(correspondingEncounterNumber) && " + mediaFilter + EncounterQueryProcessor.getParametersDeclaration(declared);
+  }
+
+  private Map<String, Object> getChunkParameters(List<String> chunk) {
+    HashMap<String, Object> chunkParams = new HashMap<String, Object>(paramMap);
+    chunkParams.put("galleryEncounterNumbers", new ArrayList<String>(chunk));
+    return chunkParams;
+  }
+
+  private List<SinglePhotoVideo> executeRange(String template, String ordering, Map<String, Object> params, long from, long to) {
+    Query query = null;
+    try {
+      query = QueryTemplateCache.newQuery(myShepherd.getPM(), template, ordering);
+      if (to != Long.MAX_VALUE) {
+        query.setRange(from, to);
+      }
+      Collection c = (Collection) QueryTemplateCache.executeWithMap(query, template, ordering, params);
+      return new ArrayList<SinglePhotoVideo>(c);
+    }
+    finally {
+      if (query != null) {
+        query.closeAll();
+      }
+    }
+  }
+
+  private long executeCount(String template, String result, Map<String, Object> params) {
+    Query query = myShepherd.getPM().newQuery(template);
+    try {
+      query.setResult(result);
+      query.compile();
+      Object count = QueryTemplateCache.executeWithMap(query, template + " RESULT " + result, null, params);
+      return (count == null) ? 0 : ((Number) count).longValue();
+    }
+    finally {
+      query.closeAll();
+    }
+  }
+
+  /**
+   * Builds the keyword, filename and file type conditions over the images, adding their parameters.
+   *
+   * @param prefix the image variable and a dot, or "" when the images are the query candidates
+   */
+  private String buildMediaFilter(String prefix, String[] keywords, String filename) {
+    StringBuffer sb = new StringBuffer("(");
+    for (int i = 0; i < MEDIA_EXTENSIONS.length; i++) {
+      if (i > 0) {
+        sb.append(" || ");
+      }
+      sb.append(prefix + "filename.toLowerCase().indexOf(\"" + MEDIA_EXTENSIONS[i] + "\") != -1");
+    }
+    sb.append(")");
+
+    if (filename != null) {
+      paramMap.put("galleryFilename", filename);
+      sb.append(" && " + prefix + "filename == galleryFilename");
+    }
+
+    List<Keyword> words = resolveKeywords(keywords);
+    if (words != null) {
+      if (words.size() == 0) {
+        //none of the requested keywords exist, so no image can have one
+        matchesNothing = true;
+      }
+      else {
+        sb.append(" && (");
+        for (int k = 0; k < words.size(); k++) {
+          String name = "galleryKeyword" + k;
+          paramMap.put(name, words.get(k));
+          if (k > 0) {
+            sb.append(" || ");
+          }
+          sb.append(prefix + "keywords.contains(" + name + ")");
+        }
+        sb.append(")");
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Resolves keyword names with a single pass over the keywords, rather than one Shepherd.getKeyword call per image.
+   *
+   * @return the keywords, or null if any image is acceptable
+   */
+  private List<Keyword> resolveKeywords(String[] keywords) {
+    if ((keywords == null) || (keywords.length == 0)) {
+      return null;
+    }
+    for (int n = 0; n < keywords.length; n++) {
+      if (keywords[n].equals("None")) {
+        return null;
+      }
+    }
+    ArrayList<Keyword> words = new ArrayList<Keyword>();
+    Iterator allKeywords = myShepherd.getAllKeywords();
+    while (allKeywords.hasNext()) {
+      Keyword kw = (Keyword) allKeywords.next();
+      for (int n = 0; n < keywords.length; n++) {
+        String name = keywords[n].trim();
+        if ((kw.getReadableName().trim().equals(name)) || (kw.getIndexname().trim().equals(name))) {
+          words.add(kw);
+          break;
+        }
+      }
+    }
+    return words;
+  }
+
+}
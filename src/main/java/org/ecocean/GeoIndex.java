@@ -0,0 +1,497 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable in-memory spatial index over latitude/longitude points, such as the GPS positions of a set of encounters.
+ * <p/>
+ * Points are bucketed into a grid of cells a fixed number of degrees on each side and stored sorted by cell, in
+ * primitive arrays, so a bounding box query only looks at the cells it overlaps. Radius and nearest neighbor queries
+ * are answered from the bounding box of the spherical cap around the query point, so they are exact under the same
+ * haversine distance as {@link MarkedIndividual#distFrom(float, float, float, float)}.
+ * <p/>
+ * Points are identified by their index in the arrays the index was built from.
+ */
+public class GeoIndex {
+
+  public static final double DEFAULT_CELL_DEGREES = 1.0;
+
+  //same earth radius (in miles) and conversion to meters as MarkedIndividual.distFrom
+  private static final double EARTH_RADIUS_MILES = 3958.75;
+  private static final int METERS_PER_MILE = 1609;
+  private static final double EARTH_RADIUS_METERS = EARTH_RADIUS_MILES * METERS_PER_MILE;
+
+  //max distance only prunes to the convex hull when every point is within this angle of the centroid, see getMaxDistance
+  private static final double HULL_MAX_RADIANS = Math.PI / 4;
+
+  private double cellDegrees;
+  private int numCols;
+
+  //sorted by cell
+  private int[] cells;
+  private float[] lats;
+  private float[] lons;
+  private int[] ids;
+
+  /**
+   * @param latitudes decimal latitudes; NaN marks a point without a position, which is not indexed
+   * @param longitudes decimal longitudes in [-180, 180]
+   * @param cellDegrees the size of a grid cell, in degrees
+   */
+  public GeoIndex(double[] latitudes, double[] longitudes, double cellDegrees) {
+    this.cellDegrees = cellDegrees;
+    this.numCols = (int) Math.ceil(360.0 / cellDegrees);
+
+    int n = 0;
+    long[] keyed = new long[latitudes.length];
+    for (int i = 0; i < latitudes.length; i++) {
+      if (!Double.isNaN(latitudes[i]) && !Double.isNaN(longitudes[i])) {
+        //cell in the high bits and original index in the low bits, so that a single sort orders by cell
+        keyed[n++] = (((long) getCell(latitudes[i], longitudes[i])) << 32) | i;
+      }
+    }
+    Arrays.sort(keyed, 0, n);
+
+    cells = new int[n];
+    lats = new float[n];
+    lons = new float[n];
+    ids = new int[n];
+    for (int j = 0; j < n; j++) {
+      int i = (int) (keyed[j] & 0xffffffffL);
+      cells[j] = (int) (keyed[j] >>> 32);
+      lats[j] = (float) latitudes[i];
+      lons[j] = (float) longitudes[i];
+      ids[j] = i;
+    }
+  }
+
+  public GeoIndex(double[] latitudes, double[] longitudes) {
+    this(latitudes, longitudes, DEFAULT_CELL_DEGREES);
+  }
+
+  /**
+   * Indexes the encounters that have a decimal latitude and longitude, by their position in the list.
+   */
+  public static GeoIndex forEncounters(List<Encounter> encounters) {
+    int size = encounters.size();
+    double[] latitudes = new double[size];
+    double[] longitudes = new double[size];
+    for (int i = 0; i < size; i++) {
+      Encounter enc = encounters.get(i);
+      latitudes[i] = Double.NaN;
+      longitudes[i] = Double.NaN;
+      if ((enc.getLatitudeAsDouble() != null) && (enc.getLongitudeAsDouble() != null)) {
+        latitudes[i] = enc.getLatitudeAsDouble().doubleValue();
+        longitudes[i] = enc.getLongitudeAsDouble().doubleValue();
+      }
+    }
+    return new GeoIndex(latitudes, longitudes);
+  }
+
+  /**
+   * Returns the indices of all indexed points, in ascending order.
+   */
+  public int[] getIndices() {
+    int[] result = Arrays.copyOf(ids, ids.length);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Parses a bounding box given as "minLon,minLat,maxLon,maxLat", the order used by GeoJSON and map viewports.
+   *
+   * @return {minLat, minLon, maxLat, maxLon}, or null if bbox is null or malformed
+   */
+  public static double[] parseBoundingBox(String bbox) {
+    if (bbox == null) {
+      return null;
+    }
+    String[] values = bbox.split(",");
+    if (values.length != 4) {
+      return null;
+    }
+    try {
+      double minLon = Double.parseDouble(values[0].trim());
+      double minLat = Double.parseDouble(values[1].trim());
+      double maxLon = Double.parseDouble(values[2].trim());
+      double maxLat = Double.parseDouble(values[3].trim());
+      return new double[]{minLat, minLon, maxLat, maxLon};
+    }
+    catch (NumberFormatException nfe) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the indices of the points inside a bounding box returned by parseBoundingBox.
+   */
+  public int[] getWithinBoundingBox(double[] box) {
+    return getWithinBoundingBox(box[0], box[1], box[2], box[3]);
+  }
+
+  /**
+   * Returns the number of indexed points.
+   */
+  public int size() {
+    return ids.length;
+  }
+
+  /**
+   * Returns the indices of the points inside a bounding box, in ascending order. A box with minLon &gt; maxLon crosses
+   * the antimeridian.
+   */
+  public int[] getWithinBoundingBox(double minLat, double minLon, double maxLat, double maxLon) {
+    IntList found = new IntList();
+    if (minLon > maxLon) {
+      collect(minLat, minLon, maxLat, 180, found);
+      collect(minLat, -180, maxLat, maxLon, found);
+    }
+    else {
+      collect(minLat, minLon, maxLat, maxLon, found);
+    }
+    int[] result = new int[found.size];
+    for (int k = 0; k < found.size; k++) {
+      result[k] = ids[found.values[k]];
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Returns the indices of the points within a distance of a position, in ascending order.
+   */
+  public int[] getWithinRadius(double lat, double lon, double meters) {
+    IntList candidates = new IntList();
+    collectCap(lat, lon, meters, candidates);
+    IntList found = new IntList();
+    for (int k = 0; k < candidates.size; k++) {
+      int j = candidates.values[k];
+      if (distance((float) lat, (float) lon, lats[j], lons[j]) <= meters) {
+        found.add(ids[j]);
+      }
+    }
+    int[] result = found.toArray();
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Returns the index of the point nearest to a position, or -1 if the index is empty.
+   */
+  public int getNearest(double lat, double lon) {
+    int j = getNearestSlot((float) lat, (float) lon);
+    return (j < 0) ? -1 : ids[j];
+  }
+
+  /**
+   * Returns the distance in meters from a position to the nearest indexed point, or -1 if the index is empty.
+   */
+  public float getNearestDistance(double lat, double lon) {
+    int j = getNearestSlot((float) lat, (float) lon);
+    return (j < 0) ? -1 : distance((float) lat, (float) lon, lats[j], lons[j]);
+  }
+
+  /**
+   * Returns the smallest distance in meters between a point of this index and a point of another, or -1 if either is
+   * empty. Each point of the smaller index is looked up in the larger one.
+   */
+  public float getMinDistance(GeoIndex other) {
+    if ((size() == 0) || (other.size() == 0)) {
+      return -1;
+    }
+    GeoIndex probes = (size() <= other.size()) ? this : other;
+    GeoIndex target = (probes == this) ? other : this;
+    float min = Float.MAX_VALUE;
+    for (int j = 0; j < probes.ids.length; j++) {
+      float d = target.getNearestDistance(probes.lats[j], probes.lons[j]);
+      if (d < min) {
+        min = d;
+      }
+    }
+    return min;
+  }
+
+  /**
+   * Returns the largest distance in meters between two indexed points, or 0 if there are fewer than two.
+   */
+  public float getMaxDistance() {
+    return getMaxDistance(lats, lons, ids.length);
+  }
+
+  /**
+   * Returns the largest distance in meters between two of the given points.
+   * <p/>
+   * When all the points lie within 45 degrees of their centroid, every pair is less than 90 degrees apart and the
+   * farthest pair is a pair of vertices of their spherical convex hull. The hull is found with a monotone chain over the
+   * gnomonic projection around the centroid, which maps great circles to straight lines, and only its vertices are
+   * compared, usually a handful. Points spread more widely than that are compared pairwise.
+   */
+  public static float getMaxDistance(float[] latitudes, float[] longitudes, int n) {
+    if (n < 2) {
+      return 0;
+    }
+    int[] candidates = getHullVertices(latitudes, longitudes, n);
+    if (candidates == null) {
+      candidates = new int[n];
+      for (int i = 0; i < n; i++) {
+        candidates[i] = i;
+      }
+    }
+    float max = 0;
+    for (int a = 0; a < candidates.length; a++) {
+      int y = candidates[a];
+      for (int b = a + 1; b < candidates.length; b++) {
+        int z = candidates[b];
+        float d = distance(latitudes[y], longitudes[y], latitudes[z], longitudes[z]);
+        if (d > max) {
+          max = d;
+        }
+      }
+    }
+    return max;
+  }
+
+  /**
+   * The haversine distance in meters used throughout Wildbook, identical to MarkedIndividual.distFrom.
+   */
+  public static float distance(float lat1, float lng1, float lat2, float lng2) {
+    double dLat = Math.toRadians(lat2 - lat1);
+    double dLng = Math.toRadians(lng2 - lng1);
+    double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+      Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+      Math.sin(dLng / 2) * Math.sin(dLng / 2);
+    double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    double dist = EARTH_RADIUS_MILES * c;
+    return (float) (dist * METERS_PER_MILE);
+  }
+
+  /**
+   * Returns the convex hull vertices of the points, or null if they are too widely spread for the hull to contain the
+   * farthest pair.
+   */
+  private static int[] getHullVertices(float[] latitudes, float[] longitudes, int n) {
+    double[][] v = new double[n][];
+    double cx = 0, cy = 0, cz = 0;
+    for (int i = 0; i < n; i++) {
+      v[i] = toUnitVector(latitudes[i], longitudes[i]);
+      cx += v[i][0];
+      cy += v[i][1];
+      cz += v[i][2];
+    }
+    double norm = Math.sqrt(cx * cx + cy * cy + cz * cz);
+    if (norm < 1e-9) {
+      return null;
+    }
+    cx /= norm;
+    cy /= norm;
+    cz /= norm;
+    double minCos = Math.cos(HULL_MAX_RADIANS);
+    for (int i = 0; i < n; i++) {
+      if (v[i][0] * cx + v[i][1] * cy + v[i][2] * cz < minCos) {
+        return null;
+      }
+    }
+
+    //orthonormal basis of the plane tangent to the sphere at the centroid
+    double[] e1 = (Math.abs(cz) < 0.9) ? cross(cx, cy, cz, 0, 0, 1) : cross(cx, cy, cz, 1, 0, 0);
+    double e1Norm = Math.sqrt(e1[0] * e1[0] + e1[1] * e1[1] + e1[2] * e1[2]);
+    e1[0] /= e1Norm;
+    e1[1] /= e1Norm;
+    e1[2] /= e1Norm;
+    double[] e2 = cross(cx, cy, cz, e1[0], e1[1], e1[2]);
+
+    final double[] px = new double[n];
+    final double[] py = new double[n];
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      double dot = v[i][0] * cx + v[i][1] * cy + v[i][2] * cz;
+      px[i] = (v[i][0] * e1[0] + v[i][1] * e1[1] + v[i][2] * e1[2]) / dot;
+      py[i] = (v[i][0] * e2[0] + v[i][1] * e2[1] + v[i][2] * e2[2]) / dot;
+      order[i] = Integer.valueOf(i);
+    }
+    Arrays.sort(order, new java.util.Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        int c = Double.compare(px[a.intValue()], px[b.intValue()]);
+        return (c != 0) ? c : Double.compare(py[a.intValue()], py[b.intValue()]);
+      }
+    });
+
+    //Andrew's monotone chain
+    int[] hull = new int[2 * n];
+    int k = 0;
+    for (int s = 0; s < n; s++) {
+      int p = order[s].intValue();
+      while ((k >= 2) && (turn(px, py, hull[k - 2], hull[k - 1], p) <= 0)) {
+        k--;
+      }
+      hull[k++] = p;
+    }
+    for (int s = n - 2, lower = k + 1; s >= 0; s--) {
+      int p = order[s].intValue();
+      while ((k >= lower) && (turn(px, py, hull[k - 2], hull[k - 1], p) <= 0)) {
+        k--;
+      }
+      hull[k++] = p;
+    }
+    //the last vertex repeats the first; keep at least the two extreme points of a degenerate hull
+    return Arrays.copyOf(hull, Math.max(k - 1, Math.min(2, k)));
+  }
+
+  private static double turn(double[] px, double[] py, int o, int a, int b) {
+    return (px[a] - px[o]) * (py[b] - py[o]) - (py[a] - py[o]) * (px[b] - px[o]);
+  }
+
+  private static double[] toUnitVector(float lat, float lon) {
+    double phi = Math.toRadians(lat);
+    double lambda = Math.toRadians(lon);
+    return new double[]{Math.cos(phi) * Math.cos(lambda), Math.cos(phi) * Math.sin(lambda), Math.sin(phi)};
+  }
+
+  private static double[] cross(double ax, double ay, double az, double bx, double by, double bz) {
+    return new double[]{ay * bz - az * by, az * bx - ax * bz, ax * by - ay * bx};
+  }
+
+  private int getNearestSlot(float lat, float lon) {
+    if (ids.length == 0) {
+      return -1;
+    }
+    //search caps of doubling radius until one contains a point within its radius, which must then be the nearest
+    double radius = cellDegrees * Math.PI / 180 * EARTH_RADIUS_METERS;
+    IntList candidates = new IntList();
+    while (true) {
+      candidates.size = 0;
+      collectCap(lat, lon, radius, candidates);
+      int best = -1;
+      float bestDistance = Float.MAX_VALUE;
+      for (int k = 0; k < candidates.size; k++) {
+        int j = candidates.values[k];
+        float d = distance(lat, lon, lats[j], lons[j]);
+        if (d < bestDistance) {
+          bestDistance = d;
+          best = j;
+        }
+      }
+      if ((best >= 0) && ((bestDistance <= radius) || (radius >= Math.PI * EARTH_RADIUS_METERS))) {
+        return best;
+      }
+      radius *= 2;
+    }
+  }
+
+  /**
+   * Collects the slots of all points in cells overlapping the bounding box of a spherical cap.
+   */
+  private void collectCap(double lat, double lon, double meters, IntList found) {
+    double angle = meters / EARTH_RADIUS_METERS;
+    double angleDegrees = Math.toDegrees(angle);
+    double minLat = lat - angleDegrees;
+    double maxLat = lat + angleDegrees;
+    if ((minLat <= -90) || (maxLat >= 90) || (angle >= Math.PI / 2)) {
+      //the cap contains a pole, so it spans every longitude
+      collect(Math.max(minLat, -90), -180, Math.min(maxLat, 90), 180, found);
+      return;
+    }
+    double dLon = Math.toDegrees(Math.asin(Math.min(1, Math.sin(angle) / Math.cos(Math.toRadians(lat)))));
+    double minLon = lon - dLon;
+    double maxLon = lon + dLon;
+    if (minLon < -180) {
+      collect(minLat, minLon + 360, maxLat, 180, found);
+      collect(minLat, -180, maxLat, maxLon, found);
+    }
+    else if (maxLon > 180) {
+      collect(minLat, minLon, maxLat, 180, found);
+      collect(minLat, -180, maxLat, maxLon - 360, found);
+    }
+    else {
+      collect(minLat, minLon, maxLat, maxLon, found);
+    }
+  }
+
+  /**
+   * Collects the slots of the points inside a box that does not cross the antimeridian.
+   */
+  private void collect(double minLat, double minLon, double maxLat, double maxLon, IntList found) {
+    int minRow = getRow(minLat);
+    int maxRow = getRow(maxLat);
+    int minCol = getCol(minLon);
+    int maxCol = getCol(maxLon);
+    for (int row = minRow; row <= maxRow; row++) {
+      //cells of a row are contiguous, so the points of the whole row segment are one range of the sorted arrays
+      int j = lowerBound(row * numCols + minCol);
+      int end = row * numCols + maxCol;
+      while ((j < cells.length) && (cells[j] <= end)) {
+        if ((lats[j] >= minLat) && (lats[j] <= maxLat) && (lons[j] >= minLon) && (lons[j] <= maxLon)) {
+          found.add(j);
+        }
+        j++;
+      }
+    }
+  }
+
+  private int lowerBound(int cell) {
+    int lo = 0, hi = cells.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (cells[mid] < cell) {
+        lo = mid + 1;
+      }
+      else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private int getCell(double lat, double lon) {
+    return getRow(lat) * numCols + getCol(lon);
+  }
+
+  private int getRow(double lat) {
+    int maxRow = (int) Math.ceil(180.0 / cellDegrees) - 1;
+    return Math.max(0, Math.min(maxRow, (int) Math.floor((lat + 90) / cellDegrees)));
+  }
+
+  private int getCol(double lon) {
+    return Math.max(0, Math.min(numCols - 1, (int) Math.floor((lon + 180) / cellDegrees)));
+  }
+
+  /**
+   * A growable int array, so that queries do not box their results.
+   */
+  private static class IntList {
+    int[] values = new int[16];
+    int size = 0;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+}
@@ -6,8 +6,10 @@ import java.util.Date;
 import java.util.Enumeration;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Vector;
 import java.lang.StringBuffer;
@@ -30,16 +32,34 @@ public class IndividualQueryProcessor {
   private static final String SELECT_FROM_ORG_ECOCEAN_INDIVIDUAL_WHERE = "SELECT FROM org.ecocean.MarkedIndividual WHERE encounters.contains(enc) && ";
   private static final String VARIABLES_STATEMENT = " VARIABLES org.ecocean.Encounter enc";
 
+  //the largest ID set that processQuery passes to the query as a collection parameter
+  private static final int MAX_QUERY_PARAMETER_IDS = 1000;
+
   
 
   public static String queryStringBuilder(HttpServletRequest request, StringBuffer prettyPrint, Map<String, Object> paramMap){
+    Shepherd myShepherd=new Shepherd(ServletUtilities.getContext(request));
+    myShepherd.beginDBTransaction();
+    try{
+      return queryStringBuilder(myShepherd, request, prettyPrint, paramMap);
+    }
+    finally{
+      myShepherd.rollbackDBTransaction();
+      myShepherd.closeDBTransaction();
+    }
+  }
+
+  /**
+   * Builds the query of the search form, looking up keywords and loci with the caller's Shepherd and leaving its
+   * transaction as it is.
+   */
+  public static String queryStringBuilder(Shepherd myShepherd, HttpServletRequest request, StringBuffer prettyPrint, Map<String, Object> paramMap){
 
     String parameterDeclaration = "";
     
     String context="context0";
     context=ServletUtilities.getContext(request);
 
-    Shepherd myShepherd=new Shepherd(context);
 
     int day1=1, day2=31, month1=1, month2=12, year1=0, year2=3000;
     try{month1=(new Integer(request.getParameter("month1"))).intValue();} catch(Exception nfe) {}
@@ -613,7 +633,6 @@ public class IndividualQueryProcessor {
 
     //------------------------------------------------------------------
     //keyword filters-------------------------------------------------
-    myShepherd.beginDBTransaction();
     String[] keywords=request.getParameterValues("keyword");
     String photoKeywordOperator = "&&";
     if((request.getParameter("photoKeywordOperator")!=null)&&(request.getParameter("photoKeywordOperator").equals("_OR_"))){photoKeywordOperator = "||";}
@@ -672,8 +691,6 @@ public class IndividualQueryProcessor {
 
             prettyPrint.append("<br />");
       }
-    myShepherd.rollbackDBTransaction();
-    myShepherd.closeDBTransaction();
 
     //end photo keyword filters-----------------------------------------------
 
@@ -682,7 +699,6 @@ public class IndividualQueryProcessor {
     //------------------------------------------------------------------
     //ms markers filters-------------------------------------------------
 
-    myShepherd.beginDBTransaction();
       ArrayList<String> markers=myShepherd.getAllLoci();
         int numMarkers=markers.size();
         String theseMarkers="";
@@ -747,8 +763,6 @@ public class IndividualQueryProcessor {
           theseMarkers+="<br />";
           prettyPrint.append(theseMarkers);
         }
-        myShepherd.rollbackDBTransaction();
-        myShepherd.closeDBTransaction();
     //end ms markers filters-----------------------------------------------
 
 
@@ -1240,44 +1254,20 @@ public class IndividualQueryProcessor {
 
     filter+=jdoqlVariableDeclaration;
     filter += parameterDeclaration;
-    myShepherd=null;
     System.out.println("IndividualQueryProcessor filter: "+filter);
     return filter;
 
   }
 
   public static MarkedIndividualQueryResult processQuery(Shepherd myShepherd, HttpServletRequest request, String order){
-      Iterator allSharks;
-      Vector<MarkedIndividual> rIndividuals=new Vector<MarkedIndividual>();
       StringBuffer prettyPrint=new StringBuffer();
       Map<String,Object> paramMap = new HashMap<String, Object>();
-      String filter=queryStringBuilder(request, prettyPrint, paramMap);
+      String filter=queryStringBuilder(myShepherd, request, prettyPrint, paramMap);
 
-      //query.setFilter(filter);
-      Query query=myShepherd.getPM().newQuery(filter);
-
-      try{
-        if(request.getParameter("sort")!=null) {
-          if(request.getParameter("sort").equals("sex")){allSharks=myShepherd.getAllMarkedIndividuals(query, "sex ascending", paramMap);}
-          else if(request.getParameter("sort").equals("name")) {allSharks=myShepherd.getAllMarkedIndividuals(query, "individualID ascending", paramMap);}
-          else if(request.getParameter("sort").equals("numberEncounters")) {allSharks=myShepherd.getAllMarkedIndividuals(query, "numberEncounters descending", paramMap);}
-          else{
-            allSharks=myShepherd.getAllMarkedIndividuals(query, "individualID ascending", paramMap);
-          }
-        }
-        else{
-          allSharks=myShepherd.getAllMarkedIndividuals(query, "individualID ascending", paramMap);
-          //keyword and then individualID ascending
-        }
-        //process over to Vector
-        if(allSharks!=null){
-          while (allSharks.hasNext()) {
-            MarkedIndividual temp_shark=(MarkedIndividual)allSharks.next();
-            rIndividuals.add(temp_shark);
-          }
-        }
-      }
-      catch(NullPointerException npe){}
+      //the filters below used to be applied in Java over the whole loaded result
+      //now each is either compiled into the query or turned into one ID set built by a single projection query
+      final List<Set<String>> javaSideIDSets=new ArrayList<Set<String>>();
+      boolean matchesNothing=false;
 
       //community search
       if(request.getParameterValues("community")!=null){
@@ -1286,13 +1276,9 @@ public class IndividualQueryProcessor {
         prettyPrint.append("Social unit is one of the following: ");
         for(int i=0;i<numCommunities;i++){
           prettyPrint.append(communities[i]+" ");
-          for (int q = 0; q < rIndividuals.size(); q++) {
-            MarkedIndividual tShark = (MarkedIndividual) rIndividuals.get(q);
-            if(!myShepherd.getAllMarkedIndividualsInCommunity(communities[i]).contains(tShark)) {
-              rIndividuals.remove(q);
-              q--;
-            }
-          }
+          HashSet<String> members=myShepherd.getMarkedIndividualIDsInCommunity(communities[i]);
+          filter=addIDSetFilter(filter, paramMap, "communityIDs"+i, members, javaSideIDSets);
+          if(members.size()==0){matchesNothing=true;}
         }  
         prettyPrint.append("<br />");
       }
@@ -1313,55 +1299,27 @@ public class IndividualQueryProcessor {
           prettyPrint.append(roles[h]+"&nbsp;");
         }
         
-        
-          
+        if(orRoles){
           //logical OR the roles
-            for (int q = 0; q<rIndividuals.size(); q++) {
-              MarkedIndividual tShark = (MarkedIndividual) rIndividuals.get(q);
-              ArrayList<String> myRoles=myShepherd.getAllRoleNamesForMarkedIndividual(tShark.getIndividualID());
-              
-              if(orRoles){
-                
-                //logical OR the role
-                boolean hasRole=false;
-                int f=0;
-                while(!hasRole && (f<numRoles)){
-                  if(myRoles.contains(roles[f])){hasRole=true;}
-                  f++;
-                }
-                if(!hasRole) {
-                   rIndividuals.remove(q);
-                   q--;
-                }              
-              }
-              else{
-                
-                //logical AND the roles
-                boolean hasRole=true;
-                int f=0;
-                while(hasRole && (f<numRoles)){
-                  if(!myRoles.contains(roles[f])){hasRole=false;}
-                  f++;
-                }
-                if(!hasRole) {
-                   rIndividuals.remove(q);
-                   q--;
-                }  
-                
-                
-              }
-              
-         
+          HashSet<String> roleHolders=new HashSet<String>();
+          for(int h=0;h<numRoles;h++){
+            roleHolders.addAll(myShepherd.getMarkedIndividualIDsWithRole(roles[h]));
+          }
+          filter=addIDSetFilter(filter, paramMap, "roleIDs", roleHolders, javaSideIDSets);
+          if(roleHolders.size()==0){matchesNothing=true;}
+        }
+        else{
+          //logical AND the roles
+          for(int h=0;h<numRoles;h++){
+            HashSet<String> roleHolders=myShepherd.getMarkedIndividualIDsWithRole(roles[h]);
+            filter=addIDSetFilter(filter, paramMap, "roleIDs"+h, roleHolders, javaSideIDSets);
+            if(roleHolders.size()==0){matchesNothing=true;}
+          }
         }
-        
-        
         
         prettyPrint.append("<br />");
       }
       
-      
-      
-
     //min number of resights
     if ((request.getParameter("numResights") != null) && (!request.getParameter("numResights").equals("")) && (request.getParameter("numResightsOperator") != null)) {
       prettyPrint.append("Number of resights is " + request.getParameter("numResightsOperator") + " than " + request.getParameter("numResights") + "<br />");
@@ -1373,60 +1331,34 @@ public class IndividualQueryProcessor {
         operator = request.getParameter("numResightsOperator");
       } catch (NumberFormatException nfe) {
       }
-      for (int q = 0; q < rIndividuals.size(); q++) {
-        MarkedIndividual tShark = (MarkedIndividual) rIndividuals.get(q);
 
-
-        if (operator.equals("greater")) {
-          if (tShark.getMaxNumYearsBetweenSightings() < numResights) {
-            rIndividuals.remove(q);
-            q--;
-          }
-        } else if (operator.equals("less")) {
-          if (tShark.getMaxNumYearsBetweenSightings() > numResights) {
-            rIndividuals.remove(q);
-            q--;
-          }
-        } else if (operator.equals("equals")) {
-          if (tShark.getMaxNumYearsBetweenSightings() != numResights) {
-            rIndividuals.remove(q);
-            q--;
-          }
-        }
-
-
-      } //end for
+      //getMaxNumYearsBetweenSightings() returns the persistent maxYearsBetweenResightings field, so this compiles straight into the query
+      String resightFilter=null;
+      if (operator.equals("greater")) {resightFilter="maxYearsBetweenResightings >= numResights";}
+      else if (operator.equals("less")) {resightFilter="maxYearsBetweenResightings <= numResights";}
+      else if (operator.equals("equals")) {resightFilter="maxYearsBetweenResightings == numResights";}
+      if(resightFilter!=null){
+        filter=addFilterClause(filter, resightFilter, "int numResights");
+        paramMap.put("numResights", Integer.valueOf(numResights));
+      }
     }//end if resightOnly
 
     String[] locCodes=request.getParameterValues("locationCodeField");
     //check whether locationIDs are AND'd rather than OR'd
     if(request.getParameter("andLocationIDs") != null){
-		 //String[] locCodes=request.getParameterValues("locationCodeField");
 
       prettyPrint=new StringBuffer(prettyPrint.toString().replaceAll("Sighted in at least one of the following locationsIDs", "Sighted at least once in each of the following location IDs"));
 
 		    if((locCodes!=null)&&(!locCodes[0].equals("None"))){
-		       for (int q = 0; q < rIndividuals.size(); q++) {
-        			MarkedIndividual tShark = (MarkedIndividual) rIndividuals.get(q);
-
-		          	int kwLength=locCodes.length;
-					int kwIter=0;
-					boolean matchesSelectedLocationIDs=true;
-		            while((kwIter<kwLength)&&matchesSelectedLocationIDs) {
-		              String kwParam=locCodes[kwIter].replaceAll("%20", " ").trim();
-		              if(!kwParam.equals("")){
-						if(!tShark.wasSightedInLocationCode(kwParam)){
-							rIndividuals.remove(q);
-							q--;
-							matchesSelectedLocationIDs=false;
-
-						}
-
-		              }
-		              kwIter++;
-
-		            }
-			  }
+		      int kwLength=locCodes.length;
+		      for(int kwIter=0;kwIter<kwLength;kwIter++) {
+		        String kwParam=locCodes[kwIter].replaceAll("%20", " ").trim();
+		        if(!kwParam.equals("")){
+		          HashSet<String> sightedThere=myShepherd.getMarkedIndividualIDsSightedInLocationID(kwParam);
+		          filter=addIDSetFilter(filter, paramMap, "locationIDIndividuals"+kwIter, sightedThere, javaSideIDSets);
+		          if(sightedThere.size()==0){matchesNothing=true;}
+		        }
+		      }
     	}
 
 	}
@@ -1436,22 +1368,67 @@ public class IndividualQueryProcessor {
 
       prettyPrint.append("First sighted in year: "+request.getParameter("firstYearField") +"<br />");
       int firstSightedInYear = new Integer(request.getParameter("firstYearField")).intValue();
-      for (int q = 0; q < rIndividuals.size(); q++) {
-            MarkedIndividual tShark = (MarkedIndividual) rIndividuals.get(q);
-            if (tShark.getEarliestSightingYear()!=firstSightedInYear) {
-              rIndividuals.remove(q);
-              q--;
-            }
-          } //end for
-
+      HashSet<String> firstSighted=myShepherd.getMarkedIndividualIDsFirstSightedInYear(firstSightedInYear);
+      filter=addIDSetFilter(filter, paramMap, "firstSightedIDs", firstSighted, javaSideIDSets);
+      if(firstSighted.size()==0){matchesNothing=true;}
 
     }
 
-    query.closeAll();
+      if(matchesNothing){
+        return (new MarkedIndividualQueryResult(new ArrayList<MarkedIndividual>(),filter,prettyPrint.toString()));
+      }
+
+      //individualID is appended to every ordering so that pages are stable
+      String ordering="individualID ascending";
+      if(request.getParameter("sort")!=null) {
+        if(request.getParameter("sort").equals("sex")){ordering="sex ascending, individualID ascending";}
+        else if(request.getParameter("sort").equals("numberEncounters")) {ordering="numberEncounters descending, individualID ascending";}
+      }
+
+      PagedQueryList.PostFilter<MarkedIndividual> postFilter=null;
+      if(javaSideIDSets.size()>0){
+        postFilter=new PagedQueryList.PostFilter<MarkedIndividual>(){
+          public boolean accept(MarkedIndividual candidate){
+            for(Set<String> ids:javaSideIDSets){
+              if(!ids.contains(candidate.getIndividualID())){return false;}
+            }
+            return true;
+          }
+        };
+      }
+
+      PagedQueryList<MarkedIndividual> rIndividuals=new PagedQueryList<MarkedIndividual>(myShepherd.getPM(), filter, ordering, paramMap, PagedQueryList.DEFAULT_PAGE_SIZE, postFilter);
 		return (new MarkedIndividualQueryResult(rIndividuals,filter,prettyPrint.toString()));
 
   }
 
+  /**
+   * Restricts the query to the individuals whose IDs are in the set. Sets up to MAX_QUERY_PARAMETER_IDS are passed to
+   * the query as a collection parameter; larger ones are checked in Java as the results are paged, because many
+   * databases limit the size of the IN list that a collection parameter compiles to.
+   */
+  private static String addIDSetFilter(String filter, Map<String, Object> paramMap, String paramName, Set<String> ids, List<Set<String>> javaSideIDSets) {
+    if(ids.size()>MAX_QUERY_PARAMETER_IDS){
+      javaSideIDSets.add(ids);
+      return filter;
+    }
+    paramMap.put(paramName, ids);
+    return addFilterClause(filter, paramName+".contains(individualID)", "java.util.Collection "+paramName);
+  }
+
+  /**
+   * ANDs a clause into a query built by queryStringBuilder and declares its parameter.
+   */
+  private static String addFilterClause(String filter, String clause, String typeAndParameter) {
+    int variablesIndex=filter.indexOf(" VARIABLES ");
+    if(variablesIndex==-1){variablesIndex=filter.indexOf(" PARAMETERS ");}
+    if(variablesIndex==-1){variablesIndex=filter.length();}
+    String declarations=filter.substring(variablesIndex);
+    if(declarations.indexOf(" PARAMETERS ")!=-1){declarations+=", "+typeAndParameter;}
+    else{declarations+=" PARAMETERS "+typeAndParameter;}
+    return filter.substring(0, variablesIndex)+" && ("+clause+")"+declarations;
+  }
+
   private static String processSatelliteTagFilter(HttpServletRequest request,
       StringBuffer prettyPrint) {
     StringBuilder sb = new StringBuilder();
@@ -0,0 +1,387 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Vector;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.ecocean.Util.MeasurementDesc;
+import org.ecocean.genetics.BiologicalMeasurement;
+import org.ecocean.genetics.GeneticAnalysis;
+import org.ecocean.genetics.TissueSample;
+
+/**
+ * Computes the charts and summaries of individualSearchResultsAnalysis.jsp for a set of marked individual search results.
+ * <p/>
+ * Each individual's encounters are walked once to find its earliest sighting, the longest time between two of its
+ * sightings, its genetic analyses and the average of every measurement type within the search period. Calling the
+ * equivalent MarkedIndividual methods instead walks the encounters once per method, measurement type and use.
+ *
+ * @see EncounterSearchAnalysis
+ */
+public class IndividualSearchAnalysis {
+
+  public static final String FIRST_SIGHTING = "First sighting";
+  public static final String PREVIOUSLY_SIGHTED = "Previously sighted";
+
+  private int startYear, startMonth, endYear, endMonth;
+  private long periodStart;
+
+  private FacetCounts haplotypes;
+  private FacetCounts sexes;
+  private FacetCounts firstSightings;
+
+  private int numIndividuals = 0;
+  private int numWithHaplotype = 0;
+  private int numWithMsMarkers = 0;
+  private int numWithGeneticSex = 0;
+
+  private float maxTravelDistance = 0;
+  private String farthestTravelingIndividual = "";
+  private long maxTimeBetweenResights = 0;
+  private String longestResightedIndividual = "";
+
+  private int[] resightingYears = new int[0];
+
+  private List<MeasurementDesc> measurementTypes;
+  private SummaryStatistics[][] measurementStatistics;
+  private String[] smallestIndividuals;
+  private String[] largestIndividuals;
+  private List<MeasurementDesc> bioMeasurementTypes;
+  private SummaryStatistics[][] bioMeasurementStatistics;
+  private String[] bioSmallestIndividuals;
+  private String[] bioLargestIndividuals;
+
+  //per individual sums and counts of the measurements in the period, reused for each individual
+  private double[] measurementSums;
+  private int[] measurementCounts;
+  private double[] bioMeasurementSums;
+  private int[] bioMeasurementCounts;
+
+  //indices of the second dimension of the statistics arrays
+  private static final int ALL = 0;
+  private static final int MALES = 1;
+  private static final int FEMALES = 2;
+  private static final int NEW = 3;
+  private static final int RESIGHTS = 4;
+
+  /**
+   * @param year1 the start year of the search period; year1/month1 and year2/month2 may be given in either order
+   * @param month1 the start month of the search period
+   * @param day1 the start day of the search period; individuals sighted before it count as previously sighted
+   */
+  public IndividualSearchAnalysis(int year1, int month1, int day1, int year2, int month2, List<String> haplotypes, List<MeasurementDesc> measurementTypes, List<MeasurementDesc> bioMeasurementTypes) {
+
+    //test that start and end dates are not reversed, as MarkedIndividual.getAverageMeasurementInPeriod does
+    if ((year2 < year1) || ((year2 == year1) && (month2 < month1))) {
+      startYear = year2; startMonth = month2; endYear = year1; endMonth = month1;
+    }
+    else {
+      startYear = year1; startMonth = month1; endYear = year2; endMonth = month2;
+    }
+    periodStart = (new GregorianCalendar(year1, month1, day1)).getTimeInMillis();
+
+    this.haplotypes = new FacetCounts(haplotypes, false);
+    this.sexes = new FacetCounts(Arrays.asList(EncounterSearchAnalysis.MALE, EncounterSearchAnalysis.FEMALE, EncounterSearchAnalysis.UNKNOWN), false);
+    this.firstSightings = new FacetCounts(Arrays.asList(FIRST_SIGHTING, PREVIOUSLY_SIGHTED), false);
+
+    int numTypes = measurementTypes.size();
+    this.measurementTypes = measurementTypes;
+    measurementStatistics = newStatistics(numTypes);
+    smallestIndividuals = newIDs(numTypes);
+    largestIndividuals = newIDs(numTypes);
+    measurementSums = new double[numTypes];
+    measurementCounts = new int[numTypes];
+
+    int numBioTypes = bioMeasurementTypes.size();
+    this.bioMeasurementTypes = bioMeasurementTypes;
+    bioMeasurementStatistics = newStatistics(numBioTypes);
+    bioSmallestIndividuals = newIDs(numBioTypes);
+    bioLargestIndividuals = newIDs(numBioTypes);
+    bioMeasurementSums = new double[numBioTypes];
+    bioMeasurementCounts = new int[numBioTypes];
+  }
+
+  /**
+   * @param maxYearsBetweenResightings the largest MarkedIndividual.getMaxNumYearsBetweenSightings() of the results,
+   * which sizes the resighting years distribution
+   */
+  public void setMaxYearsBetweenResightings(int maxYearsBetweenResightings) {
+    resightingYears = new int[maxYearsBetweenResightings + 1];
+  }
+
+  public void analyze(List<MarkedIndividual> individuals) {
+    int size = individuals.size();
+    for (int i = 0; i < size; i++) {
+      add(individuals.get(i));
+    }
+  }
+
+  /**
+   * Adds a single marked individual to the analysis.
+   */
+  public void add(MarkedIndividual indie) {
+    numIndividuals++;
+    String individualID = indie.getIndividualID();
+
+    Arrays.fill(measurementSums, 0);
+    Arrays.fill(measurementCounts, 0);
+    Arrays.fill(bioMeasurementSums, 0);
+    Arrays.fill(bioMeasurementCounts, 0);
+
+    long earliestTime = GregorianCalendar.getInstance().getTimeInMillis();
+    long maxTime = 0;
+    long minDatedTime = Long.MAX_VALUE;
+    long maxDatedTime = Long.MIN_VALUE;
+    boolean hasMsMarkers = false;
+    boolean hasGeneticSex = false;
+
+    Vector encounters = indie.getEncounters();
+    int numEncs = encounters.size();
+    for (int c = 0; c < numEncs; c++) {
+      Encounter enc = (Encounter) encounters.get(c);
+      long time = enc.getDateInMilliseconds();
+
+      if ((time < earliestTime) && (enc.getYear() > 0)) {
+        earliestTime = time;
+      }
+
+      //the largest difference between this encounter and any earlier one with a date
+      if (minDatedTime <= maxDatedTime) {
+        maxTime = Math.max(maxTime, Math.max(Math.abs(time - minDatedTime), Math.abs(time - maxDatedTime)));
+      }
+      if (time > 0) {
+        minDatedTime = Math.min(minDatedTime, time);
+        maxDatedTime = Math.max(maxDatedTime, time);
+      }
+
+      boolean inPeriod = isInPeriod(enc.getYear(), enc.getMonth());
+      if (inPeriod) {
+        for (int b = 0; b < measurementSums.length; b++) {
+          Measurement measurement = enc.getMeasurement(measurementTypes.get(b).getType());
+          if ((measurement != null) && (measurement.getValue() != null)) {
+            measurementSums[b] += measurement.getValue().doubleValue();
+            measurementCounts[b]++;
+          }
+        }
+      }
+
+      List<TissueSample> samples = enc.getTissueSamples();
+      if (samples != null) {
+        for (int h = 0; h < samples.size(); h++) {
+          TissueSample sample = samples.get(h);
+          if (inPeriod) {
+            for (int b = 0; b < bioMeasurementSums.length; b++) {
+              BiologicalMeasurement measurement = sample.getBiologicalMeasurement(bioMeasurementTypes.get(b).getType());
+              if ((measurement != null) && (measurement.getValue() != null)) {
+                bioMeasurementSums[b] += measurement.getValue().doubleValue();
+                bioMeasurementCounts[b]++;
+              }
+            }
+          }
+          List<GeneticAnalysis> analyses = sample.getGeneticAnalyses();
+          if (analyses != null) {
+            for (int e = 0; e < analyses.size(); e++) {
+              String analysisType = analyses.get(e).getAnalysisType();
+              if ("MicrosatelliteMarkers".equals(analysisType)) {
+                hasMsMarkers = true;
+              }
+              else if ("SexAnalysis".equals(analysisType)) {
+                hasGeneticSex = true;
+              }
+            }
+          }
+        }
+      }
+    }
+
+    //genetic analysis checks and haplotype pie chart
+    if ((indie.getHaplotype() != null) && haplotypes.contains(indie.getHaplotype().trim())) {
+      haplotypes.increment(indie.getHaplotype().trim());
+      numWithHaplotype++;
+    }
+    if (hasMsMarkers) {numWithMsMarkers++;}
+    if (hasGeneticSex) {numWithGeneticSex++;}
+
+    String sex = indie.getSex();
+    int sexIndex = -1;
+    if (EncounterSearchAnalysis.MALE.equals(sex)) {
+      sexIndex = MALES;
+      sexes.increment(sex);
+    }
+    else if (EncounterSearchAnalysis.FEMALE.equals(sex)) {
+      sexIndex = FEMALES;
+      sexes.increment(sex);
+    }
+    else {
+      sexes.increment(EncounterSearchAnalysis.UNKNOWN);
+    }
+
+    int sightingIndex = NEW;
+    if (earliestTime < periodStart) {
+      sightingIndex = RESIGHTS;
+      firstSightings.increment(PREVIOUSLY_SIGHTED);
+    }
+    else {
+      firstSightings.increment(FIRST_SIGHTING);
+    }
+
+    for (int b = 0; b < measurementSums.length; b++) {
+      if (measurementCounts[b] > 0) {
+        addValue(measurementStatistics[b], smallestIndividuals, largestIndividuals, b, individualID, sexIndex, sightingIndex, measurementSums[b] / measurementCounts[b]);
+      }
+    }
+    for (int b = 0; b < bioMeasurementSums.length; b++) {
+      if (bioMeasurementCounts[b] > 0) {
+        addValue(bioMeasurementStatistics[b], bioSmallestIndividuals, bioLargestIndividuals, b, individualID, sexIndex, sightingIndex, bioMeasurementSums[b] / bioMeasurementCounts[b]);
+      }
+    }
+
+    float distance = indie.getMaxDistanceBetweenTwoSightings().floatValue();
+    if (distance > maxTravelDistance) {
+      maxTravelDistance = distance;
+      farthestTravelingIndividual = individualID;
+    }
+    if (maxTime > maxTimeBetweenResights) {
+      maxTimeBetweenResights = maxTime;
+      longestResightedIndividual = individualID;
+    }
+
+    int years = indie.getMaxNumYearsBetweenSightings();
+    if ((years >= 0) && (years < resightingYears.length)) {
+      resightingYears[years]++;
+    }
+  }
+
+  /**
+   * Same period test as MarkedIndividual.getAverageMeasurementInPeriod.
+   */
+  private boolean isInPeriod(int year, int month) {
+    if ((year > startYear) && (year < endYear)) {
+      return true;
+    }
+    if ((year == startYear) && (year < endYear) && (month >= startMonth)) {
+      return true;
+    }
+    if ((year > startYear) && (year == endYear) && (month <= endMonth)) {
+      return true;
+    }
+    return (year >= startYear) && (year <= endYear) && (month >= startMonth) && (month <= endMonth);
+  }
+
+  private static void addValue(SummaryStatistics[] statistics, String[] smallest, String[] largest, int b, String individualID, int sexIndex, int sightingIndex, double value) {
+    statistics[ALL].addValue(value);
+
+    //smallest vs largest analysis
+    if (value <= statistics[ALL].getMin()) {
+      smallest[b] = individualID;
+    }
+    else if (value >= statistics[ALL].getMax()) {
+      largest[b] = individualID;
+    }
+
+    if (sexIndex > 0) {
+      statistics[sexIndex].addValue(value);
+    }
+    statistics[sightingIndex].addValue(value);
+  }
+
+  private static SummaryStatistics[][] newStatistics(int numTypes) {
+    SummaryStatistics[][] statistics = new SummaryStatistics[numTypes][5];
+    for (int b = 0; b < numTypes; b++) {
+      for (int s = 0; s < 5; s++) {
+        statistics[b][s] = new SummaryStatistics();
+      }
+    }
+    return statistics;
+  }
+
+  private static String[] newIDs(int numTypes) {
+    String[] ids = new String[numTypes];
+    Arrays.fill(ids, "");
+    return ids;
+  }
+
+  public int getNumIndividuals() {return numIndividuals;}
+
+  public int getNumWithHaplotype() {return numWithHaplotype;}
+
+  public int getNumWithMsMarkers() {return numWithMsMarkers;}
+
+  public int getNumWithGeneticSex() {return numWithGeneticSex;}
+
+  public FacetCounts getHaplotypes() {return haplotypes;}
+
+  /** Counts of "male", "female" and "unknown". */
+  public FacetCounts getSexes() {return sexes;}
+
+  /** Counts of FIRST_SIGHTING and PREVIOUSLY_SIGHTED, relative to the start of the search period. */
+  public FacetCounts getFirstSightings() {return firstSightings;}
+
+  /** The largest distance in meters between two sightings of one individual. */
+  public float getMaxTravelDistance() {return maxTravelDistance;}
+
+  public String getFarthestTravelingIndividual() {return farthestTravelingIndividual;}
+
+  public long getMaxTimeBetweenResights() {return maxTimeBetweenResights;}
+
+  public String getLongestResightedIndividual() {return longestResightedIndividual;}
+
+  public int getNumResightingYears() {return resightingYears.length;}
+
+  /** The number of individuals whose sightings span the given number of calendar years. */
+  public int getResightingYears(int years) {return resightingYears[years];}
+
+  public List<MeasurementDesc> getMeasurementTypes() {return measurementTypes;}
+
+  public List<MeasurementDesc> getBioMeasurementTypes() {return bioMeasurementTypes;}
+
+  public SummaryStatistics getMeasurementStatistics(int typeIndex) {return measurementStatistics[typeIndex][ALL];}
+
+  public SummaryStatistics getMaleMeasurementStatistics(int typeIndex) {return measurementStatistics[typeIndex][MALES];}
+
+  public SummaryStatistics getFemaleMeasurementStatistics(int typeIndex) {return measurementStatistics[typeIndex][FEMALES];}
+
+  public SummaryStatistics getNewMeasurementStatistics(int typeIndex) {return measurementStatistics[typeIndex][NEW];}
+
+  public SummaryStatistics getResightMeasurementStatistics(int typeIndex) {return measurementStatistics[typeIndex][RESIGHTS];}
+
+  public String getSmallestIndividual(int typeIndex) {return smallestIndividuals[typeIndex];}
+
+  public String getLargestIndividual(int typeIndex) {return largestIndividuals[typeIndex];}
+
+  public SummaryStatistics getBioMeasurementStatistics(int typeIndex) {return bioMeasurementStatistics[typeIndex][ALL];}
+
+  public SummaryStatistics getMaleBioMeasurementStatistics(int typeIndex) {return bioMeasurementStatistics[typeIndex][MALES];}
+
+  public SummaryStatistics getFemaleBioMeasurementStatistics(int typeIndex) {return bioMeasurementStatistics[typeIndex][FEMALES];}
+
+  public SummaryStatistics getNewBioMeasurementStatistics(int typeIndex) {return bioMeasurementStatistics[typeIndex][NEW];}
+
+  public SummaryStatistics getResightBioMeasurementStatistics(int typeIndex) {return bioMeasurementStatistics[typeIndex][RESIGHTS];}
+
+  public String getBioSmallestIndividual(int typeIndex) {return bioSmallestIndividuals[typeIndex];}
+
+  public String getBioLargestIndividual(int typeIndex) {return bioLargestIndividuals[typeIndex];}
+
+}
@@ -0,0 +1,437 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The mapped sightings of the marked individuals matched by a search: one point per encounter with a GPS position (or,
+ * optionally, a locationID with a position in locationIDGPS.properties), grouped by individual in reverse date order,
+ * with each individual's sex, haplotype and species colors.
+ * <p/>
+ * Layers are cached by a fingerprint of the search, and the GeoJSON rendered from them is cached by fingerprint,
+ * zoom level and bounding box, so that panning and reloading a map of a large search neither reruns the search nor
+ * walks its individuals. Rendered GeoJSON is held up to MAX_RENDERED_CHARS characters in all, least recently used
+ * first out, and a rendering longer than MAX_RENDERED_LENGTH is not cached at all. Both caches of a context are cleared by {@link #invalidate(String)} when an encounter's
+ * position changes, and layers are rebuilt once older than REBUILD_MILLIS to pick up other edits.
+ * <p/>
+ * When a zoom level is given, points are clustered on a grid of CLUSTER_PIXELS square cells in Web Mercator pixel
+ * coordinates at that zoom, and move paths are left out, since a path through clustered points cannot be drawn
+ * meaningfully. Below MIN_CLUSTER_POINTS points, or from MAX_CLUSTER_ZOOM in, every point is returned.
+ */
+public class MapLayer {
+
+  public static final long REBUILD_MILLIS = 15 * 60 * 1000L;
+  public static final int MAX_LAYERS = 32;
+  public static final long MAX_RENDERED_CHARS = 16 * 1024 * 1024L;
+  public static final int MAX_RENDERED_LENGTH = 2 * 1024 * 1024;
+  public static final int CLUSTER_PIXELS = 60;
+  public static final int MAX_CLUSTER_ZOOM = 15;
+  public static final int MIN_CLUSTER_POINTS = 500;
+
+  private static final String NO_COLOR = "C0C0C0";
+  private static final int TILE_PIXELS = 256;
+
+  private static final HashMap<String, MapLayer> layers = new LinkedHashMap<String, MapLayer>(16, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<String, MapLayer> eldest) {
+      return size() > MAX_LAYERS;
+    }
+  };
+  private static final LinkedHashMap<String, String> rendered = new LinkedHashMap<String, String>(64, 0.75f, true);
+  //the total length of the rendered strings, guarded by rendered
+  private static long renderedChars = 0;
+
+  private long builtAt;
+
+  //per point, grouped by individual
+  private double[] lats;
+  private double[] lons;
+  private String[] catalogNumbers;
+  private String[] subdirs;
+  private String[] dates;
+  private int[] individualOfPoint;
+  private GeoIndex index;
+
+  //per individual: its points are firstPoint[i] to firstPoint[i + 1] - 1
+  private String[] individualIDs;
+  private String[][] colors;
+  private int[] firstPoint;
+
+  /**
+   * Creates a layer from its points, grouped by individual: the points of individual i are firstPoint[i] to
+   * firstPoint[i + 1] - 1, and colors[i] holds its sex, haplotype and species colors.
+   */
+  MapLayer(String[] individualIDs, String[][] colors, int[] firstPoint, double[] lats, double[] lons, String[] catalogNumbers, String[] subdirs, String[] dates) {
+    this.builtAt = System.currentTimeMillis();
+    this.individualIDs = individualIDs;
+    this.colors = colors;
+    this.firstPoint = firstPoint;
+    this.lats = lats;
+    this.lons = lons;
+    this.catalogNumbers = catalogNumbers;
+    this.subdirs = subdirs;
+    this.dates = dates;
+    individualOfPoint = new int[lats.length];
+    for (int i = 0; i < individualIDs.length; i++) {
+      for (int p = firstPoint[i]; p < firstPoint[i + 1]; p++) {
+        individualOfPoint[p] = i;
+      }
+    }
+    index = new GeoIndex(lats, lons);
+  }
+
+  /**
+   * Returns the cached layer for a search fingerprint, or null if there is none or it is due to be rebuilt.
+   */
+  public static MapLayer getCached(String context, String fingerprint) {
+    String key = context + "|" + fingerprint;
+    synchronized (layers) {
+      MapLayer layer = layers.get(key);
+      if ((layer != null) && ((System.currentTimeMillis() - layer.builtAt) > REBUILD_MILLIS)) {
+        layers.remove(key);
+        layer = null;
+      }
+      return layer;
+    }
+  }
+
+  public static void cache(String context, String fingerprint, MapLayer layer) {
+    synchronized (layers) {
+      layers.put(context + "|" + fingerprint, layer);
+    }
+  }
+
+  /**
+   * Returns GeoJSON previously rendered for a key built by the caller from the fingerprint and view, or null. Entries
+   * are not kept beyond the life of the layer they were rendered from.
+   */
+  public static String getRendered(String context, String fingerprint, String viewKey) {
+    if (getCached(context, fingerprint) == null) {
+      return null;
+    }
+    synchronized (rendered) {
+      return rendered.get(context + "|" + fingerprint + "|" + viewKey);
+    }
+  }
+
+  public static void cacheRendered(String context, String fingerprint, String viewKey, String json) {
+    if (json.length() > MAX_RENDERED_LENGTH) {
+      return;
+    }
+    synchronized (rendered) {
+      String old = rendered.put(context + "|" + fingerprint + "|" + viewKey, json);
+      if (old != null) {
+        renderedChars -= old.length();
+      }
+      renderedChars += json.length();
+      //drop the least recently used renderings until the rest fit
+      Iterator<String> values = rendered.values().iterator();
+      while (renderedChars > MAX_RENDERED_CHARS) {
+        renderedChars -= values.next().length();
+        values.remove();
+      }
+    }
+  }
+
+  /**
+   * Returns the total length of the rendered GeoJSON strings cached.
+   */
+  static long getRenderedChars() {
+    synchronized (rendered) {
+      return renderedChars;
+    }
+  }
+
+  /**
+   * Discards the layers and rendered GeoJSON of a context, e.g. after an encounter's position has changed.
+   */
+  public static void invalidate(String context) {
+    String prefix = context + "|";
+    synchronized (layers) {
+      Iterator<String> keys = layers.keySet().iterator();
+      while (keys.hasNext()) {
+        if (keys.next().startsWith(prefix)) {
+          keys.remove();
+        }
+      }
+    }
+    synchronized (rendered) {
+      Iterator<Map.Entry<String, String>> entries = rendered.entrySet().iterator();
+      while (entries.hasNext()) {
+        Map.Entry<String, String> entry = entries.next();
+        if (entry.getKey().startsWith(prefix)) {
+          renderedChars -= entry.getValue().length();
+          entries.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Builds the layer of a list of individuals, loading the color properties once.
+   *
+   * @param useLocales if true, encounters without GPS data are placed near the position of their locationID
+   */
+  public static MapLayer build(String context, List<MarkedIndividual> individuals, boolean useLocales) {
+    Properties haploprops = ShepherdProperties.getProperties("haplotypeColorCodes.properties", "", context);
+    Properties localeprops = ShepherdProperties.getProperties("locationIDGPS.properties", "", context);
+    List<String> allSpecies = CommonConfiguration.getIndexedValues("genusSpecies", context);
+    List<String> allSpeciesColors = CommonConfiguration.getIndexedValues("genusSpeciesColor", context);
+    Hashtable<String, String> speciesTable = new Hashtable<String, String>();
+    for (int i = 0; (i < allSpecies.size()) && (i < allSpeciesColors.size()); i++) {
+      speciesTable.put(allSpecies.get(i), allSpeciesColors.get(i));
+    }
+    Random ran = new Random();
+
+    ArrayList<double[]> positions = new ArrayList<double[]>();
+    ArrayList<Encounter> mapped = new ArrayList<Encounter>();
+    int numIndividuals = individuals.size();
+    String[] individualIDs = new String[numIndividuals];
+    String[][] colors = new String[numIndividuals][];
+    int[] firstPoint = new int[numIndividuals + 1];
+
+    for (int i = 0; i < numIndividuals; i++) {
+      MarkedIndividual indie = individuals.get(i);
+      individualIDs[i] = indie.getIndividualID();
+      firstPoint[i] = mapped.size();
+
+      String sexColor = NO_COLOR;
+      if (indie.getSex() != null) {
+        if (indie.getSex().equals("male")) {
+          sexColor = "0000FF";
+        }
+        else if (indie.getSex().equals("female")) {
+          sexColor = "FF00FF";
+        }
+      }
+      String haploColor = NO_COLOR;
+      if ((indie.getHaplotype() != null) && (haploprops.getProperty(indie.getHaplotype()) != null) && (!haploprops.getProperty(indie.getHaplotype()).trim().equals(""))) {
+        haploColor = haploprops.getProperty(indie.getHaplotype());
+      }
+      String speciesColor = NO_COLOR;
+      if ((indie.getGenusSpecies() != null) && (speciesTable.get(indie.getGenusSpecies()) != null)) {
+        speciesColor = speciesTable.get(indie.getGenusSpecies());
+      }
+      colors[i] = new String[]{sexColor, haploColor, speciesColor};
+
+      Vector rEncounters = indie.returnEncountersWithGPSData(useLocales, true, context);
+      for (int e = 0; e < rEncounters.size(); e++) {
+        Encounter enc = (Encounter) rEncounters.get(e);
+        double[] position = null;
+        if ((enc.getLatitudeAsDouble() != null) && (enc.getLongitudeAsDouble() != null)) {
+          position = new double[]{enc.getLatitudeAsDouble().doubleValue(), enc.getLongitudeAsDouble().doubleValue()};
+        }
+        //let's see if locationIDGPS.properties has a location we can use
+        else if (useLocales && (enc.getLocationCode() != null) && (localeprops.getProperty(enc.getLocationCode()) != null)) {
+          try {
+            StringTokenizer st = new StringTokenizer(localeprops.getProperty(enc.getLocationCode()), ",");
+            double lat = Double.parseDouble(st.nextToken()) + ran.nextDouble() * 0.02;
+            double lon = Double.parseDouble(st.nextToken()) + ran.nextDouble() * 0.02;
+            position = new double[]{lat, lon};
+          }
+          catch (Exception e2) {
+            e2.printStackTrace();
+            System.out.println("     I hit an error getting locales in MapLayer.");
+          }
+        }
+        if (position != null) {
+          positions.add(position);
+          mapped.add(enc);
+        }
+      }
+    }
+    firstPoint[numIndividuals] = mapped.size();
+
+    int numPoints = mapped.size();
+    double[] lats = new double[numPoints];
+    double[] lons = new double[numPoints];
+    String[] catalogNumbers = new String[numPoints];
+    String[] subdirs = new String[numPoints];
+    String[] dates = new String[numPoints];
+    for (int p = 0; p < numPoints; p++) {
+      Encounter enc = mapped.get(p);
+      lats[p] = positions.get(p)[0];
+      lons[p] = positions.get(p)[1];
+      catalogNumbers[p] = enc.getCatalogNumber();
+      subdirs[p] = enc.subdir();
+      dates[p] = enc.getDate();
+    }
+    return new MapLayer(individualIDs, colors, firstPoint, lats, lons, catalogNumbers, subdirs, dates);
+  }
+
+  public int getNumPoints() {
+    return lats.length;
+  }
+
+  /**
+   * Returns the bounding box {minLat, minLon, maxLat, maxLon} of a Web Mercator tile.
+   */
+  public static double[] getTileBoundingBox(int zoom, int x, int y) {
+    double n = Math.pow(2, zoom);
+    double minLon = x / n * 360.0 - 180.0;
+    double maxLon = (x + 1) / n * 360.0 - 180.0;
+    double maxLat = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y / n))));
+    double minLat = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * (y + 1) / n))));
+    return new double[]{minLat, minLon, maxLat, maxLon};
+  }
+
+  /**
+   * Renders the layer as a GeoJSON FeatureCollection in the format read by individualMappedSearchResults.jsp.
+   *
+   * @param box {minLat, minLon, maxLat, maxLon}, or null for the whole layer. Without clustering, individuals with a
+   * point in the box are returned with all of their points and their move path.
+   * @param zoom the map zoom level to cluster for, or -1 to return every point
+   */
+  public JSONObject toGeoJSON(double[] box, int zoom, String rootURL, String dataDirectoryName) throws JSONException {
+    JSONObject collection = new JSONObject();
+    JSONArray featureList = new JSONArray();
+    collection.put("type", "FeatureCollection");
+    collection.put("features", featureList);
+
+    int[] candidates = (box == null) ? index.getIndices() : index.getWithinBoundingBox(box);
+    if ((zoom >= 0) && (zoom < MAX_CLUSTER_ZOOM) && (candidates.length >= MIN_CLUSTER_POINTS)) {
+      addClusters(featureList, candidates, zoom, rootURL, dataDirectoryName);
+      return collection;
+    }
+
+    boolean[] included = new boolean[individualIDs.length];
+    for (int c = 0; c < candidates.length; c++) {
+      included[individualOfPoint[candidates[c]]] = true;
+    }
+    for (int i = 0; i < individualIDs.length; i++) {
+      if (!included[i]) {
+        continue;
+      }
+      JSONArray pathCoords = new JSONArray();
+      for (int p = firstPoint[i]; p < firstPoint[i + 1]; p++) {
+        featureList.put(getPointFeature(p, rootURL, dataDirectoryName));
+        pathCoords.put(getCoordinates(lats[p], lons[p]));
+      }
+
+      //let's do the move path, one per individual
+      if ((firstPoint[i + 1] - firstPoint[i]) > 1) {
+        JSONObject lineString = new JSONObject();
+        lineString.put("type", "LineString");
+        putColors(lineString, i);
+        lineString.put("coordinates", pathCoords);
+        JSONObject lsFeature = new JSONObject();
+        lsFeature.put("properties", new JSONObject());
+        lsFeature.put("geometry", lineString);
+        lsFeature.put("type", "Feature");
+        featureList.put(lsFeature);
+      }
+    }
+    return collection;
+  }
+
+  private void addClusters(JSONArray featureList, int[] candidates, int zoom, String rootURL, String dataDirectoryName) throws JSONException {
+    double worldPixels = TILE_PIXELS * Math.pow(2, zoom);
+    HashMap<Long, Integer> cellSlots = new HashMap<Long, Integer>();
+    int[] counts = new int[candidates.length];
+    int[] firsts = new int[candidates.length];
+    double[] sumLats = new double[candidates.length];
+    double[] sumLons = new double[candidates.length];
+    int numCells = 0;
+    for (int c = 0; c < candidates.length; c++) {
+      int p = candidates[c];
+      double x = (lons[p] + 180.0) / 360.0 * worldPixels;
+      double sinLat = Math.sin(Math.toRadians(Math.max(-85.05, Math.min(85.05, lats[p]))));
+      double y = (0.5 - Math.log((1 + sinLat) / (1 - sinLat)) / (4 * Math.PI)) * worldPixels;
+      Long cell = Long.valueOf((((long) (x / CLUSTER_PIXELS)) << 32) | ((long) (y / CLUSTER_PIXELS)));
+      Integer slot = cellSlots.get(cell);
+      if (slot == null) {
+        slot = Integer.valueOf(numCells++);
+        cellSlots.put(cell, slot);
+        firsts[slot.intValue()] = p;
+      }
+      counts[slot.intValue()]++;
+      sumLats[slot.intValue()] += lats[p];
+      sumLons[slot.intValue()] += lons[p];
+    }
+    for (int s = 0; s < numCells; s++) {
+      if (counts[s] == 1) {
+        featureList.put(getPointFeature(firsts[s], rootURL, dataDirectoryName));
+        continue;
+      }
+      JSONObject point = new JSONObject();
+      point.put("type", "Point");
+      point.put("coordinates", getCoordinates(sumLats[s] / counts[s], sumLons[s] / counts[s]));
+      point.put("cluster", true);
+      point.put("count", counts[s]);
+      point.put("color", NO_COLOR);
+      point.put("sexColor", NO_COLOR);
+      point.put("haplotypeColor", NO_COLOR);
+      point.put("speciesColor", NO_COLOR);
+      JSONObject feature = new JSONObject();
+      feature.put("type", "Feature");
+      feature.put("properties", new JSONObject());
+      feature.put("geometry", point);
+      featureList.put(feature);
+    }
+  }
+
+  private JSONObject getPointFeature(int p, String rootURL, String dataDirectoryName) throws JSONException {
+    JSONObject point = new JSONObject();
+    point.put("type", "Point");
+    point.put("coordinates", getCoordinates(lats[p], lons[p]));
+    point.put("catalogNumber", catalogNumbers[p]);
+    point.put("encSubdir", subdirs[p]);
+    point.put("rootURL", rootURL);
+    point.put("individualID", individualIDs[individualOfPoint[p]]);
+    point.put("dataDirectoryName", dataDirectoryName);
+    point.put("date", dates[p]);
+    putColors(point, individualOfPoint[p]);
+
+    JSONObject feature = new JSONObject();
+    feature.put("type", "Feature");
+    feature.put("properties", new JSONObject());
+    feature.put("geometry", point);
+    return feature;
+  }
+
+  private void putColors(JSONObject geometry, int individual) throws JSONException {
+    geometry.put("color", NO_COLOR);
+    geometry.put("sexColor", colors[individual][0]);
+    geometry.put("haplotypeColor", colors[individual][1]);
+    geometry.put("speciesColor", colors[individual][2]);
+  }
+
+  private static JSONArray getCoordinates(double lat, double lon) throws JSONException {
+    JSONArray coord = new JSONArray();
+    coord.put(lon);
+    coord.put(lat);
+    return coord;
+  }
+
+}
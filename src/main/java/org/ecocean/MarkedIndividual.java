@@ -1510,41 +1510,27 @@ public ArrayList getAllEmailsToUpdate(){
 public void removeLogEncounter(Encounter enc){if(unidentifiableEncounters.contains(enc)){unidentifiableEncounters.remove(enc);}}
 
 public float distFrom(float lat1, float lng1, float lat2, float lng2) {
-  double earthRadius = 3958.75;
-  double dLat = Math.toRadians(lat2-lat1);
-  double dLng = Math.toRadians(lng2-lng1);
-  double a = Math.sin(dLat/2) * Math.sin(dLat/2) +
-             Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-             Math.sin(dLng/2) * Math.sin(dLng/2);
-  double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
-  double dist = earthRadius * c;
-
-  int meterConversion = 1609;
-
-  return new Float(dist * meterConversion).floatValue();
+  return GeoIndex.distance(lat1, lng1, lat2, lng2);
 }
 
+/**
+ * Returns the largest distance in meters between two sightings with GPS coordinates, using the convex hull of the
+ * sightings rather than comparing every pair (see GeoIndex.getMaxDistance).
+ */
 public Float getMaxDistanceBetweenTwoSightings(){
   int numEncs=encounters.size();
-  Float maxDistance=new Float(0);
-  if(numEncs>1){
+  float[] lats=new float[numEncs];
+  float[] longs=new float[numEncs];
+  int numPoints=0;
   for(int y=0;y<numEncs;y++){
     Encounter thisEnc=(Encounter)encounters.get(y);
     if((thisEnc.getLatitudeAsDouble()!=null)&&(thisEnc.getLongitudeAsDouble()!=null)){
-    for(int z=(y+1);z<numEncs;z++){
-      Encounter nextEnc=(Encounter)encounters.get(z);
-      if((nextEnc.getLatitudeAsDouble()!=null)&&(nextEnc.getLongitudeAsDouble()!=null)){
-        try{
-          Float tempMaxDistance=distFrom(new Float(thisEnc.getLatitudeAsDouble()), new Float(thisEnc.getLongitudeAsDouble()), new Float(nextEnc.getLatitudeAsDouble()), new Float(nextEnc.getLongitudeAsDouble()));
-          if(tempMaxDistance>maxDistance){maxDistance=tempMaxDistance;}
-        }
-        catch(Exception e){e.printStackTrace();System.out.println("Hit an NPE when calculating distance between: "+thisEnc.getCatalogNumber()+" and "+nextEnc.getCatalogNumber());}
-      }
+      lats[numPoints]=thisEnc.getLatitudeAsDouble().floatValue();
+      longs[numPoints]=thisEnc.getLongitudeAsDouble().floatValue();
+      numPoints++;
     }
   }
-  }
-  }
-  return maxDistance;
+  return new Float(GeoIndex.getMaxDistance(lats, longs, numPoints));
 }
 
 public long getMaxTimeBetweenTwoSightings(){
@@ -1611,34 +1597,17 @@ public String getFomattedMSMarkersString(String[] loci){
   return sb.toString();
 }
 
+/**
+ * Returns the smallest distance in meters between a sighting of this individual and a sighting of another, or -1 if
+ * either has no sightings with GPS coordinates. The sightings of one are looked up in a GeoIndex of the other's.
+ */
 public Float getMinDistanceBetweenTwoMarkedIndividuals(MarkedIndividual otherIndy){
-  
-  DecimalFormat df = new DecimalFormat("#.#");
-  Float minDistance=new Float(1000000);
-  if((encounters!=null)&&(encounters.size()>0)&&(otherIndy.getEncounters()!=null)&&(otherIndy.getEncounters().size()>0)){
-  int numEncs=encounters.size();
-  int numOtherEncs=otherIndy.getEncounters().size();
-  
-  if(numEncs>0){
-  for(int y=0;y<numEncs;y++){
-    Encounter thisEnc=(Encounter)encounters.get(y);
-    if((thisEnc.getLatitudeAsDouble()!=null)&&(thisEnc.getLongitudeAsDouble()!=null)){
-    for(int z=0;z<numOtherEncs;z++){
-      Encounter nextEnc=otherIndy.getEncounter(z);
-      if((nextEnc.getLatitudeAsDouble()!=null)&&(nextEnc.getLongitudeAsDouble()!=null)){
-        try{
-          Float tempMinDistance=distFrom(new Float(thisEnc.getLatitudeAsDouble()), new Float(thisEnc.getLongitudeAsDouble()), new Float(nextEnc.getLatitudeAsDouble()), new Float(nextEnc.getLongitudeAsDouble()));
-          if(tempMinDistance<minDistance){minDistance=tempMinDistance;}
-        }
-        catch(Exception e){e.printStackTrace();System.out.println("Hit an NPE when calculating distance between: "+thisEnc.getCatalogNumber()+" and "+nextEnc.getCatalogNumber());}
-      }
-    }
-  }
-  }
-  }
+  if((encounters==null)||(encounters.size()==0)||(otherIndy.getEncounters()==null)||(otherIndy.getEncounters().size()==0)){
+    return new Float(-1);
   }
-  if(minDistance>999999)minDistance=new Float(-1);
-  return minDistance;
+  GeoIndex theseSightings=GeoIndex.forEncounters(new ArrayList<Encounter>(encounters));
+  GeoIndex otherSightings=GeoIndex.forEncounters(new ArrayList<Encounter>(otherIndy.getEncounters()));
+  return new Float(theseSightings.getMinDistance(otherSightings));
 }
 
 
@@ -19,11 +19,13 @@
 
 package org.ecocean;
 
+import java.util.List;
 import java.util.Vector;
 
 public class MarkedIndividualQueryResult {
 
   private Vector<MarkedIndividual> result;
+  private List<MarkedIndividual> resultList;
   private String jdoqlRepresentation;
   private String queryPrettyPrint;
 
@@ -31,12 +33,42 @@ public class MarkedIndividualQueryResult {
     this.result = result;
     this.jdoqlRepresentation = jdoqlRepresentation;
     this.queryPrettyPrint = queryPrettyPrint;
+    this.resultList = result;
   }
 
+  /**
+   * @param resultList the matching individuals, typically a lazily loaded PagedQueryList
+   */
+  public MarkedIndividualQueryResult(List<MarkedIndividual> resultList, String jdoqlRepresentation, String queryPrettyPrint) {
+    this.resultList = resultList;
+    this.jdoqlRepresentation = jdoqlRepresentation;
+    this.queryPrettyPrint = queryPrettyPrint;
+  }
+
+  /**
+   * Returns every matching individual. If the result was created lazily, this loads the whole result with one query;
+   * callers that only display part of it should use getResultList() instead.
+   */
   public Vector<MarkedIndividual> getResult() {
+    if (result == null) {
+      //a PagedQueryList evicts each page as it moves to the next, so load the whole result with one query instead
+      if (resultList instanceof PagedQueryList) {
+        result = new Vector<MarkedIndividual>(((PagedQueryList<MarkedIndividual>) resultList).getAll());
+      }
+      else {
+        result = new Vector<MarkedIndividual>(resultList);
+      }
+    }
     return result;
   }
 
+  /**
+   * Returns the matching individuals without loading those that are never accessed.
+   */
+  public List<MarkedIndividual> getResultList() {
+    return resultList;
+  }
+
   public String getJDOQLRepresentation() {
     return jdoqlRepresentation;
   }
@@ -0,0 +1,293 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.ecocean.servlet.ServletUtilities;
+
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+
+/**
+ * Streams uploaded media to disk without holding it in memory or in a temporary upload file.
+ * <p/>
+ * stage() copies an upload's bytes into a staging directory through an NIO channel, computing their SHA-256 as it
+ * goes. Once the encounter exists, store() moves the staged file into the encounter's directory, or, if identical
+ * media is already stored for another encounter, hard links that file instead, so each distinct photo is kept on disk
+ * once. Width, height and EXIF date and camera are read from the file's header as it is stored.
+ * <p/>
+ * Linked files are one inode with several names, so anything that rewrites a stored file in place, rather than
+ * replacing it with a new file, changes it for every encounter sharing that media.
+ * <p/>
+ * Resized derivatives (thumbnails, mid-size and watermarked images) are run by a small shared pool, rather than by a
+ * new thread per image, so a large submission cannot start dozens of resize commands at once.
+ */
+public class MediaIngest {
+
+  public static final String STAGING_DIR = ".ingest";
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int DERIVATIVE_THREADS = 2;
+
+  private static ThreadPoolExecutor derivativeExecutor = null;
+
+  /**
+   * An upload written to the staging directory, with its content hash.
+   */
+  public static class StagedMedia {
+    private final String originalName;
+    private final File file;
+    private final String contentHash;
+    private final long size;
+
+    StagedMedia(String originalName, File file, String contentHash, long size) {
+      this.originalName = originalName;
+      this.file = file;
+      this.contentHash = contentHash;
+      this.size = size;
+    }
+
+    public String getOriginalName(){return originalName;}
+    public File getFile(){return file;}
+    public String getContentHash(){return contentHash;}
+    public long getSize(){return size;}
+  }
+
+  /**
+   * Returns the directory uploads are staged in, under the encounters directory so that store() can move them
+   * without copying.
+   */
+  public static File getStagingDir(String baseDir) {
+    File dir = new File(baseDir + File.separator + "encounters" + File.separator + STAGING_DIR);
+    if (!dir.exists()) {
+      dir.mkdirs();
+    }
+    return dir;
+  }
+
+  /**
+   * Copies an uploaded stream into a new file in stagingDir, computing the SHA-256 of its bytes as they are written.
+   * The stream is read to its end but not closed.
+   */
+  public static StagedMedia stage(InputStream in, String originalName, File stagingDir) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException nsae) {
+      throw new IOException(nsae);
+    }
+    File file = File.createTempFile("upload", ".part", stagingDir);
+    long size = 0;
+    ReadableByteChannel source = Channels.newChannel(in);
+    FileChannel target = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      while (source.read(buffer) != -1) {
+        buffer.flip();
+        digest.update(buffer.array(), 0, buffer.limit());
+        size += buffer.limit();
+        while (buffer.hasRemaining()) {
+          target.write(buffer);
+        }
+        buffer.clear();
+      }
+    }
+    catch (IOException ioe) {
+      target.close();
+      file.delete();
+      throw ioe;
+    }
+    target.close();
+    return new StagedMedia(originalName, file, toHex(digest.digest()), size);
+  }
+
+  /**
+   * Moves staged media into the directory of enc and returns a SinglePhotoVideo for it, which the caller adds to the
+   * encounter. If a stored SinglePhotoVideo already has the same content, its file is linked rather than stored
+   * again, and its width, height and EXIF values are reused.
+   */
+  public static SinglePhotoVideo store(Shepherd myShepherd, Encounter enc, StagedMedia media, String baseDir) throws IOException {
+    File dir = new File(enc.dir(baseDir));
+    if (!dir.exists()) {
+      dir.mkdirs();
+    }
+    File file = new File(dir, ServletUtilities.cleanFileName(new File(media.getOriginalName()).getName()));
+
+    SinglePhotoVideo existing = myShepherd.getSinglePhotoVideoByContentHash(media.getContentHash());
+    boolean linked = place(media, file, (existing == null) ? null : existing.getFile());
+
+    SinglePhotoVideo spv = new SinglePhotoVideo(enc.getEncounterNumber(), file);
+    spv.setContentHash(media.getContentHash());
+    if (linked) {
+      spv.setWidth(existing.getWidth());
+      spv.setHeight(existing.getHeight());
+      spv.setExifDateTime(existing.getExifDateTime());
+      spv.setExifCamera(existing.getExifCamera());
+    }
+    else {
+      readHeader(spv, file);
+    }
+    return spv;
+  }
+
+  /**
+   * Puts staged media at file, as a hard link to existing if that is given and is another file, and otherwise by
+   * moving the staged file there. Returns true if file was linked, in which case the staged file is deleted.
+   */
+  static boolean place(StagedMedia media, File file, File existing) throws IOException {
+    boolean linked = false;
+    if ((existing != null) && !existing.getAbsoluteFile().equals(file.getAbsoluteFile())) {
+      try {
+        Files.deleteIfExists(file.toPath());
+        Files.createLink(file.toPath(), existing.toPath());
+        linked = true;
+      }
+      catch (Exception e) {
+        //another file system, or links not supported: keep a copy instead
+        System.out.println("MediaIngest could not link " + file.getAbsolutePath() + " to " + existing.getAbsolutePath() + ": " + e.toString());
+      }
+    }
+    if (linked) {
+      media.getFile().delete();
+    }
+    else {
+      Files.move(media.getFile().toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    return linked;
+  }
+
+  /**
+   * Deletes a staged file that was not stored.
+   */
+  public static void discard(StagedMedia media) {
+    if ((media != null) && media.getFile().exists()) {
+      media.getFile().delete();
+    }
+  }
+
+  /**
+   * Sets the width and height of an image, and the EXIF date and camera of a JPEG, reading only the file's header.
+   * Videos and unreadable images are left without them.
+   */
+  static void readHeader(SinglePhotoVideo spv, File file) {
+    if (!Shepherd.isAcceptableImageFile(file.getName())) {
+      return;
+    }
+    ImageInputStream iis = null;
+    try {
+      iis = ImageIO.createImageInputStream(file);
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+      if (readers.hasNext()) {
+        ImageReader reader = readers.next();
+        try {
+          reader.setInput(iis, true, true);
+          spv.setWidth(reader.getWidth(0));
+          spv.setHeight(reader.getHeight(0));
+        }
+        finally {
+          reader.dispose();
+        }
+      }
+    }
+    catch (Exception e) {
+      System.out.println("MediaIngest could not read the size of " + file.getAbsolutePath() + ": " + e.toString());
+    }
+    finally {
+      try {
+        if (iis != null) {
+          iis.close();
+        }
+      }
+      catch (IOException ioe) {}
+    }
+
+    String name = file.getName().toLowerCase();
+    if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+      try {
+        Metadata metadata = JpegMetadataReader.readMetadata(file);
+        ExifSubIFDDirectory exif = metadata.getDirectory(ExifSubIFDDirectory.class);
+        if (exif != null) {
+          spv.setExifDateTime(exif.getString(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL));
+        }
+        ExifIFD0Directory ifd0 = metadata.getDirectory(ExifIFD0Directory.class);
+        if (ifd0 != null) {
+          String make = ifd0.getString(ExifIFD0Directory.TAG_MAKE);
+          String model = ifd0.getString(ExifIFD0Directory.TAG_MODEL);
+          if ((make != null) || (model != null)) {
+            spv.setExifCamera((((make == null) ? "" : make.trim()) + " " + ((model == null) ? "" : model.trim())).trim());
+          }
+        }
+      }
+      catch (Exception e) {
+        //no EXIF data
+      }
+    }
+  }
+
+  /**
+   * Returns the shared pool that runs resized derivatives of uploaded images.
+   */
+  public static synchronized ThreadPoolExecutor getDerivativeExecutor() {
+    if ((derivativeExecutor == null) || derivativeExecutor.isShutdown()) {
+      derivativeExecutor = new ThreadPoolExecutor(DERIVATIVE_THREADS, DERIVATIVE_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "MediaIngest-derivatives");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      derivativeExecutor.allowCoreThreadTimeOut(true);
+    }
+    return derivativeExecutor;
+  }
+
+  static String toHex(byte[] bytes) {
+    StringBuffer hex = new StringBuffer(bytes.length * 2);
+    for (int i = 0; i < bytes.length; i++) {
+      hex.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+      hex.append(Character.forDigit(bytes[i] & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+}
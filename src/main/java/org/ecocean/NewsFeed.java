@@ -0,0 +1,363 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.sun.syndication.feed.synd.SyndCategory;
+import com.sun.syndication.feed.synd.SyndCategoryImpl;
+import com.sun.syndication.feed.synd.SyndContent;
+import com.sun.syndication.feed.synd.SyndContentImpl;
+import com.sun.syndication.feed.synd.SyndEntry;
+import com.sun.syndication.feed.synd.SyndEntryImpl;
+import com.sun.syndication.feed.synd.SyndFeed;
+import com.sun.syndication.feed.synd.SyndFeedImpl;
+import com.sun.syndication.io.SyndFeedInput;
+import com.sun.syndication.io.SyndFeedOutput;
+import com.sun.syndication.io.XmlReader;
+
+/**
+ * The recent entries of an RSS or Atom feed file (rss.xml or atom.xml in a context's data directory), kept in memory.
+ * <p/>
+ * The file is read once, when the feed is first used. New entries go into a ring buffer of the last MAX_ENTRIES
+ * entries without any lock, and the feed is written back to its file in the background, at most once every
+ * WRITE_DELAY_MILLIS however many entries are added meanwhile. The NewsFeed servlet serves getContent() directly,
+ * with getETag() so that readers only download it when it has changed.
+ * <p/>
+ * As before, a feed whose file does not exist is left alone: entries added to it are ignored. So is a feed whose
+ * file cannot be read, rather than overwriting it with only the new entries.
+ */
+public class NewsFeed {
+
+  public static final int MAX_ENTRIES = 10;
+  public static final long WRITE_DELAY_MILLIS = 2000;
+
+  private static final ConcurrentHashMap<String, NewsFeed> feeds = new ConcurrentHashMap<String, NewsFeed>();
+
+  private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "NewsFeed-writer");
+      t.setDaemon(true);
+      return t;
+    }
+  });
+
+  /**
+   * One immutable feed entry.
+   */
+  static class Entry {
+    final long sequence;
+    final String title;
+    final String link;
+    final String description;
+    final String category;
+    final String author;
+    final Date published;
+
+    Entry(long sequence, String title, String link, String description, String category, String author, Date published) {
+      this.sequence = sequence;
+      this.title = title;
+      this.link = link;
+      this.description = description;
+      this.category = category;
+      this.author = author;
+      this.published = published;
+    }
+  }
+
+  private final File file;
+  private final boolean enabled;
+  private final String etagPrefix = Long.toHexString(System.currentTimeMillis());
+
+  //the feed's own title, link etc. as read from the file
+  private String feedType;
+  private String title = "";
+  private String link = "";
+  private String description = "";
+  private String language;
+  private String copyright;
+
+  private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<Entry>(MAX_ENTRIES);
+  private final AtomicLong nextSequence = new AtomicLong(0);
+  private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+
+  //the last rendering, with the number of entries it includes
+  private volatile Rendering rendering = null;
+
+  private static class Rendering {
+    final long sequence;
+    final byte[] content;
+
+    Rendering(long sequence, byte[] content) {
+      this.sequence = sequence;
+      this.content = content;
+    }
+  }
+
+  /**
+   * Returns the feed kept in file, reading the file the first time.
+   */
+  public static NewsFeed getFeed(File file) {
+    String key = file.getAbsolutePath();
+    NewsFeed feed = feeds.get(key);
+    if (feed == null) {
+      NewsFeed loaded = new NewsFeed(file);
+      feed = feeds.putIfAbsent(key, loaded);
+      if (feed == null) {
+        feed = loaded;
+      }
+    }
+    return feed;
+  }
+
+  /**
+   * Writes any pending changes of every feed to their files now, e.g. when the webapp stops.
+   */
+  public static void flushAll() {
+    for (NewsFeed feed : feeds.values()) {
+      feed.write();
+    }
+  }
+
+  private NewsFeed(File file) {
+    this.file = file;
+    this.feedType = file.getName().startsWith("atom") ? "atom_1.0" : "rss_2.0";
+    this.enabled = file.exists() && load();
+  }
+
+  //returns false if the file cannot be read
+  private boolean load() {
+    try {
+      SyndFeed feed = new SyndFeedInput().build(new XmlReader(file));
+      if (feed.getFeedType() != null) feedType = feed.getFeedType();
+      if (feed.getTitle() != null) title = feed.getTitle();
+      if (feed.getLink() != null) link = feed.getLink();
+      if (feed.getDescription() != null) description = feed.getDescription();
+      language = feed.getLanguage();
+      copyright = feed.getCopyright();
+
+      List<SyndEntry> items = feed.getEntries();
+      int first = Math.max(0, items.size() - MAX_ENTRIES);
+      for (int i = first; i < items.size(); i++) {
+        SyndEntry item = items.get(i);
+        String category = null;
+        if ((item.getCategories() != null) && (item.getCategories().size() > 0)) {
+          category = ((SyndCategory) item.getCategories().get(0)).getName();
+        }
+        append(item.getTitle(), item.getLink(), (item.getDescription() == null) ? null : item.getDescription().getValue(), category, item.getAuthor(), item.getPublishedDate());
+      }
+      return true;
+    }
+    catch (Exception e) {
+      System.out.println("ERROR: NewsFeed could not read " + file.getAbsolutePath() + "; it will not be served or written until the webapp is restarted.");
+      e.printStackTrace();
+      return false;
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Adds an entry to the feed and schedules the file to be written.
+   * @param category may be null
+   * @param author may be null
+   */
+  public void addEntry(String title, String link, String description, String category, String author) {
+    if (!enabled) {
+      return;
+    }
+    append(title, link, description, category, author, new Date());
+    if (writeScheduled.compareAndSet(false, true)) {
+      writer.schedule(new Runnable() {
+        public void run() {
+          writeScheduled.set(false);
+          write();
+        }
+      }, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void append(String title, String link, String description, String category, String author, Date published) {
+    long sequence = nextSequence.getAndIncrement();
+    Entry entry = new Entry(sequence, title, link, description, category, author, published);
+    int slot = (int) (sequence % MAX_ENTRIES);
+    Entry old;
+    do {
+      old = entries.get(slot);
+      if ((old != null) && (old.sequence > sequence)) {
+        //a thread that stalled here while the ring went round must not replace a newer entry
+        return;
+      }
+    } while (!entries.compareAndSet(slot, old, entry));
+  }
+
+  /**
+   * Returns the number of entries added before the first one that another thread has numbered but not yet put in the
+   * ring, or of all entries if none is being added.
+   */
+  private long completeSequence() {
+    long end = nextSequence.get();
+    for (long s = Math.max(0, end - MAX_ENTRIES); s < end; s++) {
+      Entry entry = entries.get((int) (s % MAX_ENTRIES));
+      if ((entry == null) || (entry.sequence < s)) {
+        return s;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Returns the last MAX_ENTRIES entries before sequence end, oldest first. Entries that have already been replaced
+   * by newer ones are missing.
+   */
+  List<Entry> getEntries(long end) {
+    List<Entry> list = new ArrayList<Entry>(MAX_ENTRIES);
+    for (long s = Math.max(0, end - MAX_ENTRIES); s < end; s++) {
+      Entry entry = entries.get((int) (s % MAX_ENTRIES));
+      if ((entry != null) && (entry.sequence == s)) {
+        list.add(entry);
+      }
+    }
+    return list;
+  }
+
+  /**
+   * Returns the feed as XML in the format of its file. An entry still being added by another thread is left out, with
+   * any added after it, until it is in the ring.
+   */
+  public byte[] getContent() {
+    long sequence = completeSequence();
+    Rendering current = rendering;
+    if ((current != null) && (current.sequence == sequence)) {
+      return current.content;
+    }
+    synchronized (this) {
+      current = rendering;
+      if ((current != null) && (current.sequence == sequence)) {
+        return current.content;
+      }
+      List<Entry> list = getEntries(sequence);
+      byte[] content = render(list);
+      //only keep a rendering that has every entry up to sequence, not one that newer entries replaced some of
+      if (list.size() == Math.min(sequence, MAX_ENTRIES)) {
+        rendering = new Rendering(sequence, content);
+      }
+      return content;
+    }
+  }
+
+  /**
+   * Returns an ETag for getContent(), which changes whenever an entry is added.
+   */
+  public String getETag() {
+    return "\"" + etagPrefix + "-" + completeSequence() + "\"";
+  }
+
+  public String getContentType() {
+    return feedType.startsWith("atom") ? "application/atom+xml" : "application/rss+xml";
+  }
+
+  private byte[] render(List<Entry> list) {
+    SyndFeed feed = new SyndFeedImpl();
+    feed.setFeedType(feedType);
+    feed.setTitle(title);
+    feed.setLink(link);
+    feed.setDescription(description);
+    if (language != null) feed.setLanguage(language);
+    if (copyright != null) feed.setCopyright(copyright);
+    feed.setPublishedDate(new Date());
+
+    List<SyndEntry> items = new ArrayList<SyndEntry>();
+    for (Entry entry : list) {
+      SyndEntry item = new SyndEntryImpl();
+      item.setTitle(entry.title);
+      item.setLink(entry.link);
+      item.setUri(entry.link);
+      SyndContent desc = new SyndContentImpl();
+      desc.setType("text/html");
+      desc.setValue(entry.description);
+      item.setDescription(desc);
+      item.setPublishedDate(entry.published);
+      List<SyndCategory> categories = new ArrayList<SyndCategory>();
+      if (entry.category != null) {
+        SyndCategory category = new SyndCategoryImpl();
+        category.setName(entry.category);
+        categories.add(category);
+      }
+      item.setCategories(categories);
+      if (entry.author != null) {
+        item.setAuthor(entry.author);
+      }
+      items.add(item);
+    }
+    feed.setEntries(items);
+
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      OutputStreamWriter out = new OutputStreamWriter(bytes, "UTF-8");
+      new SyndFeedOutput().output(feed, out);
+      out.close();
+      return bytes.toByteArray();
+    }
+    catch (Exception e) {
+      System.out.println("NewsFeed could not render " + file.getAbsolutePath());
+      e.printStackTrace();
+      return new byte[0];
+    }
+  }
+
+  //writes the feed to a temporary file, then replaces the feed file with it
+  private synchronized void write() {
+    if (!enabled) {
+      return;
+    }
+    byte[] bytes = getContent();
+    if (bytes.length == 0) {
+      return;
+    }
+    try {
+      File tmp = new File(file.getAbsolutePath() + ".tmp");
+      Files.write(tmp.toPath(), bytes);
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (Exception e) {
+      System.out.println("ERROR: NewsFeed could not write " + file.getAbsolutePath());
+      e.printStackTrace();
+    }
+  }
+
+}
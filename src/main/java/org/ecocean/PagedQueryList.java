@@ -0,0 +1,363 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+/**
+ * A read-only List view of a JDOQL query result that only loads the page of results being accessed.
+ * <p/>
+ * <code>get(i)</code> runs one ranged query for the page containing <code>i</code> and keeps only that page, evicting the
+ * previous one from the PersistenceManager. <code>size()</code> runs a single COUNT query, whose result is cached.
+ * Search result pages that show 10-50 rows therefore never hydrate the rest of the catalog. Callers that need every
+ * result should use {@link #getAll()}, which loads them with one query and does not evict them.
+ * <p/>
+ * A query that joins through VARIABLES can match a candidate once per variable value, so its pages are read with
+ * SELECT DISTINCT, as its COUNT is, and <code>size()</code> always agrees with the rows <code>get(i)</code> returns.
+ * <p/>
+ * An optional {@link PostFilter} may reject candidates that cannot be filtered in JDOQL. In that case the list records the
+ * query offset of every accepted candidate as it scans forward, so <code>get(i)</code> only scans as far as <code>i</code>,
+ * while <code>size()</code> has to scan (page by page) to the end of the result.
+ * <p/>
+ * The list must only be used while the transaction of the PersistenceManager that created it is open.
+ *
+ * @param <T> the candidate class of the query
+ */
+public class PagedQueryList<T> extends AbstractList<T> {
+
+  public static final int DEFAULT_PAGE_SIZE = 50;
+
+  /**
+   * Rejects query results that cannot be excluded by the JDOQL filter itself.
+   */
+  public interface PostFilter<T> {
+    public boolean accept(T candidate);
+  }
+
+  private PersistenceManager pm;
+  private String filter;
+  //the query pages are read with: filter, made DISTINCT if it joins through VARIABLES
+  private String pageFilter;
+  private String ordering;
+  private Map<String, Object> paramMap;
+  private int pageSize;
+  private PostFilter<T> postFilter;
+
+  private int cachedSize = -1;
+
+  //the raw query offset of the current page and its contents
+  private long pageStart = -1;
+  private List<T> page = new ArrayList<T>();
+  private Query pageQuery;
+
+  //with a post filter: raw query offsets of accepted results, and how far the raw result has been scanned
+  private ArrayList<Long> acceptedOffsets;
+  private long scannedTo = 0;
+  private boolean scanComplete = false;
+
+  /**
+   * @param filter a complete single-string JDOQL query, as built by the query processors
+   * @param ordering a JDOQL ordering clause; paging is only stable if the ordering is total, so it should end with a unique field
+   */
+  public PagedQueryList(PersistenceManager pm, String filter, String ordering, Map<String, Object> paramMap, int pageSize, PostFilter<T> postFilter) {
+    this.pm = pm;
+    this.filter = filter;
+    this.pageFilter = getDistinctFilter(filter);
+    this.ordering = ordering;
+    this.paramMap = (paramMap == null) ? new HashMap<String, Object>() : paramMap;
+    this.pageSize = (pageSize > 0) ? pageSize : DEFAULT_PAGE_SIZE;
+    this.postFilter = postFilter;
+    if (postFilter != null) {
+      acceptedOffsets = new ArrayList<Long>();
+    }
+  }
+
+  public PagedQueryList(PersistenceManager pm, String filter, String ordering, Map<String, Object> paramMap) {
+    this(pm, filter, ordering, paramMap, DEFAULT_PAGE_SIZE, null);
+  }
+
+  public T get(int index) {
+    if (index < 0) {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+    T result = find(index);
+    if (result == null) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+    return result;
+  }
+
+  /**
+   * Returns the results from index from up to, but not including, index to, or fewer if the result ends first. Unlike
+   * subList, this does not trust size(), which may have been set by setCachedSize before results were removed: if the
+   * result ends before a size that was set, the size is forgotten so that size() counts it again.
+   */
+  public List<T> getRange(int from, int to) {
+    List<T> rows = new ArrayList<T>();
+    for (int i = Math.max(0, from); i < to; i++) {
+      T result = find(i);
+      if (result == null) {
+        if (cachedSize > i) {
+          cachedSize = -1;
+        }
+        break;
+      }
+      rows.add(result);
+    }
+    return rows;
+  }
+
+  public int size() {
+    if (cachedSize < 0) {
+      if (postFilter != null) {
+        scanUntil(Integer.MAX_VALUE);
+        cachedSize = acceptedOffsets.size();
+      }
+      else {
+        cachedSize = (int) count();
+      }
+    }
+    return cachedSize;
+  }
+
+  /**
+   * Sets the total size, for example from a count cached by the caller, so that size() does not need to query it.
+   */
+  public void setCachedSize(int size) {
+    this.cachedSize = size;
+  }
+
+  public boolean hasPostFilter() {
+    return postFilter != null;
+  }
+
+  /**
+   * Returns the single-string JDOQL query this list pages through.
+   */
+  public String getFilter() {
+    return filter;
+  }
+
+  public String getOrdering() {
+    return ordering;
+  }
+
+  /**
+   * Returns the parameters of the query. Callers building a derived query should copy them rather than add to them.
+   */
+  public Map<String, Object> getParameters() {
+    return paramMap;
+  }
+
+  /**
+   * Returns true if each candidate can match the query at most once, so that a grouped projection of the query counts
+   * each one once. Queries that join through VARIABLES may return a candidate once per matching variable value.
+   */
+  public boolean isGroupable() {
+    return (postFilter == null) && (filter.indexOf(" VARIABLES ") == -1);
+  }
+
+  /**
+   * Returns true if size() no longer needs to query the datastore.
+   */
+  public boolean isSizeKnown() {
+    return cachedSize >= 0;
+  }
+
+  /**
+   * Runs the query with a projection instead of loading the candidates, e.g. <code>"individualID, year"</code>.
+   * Projections cannot be post-filtered, so this is only available when the list has no {@link PostFilter}.
+   *
+   * @return the projected rows; each is an Object[] if result names more than one expression
+   */
+  public List<Object> getProjection(String result) {
+    return getProjection(result, null);
+  }
+
+  /**
+   * Runs the query as a grouped projection so that the datastore does the aggregation, e.g.
+   * <code>getProjection("country, count(this)", "country")</code>.
+   *
+   * @param grouping a JDOQL grouping clause, or null
+   */
+  public List<Object> getProjection(String result, String grouping) {
+    if (postFilter != null) {
+      throw new IllegalStateException("PagedQueryList cannot project a post-filtered query.");
+    }
+    Query query = pm.newQuery(filter);
+    try {
+      query.setResult(result);
+      String template = filter + " RESULT " + result;
+      if (grouping != null) {
+        query.setGrouping(grouping);
+        template += " GROUP BY " + grouping;
+      }
+      query.compile();
+      Collection c = (Collection) QueryTemplateCache.executeWithMap(query, template, null, paramMap);
+      return new ArrayList<Object>(c);
+    }
+    finally {
+      query.closeAll();
+    }
+  }
+
+  /**
+   * Appends a unique field to an ordering clause, unless the ordering already ends with it, so that ranged pages of the
+   * query never overlap or skip rows that tie on the other ordering fields.
+   */
+  public static String getStableOrdering(String ordering, String uniqueField) {
+    if ((ordering == null) || (ordering.trim().equals(""))) {
+      return uniqueField + " ascending";
+    }
+    if (ordering.trim().startsWith(uniqueField + " ") || (ordering.indexOf(", " + uniqueField + " ") != -1)) {
+      return ordering;
+    }
+    return ordering + ", " + uniqueField + " ascending";
+  }
+
+  /**
+   * Returns every result, loaded by a single query whose results are not evicted, for callers that use all of them.
+   */
+  public ArrayList<T> getAll() {
+    Query query = QueryTemplateCache.newQuery(pm, pageFilter, ordering);
+    try {
+      Collection c = (Collection) QueryTemplateCache.executeWithMap(query, pageFilter, ordering, paramMap);
+      ArrayList<T> all = new ArrayList<T>(c.size());
+      for (Object candidate : c) {
+        if ((postFilter == null) || postFilter.accept((T) candidate)) {
+          all.add((T) candidate);
+        }
+      }
+      if ((postFilter == null) && (cachedSize < 0)) {
+        cachedSize = all.size();
+      }
+      return all;
+    }
+    finally {
+      query.closeAll();
+    }
+  }
+
+  /**
+   * Returns a single-string query that selects each candidate of filter once, by making it SELECT DISTINCT if it
+   * declares VARIABLES.
+   */
+  static String getDistinctFilter(String filter) {
+    if ((filter.indexOf(" VARIABLES ") == -1) || !filter.startsWith("SELECT FROM ")) {
+      return filter;
+    }
+    return "SELECT DISTINCT this FROM " + filter.substring("SELECT FROM ".length());
+  }
+
+  /**
+   * Evicts the page currently held by this list.
+   */
+  public void release() {
+    if (page.size() > 0) {
+      pm.evictAll(page);
+    }
+    page = new ArrayList<T>();
+    pageStart = -1;
+  }
+
+  //returns null past the end of the result
+  private T find(int index) {
+    long offset = index;
+    if (postFilter != null) {
+      scanUntil(index);
+      if (index >= acceptedOffsets.size()) {
+        return null;
+      }
+      offset = acceptedOffsets.get(index).longValue();
+    }
+    return getRaw(offset);
+  }
+
+  private T getRaw(long offset) {
+    if ((pageStart < 0) || (offset < pageStart) || (offset >= pageStart + pageSize)) {
+      loadPage((offset / pageSize) * pageSize);
+    }
+    int indexInPage = (int) (offset - pageStart);
+    if (indexInPage >= page.size()) {
+      return null;
+    }
+    return page.get(indexInPage);
+  }
+
+  private void loadPage(long start) {
+    release();
+    page = fetch(start, start + pageSize);
+    pageStart = start;
+  }
+
+  /**
+   * Runs the page query for the raw results from start up to end.
+   */
+  List<T> fetch(long start, long end) {
+    //the page query is compiled once and re-executed with a new range for every page
+    if (pageQuery == null) {
+      pageQuery = QueryTemplateCache.newQuery(pm, pageFilter, ordering);
+    }
+    try {
+      pageQuery.setRange(start, end);
+      Collection c = (Collection) QueryTemplateCache.executeWithMap(pageQuery, pageFilter, ordering, paramMap);
+      return new ArrayList<T>(c);
+    }
+    finally {
+      pageQuery.closeAll();
+    }
+  }
+
+  private void scanUntil(int index) {
+    while ((!scanComplete) && (acceptedOffsets.size() <= index)) {
+      T candidate = getRaw(scannedTo);
+      if (candidate == null) {
+        scanComplete = true;
+        break;
+      }
+      if (postFilter.accept(candidate)) {
+        acceptedOffsets.add(Long.valueOf(scannedTo));
+      }
+      scannedTo++;
+    }
+  }
+
+  private long count() {
+    Query query = pm.newQuery(filter);
+    try {
+      query.setResult("count(distinct this)");
+      query.compile();
+      Object result = QueryTemplateCache.executeWithMap(query, filter + " RESULT count(distinct this)", null, paramMap);
+      return (result == null) ? 0 : ((Number) result).longValue();
+    }
+    finally {
+      query.closeAll();
+    }
+  }
+
+}
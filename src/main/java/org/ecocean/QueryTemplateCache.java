@@ -0,0 +1,242 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Creates and executes parameterized JDOQL queries, keeping compile and execute timings for each query template.
+ * <p/>
+ * The search query processors write every value entered in a search form into a parameter map rather than into the
+ * JDOQL text, so a template such as <code>SELECT FROM org.ecocean.Encounter WHERE (locCodes.contains(locationID))
+ * PARAMETERS java.util.Collection locCodes</code> is the same for every search that uses the same filters.
+ * DataNucleus caches query compilations per PersistenceManagerFactory, keyed by the query text, so only the first search
+ * with a given template pays for compilation; later ones skip it. A <code>javax.jdo.Query</code> instance itself belongs
+ * to one PersistenceManager and cannot be shared between requests, which is why this class does not hold on to them.
+ * <p/>
+ * The statistics are kept for at most MAX_TEMPLATES templates, least recently used first out, so that a stream of
+ * unparameterized queries cannot grow the map without bound.
+ */
+public class QueryTemplateCache {
+
+  public static final int MAX_TEMPLATES = 256;
+
+  private static final Map<String, TemplateStatistics> templates = new LinkedHashMap<String, TemplateStatistics>(64, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<String, TemplateStatistics> eldest) {
+      return size() > MAX_TEMPLATES;
+    }
+  };
+
+  private static long evictions = 0;
+
+  /**
+   * Compile and execute timings for one query template.
+   */
+  public static class TemplateStatistics {
+    private String template;
+    private long compilations;
+    private long compileNanos;
+    private long firstCompileNanos;
+    private long executions;
+    private long executeNanos;
+
+    private TemplateStatistics(String template) {
+      this.template = template;
+    }
+
+    private TemplateStatistics(TemplateStatistics other) {
+      this.template = other.template;
+      this.compilations = other.compilations;
+      this.compileNanos = other.compileNanos;
+      this.firstCompileNanos = other.firstCompileNanos;
+      this.executions = other.executions;
+      this.executeNanos = other.executeNanos;
+    }
+
+    public String getTemplate() {return template;}
+
+    /** Number of queries created from this template. Every one after the first should find the compilation cached. */
+    public long getCompilations() {return compilations;}
+
+    public long getCompileNanos() {return compileNanos;}
+
+    /** Time taken to compile the template the first time it was seen, when the compilation could not be cached yet. */
+    public long getFirstCompileNanos() {return firstCompileNanos;}
+
+    public long getExecutions() {return executions;}
+
+    public long getExecuteNanos() {return executeNanos;}
+
+    public double getMeanCompileMillis() {
+      return (compilations == 0) ? 0 : (compileNanos / 1000000.0) / compilations;
+    }
+
+    public double getMeanExecuteMillis() {
+      return (executions == 0) ? 0 : (executeNanos / 1000000.0) / executions;
+    }
+
+    /** Number of queries created from this template after the first, each of which found its compilation cached. */
+    public long getCompileCacheHits() {
+      return Math.max(0, compilations - 1);
+    }
+
+    public JSONObject toJSON() throws JSONException {
+      JSONObject json = new JSONObject();
+      json.put("template", template);
+      json.put("compilations", compilations);
+      json.put("compileCacheHits", getCompileCacheHits());
+      json.put("firstCompileMillis", firstCompileNanos / 1000000.0);
+      json.put("meanCompileMillis", getMeanCompileMillis());
+      json.put("executions", executions);
+      json.put("meanExecuteMillis", getMeanExecuteMillis());
+      return json;
+    }
+
+    public String toString() {
+      return String.format("compiled %d times (first %.2f ms, mean %.2f ms), executed %d times (mean %.2f ms): %s",
+        compilations, firstCompileNanos / 1000000.0, getMeanCompileMillis(), executions, getMeanExecuteMillis(), template);
+    }
+  }
+
+  /**
+   * Creates a query from a single-string JDOQL template and compiles it, recording the compile time against the template.
+   *
+   * @param ordering a JDOQL ordering clause, or null. It is set before compiling since it is part of the compiled query.
+   */
+  public static Query newQuery(PersistenceManager pm, String template, String ordering) {
+    Query query = pm.newQuery(template);
+    if ((ordering != null) && (!ordering.equals(""))) {
+      query.setOrdering(ordering);
+    }
+    template = getKey(template, ordering);
+    long start = System.nanoTime();
+    query.compile();
+    long elapsed = System.nanoTime() - start;
+    synchronized (templates) {
+      TemplateStatistics stats = getOrCreate(template);
+      if (stats.compilations == 0) {
+        stats.firstCompileNanos = elapsed;
+      }
+      stats.compilations++;
+      stats.compileNanos += elapsed;
+    }
+    return query;
+  }
+
+  /**
+   * Executes a query created by newQuery, recording the execution time against its template and ordering.
+   */
+  public static Object executeWithMap(Query query, String template, String ordering, Map paramMap) {
+    template = getKey(template, ordering);
+    long start = System.nanoTime();
+    try {
+      return query.executeWithMap(paramMap);
+    }
+    finally {
+      long elapsed = System.nanoTime() - start;
+      synchronized (templates) {
+        TemplateStatistics stats = getOrCreate(template);
+        stats.executions++;
+        stats.executeNanos += elapsed;
+      }
+    }
+  }
+
+  /**
+   * Returns a snapshot of the statistics of the templates currently tracked, most recently used last.
+   */
+  public static List<TemplateStatistics> getStatistics() {
+    ArrayList<TemplateStatistics> snapshot = new ArrayList<TemplateStatistics>();
+    synchronized (templates) {
+      Iterator<TemplateStatistics> it = templates.values().iterator();
+      while (it.hasNext()) {
+        snapshot.add(new TemplateStatistics(it.next()));
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * Returns the number of templates dropped from the statistics because more than MAX_TEMPLATES were in use.
+   */
+  public static long getEvictions() {
+    synchronized (templates) {
+      return evictions;
+    }
+  }
+
+  /**
+   * Returns the statistics of every template tracked, as reported by the CacheAdmin servlet.
+   */
+  public static JSONObject getStatisticsJSON() throws JSONException {
+    JSONObject json = new JSONObject();
+    JSONArray list = new JSONArray();
+    long compilations = 0;
+    long hits = 0;
+    for (TemplateStatistics stats : getStatistics()) {
+      list.put(stats.toJSON());
+      compilations += stats.getCompilations();
+      hits += stats.getCompileCacheHits();
+    }
+    json.put("compilations", compilations);
+    json.put("compileCacheHits", hits);
+    json.put("evictions", getEvictions());
+    json.put("templates", list);
+    return json;
+  }
+
+  public static void clearStatistics() {
+    synchronized (templates) {
+      templates.clear();
+      evictions = 0;
+    }
+  }
+
+  private static String getKey(String template, String ordering) {
+    if ((ordering == null) || (ordering.equals(""))) {
+      return template;
+    }
+    return template + " ORDER BY " + ordering;
+  }
+
+  private static TemplateStatistics getOrCreate(String template) {
+    TemplateStatistics stats = templates.get(template);
+    if (stats == null) {
+      if (templates.size() >= MAX_TEMPLATES) {
+        evictions++;
+      }
+      stats = new TemplateStatistics(template);
+      templates.put(template, stats);
+    }
+    return stats;
+  }
+
+}
@@ -65,6 +65,14 @@ public class Shepherd {
   public static Vector matches = new Vector();
   //private PersistenceManagerFactory pmf;
   private String localContext;
+  //when the current PersistenceManager was opened
+  private long pmOpenedAt;
+  //the encounters and genetic analyses stored or deleted in the current transaction, for the FacetIndex
+  private FacetIndex.Changes facetChanges = new FacetIndex.Changes();
+
+  //named fetch groups declared in package.jdo
+  public static final String FETCH_GROUP_LIST = "allSharks_min";
+  public static final String FETCH_GROUP_COUNT = "count";
 
 
   /**
@@ -75,7 +83,7 @@ public class Shepherd {
       //PersistenceManagerFactory pmf = ShepherdPMF.getPMF(context);
       localContext=context;
       try {
-        pm = ShepherdPMF.getPMF(localContext).getPersistenceManager();
+        openPM();
       } 
       catch (JDOUserException e) {
         System.out.println("Hit an excpetion while trying to instantiate a PM. Not fatal I think.");
@@ -86,10 +94,24 @@ public class Shepherd {
   }
 
 
+  /**
+   * Opens a PersistenceManager and reports it to the ShepherdRequest of the current thread, if any.
+   */
+  private void openPM() {
+    pm = ShepherdPMF.getPMF(localContext).getPersistenceManager();
+    pm.addInstanceLifecycleListener(facetChanges, FacetIndex.Changes.CLASSES);
+    pmOpenedAt = System.currentTimeMillis();
+    ShepherdRequest.opened(this);
+  }
+
   public PersistenceManager getPM() {
     return pm;
   }
 
+  public String getContext() {
+    return localContext;
+  }
+
   //public PersistenceManagerFactory getPMF() {
   //  return pmf;
   //}
@@ -297,10 +319,30 @@ public class Shepherd {
   }
 
 
+  /**
+   * Looks up an object by its application identity. When datanucleus.enableStatistics is set, whether the lookup was
+   * served without a datastore read, for example from the level 2 cache, is recorded in the CacheStatistics of the
+   * context.
+   */
+  private Object getObjectById(Class cls, String id) {
+    long reads = ShepherdPMF.getNumberOfDatastoreReads(pm);
+    boolean found = false;
+    try {
+      Object obj = pm.getObjectById(pm.newObjectIdInstance(cls, id.trim()), true);
+      found = true;
+      return obj;
+    }
+    finally {
+      if (reads >= 0) {
+        ShepherdPMF.getCacheStatistics(localContext).record(cls.getName(), found && (ShepherdPMF.getNumberOfDatastoreReads(pm) == reads));
+      }
+    }
+  }
+
   public Encounter getEncounter(String num) {
     Encounter tempEnc = null;
     try {
-      tempEnc = ((Encounter) (pm.getObjectById(pm.newObjectIdInstance(Encounter.class, num.trim()), true)));
+      tempEnc = ((Encounter) (getObjectById(Encounter.class, num)));
     } catch (Exception nsoe) {
       return null;
     }
@@ -400,6 +442,31 @@ public class Shepherd {
     return tempEnc;
   }
 
+  /**
+   * Returns a stored SinglePhotoVideo whose file has the given SHA-256 and still exists, or null if there is none.
+   */
+  public SinglePhotoVideo getSinglePhotoVideoByContentHash(String contentHash) {
+    if (contentHash == null) return null;
+    Query query = pm.newQuery(SinglePhotoVideo.class, "this.contentHash == hash");
+    query.declareParameters("String hash");
+    try {
+      Collection c = (Collection) (query.execute(contentHash));
+      Iterator it = c.iterator();
+      while (it.hasNext()) {
+        SinglePhotoVideo spv = (SinglePhotoVideo) it.next();
+        if ((spv.getFile() != null) && spv.getFile().exists()) {
+          return spv;
+        }
+      }
+    } catch (Exception e) {
+      System.out.println("Error encountered when trying to execute getSinglePhotoVideoByContentHash. Returning null.");
+      e.printStackTrace();
+    } finally {
+      query.closeAll();
+    }
+    return null;
+  }
+
   public Role getRole(String rolename, String username, String context) {
 
     ArrayList<Role> roles = getAllRoles();
@@ -479,7 +546,7 @@ public class Shepherd {
   public User getUser(String username) {
     User user= null;
     try {
-      user = ((User) (pm.getObjectById(pm.newObjectIdInstance(User.class, username.trim()), true)));
+      user = ((User) (getObjectById(User.class, username)));
     }
     catch (Exception nsoe) {
       return null;
@@ -1488,51 +1555,14 @@ public class Shepherd {
     return null;
   }
 
+  /**
+   * Returns the other individuals sighted in the same occurrences as indie, mapped to the number of occurrences
+   * shared, most frequent first.
+   *
+   * @see AssociationIndex
+   */
   public ArrayList<Map.Entry> getAllOtherIndividualsOccurringWithMarkedIndividual(String indie){
-    HashMap<String,Integer> hmap = new HashMap<String,Integer>();
-    //TreeMapOccurrenceComparator cmp=new TreeMapOccurrenceComparator(hmap);
-   //TreeMap<String, Integer> map=new TreeMap<String, Integer>(cmp);
-   TreeMap<String, Integer> map=new TreeMap<String, Integer>();
-   String filter="SELECT FROM org.ecocean.Occurrence WHERE encounters.contains(enc) && enc.individualID == \""+indie+"\"  VARIABLES org.ecocean.Encounter enc";
-   Query query=getPM().newQuery(filter);
-   Iterator it=getAllOccurrencesForMarkedIndividual(query,indie);
-   if(it!=null){
-      while(it.hasNext()){
-         Occurrence oc=(Occurrence)it.next();
-         //System.out.println("     Found an occurrence for my indie!!!!");
-         ArrayList<MarkedIndividual> alreadyCounted=new ArrayList<MarkedIndividual>();
-         ArrayList<Encounter> encounters=oc.getEncounters();
-         int numEncounters=encounters.size();
-         for(int i=0;i<numEncounters;i++){
-           Encounter enc=encounters.get(i);
-           if((enc.getIndividualID()!=null)&&(!enc.getIndividualID().equals("Unassigned"))&&(!enc.getIndividualID().equals(indie))){
-             MarkedIndividual indieEnc=this.getMarkedIndividual(enc.getIndividualID());
-             //check if we already have this Indie
-             if(!hmap.containsKey(indieEnc.getIndividualID())){
-               hmap.put(indieEnc.getIndividualID(), (new Integer(1)));
-               alreadyCounted.add(indieEnc);
-             }
-             else if(!alreadyCounted.contains(indieEnc)){
-               Integer oldValue=hmap.get(indieEnc.getIndividualID());
-               hmap.put(indieEnc.getIndividualID(), (oldValue+1));
-               //System.out.println("Iterating: "+indieEnc.getIndividualID());
-             }
-
-           }
-         }
-      }
-    } //end if
-
-      ArrayList<Map.Entry> as = new ArrayList<Map.Entry>( hmap.entrySet() );
-
-      if(as.size()>0){
-        IndividualOccurrenceNumComparator cmp=new IndividualOccurrenceNumComparator();
-        Collections.sort( as , cmp);
-        Collections.reverse(as);
-      }
-      
-      query.closeAll();
-      return as;
+    return AssociationIndex.getIndex(this).getAssociates(indie);
   }
 
 
@@ -1569,6 +1599,21 @@ public class Shepherd {
   }
 
 
+  /**
+   * Paged counterpart of getAllEncountersNoFilter(order, filter2use). The returned read-only list runs one range query
+   * for each page of pageSize encounters that is accessed instead of loading every match, and counts matches with a
+   * COUNT query. catalogNumber is appended to the ordering so that pages are stable.
+   *
+   * @param filter2use a JDOQL filter on Encounter, or null for all encounters
+   */
+  public PagedQueryList<Encounter> getAllEncountersPaged(String order, String filter2use, int pageSize) {
+    String query = "SELECT FROM org.ecocean.Encounter";
+    if ((filter2use != null) && (!filter2use.trim().equals(""))) {
+      query += " WHERE " + filter2use;
+    }
+    return new PagedQueryList<Encounter>(pm, query, PagedQueryList.getStableOrdering(order, "catalogNumber"), null, pageSize, null);
+  }
+
   public Query getAllEncountersNoFilterReturnQuery(String order, String filter2use) {
     String filter = filter2use;
     Extent encClass = pm.getExtent(Encounter.class, true);
@@ -1651,7 +1696,7 @@ public class Shepherd {
   public MarkedIndividual getMarkedIndividual(String name) {
     MarkedIndividual tempShark = null;
     try {
-      tempShark = ((org.ecocean.MarkedIndividual) (pm.getObjectById(pm.newObjectIdInstance(MarkedIndividual.class, name.trim()), true)));
+      tempShark = ((org.ecocean.MarkedIndividual) (getObjectById(MarkedIndividual.class, name)));
     } catch (Exception nsoe) {
       nsoe.printStackTrace();
       return null;
@@ -1662,7 +1707,7 @@ public class Shepherd {
   public Occurrence getOccurrence(String id) {
     Occurrence tempShark = null;
     try {
-      tempShark = ((org.ecocean.Occurrence) (pm.getObjectById(pm.newObjectIdInstance(Occurrence.class, id.trim()), true)));
+      tempShark = ((org.ecocean.Occurrence) (getObjectById(Occurrence.class, id)));
     } catch (Exception nsoe) {
       nsoe.printStackTrace();
       return null;
@@ -1726,6 +1771,7 @@ public class Shepherd {
     }
     Extent encClass = pm.getExtent(MarkedIndividual.class, true);
     Query sharks = pm.newQuery(encClass);
+    sharks.getFetchPlan().addGroup(FETCH_GROUP_LIST);
     Collection c = (Collection) (sharks.execute());
     ArrayList list = new ArrayList(c);
     Iterator it = list.iterator();
@@ -1741,6 +1787,7 @@ public class Shepherd {
     }
     Extent encClass = pm.getExtent(MarkedIndividual.class, true);
     Query sharks = pm.newQuery(encClass);
+    sharks.getFetchPlan().addGroup(FETCH_GROUP_LIST);
     Collection c = (Collection) (sharks.execute());
     ArrayList list = new ArrayList(c);
     ArrayList<MarkedIndividual> newList=new ArrayList<MarkedIndividual>();
@@ -1775,6 +1822,7 @@ public class Shepherd {
 
   public Iterator getAllMarkedIndividuals(Query sharkies, String order, Map<String, Object> params) {
     sharkies.setOrdering(order);
+    sharkies.getFetchPlan().addGroup(FETCH_GROUP_LIST);
     Collection c = (Collection) (sharkies.executeWithMap(params));
     ArrayList list = new ArrayList(c);
     //Collections.reverse(list);
@@ -1783,21 +1831,26 @@ public class Shepherd {
   }
 
 
-  public int getNumMarkedIndividuals() {
-    int num = 0;
-    Query q = pm.newQuery(MarkedIndividual.class); // no filter, so all instances match
-
+  /**
+   * Executes a query as a count(this) projection with the count fetch group, so that no candidates are loaded.
+   */
+  private int count(Query query) {
+    query.getFetchPlan().setGroup(FETCH_GROUP_COUNT);
+    query.setResult("count(this)");
     try {
-      pm.getFetchPlan().setGroup("count");
-      Collection results = (Collection) q.execute();
-      num = results.size();
-
+      Long num = (Long) query.execute();
+      return num.intValue();
     } catch (javax.jdo.JDOException x) {
       x.printStackTrace();
-      return num;
+      return 0;
+    }
+    finally {
+      query.closeAll();
     }
-    q.closeAll();
-    return num;
+  }
+
+  public int getNumMarkedIndividuals() {
+    return count(pm.newQuery(MarkedIndividual.class)); // no filter, so all instances match
   }
   
   public int getNumUsers() {
@@ -1835,7 +1888,6 @@ public class Shepherd {
   }
 
   public int getNumUnfinishedScanTasks() {
-    pm.getFetchPlan().setGroup("count");
     Collection c;
     Extent encClass = getPM().getExtent(ScanTask.class, true);
     Query query = getPM().newQuery(encClass);
@@ -1856,53 +1908,20 @@ public class Shepherd {
 
 
   public int getNumEncounters() {
-    pm.getFetchPlan().setGroup("count");
     Extent encClass = pm.getExtent(Encounter.class, true);
     String filter = "this.state != \"unidentifiable\"";
-    Query acceptedEncounters = pm.newQuery(encClass, filter);
-    try {
-      Collection c = (Collection) (acceptedEncounters.execute());
-      int num = c.size();
-      acceptedEncounters.closeAll();
-      return num;
-    } catch (javax.jdo.JDOException x) {
-      x.printStackTrace();
-      acceptedEncounters.closeAll();
-      return 0;
-    }
+    return count(pm.newQuery(encClass, filter));
   }
 
   public int getNumAdoptions() {
-    pm.getFetchPlan().setGroup("count");
     Extent encClass = pm.getExtent(Adoption.class, true);
-    Query acceptedEncounters = pm.newQuery(encClass);
-    try {
-      Collection c = (Collection) (acceptedEncounters.execute());
-      int num = c.size();
-      acceptedEncounters.closeAll();
-      return num;
-    } catch (javax.jdo.JDOException x) {
-      x.printStackTrace();
-      acceptedEncounters.closeAll();
-      return 0;
-    }
+    return count(pm.newQuery(encClass));
   }
 
   public int getNumApprovedEncounters() {
-    pm.getFetchPlan().setGroup("count");
     Extent encClass = pm.getExtent(Encounter.class, true);
     String filter = "this.state == \"approved\"";
-    Query acceptedEncounters = pm.newQuery(encClass, filter);
-    try {
-      Collection c = (Collection) (acceptedEncounters.execute());
-      int num = c.size();
-      acceptedEncounters.closeAll();
-      return num;
-    } catch (javax.jdo.JDOException x) {
-      x.printStackTrace();
-      acceptedEncounters.closeAll();
-      return 0;
-    }
+    return count(pm.newQuery(encClass, filter));
   }
 
   public int getNumEncounters(String locationCode) {
@@ -1974,7 +1993,6 @@ public class Shepherd {
   }
 
   public int getNumEncountersWithSpotData(boolean rightSide) {
-    pm.getFetchPlan().setGroup("count");
     Extent encClass = pm.getExtent(Encounter.class, true);
     String filter = "";
     if (rightSide) {
@@ -1982,20 +2000,7 @@ public class Shepherd {
     } else {
       filter = "this.numSpotsLeft > 0";
     }
-    Query acceptedEncounters = pm.newQuery(encClass, filter);
-    int num = 0;
-    try {
-      Collection c = (Collection) (acceptedEncounters.execute());
-      Iterator it = c.iterator();
-
-      num = c.size();
-      acceptedEncounters.closeAll();
-      return num;
-    } catch (javax.jdo.JDOException x) {
-      x.printStackTrace();
-      acceptedEncounters.closeAll();
-      return 0;
-    }
+    return count(pm.newQuery(encClass, filter));
   }
 
 
@@ -2079,10 +2084,11 @@ public class Shepherd {
     //PersistenceManagerFactory pmf = ShepherdPMF.getPMF(localContext);
     try {
       if (pm == null || pm.isClosed()) {
-        pm = ShepherdPMF.getPMF(localContext).getPersistenceManager();
+        openPM();
         pm.currentTransaction().begin();
       } else if (!pm.currentTransaction().isActive()) {
-
+        //drop anything left over from a transaction whose commit failed
+        facetChanges.clear();
         pm.currentTransaction().begin();
       }
 
@@ -2107,6 +2113,7 @@ public class Shepherd {
 
         //System.out.println("     Now commiting a transaction with pm"+(String)pm.getUserObject());
         pm.currentTransaction().commit();
+        facetChanges.apply(localContext);
         //return true;
         //System.out.println("A transaction has been successfully committed.");
       } else {
@@ -2140,11 +2147,16 @@ public class Shepherd {
 
 
   /**
-   * Closes a PersistenceManager
+   * Closes a PersistenceManager, first rolling back any transaction left active, which would otherwise keep it from
+   * closing.
    */
   public void closeDBTransaction() {
     try {
       if ((pm != null) && (!pm.isClosed())) {
+        if (pm.currentTransaction().isActive()) {
+          pm.currentTransaction().rollback();
+        }
+        ShepherdRequest.closed(this, System.currentTimeMillis() - pmOpenedAt, ShepherdPMF.getNumberOfQueries(pm));
         pm.close();
       }
       //logger.info("A PersistenceManager has been successfully closed.");
@@ -2165,6 +2177,7 @@ public class Shepherd {
    */
   public void rollbackDBTransaction() {
     try {
+      facetChanges.clear();
       if ((pm != null) && (pm.currentTransaction().isActive())) {
         //System.out.println("     Now rollingback a transaction with pm"+(String)pm.getUserObject());
         pm.currentTransaction().rollback();
@@ -2295,267 +2308,56 @@ public class Shepherd {
   }
 
 
+  /**
+   * Returns the acceptable images and videos numbered startNum to endNum (inclusive, from 1) of the encounters in the Iterator.
+   * Only images with one of the keywords, and with the filename given in the request's filenameField, if any, are counted.
+   *
+   * @see GalleryQuery
+   */
   public ArrayList<SinglePhotoVideo> getThumbnails(HttpServletRequest request, Iterator it, int startNum, int endNum, String[] keywords) {
-    ArrayList<SinglePhotoVideo> thumbs = new ArrayList<SinglePhotoVideo>();
-    boolean stopMe = false;
-    int count = 0;
-    while (it.hasNext()) {
-      Encounter enc = (Encounter) it.next();
-      ArrayList<SinglePhotoVideo> images=getAllSinglePhotoVideosForEncounter(enc.getCatalogNumber());
-
-      if ((count + images.size()) >= startNum) {
-        for (int i = 0; i < images.size(); i++) {
-          count++;
-          if ((count <= endNum) && (count >= startNum)) {
-            String m_thumb = "";
-
-            //check for video or image
-            String imageName = (String) images.get(i).getFilename();
-
-            //check if this image has one of the assigned keywords
-            boolean hasKeyword = false;
-            if ((keywords == null) || (keywords.length == 0)) {
-              hasKeyword = true;
-            } else {
-              int numKeywords = keywords.length;
-              for (int n = 0; n < numKeywords; n++) {
-                if (!keywords[n].equals("None")) {
-                  Keyword word = getKeyword(keywords[n]);
-
-                  if (images.get(i).getKeywords().contains(word)) {
-
-
-                  //if (word.isMemberOf(enc.getCatalogNumber() + "/" + imageName)) {
-
-                    hasKeyword = true;
-                    //System.out.println("member of: "+word.getReadableName());
-                  }
-                } else {
-                  hasKeyword = true;
-                }
-
-              }
-
-            }
-
-			//check for specific filename conditions here
-			if((request.getParameter("filenameField")!=null)&&(!request.getParameter("filenameField").equals(""))){
-					String nameString=ServletUtilities.cleanFileName(ServletUtilities.preventCrossSiteScriptingAttacks(request.getParameter("filenameField").trim()));
-					if(!nameString.equals(imageName)){hasKeyword=false;}
-			}
-      if (hasKeyword && isAcceptableVideoFile(imageName)) {
-              m_thumb = "http://" + CommonConfiguration.getURLLocation(request) + "/images/video.jpg" + "BREAK" + enc.getEncounterNumber() + "BREAK" + imageName;
-              //thumbs.add(m_thumb);
-              thumbs.add(images.get(i));
-      }
-      else if (hasKeyword && isAcceptableImageFile(imageName)) {
-              m_thumb = enc.getEncounterNumber() + "/" + (i + 1) + ".jpg" + "BREAK" + enc.getEncounterNumber() + "BREAK" + imageName;
-              //thumbs.add(m_thumb);
-              thumbs.add(images.get(i));
-      }
-      else {
-              count--;
-      }
-          } else if (count > endNum) {
-            stopMe = true;
-          }
-        }
-      } //end if
-      else {
-        count += images.size();
-      }
-
-    }//end while
-    return thumbs;
+    return GalleryQuery.forEncounters(this, it, keywords, GalleryQuery.getFilename(request)).getPage(startNum, endNum);
   }
 
-  public ArrayList<SinglePhotoVideo> getMarkedIndividualThumbnails(HttpServletRequest request, Iterator<MarkedIndividual> it, int startNum, int endNum, String[] keywords) {
-    ArrayList<SinglePhotoVideo> thumbs = new ArrayList<SinglePhotoVideo>();
+  /**
+   * Returns a gallery of the images of an encounter search, paged in the datastore in the order of the search.
+   */
+  public GalleryQuery getEncounterGallery(HttpServletRequest request, PagedQueryList<Encounter> encounters, String[] keywords) {
+    return GalleryQuery.forEncounterSearch(this, encounters, keywords, GalleryQuery.getFilename(request));
+  }
 
-    boolean stopMe = false;
-    int count = 0;
-    while (it.hasNext()&&!stopMe) {
+  /**
+   * Returns a gallery of the images of all of the encounters of the individuals in the Iterator, in order.
+   */
+  public GalleryQuery getMarkedIndividualGallery(HttpServletRequest request, Iterator<MarkedIndividual> it, String[] keywords) {
+    ArrayList<String> encounterNumbers = new ArrayList<String>();
+    while (it.hasNext()) {
       MarkedIndividual markie = it.next();
       Iterator allEncs = markie.getEncounters().iterator();
-      while (allEncs.hasNext()&&!stopMe) {
-        Encounter enc = (Encounter) allEncs.next();
-        ArrayList<SinglePhotoVideo> images=getAllSinglePhotoVideosForEncounter(enc.getCatalogNumber());
-
-        if ((count + images.size()) >= startNum) {
-          for (int i = 0; i < images.size(); i++) {
-            count++;
-            if ((count <= endNum) && (count >= startNum)) {
-              String m_thumb = "";
-
-              //check for video or image
-              String imageName = (String) images.get(i).getFilename();
-
-              //check if this image has one of the assigned keywords
-              boolean hasKeyword = false;
-              if ((keywords == null) || (keywords.length == 0)) {
-                hasKeyword = true;
-              } else {
-                int numKeywords = keywords.length;
-                for (int n = 0; n < numKeywords; n++) {
-                  if (!keywords[n].equals("None")) {
-                    Keyword word = getKeyword(keywords[n]);
-
-                    if (images.get(i).getKeywords().contains(word)) {
-
-
-                    //if (word.isMemberOf(enc.getCatalogNumber() + "/" + imageName)) {
-
-                      hasKeyword = true;
-                      //System.out.println("member of: "+word.getReadableName());
-                    }
-                  } else {
-                    hasKeyword = true;
-                  }
-
-                }
-
-              }
-
-        //check for specific filename conditions here
-        if((request.getParameter("filenameField")!=null)&&(!request.getParameter("filenameField").equals(""))){
-            String nameString=ServletUtilities.cleanFileName(ServletUtilities.preventCrossSiteScriptingAttacks(request.getParameter("filenameField").trim()));
-            if(!nameString.equals(imageName)){hasKeyword=false;}
-        }
-        if (hasKeyword && isAcceptableVideoFile(imageName)) {
-                m_thumb = "http://" + CommonConfiguration.getURLLocation(request) + "/images/video.jpg" + "BREAK" + enc.getEncounterNumber() + "BREAK" + imageName;
-                //thumbs.add(m_thumb);
-                thumbs.add(images.get(i));
-        }
-        else if (hasKeyword && isAcceptableImageFile(imageName)) {
-                m_thumb = enc.getEncounterNumber() + "/" + (i + 1) + ".jpg" + "BREAK" + enc.getEncounterNumber() + "BREAK" + imageName;
-                //thumbs.add(m_thumb);
-                thumbs.add(images.get(i));
-        }
-        else {
-                count--;
-        }
-            }
-            else if (count > endNum) {
-              stopMe = true;
-              return thumbs;
-            }
-          }
-        } //end if
-        else {
-          count += images.size();
-        }
-
-      }//end while
+      while (allEncs.hasNext()) {
+        encounterNumbers.add(((Encounter) allEncs.next()).getCatalogNumber());
+      }
+    }
+    return GalleryQuery.forEncounterNumbers(this, encounterNumbers, keywords, GalleryQuery.getFilename(request));
+  }
 
-    }//end while
-    return thumbs;
+  public ArrayList<SinglePhotoVideo> getMarkedIndividualThumbnails(HttpServletRequest request, Iterator<MarkedIndividual> it, int startNum, int endNum, String[] keywords) {
+    return getMarkedIndividualGallery(request, it, keywords).getPage(startNum, endNum);
   }
 
   public int getNumThumbnails(Iterator it, String[] keywords) {
-    //Vector thumbs=new Vector();
-    //boolean stopMe=false;
-    int count = 0;
-    while (it.hasNext()) {
-      Encounter enc = (Encounter) it.next();
-      for (int i = 0; i < enc.getAdditionalImageNames().size(); i++) {
-        count++;
-        //String m_thumb="";
-
-        //check for video or image
-        String imageName = (String) enc.getAdditionalImageNames().get(i);
-
-        //check if this image has one of the assigned keywords
-        boolean hasKeyword = false;
-        if ((keywords == null) || (keywords.length == 0)) {
-          hasKeyword = true;
-        } else {
-          int numKeywords = keywords.length;
-          for (int n = 0; n < numKeywords; n++) {
-            if (!keywords[n].equals("None")) {
-              Keyword word = getKeyword(keywords[n]);
-
-              //if (word.isMemberOf(enc.getCatalogNumber() + "/" + imageName)) {
-              if(enc.hasKeyword(word)){
-                hasKeyword = true;
-                //System.out.println("member of: "+word.getReadableName());
-              }
-            } else {
-              hasKeyword = true;
-            }
-
-          }
-
-        }
-
-        if (hasKeyword && isAcceptableVideoFile(imageName)) {
-          //m_thumb="http://"+CommonConfiguration.getURLLocation()+"/images/video.jpg"+"BREAK"+enc.getEncounterNumber()+"BREAK"+imageName;
-          //thumbs.add(m_thumb);
-        } else if (hasKeyword && isAcceptableImageFile(imageName)) {
-          //m_thumb=enc.getEncounterNumber()+"/"+(i+1)+".jpg"+"BREAK"+enc.getEncounterNumber()+"BREAK"+imageName;
-          //thumbs.add(m_thumb);
-        } else {
-          count--;
-        }
-
-      }
-
-
-    }//end while
-    return count;
+    return GalleryQuery.forEncounters(this, it, keywords, null).count();
   }
 
 
   public int getNumMarkedIndividualThumbnails(Iterator<MarkedIndividual> it, String[] keywords) {
-    int count = 0;
+    ArrayList<String> encounterNumbers = new ArrayList<String>();
     while (it.hasNext()) {
-      MarkedIndividual indie = it.next();
-      Iterator allEncs = indie.getEncounters().iterator();
+      Iterator allEncs = it.next().getEncounters().iterator();
       while (allEncs.hasNext()) {
-        Encounter enc = (Encounter) allEncs.next();
-        for (int i = 0; i < enc.getAdditionalImageNames().size(); i++) {
-          count++;
-          //String m_thumb="";
-
-          //check for video or image
-          String imageName = (String) enc.getAdditionalImageNames().get(i);
-
-          //check if this image has one of the assigned keywords
-          boolean hasKeyword = false;
-          if ((keywords == null) || (keywords.length == 0)) {
-            hasKeyword = true;
-          } else {
-            int numKeywords = keywords.length;
-            for (int n = 0; n < numKeywords; n++) {
-              if (!keywords[n].equals("None")) {
-                Keyword word = getKeyword(keywords[n]);
-                //if (word.isMemberOf(enc.getCatalogNumber() + "/" + imageName)) {
-                if(enc.hasKeyword(word)){
-                  hasKeyword = true;
-                  //System.out.println("member of: "+word.getReadableName());
-                }
-              } else {
-                hasKeyword = true;
-              }
-
-            }
-
-          }
-
-          if (hasKeyword && isAcceptableVideoFile(imageName)) {
-            //m_thumb="http://"+CommonConfiguration.getURLLocation()+"/images/video.jpg"+"BREAK"+enc.getEncounterNumber()+"BREAK"+imageName;
-            //thumbs.add(m_thumb);
-          } else if (hasKeyword && isAcceptableImageFile(imageName)) {
-            //m_thumb=enc.getEncounterNumber()+"/"+(i+1)+".jpg"+"BREAK"+enc.getEncounterNumber()+"BREAK"+imageName;
-            //thumbs.add(m_thumb);
-          } else {
-            count--;
-          }
-
-        }
-      } //end while
-
-    }//end while
-    return count;
+        encounterNumbers.add(((Encounter) allEncs.next()).getCatalogNumber());
+      }
+    }
+    return GalleryQuery.forEncounterNumbers(this, encounterNumbers, keywords, null).count();
   }
 
 
@@ -2566,21 +2368,7 @@ public class Shepherd {
    * @return The number of acceptable images/videos in the Iterator of encounters.
    */
   public int getNumThumbnails(Vector it) {
-    int count = 0;
-    int numEncs = it.size();
-    for (int f = 0; f < numEncs; f++) {
-      Encounter enc = (Encounter) it.get(f);
-      for (int i = 0; i < enc.getAdditionalImageNames().size(); i++) {
-        count++;
-
-        //check for video or image
-        String addTextFile = (String) enc.getAdditionalImageNames().get(i);
-        if ((!isAcceptableImageFile(addTextFile)) && (!isAcceptableVideoFile(addTextFile))) {
-          count--;
-        }
-      }
-    }//end while
-    return count;
+    return GalleryQuery.forEncounters(this, it.iterator(), null, null).count();
   }
 
   static public boolean isAcceptableImageFile(String fileName) {
@@ -2700,33 +2488,15 @@ public class Shepherd {
   }
 
   public ArrayList<String> getAllLocationIDs() {
-    Query q = pm.newQuery(Encounter.class);
-    q.setResult("distinct locationID");
-    q.setOrdering("locationID ascending");
-    Collection results = (Collection) q.execute();
-    ArrayList al=new ArrayList(results);
-    q.closeAll();
-    return al;
+    return FacetIndex.getIndex(this).getValues("locationID");
   }
 
   public ArrayList<String> getAllCountries() {
-    Query q = pm.newQuery(Encounter.class);
-    q.setResult("distinct country");
-    q.setOrdering("country ascending");
-    Collection results = (Collection) q.execute();
-    ArrayList al=new ArrayList(results);
-	    q.closeAll();
-    return al;
+    return FacetIndex.getIndex(this).getValues("country");
   }
 
   public ArrayList<String> getAllHaplotypes() {
-    Query q = pm.newQuery(MitochondrialDNAAnalysis.class);
-    q.setResult("distinct haplotype");
-    q.setOrdering("haplotype ascending");
-    Collection results = (Collection) q.execute();
-    ArrayList al=new ArrayList(results);
-	    q.closeAll();
-    return al;
+    return FacetIndex.getIndex(this).getHaplotypes();
   }
 
   public ArrayList<String> getAllRoleNames() {
@@ -2750,23 +2520,11 @@ public class Shepherd {
   }
 
   public ArrayList<String> getAllGeneticSexes() {
-    Query q = pm.newQuery(SexAnalysis.class);
-    q.setResult("distinct sex");
-    q.setOrdering("sex ascending");
-    Collection results = (Collection) q.execute();
-    ArrayList al=new ArrayList(results);
-	    q.closeAll();
-    return al;
+    return FacetIndex.getIndex(this).getGeneticSexes();
   }
 
   public ArrayList<String> getAllLoci() {
-    Query q = pm.newQuery(Locus.class);
-    q.setResult("distinct name");
-    q.setOrdering("name ascending");
-    Collection results = (Collection) q.execute();
-    ArrayList al=new ArrayList(results);
-    q.closeAll();
-    return al;
+    return FacetIndex.getIndex(this).getLoci();
   }
   
   public ArrayList<String> getAllSocialUnitNames() {
@@ -2786,70 +2544,23 @@ public class Shepherd {
   }
 
   public ArrayList<String> getAllGenuses() {
-      Query q = pm.newQuery(Encounter.class);
-      q.setResult("distinct genus");
-      q.setOrdering("genus ascending");
-      Collection results = (Collection) q.execute();
-      ArrayList al=new ArrayList(results);
-	      q.closeAll();
-    return al;
+    return FacetIndex.getIndex(this).getValues("genus");
   }
 
   public ArrayList<String> getAllSpecificEpithets() {
-      Query q = pm.newQuery(Encounter.class);
-      q.setResult("distinct specificEpithet");
-      q.setOrdering("specificEpithet ascending");
-      Collection results = (Collection) q.execute();
-      ArrayList al=new ArrayList(results);
-	      q.closeAll();
-    return al;
+    return FacetIndex.getIndex(this).getValues("specificEpithet");
   }
 
   public ArrayList<String> getAllBehaviors() {
-
-    Query q = pm.newQuery(Encounter.class);
-    q.setResult("distinct behavior");
-    q.setOrdering("behavior ascending");
-    Collection results = (Collection) q.execute();
-    ArrayList al=new ArrayList(results);
-	    q.closeAll();
-    return al;
-
-
-    //temporary way
-    /**
-     * ArrayList<String> al=new ArrayList<String>();
-     Iterator allenc=getAllEncounters();
-     while(allenc.hasNext()){
-     Encounter enc=(Encounter)allenc.next();
-     if((enc.getBehavior()!=null)&&(!enc.getBehavior().equals(""))){
-     if(!al.contains(enc.getBehavior())){
-     al.add(enc.getBehavior());
-     }
-     }
-     }
-     return al;
-     */
+    return FacetIndex.getIndex(this).getValues("behavior");
   }
 
   public ArrayList<String> getAllVerbatimEventDates() {
-    Query q = pm.newQuery(Encounter.class);
-    q.setResult("distinct verbatimEventDate");
-    q.setOrdering("verbatimEventDate ascending");
-    Collection results = (Collection) q.execute();
-    ArrayList al=new ArrayList(results);
-	    q.closeAll();
-    return al;
+    return FacetIndex.getIndex(this).getValues("verbatimEventDate");
   }
 
   public ArrayList<String> getAllRecordedBy() {
-    Query q = pm.newQuery(Encounter.class);
-    q.setResult("distinct recordedBy");
-    q.setOrdering("recordedBy ascending");
-    Collection results = (Collection) q.execute();
-    ArrayList al=new ArrayList(results);
-	    q.closeAll();
-    return al;
+    return FacetIndex.getIndex(this).getValues("recordedBy");
   }
 
   public ArrayList<Encounter> getEncountersWithHashedEmailAddress(String hashedEmail) {
@@ -2862,57 +2573,82 @@ public class Shepherd {
     return al;
   }
 
-  public ArrayList<String> getAllPatterningCodes(){
-    Query q = pm.newQuery (Encounter.class);
-    q.setResult ("distinct patterningCode");
-    q.setOrdering("patterningCode ascending");
-    Collection results = (Collection)q.execute ();
-     ArrayList al=new ArrayList(results);
-		    q.closeAll();
-    return al;
+  public ArrayList<String> getAllPatterningCodes() {
+    return FacetIndex.getIndex(this).getValues("patterningCode");
   }
 
-  public ArrayList<String> getAllLifeStages(){
-    Query q = pm.newQuery (Encounter.class);
-    q.setResult ("distinct lifeStage");
-    q.setOrdering("lifeStage ascending");
-    Collection results = (Collection)q.execute ();
-     ArrayList al=new ArrayList(results);
-		    q.closeAll();
-    return al;
+  public ArrayList<String> getAllLifeStages() {
+    return FacetIndex.getIndex(this).getValues("lifeStage");
   }
 
 
+  /**
+   * Returns the MarkedIndividuals with a Relationship in the named community, ordered by ID, loaded with one query
+   * over the members listed in the CommunityIndex.
+   */
   public ArrayList<MarkedIndividual> getAllMarkedIndividualsInCommunity(String communityName){
-    ArrayList<MarkedIndividual> indies=new ArrayList<MarkedIndividual>();
-    Extent encClass = pm.getExtent(Relationship.class, true);
-    String filter2use = "this.relatedSocialUnitName == \""+communityName+"\"";
-    Query acceptedEncounters = pm.newQuery(encClass, filter2use);
-    Collection c = (Collection) (acceptedEncounters.execute());
-    ArrayList listy = new ArrayList(c);
-    int listySize=listy.size();
-    for(int i=0;i<listySize;i++){
-      Relationship rely=(Relationship)listy.get(i);
-      if(rely.getMarkedIndividualName1()!=null){
-        String name1=rely.getMarkedIndividualName1();
-        if(isMarkedIndividual(name1)){
-          MarkedIndividual indie=getMarkedIndividual(name1);
-          if(!indies.contains(indie)){indies.add(indie);}
-        }
-      }
-      if(rely.getMarkedIndividualName2()!=null){
-        String name2=rely.getMarkedIndividualName2();
-        if(isMarkedIndividual(name2)){
-          MarkedIndividual indie=getMarkedIndividual(name2);
-          if(!indies.contains(indie)){indies.add(indie);}
-        }
-      }
-      
+    HashSet<String> ids=getMarkedIndividualIDsInCommunity(communityName);
+    if(ids.size()==0){return new ArrayList<MarkedIndividual>();}
+    Query query=pm.newQuery("SELECT FROM org.ecocean.MarkedIndividual WHERE communityMemberIDs.contains(individualID) PARAMETERS java.util.Collection communityMemberIDs");
+    query.setOrdering("individualID ascending");
+    try{
+      Collection c=(Collection)query.execute(ids);
+      return new ArrayList<MarkedIndividual>(c);
+    }
+    finally{
+      query.closeAll();
     }
-    acceptedEncounters.closeAll();
-    return indies;
   }
   
+  /**
+   * Returns the IDs of all MarkedIndividuals with a Relationship in the named community.
+   *
+   * @see CommunityIndex
+   */
+  public HashSet<String> getMarkedIndividualIDsInCommunity(String communityName){
+    return CommunityIndex.getIndex(this).getMarkedIndividualIDsInCommunity(communityName);
+  }
+
+  /**
+   * Returns the IDs of all MarkedIndividuals that hold the named role in at least one Relationship.
+   */
+  public HashSet<String> getMarkedIndividualIDsWithRole(String roleName){
+    return CommunityIndex.getIndex(this).getMarkedIndividualIDsWithRole(roleName);
+  }
+
+  /**
+   * Returns the IDs of all MarkedIndividuals with at least one encounter in the given locationID.
+   */
+  public HashSet<String> getMarkedIndividualIDsSightedInLocationID(String locationID){
+    HashSet<String> ids=new HashSet<String>();
+    addProjectedIDs(ids, "SELECT DISTINCT individualID FROM org.ecocean.Encounter WHERE locationID == locCode && individualID != null PARAMETERS String locCode", locationID);
+    return ids;
+  }
+
+  /**
+   * Returns the IDs of all MarkedIndividuals whose earliest encounter with a known year (greater than zero) is in the given year.
+   */
+  public HashSet<String> getMarkedIndividualIDsFirstSightedInYear(int year){
+    HashSet<String> ids=new HashSet<String>();
+    addProjectedIDs(ids, "SELECT individualID FROM org.ecocean.Encounter WHERE year > 0 && individualID != null PARAMETERS int firstYear GROUP BY individualID HAVING min(year) == firstYear", Integer.valueOf(year));
+    return ids;
+  }
+
+  private void addProjectedIDs(HashSet<String> ids, String projection, Object param){
+    Query q=pm.newQuery(projection);
+    try{
+      Collection results=(Collection)q.execute(param);
+      Iterator it=results.iterator();
+      while(it.hasNext()){
+        Object id=it.next();
+        if(id!=null){ids.add(id.toString());}
+      }
+    }
+    finally{
+      q.closeAll();
+    }
+  }
+
   public ArrayList<Relationship> getAllRelationshipsForMarkedIndividual(String indieName){
     Extent encClass = pm.getExtent(Relationship.class, true);
     String filter2use = "this.markedIndividualName1 == \""+indieName+"\" || this.markedIndividualName2 == \""+indieName+"\"";
@@ -2925,37 +2661,11 @@ public class Shepherd {
   }
   
   public ArrayList<String> getAllSocialUnitsForMarkedIndividual(String indieName){
-    Extent encClass = pm.getExtent(Relationship.class, true);
-    
-    String filter2use = "this.markedIndividualName1 == \""+indieName+"\" || this.markedIndividualName2 == \""+indieName+"\"";
-    Query query = pm.newQuery(encClass, filter2use);
-    query.setResult("distinct relatedSocialUnitName");
-    Collection c = (Collection) (query.execute());
-    //System.out.println("Num relationships for MarkedIndividual "+indieName+": "+c.size());
-    ArrayList<String> listy = new ArrayList<String>();
-    if(c!=null)listy = new ArrayList<String>(c);
-    query.closeAll();
-    return listy;
+    return CommunityIndex.getIndex(this).getCommunities(indieName);
   }
   
   public ArrayList<String> getAllRoleNamesForMarkedIndividual(String indieName){
-    ArrayList<String> roles=new ArrayList<String>();
-    
-    ArrayList<Relationship> rels=getAllRelationshipsForMarkedIndividual(indieName);
-    int numRels=rels.size();
-    for(int i=0;i<numRels;i++){
-      
-      Relationship rel=rels.get(i);
-      if((rel.getMarkedIndividualName1().equals(indieName))&&(rel.getMarkedIndividualRole1()!=null)&&(!roles.contains(rel.getMarkedIndividualRole1()))){
-        roles.add(rel.getMarkedIndividualRole1());
-      }
-      if((rel.getMarkedIndividualName2().equals(indieName))&&(rel.getMarkedIndividualRole2()!=null)&&(!roles.contains(rel.getMarkedIndividualRole2()))){
-        roles.add(rel.getMarkedIndividualRole2());
-      }
-      
-    }
-    
-    return roles;
+    return CommunityIndex.getIndex(this).getRoles(indieName);
   }
   
   public ArrayList<Relationship> getAllRelationshipsForCommunity(String commName){
@@ -2970,25 +2680,7 @@ public class Shepherd {
   }
   
   public int getNumCooccurrencesBetweenTwoMarkedIndividual(String individualID1,String individualID2){
-    int numCooccur=0;
-    
-    ArrayList<String> occurenceIDs1=getOccurrenceIDsForMarkedIndividual(individualID1);
-    //System.out.println("zzzOccurrences for indie "+individualID1+": "+occurenceIDs1.toString());
-    ArrayList<String> occurenceIDs2=getOccurrenceIDsForMarkedIndividual(individualID2);
-    //System.out.println("zzzOccurrences for indie "+individualID2+": "+occurenceIDs2.toString());
-    
-    int numOccurenceIDs1=occurenceIDs1.size();
-    if((numOccurenceIDs1>0)&&(occurenceIDs2.size()>0)){
-      //System.out.println(numOccurenceIDs1+":"+occurenceIDs2.size());
-      for(int i=0;i<numOccurenceIDs1;i++){
-        if(occurenceIDs2.contains(occurenceIDs1.get(i))){
-          //System.out.println("Checking occurrence: "+occurenceIDs1.get(i));
-          numCooccur++;
-          //System.out.println("zzzMatching co-occurrence: "+occurenceIDs1.get(i));
-        }
-      }
-    }
-    return numCooccur;
+    return AssociationIndex.getIndex(this).getNumCooccurrences(individualID1, individualID2);
   }
   
   public ArrayList<String> getOccurrenceIDsForMarkedIndividual(String individualID){
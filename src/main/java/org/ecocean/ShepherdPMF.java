@@ -19,15 +19,23 @@
 
 package org.ecocean;
 
+import javax.jdo.DataStoreCache;
 import javax.jdo.JDOException;
 import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 
+import org.datanucleus.api.jdo.JDODataStoreCache;
+import org.datanucleus.api.jdo.JDOPersistenceManager;
+import org.datanucleus.management.ManagerStatistics;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Properties;
+import java.util.StringTokenizer;
 
 import java.util.TreeMap;
 
@@ -37,6 +45,10 @@ public class ShepherdPMF {
   //private static PersistenceManagerFactory pmf;
   //private static String currentContext="context0";
   private static TreeMap<String,PersistenceManagerFactory> pmfs=new TreeMap<String,PersistenceManagerFactory>();
+  private static HashMap<String,CacheStatistics> cacheStatistics=new HashMap<String,CacheStatistics>();
+
+  //comma-separated names of the classes whose instances are pinned in the level 2 cache once loaded
+  public static final String PINNED_CLASSES_PROPERTY="shepherd.cache.pinnedClasses";
 
 
   public synchronized static PersistenceManagerFactory getPMF(String context) {
@@ -90,7 +102,9 @@ public class ShepherdPMF {
         //make sure to close an old PMF if switching
         //if(pmf!=null){pmf.close();}
 
-        pmfs.put(context, JDOHelper.getPersistenceManagerFactory(dnProperties));
+        PersistenceManagerFactory pmf=JDOHelper.getPersistenceManagerFactory(dnProperties);
+        pinClasses(pmf, props.getProperty(PINNED_CLASSES_PROPERTY));
+        pmfs.put(context, pmf);
         return pmfs.get(context);
 
       }
@@ -145,4 +159,97 @@ public class ShepherdPMF {
     return myProps;
   }
 
+  /**
+   * Pins the instances of the named classes and their subclasses in the level 2 cache as they are loaded, so that
+   * small, read-mostly classes such as Keyword, User and Role are never evicted to make room for others.
+   */
+  static void pinClasses(PersistenceManagerFactory pmf, String classNames) {
+    if(classNames==null){return;}
+    DataStoreCache cache=pmf.getDataStoreCache();
+    StringTokenizer str=new StringTokenizer(classNames, ",");
+    while(str.hasMoreTokens()){
+      String className=str.nextToken().trim();
+      if(className.equals("")){continue;}
+      try{
+        cache.pinAll(Class.forName(className), true);
+      }
+      catch(Exception e){
+        System.out.println("ShepherdPMF could not pin class "+className+" in the level 2 cache.");
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Evicts all instances of a class and its subclasses from the level 2 cache of a context, for example after
+   * changing them with SQL outside of DataNucleus.
+   */
+  public static void evict(String context, Class cls) {
+    PersistenceManagerFactory pmf=getPMF(context);
+    if(pmf!=null){pmf.getDataStoreCache().evictAll(true, cls);}
+  }
+
+  /**
+   * Evicts every unpinned object from the level 2 cache of a context.
+   */
+  public static void evictAll(String context) {
+    PersistenceManagerFactory pmf=getPMF(context);
+    if(pmf!=null){pmf.getDataStoreCache().evictAll();}
+  }
+
+  /**
+   * Returns the number of objects in the level 2 cache of a context, or -1 if it cannot be determined.
+   */
+  public static int getLevel2CacheSize(String context) {
+    try{
+      PersistenceManagerFactory pmf=getPMF(context);
+      return ((JDODataStoreCache)pmf.getDataStoreCache()).getLevel2Cache().getSize();
+    }
+    catch(Exception e){
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the lookup hit and miss counts of a context.
+   */
+  public static CacheStatistics getCacheStatistics(String context) {
+    synchronized(cacheStatistics){
+      CacheStatistics stats=cacheStatistics.get(context);
+      if(stats==null){
+        stats=new CacheStatistics();
+        cacheStatistics.put(context, stats);
+      }
+      return stats;
+    }
+  }
+
+  /**
+   * Returns the number of queries the PersistenceManager has executed, or -1 if statistics are not enabled with
+   * datanucleus.enableStatistics.
+   */
+  public static long getNumberOfQueries(PersistenceManager pm) {
+    try{
+      ManagerStatistics stats=((JDOPersistenceManager)pm).getExecutionContext().getStatistics();
+      return (stats==null) ? -1 : stats.getQueryExecutionTotalCount();
+    }
+    catch(Exception e){
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the number of times the PersistenceManager has read from the datastore, or -1 if statistics are not
+   * enabled with datanucleus.enableStatistics.
+   */
+  public static long getNumberOfDatastoreReads(PersistenceManager pm) {
+    try{
+      ManagerStatistics stats=((JDOPersistenceManager)pm).getExecutionContext().getStatistics();
+      return (stats==null) ? -1 : stats.getNumberOfDatastoreReads();
+    }
+    catch(Exception e){
+      return -1;
+    }
+  }
+
 }
@@ -0,0 +1,166 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The Shepherds used by one HTTP request on the current thread.
+ * <p/>
+ * ShepherdFilter begins a ShepherdRequest before the request is handled and ends it afterwards. In between, servlets
+ * and JSPs can share one Shepherd through {@link #getShepherd(String)}, which is only opened when first asked for.
+ * Every Shepherd that opens a PersistenceManager on the thread reports it here, and reports its lifetime and query
+ * count when it closes it, so that PersistenceManagers still open when the request ends can be reported as leaks and
+ * closed.
+ */
+public class ShepherdRequest {
+
+  private static final ThreadLocal<ShepherdRequest> current = new ThreadLocal<ShepherdRequest>();
+
+  private String description;
+  private boolean traceOpens;
+  private long startTime = System.currentTimeMillis();
+  private Shepherd shepherd;
+  //Shepherds with a PersistenceManager opened during the request -> where it was opened, if traced
+  private IdentityHashMap<Shepherd, Throwable> open = new IdentityHashMap<Shepherd, Throwable>();
+  private int numOpened = 0;
+  private long persistenceManagerMillis = 0;
+  private long numQueries = 0;
+  private int numLeaked = 0;
+
+  private ShepherdRequest(String description, boolean traceOpens) {
+    this.description = description;
+    this.traceOpens = traceOpens;
+  }
+
+  /**
+   * Starts tracking the Shepherds of the current thread. Set traceOpens to record where each PersistenceManager is
+   * opened, so that a leak can be reported with the stack trace that opened it.
+   */
+  public static ShepherdRequest begin(String description, boolean traceOpens) {
+    ShepherdRequest request = new ShepherdRequest(description, traceOpens);
+    current.set(request);
+    return request;
+  }
+
+  /**
+   * Returns the request being handled by the current thread, or null outside of ShepherdFilter.
+   */
+  public static ShepherdRequest getCurrent() {
+    return current.get();
+  }
+
+  static void opened(Shepherd myShepherd) {
+    ShepherdRequest request = current.get();
+    if (request != null) {
+      request.open.put(myShepherd, request.traceOpens ? new Throwable("PersistenceManager opened here") : null);
+      request.numOpened++;
+    }
+  }
+
+  static void closed(Shepherd myShepherd, long lifetimeMillis, long queries) {
+    ShepherdRequest request = current.get();
+    if ((request != null) && request.open.containsKey(myShepherd)) {
+      request.open.remove(myShepherd);
+      request.persistenceManagerMillis += lifetimeMillis;
+      if (queries > 0) {
+        request.numQueries += queries;
+      }
+    }
+  }
+
+  /**
+   * Returns the Shepherd shared by the request, creating it on first use. It is closed when the request ends, after
+   * any transaction left active is rolled back, so callers should not close it themselves.
+   */
+  public Shepherd getShepherd(String context) {
+    if (shepherd == null) {
+      shepherd = new Shepherd(context);
+    }
+    return shepherd;
+  }
+
+  /**
+   * Closes the shared Shepherd and any other PersistenceManager opened during the request and not closed, reporting
+   * the latter as leaks when closeLeaked is set, and stops tracking the thread.
+   */
+  public void end(boolean closeLeaked) {
+    try {
+      if (shepherd != null) {
+        shepherd.closeDBTransaction();
+      }
+      ArrayList<Map.Entry<Shepherd, Throwable>> leaked = new ArrayList<Map.Entry<Shepherd, Throwable>>(open.entrySet());
+      for (Map.Entry<Shepherd, Throwable> entry : leaked) {
+        if ((entry.getKey().getPM() == null) || entry.getKey().getPM().isClosed()) {
+          open.remove(entry.getKey());
+          continue;
+        }
+        numLeaked++;
+        System.out.println("ShepherdRequest: " + description + " did not close a PersistenceManager of context " + entry.getKey().getContext() + ".");
+        if (entry.getValue() != null) {
+          entry.getValue().printStackTrace();
+        }
+        if (closeLeaked) {
+          entry.getKey().closeDBTransaction();
+        }
+      }
+    }
+    finally {
+      current.remove();
+    }
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public long getElapsedMillis() {
+    return System.currentTimeMillis() - startTime;
+  }
+
+  public int getNumOpened() {
+    return numOpened;
+  }
+
+  public int getNumLeaked() {
+    return numLeaked;
+  }
+
+  /**
+   * Returns the total time the request's PersistenceManagers were open, counting those closed so far.
+   */
+  public long getPersistenceManagerMillis() {
+    return persistenceManagerMillis;
+  }
+
+  /**
+   * Returns the number of queries executed by the request's closed PersistenceManagers, when datanucleus.enableStatistics is set.
+   */
+  public long getNumQueries() {
+    return numQueries;
+  }
+
+  public String toString() {
+    return description + " took " + getElapsedMillis() + " ms and opened " + numOpened + " PersistenceManager(s), open for " + persistenceManagerMillis + " ms with " + numQueries + " queries; " + numLeaked + " leaked";
+  }
+
+}
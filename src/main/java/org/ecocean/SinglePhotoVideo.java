@@ -40,6 +40,13 @@ public class SinglePhotoVideo extends DataCollectionEvent {
   private String copyrightOwner;
   private String copyrightStatement;
   private List<Keyword> keywords;
+
+  //set by MediaIngest when the file is uploaded
+  private String contentHash;
+  private Integer width;
+  private Integer height;
+  private String exifDateTime;
+  private String exifCamera;
   
   /**
    * Empty constructor required for JDO persistence
@@ -178,6 +185,25 @@ System.out.println("full path??? = " + this.fullFileSystemPath + " WRITTEN!");
   public String getCorrespondingStoryID(){return correspondingStoryID;}
   public void setCorrespondingStoryID(String userID){this.correspondingStoryID=userID;}
 
+  /**
+   * Returns the SHA-256 of the file's bytes as hex, or null if the file was not stored by MediaIngest.
+   */
+  public String getContentHash(){return contentHash;}
+  public void setContentHash(String hash){this.contentHash=hash;}
+
+  //null if unknown
+  public Integer getWidth(){return width;}
+  public void setWidth(Integer width){this.width=width;}
+
+  public Integer getHeight(){return height;}
+  public void setHeight(Integer height){this.height=height;}
+
+  public String getExifDateTime(){return exifDateTime;}
+  public void setExifDateTime(String dateTime){this.exifDateTime=dateTime;}
+
+  public String getExifCamera(){return exifCamera;}
+  public void setExifCamera(String camera){this.exifCamera=camera;}
+
   
 	//background scaling of the image to some target path
 	// true = doing it (background); false = cannot do it (no external command support; not image)
@@ -188,8 +214,7 @@ System.out.println("(( starting image proc");
 		String sourcePath = this.getFullFileSystemPath();
 		if (!Shepherd.isAcceptableImageFile(sourcePath)) return false;
 		ImageProcessor iproc = new ImageProcessor(context, "resize", width, height, sourcePath, targetPath, null);
-		Thread t = new Thread(iproc);
-		t.start();
+		MediaIngest.getDerivativeExecutor().execute(iproc);
 System.out.println("yes. out. ))");
 		return true;
 	}
@@ -200,8 +225,7 @@ System.out.println("yes. out. ))");
 		String sourcePath = this.getFullFileSystemPath();
 		if (!Shepherd.isAcceptableImageFile(sourcePath)) return false;
 		ImageProcessor iproc = new ImageProcessor(context, "watermark", width, height, sourcePath, targetPath, watermark);
-		Thread t = new Thread(iproc);
-		t.start();
+		MediaIngest.getDerivativeExecutor().execute(iproc);
 		return true;
 	}
 
@@ -51,8 +51,9 @@ public class AppletHeartbeatThread implements Runnable, ISharkGridThread {
     this.appletID = appletID;
     heartbeatThread = new Thread(this, ("sharkGridNodeHeartbeat_" + appletID));
     this.rootURL = thisURLRoot;
-    heartbeatThread.start();
     this.version = version;
+    heartbeatThread.setDaemon(true);
+    heartbeatThread.start();
   }
 
 
@@ -83,7 +84,9 @@ public class AppletHeartbeatThread implements Runnable, ISharkGridThread {
   private void sendHeartbeat(String appletID) {
     try {
       System.out.println("...sending heartbeat...thump...thump...");
-      URL u = new URL("http://"+rootURL + "/GridHeartbeatReceiver?nodeIdentifier=" + appletID + "&numProcessors=" + numProcessors + "&version=" + version);
+      //rootURL may be a host, as passed by the applets, or a full URL to the web application
+      String root = rootURL.startsWith("http") ? rootURL : ("http://" + rootURL);
+      URL u = new URL(root + "/GridHeartbeatReceiver?nodeIdentifier=" + appletID + "&numProcessors=" + numProcessors + "&version=" + version);
       URLConnection finishConnection = u.openConnection();
 
       InputStream inputStreamFromServlet = finishConnection.getInputStream();
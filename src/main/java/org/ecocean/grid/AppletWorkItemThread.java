@@ -28,18 +28,15 @@ import java.util.Vector;
  */
 public class AppletWorkItemThread implements Runnable {
 
-  public Thread threadObject;
   public ScanWorkItem swi;
   public Vector results;
 
 
   /**
-   * Constructor to create a new thread object
+   * Constructor to create a new comparison, to be run by a thread pool
    */
   public AppletWorkItemThread(ScanWorkItem swi, Vector results) {
     this.swi = swi;
-    threadObject = new Thread(this, ("sharkGrid_" + swi.getUniqueNumber()));
-    threadObject.setPriority(Thread.MIN_PRIORITY);
     this.results = results;
 
   }
@@ -48,7 +45,6 @@ public class AppletWorkItemThread implements Runnable {
   public void run() {
     //executeComparison();
 
-    System.out.println();
     try {
       org.ecocean.grid.MatchObject thisResult;
       thisResult = swi.execute();
@@ -65,7 +61,6 @@ public class AppletWorkItemThread implements Runnable {
 
   public void nullThread() {
     swi = null;
-    threadObject = null;
   }
 
   public void executeComparison() {
@@ -23,6 +23,13 @@ import org.ecocean.Shepherd;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
 
 public class GridManager {
 
@@ -45,6 +52,13 @@ public class GridManager {
   public int maxGroupSize = 100;
   public int numCompletedWorkItems = 0;
 
+  //how long a node should take to complete a group of work items, at its measured rate
+  public long targetCheckoutMillis = 30000;
+  //a task whose remaining work items are all checked out may have them handed out again, once each, when there are
+  //at most this many, and only to a node this many times faster than the one holding them
+  public int speculativeTailSize = 10;
+  public double speculativeSpeedup = 1.5;
+
   //Modified Groth algorithm parameters
   private String epsilon = "0.01";
   private String R = "8";
@@ -59,6 +73,17 @@ public class GridManager {
   //hold incomplete scanWorkItems
   private ArrayList<ScanWorkItemResult> done = new ArrayList<ScanWorkItemResult>();
 
+  //uniqueNumber of a checked out scanWorkItem -> the nodeIdentifier of the node working on it
+  private HashMap<String, String> checkouts = new HashMap<String, String>();
+
+  //uniqueNumbers of the scanWorkItems handed out a second time
+  private HashSet<String> speculated = new HashSet<String>();
+
+  //task identifier -> when a targeted node last asked for its work items
+  private HashMap<String, Long> targetedTasks = new HashMap<String, Long>();
+
+  private GridTelemetry telemetry = new GridTelemetry();
+
   public GridManager() {
   }
 
@@ -66,6 +91,10 @@ public class GridManager {
     return nodes;
   }
 
+  public GridTelemetry getTelemetry() {
+    return telemetry;
+  }
+
   public void setMaxGroupSize(int mgs) {
     maxGroupSize = mgs;
   }
@@ -119,6 +148,7 @@ public class GridManager {
       if ((currenTime - nodes.get(i).getLastHeartbeat()) < nodeTimeout) {
         returnValue++;
       } else {
+        telemetry.removeNode(nodes.get(i).getNodeIdentifier());
         nodes.remove(i);
         i--;
         numNodes--;
@@ -231,7 +261,31 @@ public class GridManager {
   }
 
   public int getNextGroupSize(GridNode nd) {
-    return nd.getNextGroupSize(checkoutTimeout, maxGroupSize);
+    return nd.getNextGroupSize(targetCheckoutMillis, maxGroupSize);
+  }
+
+  public long getTargetCheckoutMillis() {
+    return targetCheckoutMillis;
+  }
+
+  public void setTargetCheckoutMillis(long millis) {
+    this.targetCheckoutMillis = millis;
+  }
+
+  public int getSpeculativeTailSize() {
+    return speculativeTailSize;
+  }
+
+  public void setSpeculativeTailSize(int size) {
+    this.speculativeTailSize = size;
+  }
+
+  public double getSpeculativeSpeedup() {
+    return speculativeSpeedup;
+  }
+
+  public void setSpeculativeSpeedup(double speedup) {
+    this.speculativeSpeedup = speedup;
   }
 
   public GridNode getGridNode(String nodeID) {
@@ -257,6 +311,7 @@ public class GridManager {
     long currenTime = System.currentTimeMillis();
     for (int i = 0; i < numNodes; i++) {
       if ((currenTime - nodes.get(i).getLastHeartbeat()) > nodeTimeout) {
+        telemetry.removeNode(nodes.get(i).getNodeIdentifier());
         nodes.remove(i);
         i--;
         numNodes--;
@@ -362,8 +417,10 @@ public class GridManager {
     done = new ArrayList<ScanWorkItemResult>();
   }
 
-  public void removeAllWorkItems() {
+  public synchronized void removeAllWorkItems() {
     toDo = new ArrayList<ScanWorkItem>();
+    checkouts.clear();
+    speculated.clear();
   }
 
   public synchronized void addWorkItem(ScanWorkItem swi) {
@@ -371,40 +428,130 @@ public class GridManager {
   }
 
   public synchronized ArrayList<ScanWorkItem> getWorkItems(int num) {
+    return getWorkItems(null, num, null);
+  }
+
+  /**
+   * Checks out up to num work items to a node, from the task taskID only if it is not null, as for a targeted scan.
+   * <p/>
+   * Free work items are taken from the tasks that targeted nodes are waiting on first, and then from the tasks with
+   * the fewest work items left, so that small tasks finish quickly. When no work item is free, the work items of a
+   * task in its last speculativeTailSize may be handed out once more to a node at least speculativeSpeedup times
+   * faster than the node holding them, rather than every checked out work item being handed out again.
+   */
+  public synchronized ArrayList<ScanWorkItem> getWorkItems(GridNode nd, int num, String taskID) {
     ArrayList<ScanWorkItem> returnItems = new ArrayList<ScanWorkItem>();
+    long now = System.currentTimeMillis();
+    if (taskID != null) {
+      targetedTasks.put(taskID, new Long(now));
+    }
+    Iterator<Long> requested = targetedTasks.values().iterator();
+    while (requested.hasNext()) {
+      if ((now - requested.next().longValue()) > nodeTimeout) {
+        requested.remove();
+      }
+    }
+
+    //sort the work items not done by task, in the order the tasks were queued
+    final LinkedHashMap<String, ArrayList<ScanWorkItem>> free = new LinkedHashMap<String, ArrayList<ScanWorkItem>>();
+    final HashMap<String, ArrayList<ScanWorkItem>> outstanding = new HashMap<String, ArrayList<ScanWorkItem>>();
     int iterNum = toDo.size();
-    boolean cont = true;
     for (int i = 0; i < iterNum; i++) {
-      if (cont) {
-        ScanWorkItem item = toDo.get(i);
-        if ((!item.isCheckedOut(checkoutTimeout)) && (!item.isDone())) {
-          item.setStartTime(System.currentTimeMillis());
-          returnItems.add(item);
-          if (returnItems.size() >= num) {
-            cont = false;
-          }
+      ScanWorkItem item = toDo.get(i);
+      if (item.isDone() || ((taskID != null) && (!taskID.equals(item.getTaskIdentifier())))) {
+        continue;
+      }
+      if (!free.containsKey(item.getTaskIdentifier())) {
+        free.put(item.getTaskIdentifier(), new ArrayList<ScanWorkItem>());
+        outstanding.put(item.getTaskIdentifier(), new ArrayList<ScanWorkItem>());
+      }
+      if (item.isCheckedOut(checkoutTimeout)) {
+        outstanding.get(item.getTaskIdentifier()).add(item);
+      } else {
+        free.get(item.getTaskIdentifier()).add(item);
+      }
+    }
+
+    //targeted tasks first, then shortest remaining work first; the sort is stable, so ties stay in queue order
+    ArrayList<String> tasks = new ArrayList<String>(free.keySet());
+    Collections.sort(tasks, new Comparator<String>() {
+      public int compare(String a, String b) {
+        boolean targetedA = targetedTasks.containsKey(a);
+        boolean targetedB = targetedTasks.containsKey(b);
+        if (targetedA != targetedB) {
+          return targetedA ? -1 : 1;
+        }
+        int remainingA = free.get(a).size() + outstanding.get(a).size();
+        int remainingB = free.get(b).size() + outstanding.get(b).size();
+        return (remainingA < remainingB) ? -1 : ((remainingA == remainingB) ? 0 : 1);
+      }
+    });
+
+    for (int i = 0; (i < tasks.size()) && (returnItems.size() < num); i++) {
+      ArrayList<ScanWorkItem> items = free.get(tasks.get(i));
+      for (int j = 0; (j < items.size()) && (returnItems.size() < num); j++) {
+        ScanWorkItem item = items.get(j);
+        item.setStartTime(now);
+        if (nd != null) {
+          checkouts.put(item.getUniqueNumber(), nd.getNodeIdentifier());
         }
+        speculated.remove(item.getUniqueNumber());
+        returnItems.add(item);
       }
     }
-    if (returnItems.size() > 0) {
-      return returnItems;
-    } else {
-      for (int i = 0; i < iterNum; i++) {
-        if (cont) {
-          ScanWorkItem item = toDo.get(i);
-          if (!item.isDone()) {
-            //item.setStartTime(System.currentTimeMillis());
+
+    if ((returnItems.size() == 0) && (nd != null) && (nd.getComparisonsPerSecond() > 0)) {
+      for (int i = 0; (i < tasks.size()) && (returnItems.size() < num); i++) {
+        ArrayList<ScanWorkItem> items = outstanding.get(tasks.get(i));
+        if (items.size() > speculativeTailSize) {
+          continue;
+        }
+        for (int j = 0; (j < items.size()) && (returnItems.size() < num); j++) {
+          ScanWorkItem item = items.get(j);
+          String holder = checkouts.get(item.getUniqueNumber());
+          if (speculated.contains(item.getUniqueNumber()) || nd.getNodeIdentifier().equals(holder)) {
+            continue;
+          }
+          GridNode holdingNode = (holder == null) ? null : getGridNode(holder);
+          if ((holdingNode == null) || (nd.getComparisonsPerSecond() > (holdingNode.getComparisonsPerSecond() * speculativeSpeedup))) {
+            speculated.add(item.getUniqueNumber());
             returnItems.add(item);
-            if (returnItems.size() >= num) {
-              cont = false;
-            }
           }
         }
       }
     }
+
+    if ((nd != null) && (returnItems.size() > 0)) {
+      nd.checkout(returnItems.size());
+    }
+    telemetry.recordQueueDepth(toDo.size());
     return returnItems;
   }
 
+  /**
+   * Returns, for each task with work items to do, the number not yet done and the number of those checked out.
+   */
+  public synchronized TreeMap<String, int[]> getRemainingWorkByTask() {
+    TreeMap<String, int[]> remaining = new TreeMap<String, int[]>();
+    int iterNum = toDo.size();
+    for (int i = 0; i < iterNum; i++) {
+      ScanWorkItem item = toDo.get(i);
+      if (item.isDone()) {
+        continue;
+      }
+      int[] counts = remaining.get(item.getTaskIdentifier());
+      if (counts == null) {
+        counts = new int[2];
+        remaining.put(item.getTaskIdentifier(), counts);
+      }
+      counts[0]++;
+      if (item.isCheckedOut(checkoutTimeout)) {
+        counts[1]++;
+      }
+    }
+    return remaining;
+  }
+
   public void removeWorkItem(String uniqueNumberWorkItem) {
     int iter = toDo.size();
     for (int i = 0; i < iter; i++) {
@@ -414,15 +561,21 @@ public class GridManager {
         iter--;
       }
     }
+    checkouts.remove(uniqueNumberWorkItem);
+    speculated.remove(uniqueNumberWorkItem);
   }
 
   public synchronized void removeWorkItemsForTask(String taskID) {
     for (int i = 0; i < toDo.size(); i++) {
       if (toDo.get(i).getTaskIdentifier().equals(taskID)) {
+        checkouts.remove(toDo.get(i).getUniqueNumber());
+        speculated.remove(toDo.get(i).getUniqueNumber());
         toDo.remove(i);
         i--;
       }
     }
+    targetedTasks.remove(taskID);
+    telemetry.removeTask(taskID);
   }
 
   public void removeCompletedWorkItemsForTask(String taskID) {
@@ -437,10 +590,21 @@ public class GridManager {
   }
 
   public synchronized void checkinResult(ScanWorkItemResult swir) {
+    checkinResult(swir, null);
+  }
+
+  /**
+   * Records the result of a work item, checked in by the node nodeIdentifier if it is known.
+   */
+  public synchronized void checkinResult(ScanWorkItemResult swir, String nodeIdentifier) {
 
     if (!doneContains(swir)) {
       done.add(swir);
       numCompletedWorkItems++;
+      ScanWorkItem swi = getWorkItem(swir.getUniqueNumberWorkItem());
+      if (swi.getStartTime() > 0) {
+        telemetry.recordCheckin(nodeIdentifier, swir.getUniqueNumberTask(), System.currentTimeMillis() - swi.getStartTime());
+      }
     } else {
       numCollisions++;
     }
@@ -451,7 +615,10 @@ public class GridManager {
     } else {
       ScanWorkItem swi = getWorkItem(swir.getUniqueNumberWorkItem());
       swi.setDone(true);
+      checkouts.remove(swir.getUniqueNumberWorkItem());
+      speculated.remove(swir.getUniqueNumberWorkItem());
     }
+    telemetry.recordQueueDepth(toDo.size());
   }
 
   public boolean doneContains(ScanWorkItemResult swir) {
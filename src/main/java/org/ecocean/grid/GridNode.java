@@ -39,6 +39,15 @@ public class GridNode {
   public int groupSize;
   //public boolean isZombie = false;
 
+  //measured throughput, as a moving average of the rate of each checkin
+  private double comparisonsPerSecond = 0;
+  //work items checked out and not yet checked in, and when the node last started on work with none outstanding;
+  //these and comparisonsPerSecond are only used under the node's lock, as servlets check work in and out concurrently
+  private int numOutstanding = 0;
+  private long busySince = 0;
+  //weight of the latest checkin in comparisonsPerSecond
+  private static final double RATE_SMOOTHING = 0.3;
+
   //whether this node is dedicated to a single scanTask (true) or running as a generic node (false)
   public boolean targeted = false;
 
@@ -67,53 +76,74 @@ public class GridNode {
     return numComparisons;
   }
 
-  public void checkin(int num) {
+  public synchronized void checkin(int num) {
     //this.numSpots+=numSpots;
+    long now = System.currentTimeMillis();
     if (lastCheckin != 1) {
-      totalTimeSinceStart += (System.currentTimeMillis() - lastCheckin);
+      totalTimeSinceStart += (now - lastCheckin);
     } else {
-      totalTimeSinceStart += (System.currentTimeMillis() - lastCheckout);
+      totalTimeSinceStart += (now - lastCheckout);
+    }
+
+    //the results were computed since the node last checked in, or since it started on work if it had none
+    long elapsed = now - busySince;
+    if ((busySince > 0) && (elapsed > 0) && (num > 0)) {
+      double rate = num * 1000.0 / elapsed;
+      if (comparisonsPerSecond == 0) {
+        comparisonsPerSecond = rate;
+      } else {
+        comparisonsPerSecond = (RATE_SMOOTHING * rate) + ((1 - RATE_SMOOTHING) * comparisonsPerSecond);
+      }
     }
+    numOutstanding = Math.max(0, numOutstanding - num);
+    busySince = now;
 
-    lastCheckin = System.currentTimeMillis();
+    lastCheckin = now;
     numComparisons = numComparisons + num;
     hasMadeFirstCheckin = true;
+  }
 
-    if (num < groupSize) {
-      groupSize = num;
-      if (num < 1) {
-        num = 1;
-      }
+  /**
+   * Records that num work items were handed to this node.
+   */
+  public synchronized void checkout(int num) {
+    if (numOutstanding == 0) {
+      busySince = System.currentTimeMillis();
     }
+    numOutstanding += num;
+  }
+
+  /**
+   * Returns the number of comparisons per second this node has been measured to complete, or 0 before its first
+   * checkin.
+   */
+  public synchronized double getComparisonsPerSecond() {
+    return comparisonsPerSecond;
   }
 
   public void registerHeartbeat() {
     lastHeartbeat = System.currentTimeMillis();
   }
 
-  public int getNextGroupSize(long checkoutTimeout, int maxGroupSize) {
-    if (lastCheckout != 2) {
-      long timeDiff = lastCheckin - lastCheckout;
-      if (Math.abs(timeDiff) < 60000) {
-        groupSize = groupSize + (numProcessors);
-      }
-      else {
-        groupSize--;
-      }
-
-      //long multiplier=1/(timeDiff/60000);
-      //groupSize=(int)(groupSize*multiplier*0.9);
+  /**
+   * Returns the number of work items this node should be given so that it takes about targetCheckoutMillis to
+   * complete them, at its measured rate. Until it has checked in, it gets its starting group size.
+   */
+  public synchronized int getNextGroupSize(long targetCheckoutMillis, int maxGroupSize) {
+    if (comparisonsPerSecond > 0) {
+      groupSize = (int) Math.round(comparisonsPerSecond * targetCheckoutMillis / 1000);
 
-      if (groupSize < 1) {
-        groupSize = 1;
-      } else if (groupSize > maxGroupSize) {
-        groupSize = maxGroupSize;
-        return maxGroupSize;
+      //keep every processor busy, even on a slow node
+      if (groupSize < numProcessors) {
+        groupSize = numProcessors;
       }
-      return groupSize;
-    } else {
-      return groupSize;
     }
+    if (groupSize < 1) {
+      groupSize = 1;
+    } else if (groupSize > maxGroupSize) {
+      groupSize = maxGroupSize;
+    }
+    return groupSize;
   }
 
   public long getLastCheckin() {
@@ -132,7 +162,7 @@ public class GridNode {
     return lastHeartbeat;
   }
 
-  public void setGroupSize(int size) {
+  public synchronized void setGroupSize(int size) {
     groupSize = size;
   }
 
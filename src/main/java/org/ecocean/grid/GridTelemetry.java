@@ -0,0 +1,331 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean.grid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Measurements of the grid kept by its GridManager: the time from checkout to checkin of each work item, per node and
+ * per task, and per-minute series of the comparisons completed and of the work items queued over the last hour.
+ * <p/>
+ * The measurements and the GridManager's current state are reported as JSON, for appadmin/scanTaskAdmin.jsp, and in
+ * the Prometheus text format, by the GridStatistics servlet.
+ */
+public class GridTelemetry {
+
+  //minutes of history kept by the time series
+  public static final int HISTORY_MINUTES = 60;
+
+  private HashMap<String, LatencyHistogram> nodeLatencies = new HashMap<String, LatencyHistogram>();
+  private HashMap<String, TaskStatistics> tasks = new HashMap<String, TaskStatistics>();
+
+  //rings of per-minute values, indexed by minute modulo HISTORY_MINUTES
+  private long[] comparisonsPerMinute = new long[HISTORY_MINUTES];
+  private int[] queueDepthPerMinute = new int[HISTORY_MINUTES];
+  private long currentMinute = System.currentTimeMillis() / 60000;
+
+  private static class TaskStatistics {
+    LatencyHistogram latency = new LatencyHistogram();
+    long firstCheckin = System.currentTimeMillis();
+    long completed = 0;
+  }
+
+  /**
+   * Records a work item of a task checked in by a node, latencyMillis after it was checked out.
+   */
+  public synchronized void recordCheckin(String nodeIdentifier, String taskIdentifier, long latencyMillis) {
+    roll(System.currentTimeMillis());
+    comparisonsPerMinute[(int) (currentMinute % HISTORY_MINUTES)]++;
+    if (nodeIdentifier != null) {
+      LatencyHistogram histogram = nodeLatencies.get(nodeIdentifier);
+      if (histogram == null) {
+        histogram = new LatencyHistogram();
+        nodeLatencies.put(nodeIdentifier, histogram);
+      }
+      histogram.record(latencyMillis);
+    }
+    TaskStatistics task = tasks.get(taskIdentifier);
+    if (task == null) {
+      task = new TaskStatistics();
+      tasks.put(taskIdentifier, task);
+    }
+    task.latency.record(latencyMillis);
+    task.completed++;
+  }
+
+  /**
+   * Records the number of work items queued; the last value recorded in a minute is kept for it.
+   */
+  public synchronized void recordQueueDepth(int depth) {
+    roll(System.currentTimeMillis());
+    queueDepthPerMinute[(int) (currentMinute % HISTORY_MINUTES)] = depth;
+  }
+
+  public synchronized void removeNode(String nodeIdentifier) {
+    nodeLatencies.remove(nodeIdentifier);
+  }
+
+  public synchronized void removeTask(String taskIdentifier) {
+    tasks.remove(taskIdentifier);
+  }
+
+  //clears the minutes that passed without anything recorded, carrying the queue depth forward
+  private void roll(long now) {
+    long minute = now / 60000;
+    if (minute <= currentMinute) {
+      return;
+    }
+    int depth = queueDepthPerMinute[(int) (currentMinute % HISTORY_MINUTES)];
+    for (long m = currentMinute + 1; (m <= minute) && (m <= currentMinute + HISTORY_MINUTES); m++) {
+      comparisonsPerMinute[(int) (m % HISTORY_MINUTES)] = 0;
+      queueDepthPerMinute[(int) (m % HISTORY_MINUTES)] = depth;
+    }
+    currentMinute = minute;
+  }
+
+  /**
+   * Returns the comparisons completed in each of the last HISTORY_MINUTES minutes, oldest first, ending with the
+   * current minute.
+   */
+  public synchronized long[] getComparisonsPerMinute() {
+    roll(System.currentTimeMillis());
+    long[] series = new long[HISTORY_MINUTES];
+    for (int i = 0; i < HISTORY_MINUTES; i++) {
+      series[i] = comparisonsPerMinute[(int) ((currentMinute + 1 + i) % HISTORY_MINUTES)];
+    }
+    return series;
+  }
+
+  /**
+   * Returns the work items queued in each of the last HISTORY_MINUTES minutes, oldest first.
+   */
+  public synchronized int[] getQueueDepthPerMinute() {
+    roll(System.currentTimeMillis());
+    int[] series = new int[HISTORY_MINUTES];
+    for (int i = 0; i < HISTORY_MINUTES; i++) {
+      series[i] = queueDepthPerMinute[(int) ((currentMinute + 1 + i) % HISTORY_MINUTES)];
+    }
+    return series;
+  }
+
+  /**
+   * Returns the checkout-to-checkin times of a node, or null if it has checked nothing in.
+   */
+  public synchronized LatencyHistogram getNodeLatency(String nodeIdentifier) {
+    return nodeLatencies.get(nodeIdentifier);
+  }
+
+  /**
+   * Returns the checkout-to-checkin times of a task, or null if none of its work items were checked in.
+   */
+  public synchronized LatencyHistogram getTaskLatency(String taskIdentifier) {
+    TaskStatistics task = tasks.get(taskIdentifier);
+    return (task == null) ? null : task.latency;
+  }
+
+  /**
+   * Returns the number of work items of a task checked in per second since its first checkin, or 0.
+   */
+  public synchronized double getTaskComparisonsPerSecond(String taskIdentifier) {
+    TaskStatistics task = tasks.get(taskIdentifier);
+    if (task == null) {
+      return 0;
+    }
+    long elapsed = System.currentTimeMillis() - task.firstCheckin;
+    return (elapsed <= 0) ? 0 : (task.completed * 1000.0 / elapsed);
+  }
+
+  public synchronized long getTaskCompleted(String taskIdentifier) {
+    TaskStatistics task = tasks.get(taskIdentifier);
+    return (task == null) ? 0 : task.completed;
+  }
+
+  /**
+   * Returns the estimated seconds until the remaining work items of a task are checked in, at its rate so far, or -1
+   * if it has no rate yet.
+   */
+  public double getTaskETASeconds(String taskIdentifier, int remaining) {
+    double rate = getTaskComparisonsPerSecond(taskIdentifier);
+    return (rate <= 0) ? -1 : (remaining / rate);
+  }
+
+
+  /**
+   * Returns the state and measurements of the grid:
+   * {"time", "completedWorkItems", "collisions", "collisionRatePercentage", "queue": {"toDo", "checkedOut", "done"},
+   * "comparisonsPerMinute": [...], "queueDepthPerMinute": [...], "nodes": [...], "tasks": [...]}.
+   */
+  public JSONObject toJSON(GridManager gm) throws JSONException {
+    JSONObject json = new JSONObject();
+    json.put("time", System.currentTimeMillis());
+    json.put("completedWorkItems", gm.getNumCompletedWorkItems());
+    json.put("collisions", gm.getNumCollisions());
+    json.put("collisionRatePercentage", gm.getCollisionRatePercentage());
+
+    TreeMap<String, int[]> remaining = gm.getRemainingWorkByTask();
+    int checkedOut = 0;
+    for (int[] counts : remaining.values()) {
+      checkedOut += counts[1];
+    }
+    JSONObject queue = new JSONObject();
+    queue.put("toDo", gm.getToDoSize());
+    queue.put("checkedOut", checkedOut);
+    queue.put("done", gm.getDoneSize());
+    json.put("queue", queue);
+
+    JSONArray comparisons = new JSONArray();
+    for (long value : getComparisonsPerMinute()) {
+      comparisons.put(value);
+    }
+    json.put("comparisonsPerMinute", comparisons);
+    JSONArray depths = new JSONArray();
+    for (int value : getQueueDepthPerMinute()) {
+      depths.put(value);
+    }
+    json.put("queueDepthPerMinute", depths);
+
+    JSONArray nodes = new JSONArray();
+    for (GridNode nd : getNodes(gm)) {
+      JSONObject node = new JSONObject();
+      node.put("nodeIdentifier", nd.getNodeIdentifier());
+      node.put("ipAddress", nd.ipAddress());
+      node.put("numProcessors", nd.numProcessors);
+      node.put("targeted", nd.isTargeted());
+      node.put("numComparisons", nd.getNumComparisons());
+      node.put("groupSize", nd.groupSize);
+      node.put("comparisonsPerSecond", nd.getComparisonsPerSecond());
+      LatencyHistogram latency = getNodeLatency(nd.getNodeIdentifier());
+      if (latency != null) {
+        node.put("checkoutToCheckin", latency.toJSON());
+      }
+      nodes.put(node);
+    }
+    json.put("nodes", nodes);
+
+    JSONArray taskArray = new JSONArray();
+    for (Map.Entry<String, int[]> entry : remaining.entrySet()) {
+      JSONObject task = new JSONObject();
+      task.put("taskIdentifier", entry.getKey());
+      task.put("remaining", entry.getValue()[0]);
+      task.put("checkedOut", entry.getValue()[1]);
+      task.put("completed", getTaskCompleted(entry.getKey()));
+      task.put("comparisonsPerSecond", getTaskComparisonsPerSecond(entry.getKey()));
+      task.put("etaSeconds", getTaskETASeconds(entry.getKey(), entry.getValue()[0]));
+      LatencyHistogram latency = getTaskLatency(entry.getKey());
+      if (latency != null) {
+        task.put("checkoutToCheckin", latency.toJSON());
+      }
+      taskArray.put(task);
+    }
+    json.put("tasks", taskArray);
+    return json;
+  }
+
+  /**
+   * Returns the state and measurements of the grid in the Prometheus text exposition format.
+   */
+  public String toPrometheus(GridManager gm) {
+    StringBuffer out = new StringBuffer();
+    writeMetric(out, "wildbook_grid_completed_work_items_total", "counter", "Work items checked in since startup.", "", gm.getNumCompletedWorkItems());
+    writeMetric(out, "wildbook_grid_collisions_total", "counter", "Work items checked in more than once since startup.", "", gm.getNumCollisions());
+
+    TreeMap<String, int[]> remaining = gm.getRemainingWorkByTask();
+    int checkedOut = 0;
+    for (int[] counts : remaining.values()) {
+      checkedOut += counts[1];
+    }
+    out.append("# HELP wildbook_grid_queue_work_items Work items held by the grid manager.\n");
+    out.append("# TYPE wildbook_grid_queue_work_items gauge\n");
+    out.append("wildbook_grid_queue_work_items{state=\"todo\"} " + gm.getToDoSize() + "\n");
+    out.append("wildbook_grid_queue_work_items{state=\"checked_out\"} " + checkedOut + "\n");
+    out.append("wildbook_grid_queue_work_items{state=\"done\"} " + gm.getDoneSize() + "\n");
+
+    ArrayList<GridNode> nodes = getNodes(gm);
+    writeMetric(out, "wildbook_grid_nodes", "gauge", "Nodes that sent a heartbeat recently.", "", nodes.size());
+    out.append("# HELP wildbook_grid_node_comparisons_per_second Measured throughput of a node.\n");
+    out.append("# TYPE wildbook_grid_node_comparisons_per_second gauge\n");
+    for (GridNode nd : nodes) {
+      out.append("wildbook_grid_node_comparisons_per_second{node=\"" + escapeLabel(nd.getNodeIdentifier()) + "\"} " + nd.getComparisonsPerSecond() + "\n");
+    }
+    out.append("# HELP wildbook_grid_node_comparisons_total Work items checked in by a node.\n");
+    out.append("# TYPE wildbook_grid_node_comparisons_total counter\n");
+    for (GridNode nd : nodes) {
+      out.append("wildbook_grid_node_comparisons_total{node=\"" + escapeLabel(nd.getNodeIdentifier()) + "\"} " + nd.getNumComparisons() + "\n");
+    }
+    out.append("# HELP wildbook_grid_node_checkout_seconds Time from checkout to checkin of the work items of a node.\n");
+    out.append("# TYPE wildbook_grid_node_checkout_seconds histogram\n");
+    for (GridNode nd : nodes) {
+      LatencyHistogram latency = getNodeLatency(nd.getNodeIdentifier());
+      if (latency != null) {
+        latency.writePrometheus(out, "wildbook_grid_node_checkout_seconds", "node=\"" + escapeLabel(nd.getNodeIdentifier()) + "\"");
+      }
+    }
+
+    out.append("# HELP wildbook_grid_task_remaining_work_items Work items of a task not yet checked in.\n");
+    out.append("# TYPE wildbook_grid_task_remaining_work_items gauge\n");
+    for (Map.Entry<String, int[]> entry : remaining.entrySet()) {
+      out.append("wildbook_grid_task_remaining_work_items{task=\"" + escapeLabel(entry.getKey()) + "\"} " + entry.getValue()[0] + "\n");
+    }
+    out.append("# HELP wildbook_grid_task_eta_seconds Estimated time until a task is complete, or -1 if unknown.\n");
+    out.append("# TYPE wildbook_grid_task_eta_seconds gauge\n");
+    for (Map.Entry<String, int[]> entry : remaining.entrySet()) {
+      out.append("wildbook_grid_task_eta_seconds{task=\"" + escapeLabel(entry.getKey()) + "\"} " + getTaskETASeconds(entry.getKey(), entry.getValue()[0]) + "\n");
+    }
+    out.append("# HELP wildbook_grid_task_checkout_seconds Time from checkout to checkin of the work items of a task.\n");
+    out.append("# TYPE wildbook_grid_task_checkout_seconds histogram\n");
+    for (String taskIdentifier : remaining.keySet()) {
+      LatencyHistogram latency = getTaskLatency(taskIdentifier);
+      if (latency != null) {
+        latency.writePrometheus(out, "wildbook_grid_task_checkout_seconds", "task=\"" + escapeLabel(taskIdentifier) + "\"");
+      }
+    }
+    return out.toString();
+  }
+
+  private static void writeMetric(StringBuffer out, String name, String type, String help, String labels, double value) {
+    out.append("# HELP " + name + " " + help + "\n");
+    out.append("# TYPE " + name + " " + type + "\n");
+    out.append(name + ((labels.length() > 0) ? ("{" + labels + "}") : "") + " " + value + "\n");
+  }
+
+  static String escapeLabel(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  //the nodes that sent a heartbeat within the node timeout
+  private static ArrayList<GridNode> getNodes(GridManager gm) {
+    ArrayList<GridNode> live = new ArrayList<GridNode>();
+    long now = System.currentTimeMillis();
+    for (GridNode nd : new ArrayList<GridNode>(gm.getNodes())) {
+      if ((now - nd.getLastHeartbeat()) < gm.getNodeTimeout()) {
+        live.add(nd);
+      }
+    }
+    return live;
+  }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean.grid;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A histogram of durations in milliseconds, with buckets that grow with the duration, in the manner of an HDR
+ * histogram, so that any duration from a millisecond to days is counted in constant space to within 12.5%.
+ * <p/>
+ * Durations under 16 ms have a bucket each. Each power of two above that is split into 8 buckets of equal width.
+ */
+public class LatencyHistogram {
+
+  private static final int LINEAR_BUCKETS = 16;
+  private static final int SUB_BUCKETS = 8;
+  //enough for durations of up to 2^44 ms
+  private static final int NUM_BUCKETS = LINEAR_BUCKETS + ((44 - 4) * SUB_BUCKETS);
+
+  private long[] counts = new long[NUM_BUCKETS];
+  private long count = 0;
+  private long sum = 0;
+  private long min = Long.MAX_VALUE;
+  private long max = 0;
+
+  static int getBucket(long millis) {
+    if (millis < LINEAR_BUCKETS) {
+      return (int) Math.max(0, millis);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(millis);
+    int sub = (int) ((millis >> (exponent - 3)) & (SUB_BUCKETS - 1));
+    return Math.min(NUM_BUCKETS - 1, LINEAR_BUCKETS + ((exponent - 4) * SUB_BUCKETS) + sub);
+  }
+
+  //the largest duration counted in a bucket
+  static long getBucketUpperBound(int bucket) {
+    if (bucket < LINEAR_BUCKETS) {
+      return bucket;
+    }
+    int exponent = 4 + ((bucket - LINEAR_BUCKETS) / SUB_BUCKETS);
+    int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 3)) - 1;
+  }
+
+  public synchronized void record(long millis) {
+    if (millis < 0) {
+      millis = 0;
+    }
+    counts[getBucket(millis)]++;
+    count++;
+    sum += millis;
+    if (millis < min) {
+      min = millis;
+    }
+    if (millis > max) {
+      max = millis;
+    }
+  }
+
+  public synchronized long getCount() {
+    return count;
+  }
+
+  public synchronized long getSum() {
+    return sum;
+  }
+
+  public synchronized long getMin() {
+    return (count == 0) ? 0 : min;
+  }
+
+  public synchronized long getMax() {
+    return max;
+  }
+
+  public synchronized double getMean() {
+    return (count == 0) ? 0 : ((double) sum / count);
+  }
+
+  /**
+   * Returns the duration that percentile percent of the recorded durations do not exceed, to within the width of a
+   * bucket, or 0 if none were recorded.
+   */
+  public synchronized long getPercentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+    if (rank < 1) {
+      rank = 1;
+    }
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(max, getBucketUpperBound(i));
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Returns {"count": n, "min": ms, "max": ms, "mean": ms, "p50": ms, "p90": ms, "p99": ms}.
+   */
+  public synchronized JSONObject toJSON() throws JSONException {
+    JSONObject json = new JSONObject();
+    json.put("count", count);
+    json.put("min", getMin());
+    json.put("max", max);
+    json.put("mean", getMean());
+    json.put("p50", getPercentile(50));
+    json.put("p90", getPercentile(90));
+    json.put("p99", getPercentile(99));
+    return json;
+  }
+
+  /**
+   * Appends the histogram in the Prometheus text format, in seconds, with a cumulative bucket for each power of two
+   * milliseconds up to the longest duration recorded. labels are added to every line, as name="value" pairs
+   * separated by commas, or may be empty.
+   */
+  public synchronized void writePrometheus(StringBuffer out, String name, String labels) {
+    String prefix = (labels.length() > 0) ? (labels + ",") : "";
+    long cumulative = 0;
+    int bucket = 0;
+    for (long bound = 1; ; bound *= 2) {
+      //count the durations that do not exceed the bound, as Prometheus's le means
+      while ((bucket < NUM_BUCKETS) && (getBucketUpperBound(bucket) <= bound)) {
+        cumulative += counts[bucket];
+        bucket++;
+      }
+      out.append(name + "_bucket{" + prefix + "le=\"" + (bound / 1000.0) + "\"} " + cumulative + "\n");
+      if ((bound > max) || (bucket >= NUM_BUCKETS)) {
+        break;
+      }
+    }
+    out.append(name + "_bucket{" + prefix + "le=\"+Inf\"} " + count + "\n");
+    out.append(name + "_sum" + ((labels.length() > 0) ? ("{" + labels + "}") : "") + " " + (sum / 1000.0) + "\n");
+    out.append(name + "_count" + ((labels.length() > 0) ? ("{" + labels + "}") : "") + " " + count + "\n");
+  }
+
+}
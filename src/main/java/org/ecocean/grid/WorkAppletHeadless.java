@@ -21,325 +21,370 @@ package org.ecocean.grid;
 
 
 import java.io.*;
-import java.net.MalformedURLException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.URL;
-import java.net.URLConnection;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Properties;
 import java.util.Random;
 import java.util.Vector;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-
-
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A long-running sharkGrid node for dedicated matching machines, run from the command line.
+ * <p/>
+ * Comparisons run on a fixed pool of worker threads for the life of the node. While one group of work items is
+ * computed, the next is already requested from the server and queued behind it on the pool, so that the workers do
+ * not wait on the network between groups, and the results of each group are uploaded by a separate thread while the
+ * following groups compute. When the server has no work, the node polls again after a delay that doubles up to a
+ * maximum, rather than exiting.
+ * <p/>
+ * Settings are read from the properties file named by the first argument, if any, and can be overridden by system
+ * properties of the same names:
+ * <ul>
+ * <li>gridnode.server - the URL of the Wildbook web application, such as http://localhost:8080/wildbook</li>
+ * <li>gridnode.threads - the number of worker threads, by default the number of processors</li>
+ * <li>gridnode.minPollMillis and gridnode.maxPollMillis - the bounds of the delay between polls when there is no work,
+ * by default 5 seconds and 5 minutes</li>
+ * <li>gridnode.name - the prefix of the node identifier, by default the host name</li>
+ * </ul>
+ */
 public class WorkAppletHeadless {
 
+  private static String version = "1.2";
 
-  private int numComparisons = 0;
+  //number of results uploaded to the server
+  private AtomicInteger numComparisons = new AtomicInteger();
 
   //number of potential matches made by this node
-  private int numMatches = 0;
-  private static String version = "1.2";
+  private AtomicInteger numMatches = new AtomicInteger();
+
+  private String serverURL;
+  private int numThreads;
+  private long minPollMillis;
+  private long maxPollMillis;
+  private String nodeID;
+
+  private volatile boolean running = true;
+
+  //runs the comparisons
+  private ExecutorService workers;
 
-  //thread pool handling comparison threads
-  ThreadPoolExecutor threadHandler;
+  //requests the next group of work items while the current one is computed
+  private ExecutorService fetcher;
 
-  public static final String thisURLRoot = "www.whaleshark.org";
+  //uploads results while the next groups are computed; when uploads fall behind, the main loop uploads itself
+  private ThreadPoolExecutor uploader;
 
   //polling heartbeat thread
   AppletHeartbeatThread hb;
 
-  //constructor
-  public WorkAppletHeadless() {
+  //a group of work items submitted to the workers
+  private static class WorkGroup {
+    Vector results = new Vector();
+    ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
   }
 
+  //names the threads of a pool, and makes them daemons so that they never keep the JVM alive once getGoing returns
+  private static class NodeThreadFactory implements ThreadFactory {
+    private String prefix;
+    private AtomicInteger count = new AtomicInteger();
 
-  /*
-  *Obtain a connection to the server to send/receive serialized content
-  */
-  private URLConnection getConnection(String action, String newEncounterNumber, int groupSize, String nodeID, int numProcessors) throws IOException {
-    String encNumParam = "";
-    if (!newEncounterNumber.equals("")) {
-      encNumParam = "&newEncounterNumber=" + newEncounterNumber;
+    NodeThreadFactory(String prefix) {
+      this.prefix = prefix;
     }
-    URL u = new URL("http://" + thisURLRoot + "/scanAppletSupport?version=" + version + "&nodeIdentifier=" + nodeID + "&action=" + action + encNumParam + "&groupSize=" + groupSize + "&numProcessors=" + numProcessors);
-    System.out.println("...Using nodeIdentifier: " + nodeID + "...");
-    URLConnection con = u.openConnection();
-    con.setDoInput(true);
-    con.setDoOutput(true);
-    con.setUseCaches(false);
-    con.setDefaultUseCaches(false);
-    con.setRequestProperty("Content-type", "application/octet-stream");
-    con.setAllowUserInteraction(false);
-    return con;
-  }
 
-  /*
-  *Send serialized content to the server.
-  */
-  private void sendObject(ObjectOutputStream con, Object obj) throws IOException {
-    System.out.println("     : Sending returned results...");
-    //new modification
-    ObjectOutputStream out = con;
-    out.reset();
-    if (obj != null) {
-      out.writeObject(obj);
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
     }
-    out.close();
-    System.out.println("     : Transmission complete. Waiting for response...");
   }
 
 
-  public static void main(String args[]) {
+  //constructor
+  public WorkAppletHeadless(Properties props) {
+    serverURL = getSetting(props, "gridnode.server", "http://localhost:8080");
+    if (serverURL.endsWith("/")) {
+      serverURL = serverURL.substring(0, serverURL.length() - 1);
+    }
+    numThreads = Integer.parseInt(getSetting(props, "gridnode.threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+    minPollMillis = Long.parseLong(getSetting(props, "gridnode.minPollMillis", "5000"));
+    maxPollMillis = Math.max(minPollMillis, Long.parseLong(getSetting(props, "gridnode.maxPollMillis", "300000")));
 
+    String name = "headless";
+    try {
+      name = InetAddress.getLocalHost().getHostName();
+    } catch (IOException ioe) {
+      System.out.println("...could not determine my host name, so I am using " + name + " to identify myself...");
+    }
+    name = getSetting(props, "gridnode.name", name);
+    nodeID = name + "_" + Math.abs((new Random()).nextInt());
 
-    WorkAppletHeadless a = new WorkAppletHeadless();
-    a.getGoing();
+    workers = Executors.newFixedThreadPool(numThreads, new NodeThreadFactory("sharkGrid_worker_"));
+    fetcher = Executors.newSingleThreadExecutor(new NodeThreadFactory("sharkGrid_fetcher_"));
+    uploader = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(2), new NodeThreadFactory("sharkGrid_uploader_"), new ThreadPoolExecutor.CallerRunsPolicy());
   }
 
-
-  public void getGoing() {
-
-
-    String holdEncNumber = "";
-
-    //check whether this applet is working on a specific task
-    String targeted = "";
+  private static String getSetting(Properties props, String name, String defaultValue) {
+    return System.getProperty(name, props.getProperty(name, defaultValue)).trim();
+  }
 
 
-    //server connection
-    URLConnection con;
+  public static void main(String args[]) {
+    Properties props = new Properties();
+    if (args.length > 0) {
+      try {
+        InputStream in = new FileInputStream(args[0]);
+        props.load(in);
+        in.close();
+      } catch (IOException ioe) {
+        System.out.println("I could not read the settings file " + args[0] + "!");
+        ioe.printStackTrace();
+        System.exit(1);
+      }
+    }
 
+    final WorkAppletHeadless a = new WorkAppletHeadless(props);
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      public void run() {
+        a.shutdown();
+      }
+    });
+    a.getGoing();
+  }
 
-    //whether this is a right-side pattern scan or a left-side
-    boolean rightScan = false;
 
-    //set up the random identifier for this "node"
-    Random ran = new Random();
-    int nodeIdentifier = ran.nextInt();
-    String nodeID = "Murdoch_" + (new Integer(nodeIdentifier)).toString();
+  public void getGoing() {
 
+    System.out.println();
+    System.out.println();
+    System.out.println("***Welcome to sharkGrid!***");
+    System.out.println("...I am " + nodeID + ", working for " + serverURL + " with " + numThreads + " worker thread(s)...");
 
-    //if targeted on a specific task, show a percentage bar for progress
-    int b = 0;
+    //start the heartbeat that periodically lets the grid know we're out there
+    hb = new AppletHeartbeatThread(nodeID, numThreads, serverURL, version);
 
+    long pollMillis = minPollMillis;
+    Future<Vector> nextWorkItems = fetcher.submit(new WorkItemFetch());
 
-    boolean repeat = true;
+    //the group computing behind the one just received, if any
+    WorkGroup previous = null;
 
     try {
-
-      //let's allocate an object to handle an OutOfMemoryError
-      URL recoverURL = new URL("http://" + thisURLRoot + "/encounters/sharkGrid.jsp?groupSize=1&autorestart=true" + targeted + "&numComparisons=" + numComparisons);
-
-      //check the number of processors
-      Runtime rt = Runtime.getRuntime();
-      int numProcessors = rt.availableProcessors();
-
-
-      System.out.println();
-      System.out.println();
-      System.out.println("***Welcome to sharkGrid!***");
-      System.out.println("...I have " + numProcessors + " processor(s) to work with...");
-
-      //set the start groupSize used-i.e. number of scans to tackle in the first returned Vector of work items
-      //this is actually ignored and controlled by the server
-      int groupSize = 10 * numProcessors;
-
-      //start the heartbeat that periodically lets' the grid know it's out there
-      String sNodeIdentifier = nodeID;
-
-      //start the heartbeat yo!
-      hb = new AppletHeartbeatThread(sNodeIdentifier, numProcessors, thisURLRoot, version);
-
-
-      //repeating comparison work of the applet
-      while (repeat) {
-
-        //cleanup anything previously in scope
-        System.gc();
-
-
+      while (running) {
+        Vector workItems = null;
         try {
+          workItems = nextWorkItems.get();
+        } catch (ExecutionException ee) {
+          ee.getCause().printStackTrace();
+        }
 
+        WorkGroup current = null;
+        if (hasWork(workItems)) {
+          System.out.println("...received " + workItems.size() + " comparisons to make...");
+          current = submit(workItems);
 
-          //set up our thread processor for each comparison thread
-          ArrayBlockingQueue abq = new ArrayBlockingQueue(500);
-          threadHandler = new ThreadPoolExecutor(numProcessors, numProcessors, 0, TimeUnit.SECONDS, abq);
+          //ask for the next group now, so that it is here before this one is done
+          nextWorkItems = fetcher.submit(new WorkItemFetch());
+          pollMillis = minPollMillis;
+        }
 
-          boolean successfulConnect = true;
+        //this group keeps the workers busy while the previous one finishes and is sent back
+        if (previous != null) {
+          finish(previous);
+        }
+        previous = current;
 
-          ScanWorkItem swi = new ScanWorkItem();
-          Vector workItems = new Vector();
-          Vector workItemResults = new Vector();
-          try {
-            //let's get some work from the server
-            System.out.println("\n\nLooking for some work to do...");
-            con = getConnection("getWorkItemGroup", holdEncNumber, groupSize, nodeID, numProcessors);
-            ObjectInputStream inputFromServlet = new ObjectInputStream(con.getInputStream());
-            workItems = (Vector) inputFromServlet.readObject();
-            swi = (ScanWorkItem) workItems.get(0);
-            successfulConnect = true;
-            inputFromServlet.close();
-            inputFromServlet = null;
-          } catch (Exception ioe) {
-            ioe.printStackTrace();
-            successfulConnect = false;
-            //Thread.sleep(90000);
-            System.exit(0);
+        if (current == null) {
+          if (!running) {
+            break;
           }
+          System.out.println("...nothing to do...checking again in " + (pollMillis / 1000) + " second(s)...");
+          Thread.sleep(pollMillis);
+          pollMillis = Math.min(pollMillis * 2, maxPollMillis);
+          nextWorkItems = fetcher.submit(new WorkItemFetch());
+        }
+      }
+    } catch (InterruptedException ie) {
+      System.out.println("...I was interrupted and am stopping...");
+    } catch (OutOfMemoryError oome) {
+      //exit so that whatever supervises the node can restart it with a clean heap
+      oome.printStackTrace();
+      System.exit(1);
+    } catch (Exception e) {
+      e.printStackTrace();
+    } finally {
+      //send what has been computed and stop the heartbeat, unless the shutdown hook already has
+      if (running) {
+        shutdown();
+      }
+    }
 
+  }        //end getGoing method
 
-          if (successfulConnect) {
-
-            //if no work is returned, there are three options
-            if (swi.getTotalWorkItemsInTask() <= 0) {
-
-              try {
-
-
-                //waiting for last workItem to finish elsewhere, wait quietly and check later
-                if (swi.getTotalWorkItemsInTask() == -1) {
-
-                  //Thread.sleep(15000);
-                  System.exit(0);
-
-                }
-
-                //no work to do, sleepy time
-                else {
-
-
-                }
-
-              } catch (NullPointerException npe) {
-                //generic, non-specific applet operation
-                //just sleep because there are no other tasks to do
-                //if(!getParameter("encounter").equals("null")) status.setValue(0);
-                System.out.println("...nothing to do...sleeping...");
-                groupSize = 10;
-                //Thread.sleep(90000);
-                System.exit(0);
-              }
-
-            }
-
-            //otherwise, if we've got work to do
-            //kick it like Poison!
-            else {
-
-
-              int vectorSize = workItems.size();
-              System.out.println("...received " + vectorSize + " comparisons to make...");
-
-              //spawn the thread for each comparison
-              for (int q = 0; q < vectorSize; q++) {
-                ScanWorkItem tempSWI = (ScanWorkItem) workItems.get(q);
-
-                //we also pass in workItemResults, which is a threadsafe vector of the results returned from each thread
-                threadHandler.submit(new AppletWorkItemThread(tempSWI, workItemResults));
-              }
-
-
-              //block until all threads are done
-              long vSize = vectorSize;
-              while (threadHandler.getCompletedTaskCount() < vSize) {
-              }
-
-              //check the results and make variable changes as needed
-              int resultsSize = workItemResults.size();
-              for (int d = 0; d < resultsSize; d++) {
-                b++;
-                try {
 
-                  //if(!getParameter("encounter").equals("null")) status.setValue(swi.getWorkItemsCompleteInTask()+d);
-                } catch (NullPointerException npe) {
-                }
-                ScanWorkItemResult swir = (ScanWorkItemResult) workItemResults.get(d);
-                MatchObject thisResult = swir.getResult();
-                if ((thisResult.getMatchValue() * thisResult.getAdjustedMatchValue()) >= 115) {
-                  numMatches++;
-                }
-              }
+  /**
+   * Stops polling, sends the results already computed, and stops the threads of the node.
+   */
+  public void shutdown() {
+    running = false;
+    if (hb != null) {
+      hb.setFinished(true);
+    }
+    fetcher.shutdownNow();
+    workers.shutdownNow();
+    uploader.shutdown();
+    try {
+      uploader.awaitTermination(60, TimeUnit.SECONDS);
+    } catch (InterruptedException ie) {
+    }
+    System.out.println("...sharkGrid node " + nodeID + " stopped after " + numComparisons.get() + " comparisons and " + numMatches.get() + " potential matches.");
+  }
 
 
-              //if we have results to send, send 'em!
-              if (resultsSize > 0) {
+  //the server sends an empty Vector, or a blank ScanWorkItem, when it has no work for this node
+  private static boolean hasWork(Vector workItems) {
+    return ((workItems != null) && (workItems.size() > 0) && (((ScanWorkItem) workItems.get(0)).getTotalWorkItemsInTask() > 0));
+  }
 
-                URL finishScan = new URL("http://" + thisURLRoot + "/scanWorkItemResultsHandler2?" + targeted + "group=true&nodeIdentifier=" + nodeID);
-                URLConnection finishConnection = finishScan.openConnection();
+  private WorkGroup submit(Vector workItems) {
+    WorkGroup group = new WorkGroup();
+    int vectorSize = workItems.size();
+    for (int q = 0; q < vectorSize; q++) {
+      //workItemResults is a threadsafe vector of the results returned from each thread
+      group.futures.add(workers.submit(new AppletWorkItemThread((ScanWorkItem) workItems.get(q), group.results)));
+    }
+    return group;
+  }
 
-                // inform the connection that we will send output and accept input
-                finishConnection.setDoInput(true);
-                finishConnection.setDoOutput(true);
+  //blocks until the group is computed and hands its results to the uploader
+  private void finish(WorkGroup group) throws InterruptedException {
+    for (Future<?> future : group.futures) {
+      try {
+        future.get();
+      } catch (ExecutionException ee) {
+        ee.getCause().printStackTrace();
+      }
+    }
 
-                // Don't use a cached version of URL connection.
-                finishConnection.setUseCaches(false);
-                finishConnection.setDefaultUseCaches(false);
+    int resultsSize = group.results.size();
+    for (int d = 0; d < resultsSize; d++) {
+      MatchObject thisResult = ((ScanWorkItemResult) group.results.get(d)).getResult();
+      if ((thisResult != null) && ((thisResult.getMatchValue() * thisResult.getAdjustedMatchValue()) >= 115)) {
+        numMatches.incrementAndGet();
+      }
+    }
 
-                // Specify the content type that we will send binary data
-                finishConnection.setRequestProperty("Content-Type", "application/octet-stream");
+    if (resultsSize > 0) {
+      uploader.execute(new ResultsUpload(group.results));
+    }
+  }
 
-                // send the results Vector to the servlet using serialization
-                ObjectOutputStream outputToFinalServlet = new ObjectOutputStream(finishConnection.getOutputStream());
 
-                sendObject(outputToFinalServlet, workItemResults);
+  /*
+  *Obtain a connection to the server
+  */
+  private HttpURLConnection getConnection(String path) throws IOException {
+    URL u = new URL(serverURL + path);
+    HttpURLConnection con = (HttpURLConnection) u.openConnection();
+    con.setUseCaches(false);
+    con.setDefaultUseCaches(false);
+    con.setAllowUserInteraction(false);
+    con.setConnectTimeout(60000);
+    con.setReadTimeout(300000);
+    return con;
+  }
 
-                outputToFinalServlet.close();
-                outputToFinalServlet = null;
 
-                InputStream inputStreamFromServlet = finishConnection.getInputStream();
-                BufferedReader in = new BufferedReader(new InputStreamReader(inputStreamFromServlet));
-                String line = in.readLine();
-                in.close();
-                System.out.println("     : Checkin response received...");
-                inputStreamFromServlet.close();
-                in = null;
-                inputStreamFromServlet = null;
-                if (line.equals("success")) {
-                  System.out.println("Successful transmit to and return code from the servlet.");
+  //requests the next group of work items; returns null if the server could not be reached
+  private class WorkItemFetch implements Callable<Vector> {
+
+    public Vector call() {
+      ObjectInputStream inputFromServlet = null;
+      try {
+        HttpURLConnection con = getConnection("/ScanAppletSupport?version=" + version + "&nodeIdentifier=" + URLEncoder.encode(nodeID, "UTF-8") + "&action=getWorkItemGroup&groupSize=" + (10 * numThreads) + "&numProcessors=" + numThreads);
+        inputFromServlet = new ObjectInputStream(con.getInputStream());
+        return (Vector) inputFromServlet.readObject();
+      }
+      //the server sends nothing when the grid is full or it does not support this version
+      catch (EOFException eofe) {
+        return new Vector();
+      } catch (Exception e) {
+        System.out.println("...I could not get work from " + serverURL + ": " + e.toString());
+        return null;
+      } finally {
+        if (inputFromServlet != null) {
+          try {
+            inputFromServlet.close();
+          } catch (IOException ioe) {
+          }
+        }
+      }
+    }
+  }
 
-                  numComparisons += (workItemResults.size());
-                  recoverURL = new URL("http://" + thisURLRoot + "/encounters/sharkGrid.jsp?groupSize=1&autorestart=true" + targeted + "&numComparisons=" + numComparisons);
 
+  //sends the results of a group, trying a few times before leaving the work items for the server to hand out again
+  private class ResultsUpload implements Runnable {
 
-                } else {
-                  System.out.println("Unsuccessful results transmit error!");
-                }
+    private Vector workItemResults;
 
-              }
-            }
+    ResultsUpload(Vector workItemResults) {
+      this.workItemResults = workItemResults;
+    }
 
+    public void run() {
+      long retryMillis = minPollMillis;
+      for (int attempt = 1; attempt <= 3; attempt++) {
+        try {
+          if (send()) {
+            numComparisons.addAndGet(workItemResults.size());
+            return;
           }
-
-          //cleanup thread handlers
-          abq = null;
-          threadHandler = null;
-          workItems = null;
-          workItemResults = null;
-          swi = null;
-
-        } catch (OutOfMemoryError oome) {
-          oome.printStackTrace();
-          hb.setFinished(true);
-          System.exit(0);
-
-        } catch (Exception e) {
-          e.printStackTrace();
-
+          System.out.println("Unsuccessful results transmit error!");
+        } catch (IOException ioe) {
+          System.out.println("...I could not send " + workItemResults.size() + " results to " + serverURL + ": " + ioe.toString());
         }
-
-
-      } //end while
-
-    } catch (MalformedURLException mue) {
-      System.out.println("I hit a MalformedURLException while trying to create the recoverURL for OutOfMemoryErrors");
-      mue.printStackTrace();
-      System.exit(0);
-
+        try {
+          Thread.sleep(retryMillis);
+        } catch (InterruptedException ie) {
+          return;
+        }
+        retryMillis *= 2;
+      }
+      System.out.println("...I gave up sending " + workItemResults.size() + " results; the server will hand their work items out again.");
     }
 
-  }        //end getGoing method
+    private boolean send() throws IOException {
+      HttpURLConnection finishConnection = getConnection("/ScanWorkItemResultsHandler2?group=true&nodeIdentifier=" + URLEncoder.encode(nodeID, "UTF-8"));
+      finishConnection.setDoInput(true);
+      finishConnection.setDoOutput(true);
+      finishConnection.setRequestMethod("POST");
+      finishConnection.setRequestProperty("Content-Type", "application/octet-stream");
+
+      // send the results Vector to the servlet using serialization
+      ObjectOutputStream outputToFinalServlet = new ObjectOutputStream(new BufferedOutputStream(finishConnection.getOutputStream()));
+      outputToFinalServlet.writeObject(workItemResults);
+      outputToFinalServlet.close();
+
+      BufferedReader in = new BufferedReader(new InputStreamReader(finishConnection.getInputStream()));
+      String line = in.readLine();
+      in.close();
+      return "success".equals(line);
+    }
+  }
 
 
 }
-  
-  
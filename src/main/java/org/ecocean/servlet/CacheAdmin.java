@@ -0,0 +1,76 @@
+package org.ecocean.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.json.*;
+import org.ecocean.*;
+
+/**
+ * Reports the level 2 cache of a context as JSON: its size and the hit and miss counts of Shepherd's lookups by ID,
+ * and the compile and execute statistics of the search query templates (QueryTemplateCache).
+ * A POST can also evict objects, with evict set to a class name or to "all", and reset the counts, with reset set.
+ */
+public class CacheAdmin extends HttpServlet {
+
+
+  public void init(ServletConfig config) throws ServletException {
+      super.init(config);
+    }
+
+
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException,IOException {
+    String context="context0";
+    context=ServletUtilities.getContext(request);
+
+    response.setContentType("application/json");
+    response.setHeader("Cache-Control", "no-cache");
+    PrintWriter out = response.getWriter();
+    try{
+      JSONObject json=new JSONObject();
+      json.put("context", context);
+      json.put("level2CacheSize", ShepherdPMF.getLevel2CacheSize(context));
+      json.put("lookups", ShepherdPMF.getCacheStatistics(context).toJSON());
+      json.put("queryTemplates", QueryTemplateCache.getStatisticsJSON());
+      out.println(json.toString());
+    }
+    catch(JSONException je){
+      je.printStackTrace();
+      response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+    out.close();
+  }
+
+
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException{
+    String context="context0";
+    context=ServletUtilities.getContext(request);
+
+    String evict=request.getParameter("evict");
+    if(evict!=null){
+      if(evict.equals("all")){
+        ShepherdPMF.evictAll(context);
+      }
+      else{
+        try{
+          if(!evict.trim().startsWith("org.ecocean.")){throw new ClassNotFoundException(evict);}
+          ShepherdPMF.evict(context, Class.forName(evict.trim()));
+        }
+        catch(ClassNotFoundException cnfe){
+          System.out.println("CacheAdmin cannot evict unknown class "+evict);
+          response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown class: "+evict);
+          return;
+        }
+      }
+    }
+    if(request.getParameter("reset")!=null){
+      ShepherdPMF.getCacheStatistics(context).reset();
+      QueryTemplateCache.clearStatistics();
+    }
+    doGet(request, response);
+  }
+
+}
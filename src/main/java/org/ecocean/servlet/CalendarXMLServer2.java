@@ -25,25 +25,47 @@ import javax.servlet.ServletConfig;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServlet;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Vector;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.ecocean.*;
 
 import javax.jdo.Query;
-import javax.jdo.Extent;
 
 import java.lang.NumberFormatException;
 import java.util.StringTokenizer;
 
 
-//returns the results of an image search request in XML
-//test
+/**
+ * Serves the encounters of a date range as dhtmlxScheduler XML events.
+ * <p/>
+ * The events are read with one projection query over the encounters and one over the sexes of their individuals, and
+ * written with a streaming XML writer. Each response carries an ETag derived from its events and a Last-Modified time
+ * that only moves when the events change, so a calendar revisiting an unchanged month gets a 304 and reuses its copy.
+ */
 public class CalendarXMLServer2 extends HttpServlet {
-	
+
+  public static final int MAX_VALIDATORS = 256;
+  private static final int MAX_IDS_PER_QUERY = 1000;
+
+  //query key -> {ETag hash, Last-Modified millis}
+  private static final Map<String, long[]> validators = new LinkedHashMap<String, long[]>(64, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+      return size() > MAX_VALIDATORS;
+    }
+  };
+
 	
 	public void init(ServletConfig config) throws ServletException {
     	super.init(config);
@@ -58,21 +80,12 @@ public class CalendarXMLServer2 extends HttpServlet {
 	public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException{
 		
 		System.out.println("CalendarXMLServer2 received: "+request.getQueryString());	
-		//set up the output
-		response.setContentType("text/xml");
-		PrintWriter out = response.getWriter();	
-      	out.println("<data>");
-		
       	
       	String context="context0";
         context=ServletUtilities.getContext(request);	
 		//establish a shepherd to manage DB interactions
 		Shepherd myShepherd=new Shepherd(context);
 		
-		//change
-		Extent encClass=myShepherd.getPM().getExtent(Encounter.class, true);
-		Query queryEnc=myShepherd.getPM().newQuery(encClass);
-		
 		//required filters for output XML
 		String from="";
 		String fromYear="";
@@ -127,121 +140,165 @@ public class CalendarXMLServer2 extends HttpServlet {
 		if(!fromMonth.equals("")){startMonth=Integer.parseInt(fromMonth);}
 		if(!toMonth.equals("")){endMonth=Integer.parseInt(toMonth);}
 		
-		String filter="this.year >= "+startYear+" && this.year <= "+endYear+ " && (this.month >= "+startMonth+" || this.month <= "+ endMonth+")";		
-		
+		String filter="SELECT catalogNumber, year, month, day, individualID, sex FROM org.ecocean.Encounter WHERE year >= startYear && year <= endYear && (month >= startMonth || month <= endMonth)";
+		HashMap<String,Object> paramMap=new HashMap<String,Object>();
+		paramMap.put("startYear", new Integer(startYear));
+		paramMap.put("endYear", new Integer(endYear));
+		paramMap.put("startMonth", new Integer(startMonth));
+		paramMap.put("endMonth", new Integer(endMonth));
+		String parameters=" PARAMETERS int startYear, int endYear, int startMonth, int endMonth";
 		if((request.getParameter("locCode")!=null)&&(!request.getParameter("locCode").equals("NONE"))) {
-			try{
-				locCode=request.getParameter("locCode");
-				filter+=" && this.locationID.startsWith(\""+locCode+"\")";
-			}
-			catch(Exception e) {
-				e.printStackTrace();
-			}
+			locCode=request.getParameter("locCode");
+			filter+=" && locationID.startsWith(locCode)";
+			parameters+=", String locCode";
+			paramMap.put("locCode", locCode);
 		}
-		queryEnc.setFilter(filter);
-		queryEnc.setOrdering("individualID descending");
+		filter+=parameters;
 
-		//create a vector to hold matches
-		Vector matches=new Vector();
-		
+		ArrayList<Object[]> events=new ArrayList<Object[]>();
+		HashMap<String,String> individualSexes=new HashMap<String,String>();
 
 		myShepherd.beginDBTransaction();
-		
 		try{
-
-			Iterator allEncounters=myShepherd.getAllEncounters(queryEnc);
-
-			while(allEncounters.hasNext()) {
-				Encounter tempE=(Encounter)allEncounters.next();
-      			matches.add(tempE.getEncounterNumber());
+			Query queryEnc=QueryTemplateCache.newQuery(myShepherd.getPM(), filter, "individualID descending, catalogNumber ascending");
+			try{
+				Collection c=(Collection)QueryTemplateCache.executeWithMap(queryEnc, filter, "individualID descending, catalogNumber ascending", paramMap);
+				Iterator it=c.iterator();
+				while(it.hasNext()){
+					Object[] row=(Object[])it.next();
+					events.add(row);
+					String individualID=(String)row[4];
+					if((individualID!=null)&&(!individualID.equals("Unassigned"))){individualSexes.put(individualID, null);}
+				}
 			}
-
-		//output the XML for matching encounters
-      	if(matches.size()>0) {
-      		
-      		//open DB again to pull data
-      		//myShepherd.beginDBTransaction();
-      		
-      		try{
-      			
-      			//now spit out that XML for each match!
-      			//remember to set primary attribute!
-      			for(int i=0;i<matches.size();i++) {
-      				String thisEncounter=(String)matches.get(i);
-      				Encounter tempEnc=myShepherd.getEncounter(thisEncounter);
-      				if(tempEnc!=null){
-      					if(!tempEnc.isAssignedToMarkedIndividual().equals("Unassigned")){
-      					
-      					  
-      					  
-							String sex="-";
-							MarkedIndividual sharky=myShepherd.getMarkedIndividual(tempEnc.isAssignedToMarkedIndividual());
-							if((sharky.getSex()!=null)&&(!sharky.getSex().toLowerCase().equals("unknown"))) {
-								if(sharky.getSex().equals("male")){
-									sex="M";
-								}
-								else{
-									sex="F";
-								}
-							}
-							
-							
-							
-
-   							String outputXML="<event id=\""+tempEnc.getCatalogNumber()+"\">";
-   							outputXML+="<start_date>"+tempEnc.getYear()+"-"+tempEnc.getMonth()+"-"+tempEnc.getDay()+" "+"01:00"+"</start_date>";
-   							outputXML+="<end_date>"+tempEnc.getYear()+"-"+tempEnc.getMonth()+"-"+tempEnc.getDay()+" "+"01:00"+"</end_date>";
-   							outputXML+="<text><![CDATA["+tempEnc.getIndividualID()+"("+sex+")]]></text>";
-   							outputXML+="<details></details></event>";
-   							out.println(outputXML);
-      				} 
-      			else{
-      				 	
-      				   
-              String sex="-";
-              if((tempEnc.getSex()!=null)&&(!tempEnc.getSex().toLowerCase().equals("unknown"))) {
-                if(tempEnc.getSex().equals("male")){
-                  sex="M";
-                }
-                else{
-                  sex="F";
-                }
-              }
-      				 	
-      				 	
-      				 	
-						String outputXML="<event id=\""+tempEnc.getCatalogNumber()+"\">";
-							outputXML+="<start_date>"+tempEnc.getYear()+"-"+tempEnc.getMonth()+"-"+tempEnc.getDay()+" "+"01:00"+"</start_date>";
-							outputXML+="<end_date>"+tempEnc.getYear()+"-"+tempEnc.getMonth()+"-"+tempEnc.getDay()+" "+"01:01"+"</end_date>";
-							outputXML+="<text><![CDATA[No ID ("+sex+")]]></text>";
-							outputXML+="<details></details></event>";
-							out.println(outputXML);
-      				}
-      			}
-      					
-      					
-      		}
-
-      		}
-      		catch(Exception e){
-      				e.printStackTrace();
-      		}
-
-      			
-      	} //end if-matches>0
-      	
-		} //end try
+			finally{
+				queryEnc.closeAll();
+			}
+			loadSexes(myShepherd, individualSexes);
+		}
 		catch(Exception cal_e) {cal_e.printStackTrace();}
-		queryEnc.closeAll();
-		queryEnc=null;
 		myShepherd.rollbackDBTransaction();
   		myShepherd.closeDBTransaction();
-  		
 
-      	out.println("</data>");
-      	out.close();
+		//the events depend only on the rows, so a hash of them is a strong validator
+		long hash=0xcbf29ce484222325L;
+		for(int i=0;i<events.size();i++){
+			Object[] row=events.get(i);
+			for(int j=0;j<row.length;j++){hash=fnv(hash, String.valueOf(row[j]));}
+			if(row[4]!=null){hash=fnv(hash, String.valueOf(individualSexes.get((String)row[4])));}
+		}
+		String etag="\""+Long.toHexString(hash)+"\"";
+		long lastModified;
+		String key=context+"|"+startYear+"|"+endYear+"|"+startMonth+"|"+endMonth+"|"+locCode;
+		synchronized(validators){
+			long[] validator=validators.get(key);
+			if((validator==null)||(validator[0]!=hash)){
+				//HTTP dates have a precision of one second
+				validator=new long[]{hash, (System.currentTimeMillis()/1000)*1000};
+				validators.put(key, validator);
+			}
+			lastModified=validator[1];
+		}
+		response.setHeader("ETag", etag);
+		response.setDateHeader("Last-Modified", lastModified);
+		response.setHeader("Cache-Control", "no-cache");
+
+		String ifNoneMatch=request.getHeader("If-None-Match");
+		long ifModifiedSince=-1;
+		try{ifModifiedSince=request.getDateHeader("If-Modified-Since");}
+		catch(IllegalArgumentException iae){}
+		if(((ifNoneMatch!=null)&&(ifNoneMatch.equals(etag)||ifNoneMatch.trim().equals("*")))||((ifNoneMatch==null)&&(ifModifiedSince>=lastModified))){
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		//set up the output
+		response.setContentType("text/xml");
+		response.setCharacterEncoding("UTF-8");
+		OutputStream out=response.getOutputStream();
+		try{
+			XMLStreamWriter xml=XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+			xml.writeStartElement("data");
+			for(int i=0;i<events.size();i++){
+				Object[] row=events.get(i);
+				String individualID=(String)row[4];
+				boolean assigned=(individualID!=null)&&(!individualID.equals("Unassigned"));
+				String date=row[1]+"-"+row[2]+"-"+row[3]+" ";
+				xml.writeCharacters("\n");
+				xml.writeStartElement("event");
+				xml.writeAttribute("id", (String)row[0]);
+				writeElement(xml, "start_date", date+"01:00");
+				writeElement(xml, "end_date", date+(assigned ? "01:00" : "01:01"));
+				xml.writeStartElement("text");
+				if(assigned){
+					xml.writeCData(individualID+"("+getSexLetter(individualSexes.get(individualID))+")");
+				}
+				else{
+					xml.writeCData("No ID ("+getSexLetter((String)row[5])+")");
+				}
+				xml.writeEndElement();
+				xml.writeStartElement("details");
+				xml.writeEndElement();
+				xml.writeEndElement();
+			}
+			xml.writeCharacters("\n");
+			xml.writeEndElement();
+			xml.writeEndDocument();
+			xml.close();
+		}
+		catch(XMLStreamException xse){
+			xse.printStackTrace();
+		}
+		out.close();
 	}//end doPost
 
+  /**
+   * Fills in the sexes of the given individuals with one projection query per MAX_IDS_PER_QUERY individuals.
+   */
+  private static void loadSexes(Shepherd myShepherd, HashMap<String,String> individualSexes) {
+    String template="SELECT individualID, sex FROM org.ecocean.MarkedIndividual WHERE calendarIndividualIDs.contains(individualID) PARAMETERS java.util.Collection calendarIndividualIDs";
+    List<String> ids=new ArrayList<String>(individualSexes.keySet());
+    for(int i=0;i<ids.size();i+=MAX_IDS_PER_QUERY){
+      HashMap<String,Object> paramMap=new HashMap<String,Object>();
+      paramMap.put("calendarIndividualIDs", new ArrayList<String>(ids.subList(i, Math.min(ids.size(), i+MAX_IDS_PER_QUERY))));
+      Query query=QueryTemplateCache.newQuery(myShepherd.getPM(), template, null);
+      try{
+        Collection c=(Collection)QueryTemplateCache.executeWithMap(query, template, null, paramMap);
+        Iterator it=c.iterator();
+        while(it.hasNext()){
+          Object[] row=(Object[])it.next();
+          individualSexes.put((String)row[0], (String)row[1]);
+        }
+      }
+      finally{
+        query.closeAll();
+      }
+    }
+  }
+
+  private static String getSexLetter(String sex) {
+    if((sex!=null)&&(!sex.toLowerCase().equals("unknown"))) {
+      if(sex.equals("male")){return "M";}
+      return "F";
+    }
+    return "-";
+  }
+
+  private static void writeElement(XMLStreamWriter xml, String name, String text) throws XMLStreamException {
+    xml.writeStartElement(name);
+    xml.writeCharacters(text);
+    xml.writeEndElement();
+  }
+
+  private static long fnv(long hash, String value) {
+    for(int i=0;i<value.length();i++){
+      hash^=value.charAt(i);
+      hash*=0x100000001b3L;
+    }
+    //separate values so that "ab","c" and "a","bc" differ
+    hash^=0xff;
+    hash*=0x100000001b3L;
+    return hash;
+  }
+
 } //end class
-	
-	
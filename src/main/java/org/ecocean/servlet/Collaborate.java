@@ -148,14 +148,14 @@ System.out.println(collabs);
 
 		} else {
     	response.setContentType("text/html");
-			out.println(ServletUtilities.getHeader(request));
+			ServletUtilities.writeHeader(out, request);
 			if (Boolean.TRUE.equals(rtn.get("success"))) {
 				out.println("<p class=\"collaboration-invite-success\">" + props.getProperty("inviteSuccess") + "</p>");
 			} else {
 				out.println("<p class=\"collaboration-invite-failure\">" + props.getProperty("inviteFailure") + "</p>");
 			}
 			if (rtn.get("message") != null) out.println("<p class=\"collaboration-invite-message\">" + rtn.get("message") + "</p>");
-			out.println(ServletUtilities.getFooter(context));
+			ServletUtilities.writeFooter(out, context);
 		}
 
 		out.close();
@@ -95,28 +95,28 @@ public class DeleteAdoption extends HttpServlet {
       if (!locked) {
         myShepherd.commitDBTransaction();
         myShepherd.closeDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Success!</strong> I have successfully removed adoption " + number + ". However, a saved copy an still be restored.");
 
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/adoptions/adoption.jsp\">Return to the Adoption Create/Edit page.</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       } 
       else {
 
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Failure!</strong> I failed to delete this adoption. Check the logs for more details.");
 
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/adoptions/adoption.jsp\">Return to the Adoption Create/Edit page.</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
 
       }
 
     } else {
       myShepherd.rollbackDBTransaction();
       myShepherd.closeDBTransaction();
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I was unable to remove your image file. I cannot find the encounter that you intended it for in the database.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
 
     }
     out.close();
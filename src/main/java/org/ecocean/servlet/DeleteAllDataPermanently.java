@@ -112,24 +112,27 @@ public class DeleteAllDataPermanently extends HttpServlet {
         le.printStackTrace();
         myShepherd.rollbackDBTransaction();
         myShepherd.closeDBTransaction();
+        //some of the bulk deletes may have been committed, and none are reported to the in-memory indexes
+        ContextIndex.invalidateAll(context);
       }
 
       if (!locked) {
         myShepherd.commitDBTransaction();
         myShepherd.closeDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ContextIndex.invalidateAll(context);
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Success!</strong> I have successfully removed all data.");
 
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/admin.jsp\">Return to the Administration page.</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       } 
       else {
 
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Failure!</strong> I failed to delete all data.");
 
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/admin.jsp\">Return to the Administration page.</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
 
       }
 
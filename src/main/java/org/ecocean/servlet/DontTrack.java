@@ -89,20 +89,20 @@ public class DontTrack extends HttpServlet {
       if (!locked) {
         myShepherd.commitDBTransaction();
         myShepherd.closeDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Success!</strong> I have successfully stopped the tracking of encounter#" + encounterNumber + " for e-mail address " + email + ".");
 
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + encounterNumber + "\">Go to encounter " + encounterNumber + "</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         Vector e_images = new Vector();
         String message = "This is a confirmation that e-mail tracking of data changes to encounter " + encounterNumber + " has now been stopped.";
         NotificationMailer mailer = new NotificationMailer(CommonConfiguration.getMailHost(context), CommonConfiguration.getAutoEmailAddress(context), email, ("Encounter data tracking stopped for encounter: " + encounterNumber), message, e_images,context);
       } else {
 
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Failure!</strong> This encounter is currently being modified by another user, or the database is locked. Please wait a few seconds before trying to remove this e-mail address from tracking again.");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + encounterNumber + "\">Return to encounter " + encounterNumber + "</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
 
       }
     }
@@ -140,20 +140,20 @@ public class DontTrack extends HttpServlet {
       if (!locked) {
         myShepherd.commitDBTransaction();
         myShepherd.closeDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Success!</strong> I have successfully stopped the tracking of " + shark + " for e-mail address " + email + ".");
 
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/individuals.jsp?number=" + shark + "\">Go to " + shark + "</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         Vector e_images = new Vector();
         String message = "This is a confirmation that e-mail tracking of data changes to " + shark + " has now been stopped.";
         NotificationMailer mailer = new NotificationMailer(CommonConfiguration.getMailHost(context), CommonConfiguration.getAutoEmailAddress(context), email, ("Data tracking stopped for: " + shark), message, e_images,context);
       } else {
 
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Failure!</strong> This record is currently being modified by another user, or the database is locked. Please wait a few seconds before trying to remove this e-mail address from tracking again.");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/individuals.jsp?number=" + shark + "\">Return to " + shark + "</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
 
       }
 
@@ -161,9 +161,9 @@ public class DontTrack extends HttpServlet {
     } else {
       myShepherd.rollbackDBTransaction();
       myShepherd.closeDBTransaction();
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I was unable to remove your e-mail address from the tracking list. I cannot find the encounter or marked individual that you indicated in the database, or you did not provide a valid e-mail address.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
 
     }
     out.close();
@@ -100,7 +100,7 @@ public class EncounterAddComment extends HttpServlet {
       }
 
 
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       if (!locked) {
         myShepherd.commitDBTransaction();
         out.println("<strong>Success:</strong> I have successfully added your comments.");
@@ -111,14 +111,14 @@ public class EncounterAddComment extends HttpServlet {
         out.println("<strong>Failure:</strong> I did NOT add your comments. Another user is currently modifying the entry for this encounter. Please try to add your comments again in a few seconds.");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
       }
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
 
 
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I don't have enough information to add your comments.");
       out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
     myShepherd.closeDBTransaction();
 
@@ -146,41 +146,41 @@ public class EncounterAddImage extends HttpServlet {
         if (!locked) {
           myShepherd.commitDBTransaction();
           myShepherd.closeDBTransaction();
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Success!</strong> I have successfully uploaded your new encounter image file.");
           if (positionInList == 1) {
             out.println("<p><i>You should also reset the thumbnail image for this encounter. You can do so by <a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/resetThumbnail.jsp?number=" + encounterNumber + "\">clicking here.</a></i></p>");
           }
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + encounterNumber + "\">Return to encounter " + encounterNumber + "</a></p>\n");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
           String message = "An additional image file has been uploaded for encounter #" + encounterNumber + ".";
           ServletUtilities.informInterestedParties(request, encounterNumber, message,context);
         } else {
 
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Failure!</strong> This encounter is currently being modified by another user. Please wait a few seconds before trying to add this image again.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + encounterNumber + "\">Return to encounter " + encounterNumber + "</a></p>\n");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
 
         }
       } else {
         myShepherd.rollbackDBTransaction();
         myShepherd.closeDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Error:</strong> I was unable to upload your image file. I cannot find the encounter that you intended it for in the database.");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
 
       }
     } catch (IOException lEx) {
       lEx.printStackTrace();
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I was unable to upload your image file. Please contact the web master about this message.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     } catch (NullPointerException npe) {
       npe.printStackTrace();
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I was unable to upload an image as no file was specified.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
     out.close();
   }
@@ -107,7 +107,7 @@ public class EncounterApprove extends HttpServlet {
 
       if (!locked) {
         myShepherd.commitDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Success:</strong> I have approved this encounter " + request.getParameter("number") + " for inclusion in the database.");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
         
@@ -120,20 +120,20 @@ public class EncounterApprove extends HttpServlet {
           }
         }
         
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         String message = "Encounter " + request.getParameter("number") + " was approved for inclusion in the visual database.";
         ServletUtilities.informInterestedParties(request, request.getParameter("number"), message,context);
       } else {
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Failure:</strong> I have NOT approved this encounter " + request.getParameter("number") + " for the visual database. This new encounter is currently being modified by another user.");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
         
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I don't know which new encounter you're trying to approve.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
 
     out.close();
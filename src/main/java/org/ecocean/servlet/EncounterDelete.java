@@ -84,11 +84,11 @@ public class EncounterDelete extends HttpServlet {
 
       if(enc2trash.getOccurrenceID()!=null) {
         myShepherd.commitDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("Encounter " + request.getParameter("number") + " is assigned to an Occurrence and cannot be deleted until it has been removed from that occurrence.");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter " + request.getParameter("number") + "</a>.</p>\n");
         
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
       else if ((enc2trash.getIndividualID()==null)||(enc2trash.isAssignedToMarkedIndividual().equals("Unassigned"))) {
 
@@ -135,7 +135,7 @@ public class EncounterDelete extends HttpServlet {
 		  log.info("Click to restore deleted encounter: <a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/ResurrectDeletedEncounter?number=" + request.getParameter("number")+"\">"+request.getParameter("number")+"</a>");
 
 
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Success:</strong> I have removed encounter " + request.getParameter("number") + " from the database. If you have deleted this encounter in error, please contact the webmaster and reference encounter " + request.getParameter("number") + " to have it restored.");
           ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
           int allStatesSize=allStates.size();
@@ -146,7 +146,7 @@ public class EncounterDelete extends HttpServlet {
             }
           }
           
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
           Vector e_images = new Vector();
           NotificationMailer mailer = new NotificationMailer(CommonConfiguration.getMailHost(context), CommonConfiguration.getAutoEmailAddress(context), CommonConfiguration.getNewSubmissionEmail(context), ("Removed encounter " + request.getParameter("number")), "Encounter " + request.getParameter("number") + " has been removed from the database by user " + request.getRemoteUser() + ".", e_images,context);
 
@@ -158,7 +158,7 @@ public class EncounterDelete extends HttpServlet {
 
         } 
         else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Failure:</strong> I have NOT removed encounter " + request.getParameter("number") + " from the database. An exception occurred in the deletion process.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter " + request.getParameter("number") + "</a>.</p>\n");
           
@@ -170,22 +170,22 @@ public class EncounterDelete extends HttpServlet {
               out.println("<p><a href=\"encounters/searchResults.jsp?state="+stateName+"\">View all "+stateName+" encounters</a></font></p>");   
             }
           }
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
 
 
         }
       } else {
         myShepherd.commitDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("Encounter " + request.getParameter("number") + " is assigned to a Marked Individual and cannot be deleted until it has been removed from that individual.");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter " + request.getParameter("number") + "</a>.</p>\n");
         
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I don't know which encounter you're trying to remove.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
 
     }
 
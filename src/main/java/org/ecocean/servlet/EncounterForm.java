@@ -24,10 +24,11 @@ package org.ecocean.servlet;
 import java.util.*;
 //import java.lang.*;
 //import java.util.List;
-import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
 import org.apache.commons.io.output.*;
 /////
 
@@ -56,6 +57,7 @@ import javax.servlet.http.HttpSession;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 
 import java.text.SimpleDateFormat;
@@ -222,30 +224,39 @@ System.out.println("rootDir=" + rootDir);
 		List<String> filesOK = new ArrayList<String>();
 		List<String> filesBad = new ArrayList<String>();
 
-		List<FileItem> formFiles = new ArrayList<FileItem>();
+		List<MediaIngest.StagedMedia> formFiles = new ArrayList<MediaIngest.StagedMedia>();
 
   	Calendar date = Calendar.getInstance();
 
 		if (ServletFileUpload.isMultipartContent(request)) {
 			try {
-				ServletFileUpload upload = new ServletFileUpload(new DiskFileItemFactory());
+				//stream each part as it arrives: fields are read into fv, files are hashed and written straight to the staging dir
+				File stagingDir = MediaIngest.getStagingDir(ServletUtilities.dataDir(context, rootDir));
+				ServletFileUpload upload = new ServletFileUpload();
 				upload.setHeaderEncoding("UTF-8");
-				List<FileItem> multiparts = upload.parseRequest(request);
-				//List<FileItem> multiparts = new ServletFileUpload(new DiskFileItemFactory()).parseRequest(request);
-
-				for(FileItem item : multiparts){
-					if (item.isFormField()) {  //plain field
-						fv.put(item.getFieldName(), ServletUtilities.preventCrossSiteScriptingAttacks(item.getString("UTF-8").trim()));  //TODO do we want trim() here??? -jon
+				FileItemIterator parts = upload.getItemIterator(request);
+
+				while (parts.hasNext()) {
+					FileItemStream item = parts.next();
+					InputStream stream = item.openStream();
+					try {
+						if (item.isFormField()) {  //plain field
+							fv.put(item.getFieldName(), ServletUtilities.preventCrossSiteScriptingAttacks(Streams.asString(stream, "UTF-8").trim()));  //TODO do we want trim() here??? -jon
 //System.out.println("got regular field (" + item.getFieldName() + ")=(" + item.getString("UTF-8") + ")");
 
-					} else {  //file
+						} else if ((item.getName() == null) || item.getName().equals("")) {
+							//empty file input
+						} else {  //file
 //System.out.println("content type???? " + item.getContentType());   TODO note, the helpers only check extension
-						if (myShepherd.isAcceptableImageFile(item.getName()) || myShepherd.isAcceptableVideoFile(item.getName()) ) {
-							formFiles.add(item);
-							filesOK.add(item.getName());
-						} else {
-							filesBad.add(item.getName());
+							if (myShepherd.isAcceptableImageFile(item.getName()) || myShepherd.isAcceptableVideoFile(item.getName()) ) {
+								formFiles.add(MediaIngest.stage(stream, item.getName(), stagingDir));
+								filesOK.add(item.getName());
+							} else {
+								filesBad.add(item.getName());
+							}
 						}
+					} finally {
+						stream.close();
 					}
 				}
 
@@ -254,6 +265,9 @@ System.out.println("rootDir=" + rootDir);
 
 			} catch (Exception ex) {
 				doneMessage = "File Upload Failed due to " + ex;
+				for (MediaIngest.StagedMedia media : formFiles) {
+					MediaIngest.discard(media);
+				}
 			}
 
 		} else {
@@ -395,16 +409,16 @@ System.out.println("enc ?= " + enc.toString());
 
 			String baseDir = ServletUtilities.dataDir(context, rootDir);
 			ArrayList<SinglePhotoVideo> images = new ArrayList<SinglePhotoVideo>();
-			for (FileItem item : formFiles) {
-				/* this will actually write file to filesystem (or [FUTURE] wherever)
+			for (MediaIngest.StagedMedia media : formFiles) {
+				/* this moves (or links, if the same media is already stored) the staged file into the encounter dir
 				   TODO: either (a) undo this if any failure of writing encounter; or (b) dont write til success of enc. */
 				try {
-					//SinglePhotoVideo spv = new SinglePhotoVideo(encID, item, context, encDataDir);
-					SinglePhotoVideo spv = new SinglePhotoVideo(enc, item, context, baseDir);
+					SinglePhotoVideo spv = MediaIngest.store(myShepherd, enc, media, baseDir);
 					//images.add(spv);
 					enc.addSinglePhotoVideo(spv);
 				} catch (Exception ex) {
-					System.out.println("failed to save " + item.toString() + ": " + ex.toString());
+					System.out.println("failed to save " + media.getOriginalName() + ": " + ex.toString());
+					MediaIngest.discard(media);
 				}
 			}
 
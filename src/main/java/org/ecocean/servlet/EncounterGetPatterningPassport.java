@@ -81,9 +81,9 @@ public class EncounterGetPatterningPassport extends HttpServlet {
     myShepherd.closeDBTransaction();
 
     // response
-    out.println(ServletUtilities.getHeader(request));
+    ServletUtilities.writeHeader(out, request);
     out.println(responseMsg);
-    out.println(ServletUtilities.getFooter(context));
+    ServletUtilities.writeFooter(out, context);
     out.close();
 
     //return;
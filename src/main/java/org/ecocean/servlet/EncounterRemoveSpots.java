@@ -123,7 +123,7 @@ public class EncounterRemoveSpots extends HttpServlet {
       }
 
 
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       if (!locked) {
         myShepherd.commitDBTransaction();
         out.println("<strong>Success:</strong> I have removed spot data for encounter " + request.getParameter("number") + ".");
@@ -142,12 +142,12 @@ public class EncounterRemoveSpots extends HttpServlet {
         }
       }
 
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I don't have enough information to complete your request.");
       out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
 
     out.close();
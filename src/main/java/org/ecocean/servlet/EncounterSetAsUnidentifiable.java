@@ -93,7 +93,7 @@ public class EncounterSetAsUnidentifiable extends HttpServlet {
         if (!locked) {
           String submitterEmail = enc2reject.getSubmitterEmail();
           myShepherd.commitDBTransaction();
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Success:</strong> I have set encounter " + request.getParameter("number") + " as unidentifiable in the database.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">View unidentifiable encounter #" + request.getParameter("number") + "</a></p>\n");
           ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -104,7 +104,7 @@ public class EncounterSetAsUnidentifiable extends HttpServlet {
               out.println("<p><a href=\"encounters/searchResults.jsp?state="+stateName+"\">View all "+stateName+" encounters</a></font></p>");   
             }
           }
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
           String message = "Encounter " + request.getParameter("number") + " was set as unidentifiable in the database.";
           ServletUtilities.informInterestedParties(request, request.getParameter("number"),message,context);
 
@@ -125,7 +125,7 @@ public class EncounterSetAsUnidentifiable extends HttpServlet {
           
 
         } else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Failure:</strong> I have NOT modified encounter " + request.getParameter("number") + " in the database because another user is currently modifying its entry. Please try this operation again in a few seconds.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">View unidentifiable encounter #" + request.getParameter("number") + "</a></p>\n");
           ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -136,19 +136,19 @@ public class EncounterSetAsUnidentifiable extends HttpServlet {
               out.println("<p><a href=\"encounters/searchResults.jsp?state="+stateName+"\">View all "+stateName+" encounters</a></font></p>");   
             }
           }
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
 
         }
 
       } else {
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("Encounter# " + request.getParameter("number") + " is assigned to an individual and cannot be set as unidentifiable until it has been removed from that individual.");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I do not know which encounter you are trying to remove.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
 
     }
 
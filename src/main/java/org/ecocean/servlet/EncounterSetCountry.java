@@ -58,28 +58,28 @@ public class EncounterSetCountry extends HttpServlet {
       if(!locked){
         myShepherd.commitDBTransaction();
         myShepherd.closeDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Success!</strong> I have successfully changed the reported country for encounter "+encNum+" to "+country+".</p>");
 
         out.println("<p><a href=\"http://"+CommonConfiguration.getURLLocation(request)+"/encounters/encounter.jsp?number="+encNum+"\">Return to encounter "+encNum+"</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         String message="The country for encounter "+encNum+" was set to "+country+".";
       }
       else{
 
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Failure!</strong> This encounter is currently being modified by another user, or an exception occurred. Please wait a few seconds before trying to modify this encounter again.");
 
         out.println("<p><a href=\"http://"+CommonConfiguration.getURLLocation(request)+"/encounters/encounter.jsp?number="+encNum+"\">Return to encounter "+encNum+"</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
 
       }
                   }
                 else {
                   myShepherd.rollbackDBTransaction();
-                out.println(ServletUtilities.getHeader(request));
+                ServletUtilities.writeHeader(out, request);
                 out.println("<strong>Error:</strong> I was unable to set the country. I cannot find the encounter that you intended in the database.");
-                out.println(ServletUtilities.getFooter(context));
+                ServletUtilities.writeFooter(out, context);
 
                   }
                 out.close();
@@ -108,7 +108,7 @@ public class EncounterSetDynamicProperty extends HttpServlet {
       if (!locked) {
         setDateLastModified(changeMe);
         myShepherd.commitDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
 
         if (!newValue.equals("")) {
           out.println("<strong>Success:</strong> Encounter dynamic property " + name + " has been updated from <i>" + oldValue + "</i> to <i>" + newValue + "</i>.");
@@ -127,11 +127,11 @@ public class EncounterSetDynamicProperty extends HttpServlet {
           }
         }
         out.println("<p><a href=\"individualSearchResults.jsp\">View all marked individuals</a></font></p>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         String message = "Encounter " + request.getParameter("number") + " dynamic property " + name + " has been updated from \"" + oldValue + "\" to \"" + newValue + "\".";
         ServletUtilities.informInterestedParties(request, request.getParameter("number"), message,context);
       } else {
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Failure:</strong> Encounter dynamic property " + name + " was NOT updated because another user is currently modifying this reconrd. Please try to reset the value again in a few seconds.");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter " + request.getParameter("number") + "</a></p>\n");
         ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -143,11 +143,11 @@ public class EncounterSetDynamicProperty extends HttpServlet {
           }
         }
         out.println("<p><a href=\"individualSearchResults.jsp\">View all marked individuals</a></font></p>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
 
       }
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I don't have enough information to complete your request.");
       out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
       ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -158,7 +158,7 @@ public class EncounterSetDynamicProperty extends HttpServlet {
           out.println("<p><a href=\"encounters/searchResults.jsp?state="+stateName+"\">View all "+stateName+" encounters</a></font></p>");   
         }
       }out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
 
     }
 
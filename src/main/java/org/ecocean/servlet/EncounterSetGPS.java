@@ -129,7 +129,9 @@ public class EncounterSetGPS extends HttpServlet {
           if(!locked){
           
             myShepherd.commitDBTransaction();
-            out.println(ServletUtilities.getHeader(request));
+            //cached map layers may hold the old position
+            MapLayer.invalidate(context);
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Success:</strong> The encounter's recorded GPS location has been updated from "+oldGPS+" to "+newGPS+".");
             out.println("<p><a href=\"http://"+CommonConfiguration.getURLLocation(request)+"/encounters/encounter.jsp?number="+request.getParameter("number")+"\">Return to encounter <strong>"+request.getParameter("number")+"</strong></a></p>\n");
             ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -141,13 +143,13 @@ public class EncounterSetGPS extends HttpServlet {
               }
             }
             out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-                out.println(ServletUtilities.getFooter(context));
+                ServletUtilities.writeFooter(out, context);
             String message="The recorded GPS location for encounter #"+request.getParameter("number")+" has been updated from "+oldGPS+" to "+newGPS+".";
             ServletUtilities.informInterestedParties(request, request.getParameter("number"), message,context);
             }
           else{
             
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Failure:</strong> Encounter GPS location was NOT updated. An error was encountered. Please try this operation again in a few seconds. If this condition persists, contact the webmaster.");
             out.println("<p><a href=\"http://"+CommonConfiguration.getURLLocation(request)+"/encounters/encounter.jsp?number="+request.getParameter("number")+"\">Return to encounter <strong>"+request.getParameter("number")+"</strong></a></p>\n");
             ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -159,14 +161,14 @@ public class EncounterSetGPS extends HttpServlet {
               }
             }
             out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-                out.println(ServletUtilities.getFooter(context));
+                ServletUtilities.writeFooter(out, context);
             
             }
           
         }   
           
         else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Error:</strong> I don't have enough information to complete your request.");
           out.println("<p><a href=\"http://"+CommonConfiguration.getURLLocation(request)+"/encounters/encounter.jsp?number="+request.getParameter("number")+"\">Return to encounter <strong>"+request.getParameter("number")+"</strong></a></p>\n");
           ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -178,7 +180,7 @@ public class EncounterSetGPS extends HttpServlet {
             }
           }
           out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-              out.println(ServletUtilities.getFooter(context));  
+              ServletUtilities.writeFooter(out, context);  
             
           }
         
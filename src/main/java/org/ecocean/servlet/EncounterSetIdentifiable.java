@@ -102,7 +102,7 @@ public class EncounterSetIdentifiable extends HttpServlet {
       }
       if (!locked) {
         myShepherd.commitDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Success:</strong> Encounter #" + request.getParameter("number") + " was successfully added back into the visual database.");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
         ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -121,11 +121,11 @@ public class EncounterSetIdentifiable extends HttpServlet {
             out.println("<p><a href=\"encounters/searchResults.jsp?state="+stateName+"\">View all "+stateName+" encounters</a></font></p>");   
           }
         }
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         String message = "Encounter #" + request.getParameter("number") + " was accepted back into the visual database.";
         ServletUtilities.informInterestedParties(request, request.getParameter("number"), message,context);
       } else {
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Failure:</strong> Encounter #" + request.getParameter("number") + " was NOT successfully added back into the visual database. This encounter is currently being modified by another user. Please try this operation again in a few seconds.");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
         ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -143,12 +143,12 @@ public class EncounterSetIdentifiable extends HttpServlet {
             String stateName=allStates5.get(i);
             out.println("<p><a href=\"encounters/searchResults.jsp?state="+stateName+"\">View all "+stateName+" encounters</a></font></p>");   
           }
-        }out.println(ServletUtilities.getFooter(context));
+        }ServletUtilities.writeFooter(out, context);
 
 
       }
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I don't know which encounter you're trying to reaccept.");
       ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
       int allStatesSize=allStates.size();
@@ -167,7 +167,7 @@ public class EncounterSetIdentifiable extends HttpServlet {
           out.println("<p><a href=\"encounters/searchResults.jsp?state="+stateName+"\">View all "+stateName+" encounters</a></font></p>");   
         }
       }
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
 
     }
 
@@ -56,28 +56,28 @@ public class EncounterSetPatterningCode extends HttpServlet {
       if(!locked){
         myShepherd.commitDBTransaction();
         myShepherd.closeDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Success!</strong> I have successfully changed the colorCode for encounter "+encNum+" to "+colorCode+".</p>");
 
         out.println("<p><a href=\"http://"+CommonConfiguration.getURLLocation(request)+"/encounters/encounter.jsp?number="+encNum+"\">Return to encounter "+encNum+"</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         String message="The colorCode for encounter "+encNum+" was set to "+colorCode+".";
       }
       else{
 
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Failure!</strong> This encounter is currently being modified by another user, or an exception occurred. Please wait a few seconds before trying to modify this encounter again.");
 
         out.println("<p><a href=\"http://"+CommonConfiguration.getURLLocation(request)+"/encounters/encounter.jsp?number="+encNum+"\">Return to encounter "+encNum+"</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
 
       }
                   }
                 else {
                   myShepherd.rollbackDBTransaction();
-                out.println(ServletUtilities.getHeader(request));
+                ServletUtilities.writeHeader(out, request);
                 out.println("<strong>Error:</strong> I was unable to set the colorCode. I cannot find the encounter that you intended in the database.");
-                out.println(ServletUtilities.getFooter(context));
+                ServletUtilities.writeFooter(out, context);
 
                   }
                 out.close();
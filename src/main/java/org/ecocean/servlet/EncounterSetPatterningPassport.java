@@ -128,9 +128,9 @@ public class EncounterSetPatterningPassport extends HttpServlet {
     }
 
     // response
-    out.println(ServletUtilities.getHeader(request));
+    ServletUtilities.writeHeader(out, request);
     out.println(responseMsg);
-    out.println(ServletUtilities.getFooter(context));
+    ServletUtilities.writeFooter(out, context);
     out.close();
 
     return;
@@ -118,7 +118,7 @@ public class EncounterSetSex extends HttpServlet {
 
           if (!locked) {
             myShepherd.commitDBTransaction(action);
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Success:</strong> encounter sex has been updated from " + oldSex + " to " + request.getParameter("selectSex") + ".");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
             ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -130,11 +130,11 @@ public class EncounterSetSex extends HttpServlet {
               }
             }
             out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
             String message = "The sex for encounter #" + request.getParameter("number") + "has been updated from " + oldSex + " to " + request.getParameter("selectSex") + ".";
             ServletUtilities.informInterestedParties(request, request.getParameter("number"),message,context);
           } else {
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Failure:</strong> Encounter sex was NOT updated because another user is currently modifying the record for this encounter.");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
             ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -146,11 +146,11 @@ public class EncounterSetSex extends HttpServlet {
               }
             }
             out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
 
           }
         } else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Error:</strong> I don't have enough information to complete your request.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
           ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -162,22 +162,22 @@ public class EncounterSetSex extends HttpServlet {
             }
           }
           out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
 
         }
 
       } else {
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<p>I didn't understand your command, or you are not authorized for this action.</p>");
         out.println("<p>Please try again or <a href=\"welcome.jsp\">login here</a>.");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
 
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<p>I did not receive enough data to process your command. No action was indicated to me.</p>");
       out.println("<p>Please try again or <a href=\"welcome.jsp\">login here</a>.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
 
     out.close();
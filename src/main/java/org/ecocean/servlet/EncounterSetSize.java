@@ -115,7 +115,7 @@ public class EncounterSetSize extends HttpServlet {
 
           if (!locked && okNumberFormat) {
             myShepherd.commitDBTransaction(action);
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Success:</strong> Encounter size has been updated from " + oldSize + " " + oldUnits + " (" + oldGuess + ")" + " to "+newValue+".");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
             ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -127,11 +127,11 @@ public class EncounterSetSize extends HttpServlet {
               }
             }
             out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
             String message = "Encounter #" + request.getParameter("number") + " size has been updated from " + oldSize + " " + oldUnits + "(" + oldGuess + ")" + " to " + request.getParameter("lengthField") + " " + request.getParameter("lengthUnits") + "(" + request.getParameter("guessList") + ").";
             ServletUtilities.informInterestedParties(request, request.getParameter("number"),message,context);
           } else if (!okNumberFormat) {
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Failure:</strong> Encounter size was NOT updated because I did not understand the value that you entered. The value must be zero or greater. A value of zero indicates an unknown length.");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
             ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -143,9 +143,9 @@ public class EncounterSetSize extends HttpServlet {
               }
             }
             out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
           } else {
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Failure:</strong> Encounter size was NOT updated because another user is currently modifying the record for this encounter.");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
             ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -157,12 +157,12 @@ public class EncounterSetSize extends HttpServlet {
               }
             }
             out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
 
 
           }
         } else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Error:</strong> I don't have enough information to complete your request.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
           ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -174,22 +174,22 @@ public class EncounterSetSize extends HttpServlet {
             }
           }
           out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
 
         }
 
       } else {
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<p>I didn't understand your command, or you are not authorized for this action.</p>");
         out.println("<p>Please try again or <a href=\"welcome.jsp\">login here</a>.");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
 
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<p>I did not receive enough data to process your command. No action was indicated to me.</p>");
       out.println("<p>Please try again or <a href=\"welcome.jsp\">login here</a>.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
 
     out.close();
@@ -109,7 +109,7 @@ public class EncounterSetTapirLinkExposure extends HttpServlet {
 
           if (!locked) {
             myShepherd.commitDBTransaction(action);
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Success:</strong> I have changed encounter " + request.getParameter("number") + " TapirLink exposure status.");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a>.</p>\n");
             ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -122,9 +122,9 @@ public class EncounterSetTapirLinkExposure extends HttpServlet {
             }
             out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
 
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
           } else {
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Failure:</strong> I have NOT changed encounter " + request.getParameter("number") + " TapirLink status. This encounter is currently being modified by another user, or an unknown error occurred.");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
             ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -136,30 +136,30 @@ public class EncounterSetTapirLinkExposure extends HttpServlet {
               }
             }
             out.println("<p><a href=\"individualSearchResults.jsp\">View all individual</a></font></p>");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
 
 
           }
 
         } else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Error:</strong> I don't know which new encounter you're trying to approve.");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
 
         }
 
       } else {
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<p>I didn't understand your command, or you are not authorized for this action.</p>");
         out.println("<p>Please try again or <a href=\"welcome.jsp\">login here</a>.");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
 
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<p>I did not receive enough data to process your command. No action was indicated to me.</p>");
       out.println("<p>Please try again or <a href=\"welcome.jsp\">login here</a>.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
 
     out.close();
@@ -0,0 +1,49 @@
+package org.ecocean.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.json.*;
+import org.ecocean.grid.*;
+
+/**
+ * Reports the state and measurements of the grid, as kept by GridTelemetry: as JSON by default, or in the Prometheus
+ * text format when format=prometheus, for scraping by monitoring.
+ */
+public class GridStatistics extends HttpServlet {
+
+
+  public void init(ServletConfig config) throws ServletException {
+      super.init(config);
+    }
+
+
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException,IOException {
+    GridManager gm = GridManagerFactory.getGridManager();
+    response.setHeader("Cache-Control", "no-cache");
+
+    if("prometheus".equals(request.getParameter("format"))){
+      response.setContentType("text/plain; version=0.0.4");
+      response.setCharacterEncoding("UTF-8");
+      PrintWriter out = response.getWriter();
+      out.print(gm.getTelemetry().toPrometheus(gm));
+      out.close();
+      return;
+    }
+
+    response.setContentType("application/json");
+    PrintWriter out = response.getWriter();
+    try{
+      out.println(gm.getTelemetry().toJSON(gm).toString());
+    }
+    catch(JSONException je){
+      je.printStackTrace();
+      response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+    out.close();
+  }
+
+}
@@ -119,7 +119,16 @@ public class IndividualAddEncounter extends HttpServlet {
 
           if (!locked) {
 
+            //the encounter's occurrence now has a different set of individuals
+            String occurrenceID = enc2add.getOccurrenceID();
+            ArrayList<String> occurrenceMembers = null;
+            if ((occurrenceID != null) && (myShepherd.isOccurrence(occurrenceID))) {
+              occurrenceMembers = myShepherd.getOccurrence(occurrenceID).getMarkedIndividualNamesForThisOccurrence();
+            }
             myShepherd.commitDBTransaction();
+            if (occurrenceMembers != null) {
+              AssociationIndex.updateOccurrence(context, occurrenceID, occurrenceMembers);
+            }
             Vector e_images = new Vector();
 
             String updateMessage = ServletUtilities.getText("markedIndividualUpdate.txt");
@@ -288,14 +297,14 @@ public class IndividualAddEncounter extends HttpServlet {
 
 
             //print successful result notice
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Success:</strong> Encounter " + request.getParameter("number") + " was successfully added to " + request.getParameter("individual") + ".");
             if (sexMismatch) {
               out.println("<p><strong>Warning! There is conflict between the designated sex of the new encounter and the designated sex in previous records. You should resolve this conflict for consistency.</strong></p>");
             }
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/individuals.jsp?number=" + request.getParameter("individual") + "\">View individual " + request.getParameter("individual") + "</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
             String message = "Encounter #" + request.getParameter("number") + " was added to " + request.getParameter("individual") + ".";
 
             if (request.getParameter("noemail") == null) {
@@ -307,37 +316,37 @@ public class IndividualAddEncounter extends HttpServlet {
 
           //if lock exception thrown
           else {
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Failure:</strong> Encounter #" + request.getParameter("number") + " was NOT added to " + request.getParameter("individual") + ". Another user is currently modifying this record in the database. Please try to add the encounter again after a few seconds.");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/individuals.jsp?number=" + request.getParameter("individual") + "\">View " + request.getParameter("individual") + "</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
 
           }
 
 
         } catch (Exception e) {
 
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Error:</strong> No such record exists in the database.");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
           myShepherd.rollbackDBTransaction();
           e.printStackTrace();
           //myShepherd.closeDBTransaction();
         }
       } else {
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Error:</strong> You can't add this encounter to a marked individual when it's already assigned to another one, or you may be trying to add this encounter to a nonexistent individual.");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         myShepherd.rollbackDBTransaction();
         //myShepherd.closeDBTransaction();
       }
 
 
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I didn't receive enough data to add this encounter to a marked individual.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
 
 
@@ -19,6 +19,7 @@
 
 package org.ecocean.servlet;
 
+import org.ecocean.AssociationIndex;
 import org.ecocean.CommonConfiguration;
 import org.ecocean.Encounter;
 import org.ecocean.MarkedIndividual;
@@ -32,6 +33,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 
 
 public class IndividualRemoveEncounter extends HttpServlet {
@@ -126,32 +128,41 @@ public class IndividualRemoveEncounter extends HttpServlet {
 
 
         if (!locked) {
+          //the encounter's occurrence now has a different set of individuals
+          String occurrenceID = enc2remove.getOccurrenceID();
+          ArrayList<String> occurrenceMembers = null;
+          if ((occurrenceID != null) && (myShepherd.isOccurrence(occurrenceID))) {
+            occurrenceMembers = myShepherd.getOccurrence(occurrenceID).getMarkedIndividualNamesForThisOccurrence();
+          }
           myShepherd.commitDBTransaction();
-          out.println(ServletUtilities.getHeader(request));
+          if (occurrenceMembers != null) {
+            AssociationIndex.updateOccurrence(context, occurrenceID, occurrenceMembers);
+          }
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Success:</strong> Encounter #" + request.getParameter("number") + " was successfully removed from " + old_name + ".");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
           if (wasRemoved) {
             out.println("Record <strong>" + name_s + "</strong> was also removed because it contained no encounters.");
           }
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
           String message = "Encounter #" + request.getParameter("number") + " was removed from " + old_name + ".";
           ServletUtilities.informInterestedParties(request, request.getParameter("number"), message,context);
           if (!wasRemoved) {
             ServletUtilities.informInterestedIndividualParties(request, old_name, message,context);
           }
         } else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Failure:</strong> Encounter #" + request.getParameter("number") + " was NOT removed from " + old_name + ". Another user is currently modifying this record entry. Please try again in a few seconds.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
 
         }
 
       } else {
         myShepherd.rollbackDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Error:</strong> You can't remove this encounter from a marked individual because it is not assigned to one.");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
 
 
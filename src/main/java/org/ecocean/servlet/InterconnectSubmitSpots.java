@@ -180,9 +180,9 @@ public class InterconnectSubmitSpots extends HttpServlet {
 
 
         } else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<p>You are not allowed to modify spot data for an encounter that belongs to a shark. Please remove the encounter from the shark before attempting to modify its spot data.</p>");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
           ok2add = false;
           myShepherd.rollbackDBTransaction();
 
@@ -191,17 +191,17 @@ public class InterconnectSubmitSpots extends HttpServlet {
       } catch (NullPointerException npe) {
         locked = true;
         myShepherd.rollbackDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<p>The spot pattern was only partially transmitted, resulting in a NullPointerException.</p>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         npe.printStackTrace();
         ok2add = false;
       } catch (Exception lock) {
         locked = true;
         myShepherd.rollbackDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<p>This encounter object is in a locked state and may be in use by another user or may be locked in error.</p>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         lock.printStackTrace();
         ok2add = false;
       }
@@ -220,7 +220,7 @@ public class InterconnectSubmitSpots extends HttpServlet {
         //let's try to nicely format the ouput. otherwise, just output the confirmation text
         try {
 
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           if (locked) {
             out.println("<p>This object is currently in use by another user. Please wait a few seconds and then attempt to add spot data again.</p>");
           } else if ((enc.getSpots() != null) && haveData && (side.equals("left"))) {
@@ -276,7 +276,7 @@ public class InterconnectSubmitSpots extends HttpServlet {
           }
           ;
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + num + "\">Return to encounter #" + num + "</a></p>\n");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
         } catch (Exception genericE) {
           locked = true;
           genericE.printStackTrace();
@@ -295,9 +295,9 @@ public class InterconnectSubmitSpots extends HttpServlet {
     } else {
       myShepherd.rollbackDBTransaction();
       try {
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<p>You did not specify a valid number for this encounter: " + num + "</p>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       } catch (Exception e) {
         out.println("I couldn't find the template file to write to, but the spots were added successfully.");
         e.printStackTrace();
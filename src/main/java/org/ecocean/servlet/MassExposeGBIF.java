@@ -95,16 +95,16 @@ public class MassExposeGBIF extends HttpServlet {
     else if (!locked) {
       myShepherd.commitDBTransaction();
       myShepherd.closeDBTransaction();
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println(("<strong>Success!</strong> I have successfully exposed " + count + " additional encounters to the GBIF."));
       out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/admin.jsp\">Return to the Administration page.</a></p>\n");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
     //failure due to exception
     else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Failure!</strong> I could not change the GBIF status of unexposed encounters.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
 
     out.close();
@@ -0,0 +1,56 @@
+package org.ecocean.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.ecocean.NewsFeed;
+
+/**
+ * Serves the context's RSS feed, or its Atom feed when format=atom, from memory. Sends an ETag with the feed and
+ * answers a matching If-None-Match with 304 Not Modified, so that feed readers polling for news cost next to nothing.
+ */
+public class NewsFeedServlet extends HttpServlet {
+
+
+  public void init(ServletConfig config) throws ServletException {
+      super.init(config);
+    }
+
+  public void destroy() {
+    NewsFeed.flushAll();
+    super.destroy();
+  }
+
+
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException,IOException {
+    String context="context0";
+    context=ServletUtilities.getContext(request);
+    String fileName = "atom".equals(request.getParameter("format")) ? "atom.xml" : "rss.xml";
+    NewsFeed feed = NewsFeed.getFeed(new File(ServletUtilities.dataDir(context, getServletContext().getRealPath("/")), fileName));
+    if (!feed.isEnabled()) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    String etag = feed.getETag();
+    response.setHeader("ETag", etag);
+    response.setHeader("Cache-Control", "no-cache");
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if ((ifNoneMatch != null) && (ifNoneMatch.equals(etag) || ifNoneMatch.equals("*"))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    byte[] content = feed.getContent();
+    response.setContentType(feed.getContentType() + "; charset=UTF-8");
+    response.setContentLength(content.length);
+    OutputStream out = response.getOutputStream();
+    out.write(content);
+    out.close();
+  }
+
+}
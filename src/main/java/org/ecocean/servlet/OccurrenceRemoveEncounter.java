@@ -29,6 +29,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 
 
 public class OccurrenceRemoveEncounter extends HttpServlet {
@@ -69,6 +70,7 @@ public class OccurrenceRemoveEncounter extends HttpServlet {
         String old_name = myShepherd.getOccurrenceForEncounter(enc2remove.getCatalogNumber()).getOccurrenceID();
         boolean wasRemoved = false;
         String name_s = "";
+        ArrayList<String> occurrenceMembers = new ArrayList<String>();
         try {
           Occurrence removeFromMe = myShepherd.getOccurrenceForEncounter(enc2remove.getCatalogNumber());
           name_s = removeFromMe.getOccurrenceID();
@@ -81,6 +83,7 @@ public class OccurrenceRemoveEncounter extends HttpServlet {
           removeFromMe.addComments("<p><em>" + request.getRemoteUser() + " on " + (new java.util.Date()).toString() + "</em><br>" + "Removed encounter " + request.getParameter("number") + ".</p>");
           enc2remove.setOccurrenceID(null);
           
+          occurrenceMembers = removeFromMe.getMarkedIndividualNamesForThisOccurrence();
           if (removeFromMe.getEncounters().size() == 0) {
             myShepherd.throwAwayOccurrence(removeFromMe);
             wasRemoved = true;
@@ -101,27 +104,33 @@ public class OccurrenceRemoveEncounter extends HttpServlet {
 
         if (!locked) {
           myShepherd.commitDBTransaction();
-          out.println(ServletUtilities.getHeader(request));
+          if (wasRemoved) {
+            AssociationIndex.removeOccurrence(context, name_s);
+          }
+          else {
+            AssociationIndex.updateOccurrence(context, name_s, occurrenceMembers);
+          }
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Success:</strong> Encounter " + request.getParameter("number") + " was successfully removed from occurrence " + old_name + ".");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter " + request.getParameter("number") + ".</a></p>\n");
           if (wasRemoved) {
             out.println("Occurrence <strong>" + name_s + "</strong> was also removed because it contained no encounters.");
           }
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
 
         } else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Failure:</strong> Encounter " + request.getParameter("number") + " was NOT removed from occurrence " + old_name + ". Another user is currently modifying this record entry. Please try again in a few seconds.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter " + request.getParameter("number") + ".</a></p>\n");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
 
         }
 
       } else {
         myShepherd.rollbackDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Error:</strong> You can't remove this encounter from an occurrence because it is not assigned to one.");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
 
 
@@ -186,13 +186,22 @@ public class RelationshipCreate extends HttpServlet {
 
         }
 
+        //copy what the community index needs, since the relationship cannot be read once its PersistenceManager is closed
+        Relationship indexedRel=null;
+        if(createThisRelationship){
+          indexedRel=new Relationship(rel.getType(), rel.getRelatedSocialUnitName(), rel.getMarkedIndividualName1(), rel.getMarkedIndividualName2(), rel.getMarkedIndividualRole1(), rel.getMarkedIndividualRole2());
+        }
         myShepherd.commitDBTransaction();    
+        if(createThisRelationship){
+          //new datastore identities are only final once committed
+          CommunityIndex.updateRelationship(context, myShepherd.getPM().getObjectId(rel).toString(), indexedRel);
+        }
         myShepherd.closeDBTransaction();
         myShepherd=null;
        
 
             //output success statement
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             if(createThisRelationship){
               out.println("<strong>Success:</strong> A relationship of type " + request.getParameter("type") + " was created between " + request.getParameter("markedIndividualName1")+" and "+request.getParameter("markedIndividualName2")+".");
             }
@@ -203,7 +212,7 @@ public class RelationshipCreate extends HttpServlet {
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/individuals.jsp?number="+request.getParameter("markedIndividualName1")+ "\">Return to Marked Individual "+request.getParameter("markedIndividualName1")+ "</a></p>\n");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/individuals.jsp?number="+request.getParameter("markedIndividualName2")+ "\">Return to Marked Individual "+request.getParameter("markedIndividualName2")+ "</a></p>\n");
             
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
             
  
       
@@ -75,6 +75,7 @@ public class RelationshipDelete extends HttpServlet {
           if(rel!=null){
             myShepherd.getPM().deletePersistent(rel);
             myShepherd.commitDBTransaction();  
+            CommunityIndex.removeRelationship(context, request.getParameter("persistenceID"));
             myShepherd.beginDBTransaction();  
             
             if(rel.getRelatedSocialUnitName()!=null){
@@ -98,21 +99,21 @@ public class RelationshipDelete extends HttpServlet {
        
 
             //output success statement
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
              out.println("<strong>Success:</strong> The relationship of type " + request.getParameter("type") + " between " + request.getParameter("markedIndividualName1")+" and "+request.getParameter("markedIndividualName2")+" was deleted.");
           
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/individuals.jsp?number="+request.getParameter("markedIndividualName1")+ "\">Return to Marked Individual "+request.getParameter("markedIndividualName1")+ "</a></p>\n");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/individuals.jsp?number="+request.getParameter("markedIndividualName2")+ "\">Return to Marked Individual "+request.getParameter("markedIndividualName2")+ "</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
 
 }
 else{
-  out.println(ServletUtilities.getHeader(request));
+  ServletUtilities.writeHeader(out, request);
   out.println("<strong>Failure:</strong> I did not have all of the information required.");
 
  out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/individuals.jsp?number="+request.getParameter("markedIndividualName1")+ "\">Return to Marked Individual "+request.getParameter("markedIndividualName1")+ "</a></p>\n");
  out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/individuals.jsp?number="+request.getParameter("markedIndividualName2")+ "\">Return to Marked Individual "+request.getParameter("markedIndividualName2")+ "</a></p>\n");
- out.println(ServletUtilities.getFooter(context));
+ ServletUtilities.writeFooter(out, context);
   
   
 }
@@ -0,0 +1,192 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.ecocean.CommonConfiguration;
+
+/**
+ * servletResponseTemplate.htm, split once per context into the header and footer that servlets wrap their results in.
+ * <p/>
+ * Each part is kept as its literal text and the placeholders between it: CSSURL and TOPGRAPHIC in the header, and
+ * BOTTOMGRAPHIC in the footer. Their values are looked up as each response is written, so a change to the context's
+ * configuration shows without reloading the template. The template is read again when its file changes, which is
+ * checked at most every RELOAD_CHECK_MILLIS.
+ */
+public class ResponseTemplate {
+
+  public static final String TEMPLATE_NAME = "servletResponseTemplate.htm";
+  public static final long RELOAD_CHECK_MILLIS = 2000;
+
+  static final String[] HEADER_FIELDS = {"CSSURL", "TOPGRAPHIC"};
+  static final String[] FOOTER_FIELDS = {"BOTTOMGRAPHIC"};
+
+  private static final ConcurrentHashMap<String, ResponseTemplate> templates = new ConcurrentHashMap<String, ResponseTemplate>();
+
+  private final String context;
+  private final File file;
+
+  //replaced together by load(), so a response always sees a consistent template
+  private volatile Compiled compiled;
+  private volatile long checkedAt = 0;
+
+  static class Compiled {
+    final long lastModified;
+    final Segments header;
+    final Segments footer;
+
+    Compiled(long lastModified, Segments header, Segments footer) {
+      this.lastModified = lastModified;
+      this.header = header;
+      this.footer = footer;
+    }
+  }
+
+  //text[0], then the value of fields[i] and text[i + 1] for each placeholder i
+  static class Segments {
+    final String[] text;
+    final int[] fields;
+
+    Segments(String[] text, int[] fields) {
+      this.text = text;
+      this.fields = fields;
+    }
+
+    void write(Writer out, String[] values) throws IOException {
+      out.write(text[0]);
+      for (int i = 0; i < fields.length; i++) {
+        String value = values[fields[i]];
+        if (value != null) {
+          out.write(value);
+        }
+        out.write(text[i + 1]);
+      }
+    }
+  }
+
+  /**
+   * Returns the template of a context, reading it the first time.
+   */
+  public static ResponseTemplate getTemplate(String context) throws IOException {
+    ResponseTemplate template = templates.get(context);
+    if (template == null) {
+      ResponseTemplate loaded = new ResponseTemplate(context);
+      template = templates.putIfAbsent(context, loaded);
+      if (template == null) {
+        template = loaded;
+      }
+    }
+    return template;
+  }
+
+  private ResponseTemplate(String context) throws IOException {
+    this.context = context;
+    this.file = ServletUtilities.findResourceOnFileSystem(TEMPLATE_NAME);
+    if (file == null) {
+      throw new IOException("Could not find " + TEMPLATE_NAME);
+    }
+    load();
+  }
+
+  private synchronized void load() throws IOException {
+    long lastModified = file.lastModified();
+    if ((compiled != null) && (compiled.lastModified == lastModified)) {
+      return;
+    }
+    String text = new String(Files.readAllBytes(file.toPath()), Charset.defaultCharset());
+    compiled = compile(text, lastModified);
+  }
+
+  static Compiled compile(String text, long lastModified) throws IOException {
+    int insert = text.indexOf("INSERT_HERE");
+    if (insert < 0) {
+      throw new IOException(TEMPLATE_NAME + " has no INSERT_HERE");
+    }
+    return new Compiled(lastModified, split(text.substring(0, insert), HEADER_FIELDS), split(text.substring(insert + 11), FOOTER_FIELDS));
+  }
+
+  //splits text at each occurrence of any of the placeholders in fields
+  static Segments split(String text, String[] fields) {
+    List<String> parts = new ArrayList<String>();
+    List<Integer> found = new ArrayList<Integer>();
+    int start = 0;
+    while (true) {
+      int next = -1;
+      int field = -1;
+      for (int f = 0; f < fields.length; f++) {
+        int i = text.indexOf(fields[f], start);
+        if ((i >= 0) && ((next < 0) || (i < next))) {
+          next = i;
+          field = f;
+        }
+      }
+      if (next < 0) {
+        break;
+      }
+      parts.add(text.substring(start, next));
+      found.add(field);
+      start = next + fields[field].length();
+    }
+    parts.add(text.substring(start));
+    int[] indexes = new int[found.size()];
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i] = found.get(i);
+    }
+    return new Segments(parts.toArray(new String[parts.size()]), indexes);
+  }
+
+  private Compiled current() throws IOException {
+    long now = System.currentTimeMillis();
+    if ((now - checkedAt) > RELOAD_CHECK_MILLIS) {
+      checkedAt = now;
+      if (file.lastModified() != compiled.lastModified) {
+        load();
+      }
+    }
+    return compiled;
+  }
+
+  /**
+   * Writes the part of the template before the results.
+   */
+  public void writeHeader(Writer out, HttpServletRequest request) throws IOException {
+    String[] values = {CommonConfiguration.getCSSURLLocation(request, context), CommonConfiguration.getURLToMastheadGraphic(context)};
+    current().header.write(out, values);
+  }
+
+  /**
+   * Writes the part of the template after the results.
+   */
+  public void writeFooter(Writer out) throws IOException {
+    String[] values = {CommonConfiguration.getURLToFooterGraphic(context)};
+    current().footer.write(out, values);
+  }
+
+}
@@ -58,7 +58,7 @@ public class ScanAppletSupport extends HttpServlet {
     //public synchronized void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException{
     String context="context0";
     context=ServletUtilities.getContext(request);
-    Shepherd myShepherd = new Shepherd(context);
+    Shepherd myShepherd = ServletUtilities.getRequestShepherd(request);
     response.setContentType("application/octet-stream");
     GridManager gm = GridManagerFactory.getGridManager();
     String supportedAppletVersion = gm.getSupportedAppletVersion();
@@ -136,7 +136,6 @@ public class ScanAppletSupport extends HttpServlet {
     sendObject(response, encountersWithSpotData);
     System.out.println("scanAppletSupport is attempting to rollback a transaction...");
     myShepherd.rollbackDBTransaction();
-    myShepherd.closeDBTransaction();
     encounters = null;
     encountersWithSpotData = null;
     System.out.println("Done!");
@@ -149,7 +148,6 @@ public class ScanAppletSupport extends HttpServlet {
     transmitEnc = myShepherd.getEncounterDeepCopy(request.getParameter("number"));
     sendObject(response, transmitEnc);
     myShepherd.rollbackDBTransaction();
-    myShepherd.closeDBTransaction();
   }
 
 
@@ -190,8 +188,7 @@ public class ScanAppletSupport extends HttpServlet {
         getUniqueWorkItems(myShepherd, holdSWIs, request, query, groupSize, checkoutTimeout, force, totalWorkItems, totalWorkItemsComplete, gm);
 
 
-        //transmit result and clean up
-        myShepherd.closeDBTransaction();
+        //transmit result
         boolean transmitSuccess = sendObject(response, holdSWIs);
         if (transmitSuccess) {
           nd.setLastCheckout(System.currentTimeMillis());
@@ -201,7 +198,6 @@ public class ScanAppletSupport extends HttpServlet {
         System.out.println("Error while dishing out a targeted workItemGroup!");
         e.printStackTrace();
         myShepherd.rollbackDBTransaction();
-        myShepherd.closeDBTransaction();
       }
       query.closeAll();
 
@@ -226,7 +222,6 @@ public class ScanAppletSupport extends HttpServlet {
         getUniqueWorkItemsGeneric(foundTask, gm, nd, myShepherd, holdResults, request, groupSize, checkoutTimeout, false, 1, 1);
 
 
-        myShepherd.closeDBTransaction();
         boolean transmitSuccess = sendObject(response, holdResults);
         if (transmitSuccess) nd.setLastCheckout(System.currentTimeMillis());
 
@@ -236,8 +231,6 @@ public class ScanAppletSupport extends HttpServlet {
         System.out.println("I'm in scanAppletSupport, generic request, caught an exception...");
 
         myShepherd.rollbackDBTransaction();
-        myShepherd.closeDBTransaction();
-        //myShepherd.closeDBTransaction();
       }
 
     } //end generic
@@ -268,7 +261,7 @@ public class ScanAppletSupport extends HttpServlet {
     //change
     //separate this out
     //ArrayList list=myShepherd.getID4AvailableScanWorkItems(id,query, groupSize, checkoutTimeout, force);
-    ArrayList<ScanWorkItem> list = gm.getWorkItems(groupSize);
+    ArrayList<ScanWorkItem> list = gm.getWorkItems(gm.getGridNode(request.getParameter("nodeIdentifier")), groupSize, id);
     int listSize = list.size();
 
     //change
@@ -348,7 +341,7 @@ public class ScanAppletSupport extends HttpServlet {
     //get a list of unfinished scanWorkItems
     //ArrayList list=myShepherd.getID4AvailableScanWorkItems(query, groupSize, checkoutTimeout, false);
     ArrayList<ScanWorkItem> list = new ArrayList<ScanWorkItem>();
-      list = gm.getWorkItems(groupSize);
+      list = gm.getWorkItems(nd, groupSize, null);
 
 
 
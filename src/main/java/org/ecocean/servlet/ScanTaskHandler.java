@@ -63,7 +63,7 @@ public class ScanTaskHandler extends HttpServlet {
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
     String context="context0";
     context=ServletUtilities.getContext(request);
-    Shepherd myShepherd = new Shepherd(context);
+    Shepherd myShepherd = ServletUtilities.getRequestShepherd(request);
     GridManager gm = GridManagerFactory.getGridManager();
     //set up for response
     response.setContentType("text/html");
@@ -106,23 +106,23 @@ public class ScanTaskHandler extends HttpServlet {
           }
           if (!locked) {
             //confirm success
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Success:</strong> The scanTask <i>" + request.getParameter("taskID") + "</i> has been removed.");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Return to scanTask administration page.</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
           } else {
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Error:</strong> The scanTask <i>" + request.getParameter("taskID") + "</i> was not removed. The task may be locked by another user or in process. Check the logs for more information.");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Return to scanTask administration page.</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
 
           }
         } else {
           myShepherd.rollbackDBTransaction();
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Error:</strong> The scanTask <i>" + request.getParameter("taskID") + "</i> was not identified in the database.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Return to scanTask administration page.</a></p>\n");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
         }
       } else if ((action.equals("addTask")) && (request.getParameter("encounterNumber") != null)) {
 
@@ -218,18 +218,14 @@ public class ScanTaskHandler extends HttpServlet {
                 System.out.println("scanTaskHandler: Unsuccessful store...");
 
                 myShepherd.rollbackDBTransaction();
-                myShepherd.closeDBTransaction();
                 locked = true;
               } else {
                 System.out.println("scanTaskHandler: Successful store...");
 
                 myShepherd.commitDBTransaction();
-                myShepherd.closeDBTransaction();
-                myShepherd = new Shepherd(context);
               }
             } else {
               myShepherd.rollbackDBTransaction();
-              myShepherd.closeDBTransaction();
               locked = true;
             }
 
@@ -239,7 +235,6 @@ public class ScanTaskHandler extends HttpServlet {
 
 
             myShepherd.rollbackDBTransaction();
-            myShepherd.closeDBTransaction();
             locked = true;
 
             String rightFilter = "";
@@ -251,7 +246,6 @@ public class ScanTaskHandler extends HttpServlet {
             response.sendRedirect("http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp");
           } else {
             myShepherd.rollbackDBTransaction();
-            myShepherd.closeDBTransaction();
             locked = true;
           }
         }
@@ -269,7 +263,6 @@ public class ScanTaskHandler extends HttpServlet {
             System.out.println("I failed while constructing the workItems for a new scanTask.");
             e.printStackTrace();
             myShepherd.rollbackDBTransaction();
-            myShepherd.closeDBTransaction();
             locked = true;
           }
           if (!locked) {
@@ -289,27 +282,27 @@ public class ScanTaskHandler extends HttpServlet {
             }
 
             //confirm success
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Success:</strong> Your scan was successfully added to the sharkGrid!");
             //out.println("<p><a href=\"http://"+CommonConfiguration.getURLLocation()+"/encounters/workAppletScan.jsp?number=scan"+rightFilter+request.getParameter("encounterNumber")+rightURL+"\">Start scanning for a match.</a></p>\n");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("encounterNumber") + "\">Return to encounter " + request.getParameter("encounterNumber") + ".</a></p>\n");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp" + "\">Go to sharkGrid administration to monitor for completion.</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
           } else {
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Failure:</strong> The scan could not be created or was not fully created!");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Go to sharkGrid administration.</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
 
           }
         } else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Failure:</strong> I have NOT added this scanTask to the queue.");
           if (currentNumScanTasks < taskLimit) {
             out.println("The unfinished task limit of " + taskLimit + " has been filled. Please try adding the task to the queue again after existing tasks have finished.");
           }
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Go to sharkGrid administration.</a></p>\n");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
         }
       } else if (action.equals("addTuningTask")) {
 
@@ -426,14 +419,11 @@ public class ScanTaskHandler extends HttpServlet {
               System.out.println("scanTaskHandler: Unsuccessful TuningTask store...");
 
               myShepherd.rollbackDBTransaction();
-              myShepherd.closeDBTransaction();
               locked = true;
             } else {
               System.out.println("scanTaskHandler: Successful TuningTask store...");
 
               myShepherd.commitDBTransaction();
-              myShepherd.closeDBTransaction();
-              myShepherd = new Shepherd(context);
 
 
             }
@@ -445,7 +435,6 @@ public class ScanTaskHandler extends HttpServlet {
 
 
             myShepherd.rollbackDBTransaction();
-            myShepherd.closeDBTransaction();
             locked = true;
 
             String rightFilter = "";
@@ -457,7 +446,6 @@ public class ScanTaskHandler extends HttpServlet {
             response.sendRedirect("http://" + CommonConfiguration.getURLLocation(request) + "/encounters/workAppletScan.jsp?writeThis=true&number=" + taskIdentifier + rightFilter);
           } else {
             myShepherd.rollbackDBTransaction();
-            myShepherd.closeDBTransaction();
             locked = true;
           }
         }
@@ -475,7 +463,6 @@ public class ScanTaskHandler extends HttpServlet {
             System.out.println("I failed while constructing the workItems for a new scanTask.");
             e.printStackTrace();
             myShepherd.rollbackDBTransaction();
-            myShepherd.closeDBTransaction();
             locked = true;
           }
           if (!locked) {
@@ -495,25 +482,25 @@ public class ScanTaskHandler extends HttpServlet {
             }
 
             //confirm success
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Success:</strong> Your scan was successfully added to the sharkGrid!");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp" + "\">Return to sharkGrid administration.</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
           } else {
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Failure:</strong> The scan could not be created or was not fully created!");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Go to sharkGrid administration.</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
 
           }
         } else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Failure:</strong> I have NOT added this scanTask to the queue.");
           if (currentNumScanTasks < taskLimit) {
             out.println("The unfinished task limit of " + taskLimit + " has been filled. Please try adding the task to the queue again after existing tasks have finished.");
           }
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Go to sharkGrid administration.</a></p>\n");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
         }
       } else if (action.equals("addFalseMatchTask")) {
 
@@ -592,14 +579,11 @@ public class ScanTaskHandler extends HttpServlet {
               System.out.println("scanTaskHandler: Unsuccessful FalseMatchTask store...");
 
               myShepherd.rollbackDBTransaction();
-              myShepherd.closeDBTransaction();
               locked = true;
             } else {
               System.out.println("scanTaskHandler: Successful FalseMatchTask store...");
 
               myShepherd.commitDBTransaction();
-              myShepherd.closeDBTransaction();
-              myShepherd = new Shepherd(context);
 
 
             }
@@ -611,7 +595,6 @@ public class ScanTaskHandler extends HttpServlet {
 
 
             myShepherd.rollbackDBTransaction();
-            myShepherd.closeDBTransaction();
             locked = true;
 
             String rightFilter = "";
@@ -623,7 +606,6 @@ public class ScanTaskHandler extends HttpServlet {
             response.sendRedirect("http://" + CommonConfiguration.getURLLocation(request) + "/encounters/workAppletScan.jsp?writeThis=true&number=" + taskIdentifier + rightFilter);
           } else {
             myShepherd.rollbackDBTransaction();
-            myShepherd.closeDBTransaction();
             locked = true;
           }
         }
@@ -641,7 +623,6 @@ public class ScanTaskHandler extends HttpServlet {
             System.out.println("I failed while constructing the workItems for a new scanTask.");
             e.printStackTrace();
             myShepherd.rollbackDBTransaction();
-            myShepherd.closeDBTransaction();
             locked = true;
           }
           if (!locked) {
@@ -661,25 +642,25 @@ public class ScanTaskHandler extends HttpServlet {
             }
 
             //confirm success
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Success:</strong> Your scan was successfully added to the sharkGrid!");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp" + "\">Return to sharkGrid administration.</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
           } else {
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             out.println("<strong>Failure:</strong> The scan could not be created or was not fully created!");
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Go to sharkGrid administration.</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
 
           }
         } else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Failure:</strong> I have NOT added this scanTask to the queue.");
           if (currentNumScanTasks < taskLimit) {
             out.println("The unfinished task limit of " + taskLimit + " has been filled. Please try adding the task to the queue again after existing tasks have finished.");
           }
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Go to sharkGrid administration.</a></p>\n");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
         }
       }
 
@@ -692,36 +673,34 @@ public class ScanTaskHandler extends HttpServlet {
           gm.removeAllWorkItems();
 
           //confirm success
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Success:</strong> I removed all outstanding scanWorkItems from the database.<br>/<strong>Warning!</strong> <em>This may cause any outstanding scanTasks to fail!</em>");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Go to sharkGrid administration.</a></p>\n");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
         } catch (Exception e) {
           e.printStackTrace();
           myShepherd.rollbackDBTransaction();
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Failure:</strong> I failed to remove all outstanding scanWorkItems from the database. Check the log for more information.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Go to sharkGrid administration.</a></p>\n");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
 
         }
       } else {
 
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<p>I did not receive enough data to process your command, or you do not have the necessary permissions to perform this operation.</p>");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/scanTaskAdmin.jsp\">Go to sharkGrid administration.</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
 
 
     } else {
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<p>I did not receive enough data to process your command, or you do not have the necessary permissions to perform this operation. </p>");
       out.println("<p>Please try again or <a href=\"welcome.jsp\">login here</a>.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
-    myShepherd.closeDBTransaction();
-    myShepherd = null;
     out.flush();
     out.close();
   }
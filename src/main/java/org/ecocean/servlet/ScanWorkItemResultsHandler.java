@@ -111,7 +111,7 @@ public class ScanWorkItemResultsHandler extends HttpServlet {
         ScanWorkItemResult wir = (ScanWorkItemResult) returnedResults.get(m);
         String swiUniqueNum = wir.getUniqueNumberWorkItem();
 
-        gm.checkinResult(wir);
+        gm.checkinResult(wir, nodeIdentifier);
 
 
       }
@@ -19,17 +19,6 @@
 
 package org.ecocean.servlet;
 
-import com.sun.syndication.feed.synd.*;
-import com.sun.syndication.io.SyndFeedInput;
-import com.sun.syndication.io.SyndFeedOutput;
-import com.sun.syndication.io.XmlReader;
-
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.Element;
-import org.dom4j.io.OutputFormat;
-import org.dom4j.io.SAXReader;
-import org.dom4j.io.XMLWriter;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
@@ -64,62 +53,38 @@ import javax.servlet.http.Cookie;
 public class ServletUtilities {
 
   public static String getHeader(HttpServletRequest request) {
-    try {
-      FileReader fileReader = new FileReader(findResourceOnFileSystem("servletResponseTemplate.htm"));
-      BufferedReader buffread = new BufferedReader(fileReader);
-      String templateFile = "", line;
-      StringBuffer SBreader = new StringBuffer();
-      while ((line = buffread.readLine()) != null) {
-        SBreader.append(line).append("\n");
-      }
-      fileReader.close();
-      buffread.close();
-      templateFile = SBreader.toString();
-      
-      String context=getContext(request);
-
-      //process the CSS string
-      templateFile = templateFile.replaceAll("CSSURL", CommonConfiguration.getCSSURLLocation(request,context));
+    StringWriter header = new StringWriter();
+    writeHeader(new PrintWriter(header), request);
+    return header.toString();
+  }
 
-      //set the top header graphic
-      templateFile = templateFile.replaceAll("TOPGRAPHIC", CommonConfiguration.getURLToMastheadGraphic(context));
+  public static String getFooter(String context) {
+    StringWriter footer = new StringWriter();
+    writeFooter(new PrintWriter(footer), context);
+    return footer.toString();
+  }
 
-      int end_header = templateFile.indexOf("INSERT_HERE");
-      return (templateFile.substring(0, end_header));
+  //as getHeader, but writes straight to out
+  public static void writeHeader(PrintWriter out, HttpServletRequest request) {
+    try {
+      ResponseTemplate.getTemplate(getContext(request)).writeHeader(out, request);
     } 
     catch (Exception e) {
       //out.println("I couldn't find the template file to read from.");
       e.printStackTrace();
-      String error = "<html><body><p>An error occurred while attempting to read from the template file servletResponseTemplate.htm. This probably will not affect the success of the operation you were trying to perform.";
-      return error;
+      out.write("<html><body><p>An error occurred while attempting to read from the template file servletResponseTemplate.htm. This probably will not affect the success of the operation you were trying to perform.");
     }
-
   }
 
-  public static String getFooter(String context) {
+  //as getFooter, but writes straight to out
+  public static void writeFooter(PrintWriter out, String context) {
     try {
-      FileReader fileReader = new FileReader(findResourceOnFileSystem("servletResponseTemplate.htm"));
-      BufferedReader buffread = new BufferedReader(fileReader);
-      String templateFile = "", line;
-      StringBuffer SBreader = new StringBuffer();
-      while ((line = buffread.readLine()) != null) {
-        SBreader.append(line).append("\n");
-      }
-      fileReader.close();
-      buffread.close();
-      templateFile = SBreader.toString();
-      templateFile = templateFile.replaceAll("BOTTOMGRAPHIC", CommonConfiguration.getURLToFooterGraphic(context));
-
-      int end_header = templateFile.indexOf("INSERT_HERE");
-      return (templateFile.substring(end_header + 11));
+      ResponseTemplate.getTemplate(context).writeFooter(out);
     } catch (Exception e) {
       //out.println("I couldn't find the template file to read from.");
       e.printStackTrace();
-      String error = "An error occurred while attempting to read from an HTML template file. This probably will not affect the success of the operation you were trying to perform.</p></body></html>";
-      return error;
+      out.write("An error occurred while attempting to read from an HTML template file. This probably will not affect the success of the operation you were trying to perform.</p></body></html>");
     }
-
-
   }
 
   public static void informInterestedParties(HttpServletRequest request, String number, String message, String context) {
@@ -240,129 +205,14 @@ public class ServletUtilities {
     }
   }
 
-  //Logs a new ATOM entry
-  public static synchronized void addATOMEntry(String title, String link, String description, File atomFile, String context) {
-    try {
-
-      if (atomFile.exists()) {
-
-        //System.out.println("ATOM file found!");
-        /** Namespace URI for content:encoded elements */
-        String CONTENT_NS = "http://www.w3.org/2005/Atom";
-
-        /** Parses RSS or Atom to instantiate a SyndFeed. */
-        SyndFeedInput input = new SyndFeedInput();
-
-        /** Transforms SyndFeed to RSS or Atom XML. */
-        SyndFeedOutput output = new SyndFeedOutput();
-
-        // Load the feed, regardless of RSS or Atom type
-        SyndFeed feed = input.build(new XmlReader(atomFile));
-
-        // Set the output format of the feed
-        feed.setFeedType("atom_1.0");
-
-        List<SyndEntry> items = feed.getEntries();
-        int numItems = items.size();
-        if (numItems > 9) {
-          items.remove(0);
-          feed.setEntries(items);
-        }
-
-        SyndEntry newItem = new SyndEntryImpl();
-        newItem.setTitle(title);
-        newItem.setLink(link);
-        newItem.setUri(link);
-        SyndContent desc = new SyndContentImpl();
-        desc.setType("text/html");
-        desc.setValue(description);
-        newItem.setDescription(desc);
-        desc.setType("text/html");
-        newItem.setPublishedDate(new java.util.Date());
-
-        List<SyndCategory> categories = new ArrayList<SyndCategory>();
-        if(CommonConfiguration.getProperty("htmlTitle",context)!=null){
-        	SyndCategory category2 = new SyndCategoryImpl();
-        	category2.setName(CommonConfiguration.getProperty("htmlTitle",context));
-        	categories.add(category2);
-		}
-        newItem.setCategories(categories);
-        if(CommonConfiguration.getProperty("htmlAuthor",context)!=null){
-        	newItem.setAuthor(CommonConfiguration.getProperty("htmlAuthor",context));
-		}
-        items.add(newItem);
-        feed.setEntries(items);
-
-        feed.setPublishedDate(new java.util.Date());
-
-
-        FileWriter writer = new FileWriter(atomFile);
-        output.output(feed, writer);
-        writer.toString();
-
-      }
-    } catch (IOException ioe) {
-      	System.out.println("ERROR: Could not find the ATOM file.");
-      	ioe.printStackTrace();
-    } catch (Exception e) {
-      	System.out.println("Unknown exception trying to add an entry to the ATOM file.");
-      	e.printStackTrace();
-    }
-
+  //Logs a new ATOM entry; the feed is kept in memory by NewsFeed and written to atomFile in the background
+  public static void addATOMEntry(String title, String link, String description, File atomFile, String context) {
+    NewsFeed.getFeed(atomFile).addEntry(title, link, description, CommonConfiguration.getProperty("htmlTitle",context), CommonConfiguration.getProperty("htmlAuthor",context));
   }
 
-  //Logs a new entry in the library RSS file
-  public static synchronized void addRSSEntry(String title, String link, String description, File rssFile) {
-    //File rssFile=new File("nofile.xml");
-
-    try {
-		System.out.println("Looking for RSS file: "+rssFile.getCanonicalPath());
-      if (rssFile.exists()) {
-
-        SAXReader reader = new SAXReader();
-        Document document = reader.read(rssFile);
-        Element root = document.getRootElement();
-        Element channel = root.element("channel");
-        List items = channel.elements("item");
-        int numItems = items.size();
-        items = null;
-        if (numItems > 9) {
-          Element removeThisItem = channel.element("item");
-          channel.remove(removeThisItem);
-        }
-
-        Element newItem = channel.addElement("item");
-        Element newTitle = newItem.addElement("title");
-        Element newLink = newItem.addElement("link");
-        Element newDescription = newItem.addElement("description");
-        newTitle.setText(title);
-        newDescription.setText(description);
-        newLink.setText(link);
-
-        Element pubDate = channel.element("pubDate");
-        pubDate.setText((new java.util.Date()).toString());
-
-        //now save changes
-        FileWriter mywriter = new FileWriter(rssFile);
-        OutputFormat format = OutputFormat.createPrettyPrint();
-        format.setLineSeparator(System.getProperty("line.separator"));
-        XMLWriter writer = new XMLWriter(mywriter, format);
-        writer.write(document);
-        writer.close();
-
-      }
-    }
-    catch (IOException ioe) {
-      	System.out.println("ERROR: Could not find the RSS file.");
-      	ioe.printStackTrace();
-    }
-    catch (DocumentException de) {
-      	System.out.println("ERROR: Could not read the RSS file.");
-      	de.printStackTrace();
-    } catch (Exception e) {
-      	System.out.println("Unknown exception trying to add an entry to the RSS file.");
-      	e.printStackTrace();
-    }
+  //Logs a new entry in the library RSS file; the feed is kept in memory by NewsFeed and written to rssFile in the background
+  public static void addRSSEntry(String title, String link, String description, File rssFile) {
+    NewsFeed.getFeed(rssFile).addEntry(title, link, description, null, null);
   }
 
   public static File findResourceOnFileSystem(String resourceName) {
@@ -504,6 +354,18 @@ public static ByteSource getSalt() {
     return new SecureRandomNumberGenerator().nextBytes();
 }
 
+/**
+ * Returns the Shepherd shared by everything that handles the request, opened on first use. ShepherdFilter closes it
+ * when the request ends, rolling back any transaction left active, so callers should not close it themselves.
+ */
+public static Shepherd getRequestShepherd(HttpServletRequest request){
+  ShepherdRequest shepherdRequest=ShepherdRequest.getCurrent();
+  if(shepherdRequest==null){
+    throw new IllegalStateException("ShepherdFilter is not mapped to "+request.getRequestURI());
+  }
+  return shepherdRequest.getShepherd(getContext(request));
+}
+
 public static String getContext(HttpServletRequest request){
   String context="context0";
   if(ContextConfiguration.getDefaultContext()!=null){context=ContextConfiguration.getDefaultContext();}
@@ -0,0 +1,77 @@
+/*
+ * The Shepherd Project - A Mark-Recapture Framework
+ * Copyright (C) 2011 Jason Holmberg
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.ecocean.servlet;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+import org.ecocean.ShepherdRequest;
+
+/**
+ * Gives each request a ShepherdRequest, which provides the request's shared Shepherd through
+ * ServletUtilities.getRequestShepherd(request) and closes it when the request is done. PersistenceManagers that
+ * other Shepherds opened while handling the request and did not close are reported and, unless closeLeaked is false,
+ * closed. Requests slower than slowMillis, or that leaked, are logged with their PersistenceManager count, lifetime and
+ * query count. Set traceOpens to true to log where each leaked PersistenceManager was opened.
+ */
+public class ShepherdFilter implements Filter {
+
+  private long slowMillis = 5000;
+  private boolean traceOpens = false;
+  private boolean closeLeaked = true;
+
+  public void init(FilterConfig filterConfig) throws ServletException {
+    if (filterConfig.getInitParameter("slowMillis") != null) {
+      slowMillis = Long.parseLong(filterConfig.getInitParameter("slowMillis").trim());
+    }
+    if (filterConfig.getInitParameter("traceOpens") != null) {
+      traceOpens = Boolean.parseBoolean(filterConfig.getInitParameter("traceOpens").trim());
+    }
+    if (filterConfig.getInitParameter("closeLeaked") != null) {
+      closeLeaked = Boolean.parseBoolean(filterConfig.getInitParameter("closeLeaked").trim());
+    }
+  }
+
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+    //a request forwarded or included within one already being handled keeps its ShepherdRequest
+    if (ShepherdRequest.getCurrent() != null) {
+      chain.doFilter(request, response);
+      return;
+    }
+    String description = request.toString();
+    if (request instanceof HttpServletRequest) {
+      description = ((HttpServletRequest) request).getMethod() + " " + ((HttpServletRequest) request).getRequestURI();
+    }
+    ShepherdRequest shepherdRequest = ShepherdRequest.begin(description, traceOpens);
+    try {
+      chain.doFilter(request, response);
+    }
+    finally {
+      shepherdRequest.end(closeLeaked);
+      if ((shepherdRequest.getNumLeaked() > 0) || (shepherdRequest.getElapsedMillis() > slowMillis)) {
+        System.out.println("ShepherdFilter: " + shepherdRequest);
+      }
+    }
+  }
+
+  public void destroy() {
+  }
+}
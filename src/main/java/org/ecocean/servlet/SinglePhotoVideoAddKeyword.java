@@ -84,7 +84,7 @@ public class SinglePhotoVideoAddKeyword extends HttpServlet {
           //myShepherd.commitDBTransaction();
 
           //confirm success
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Success:</strong> The following keywords were added to the image:<br /><i>" + readableName + "</i>");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
           ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -95,10 +95,10 @@ public class SinglePhotoVideoAddKeyword extends HttpServlet {
               out.println("<p><a href=\"encounters/searchResults.jsp?state="+stateName+"\">View all "+stateName+" encounters</a></font></p>");   
             }
           }
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
         } 
         else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Failure:</strong> I have NOT added one or more of the keywords to the photo.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter " + request.getParameter("number") + "</a></p>\n");
           ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -111,14 +111,14 @@ public class SinglePhotoVideoAddKeyword extends HttpServlet {
           }
           out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
 
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
         }
       }
 
   
       else {
 
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Error:</strong> I don't have enough information to complete your request.");
           ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
           int allStatesSize=allStates.size();
@@ -129,7 +129,7 @@ public class SinglePhotoVideoAddKeyword extends HttpServlet {
             }
           }
           out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
       }
 
 
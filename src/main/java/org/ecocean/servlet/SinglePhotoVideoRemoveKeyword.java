@@ -74,7 +74,7 @@ public class SinglePhotoVideoRemoveKeyword extends HttpServlet {
           myShepherd.commitDBTransaction();
 
           //confirm success
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Success:</strong> The keyword <i>" + readableName + "</i> was removed from the image.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
           ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -85,9 +85,9 @@ public class SinglePhotoVideoRemoveKeyword extends HttpServlet {
               out.println("<p><a href=\"encounters/searchResults.jsp?state="+stateName+"\">View all "+stateName+" encounters</a></font></p>");   
             }
           }
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
         } else {
-          out.println(ServletUtilities.getHeader(request));
+          ServletUtilities.writeHeader(out, request);
           out.println("<strong>Failure:</strong> I have NOT removed this keyword from the photo/video. This keyword is currently being modified by another user.");
           out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/encounters/encounter.jsp?number=" + request.getParameter("number") + "\">Return to encounter #" + request.getParameter("number") + "</a></p>\n");
           ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
@@ -100,14 +100,14 @@ public class SinglePhotoVideoRemoveKeyword extends HttpServlet {
           }
           out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
 
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
         }
       }
 
   
       else {
 
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Error:</strong> I don't have enough information to complete your request.");
         ArrayList<String> allStates=CommonConfiguration.getSequentialPropertyValues("encounterState",context);
         int allStatesSize=allStates.size();
@@ -118,7 +118,7 @@ public class SinglePhotoVideoRemoveKeyword extends HttpServlet {
           }
         }
         out.println("<p><a href=\"individualSearchResults.jsp\">View all individuals</a></font></p>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
 
 
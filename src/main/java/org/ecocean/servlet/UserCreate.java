@@ -204,7 +204,7 @@ public class UserCreate extends HttpServlet {
        
 
             //output success statement
-            out.println(ServletUtilities.getHeader(request));
+            ServletUtilities.writeHeader(out, request);
             if(createThisUser){
               out.println("<strong>Success:</strong> User '" + username + "' was successfully created with added roles: <ul>" + addedRoles.replaceAll("SEPARATORSTART", "<li>").replaceAll("SEPARATOREND", "</li>")+"</ul>");
             }
@@ -213,15 +213,15 @@ public class UserCreate extends HttpServlet {
               
             }
             out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/users.jsp?context=context0" + "\">Return to User Administration" + "</a></p>\n");
-            out.println(ServletUtilities.getFooter(context));
+            ServletUtilities.writeFooter(out, context);
             
     }
     else{
         //output failure statement
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Failure:</strong> User was NOT successfully created. Your passwords did not match.");
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/users.jsp?context=context0" + "\">Return to User Administration" + "</a></p>\n");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         
       }
       
@@ -229,10 +229,10 @@ public class UserCreate extends HttpServlet {
 }
 else{
   //output failure statement
-  out.println(ServletUtilities.getHeader(request));
+  ServletUtilities.writeHeader(out, request);
   out.println("<strong>Failure:</strong> User was NOT successfully created. I did not have all of the username and password information I needed.");
   out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/users.jsp?context=context0" + "\">Return to User Administration" + "</a></p>\n");
-  out.println(ServletUtilities.getFooter(context));
+  ServletUtilities.writeFooter(out, context);
   
 }
 
@@ -81,7 +81,7 @@ public class UserRemoveProfileImage extends HttpServlet {
     myShepherd=null;
     
      
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       
       if(!username.equals("None")){
         out.println("<strong>Success!</strong> I have successfully removed the profile photo.");
@@ -99,7 +99,7 @@ public class UserRemoveProfileImage extends HttpServlet {
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/users.jsp?context=context0&isEdit=true&username=" + username + "#editUser\">Return to User Management</a></p>\n");
       }
       
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
       //String message = "An image file named " + fileName + " has been removed from encounter#" + encounterNumber + ".";
       //ServletUtilities.informInterestedParties(request, encounterNumber, message);
         
@@ -69,16 +69,16 @@ public class UserResetAcceptedUserAgreement extends HttpServlet {
       else if (!locked) {
         myShepherd.commitDBTransaction();
         myShepherd.closeDBTransaction();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println(("<strong>Success!</strong> I have successfully reset the User Agreement status for all users. Each will now need to accept the User Agreement again after login."));
         out.println("<p><a href=\"http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/users.jsp?context=context0\">Return to the User Administration page.</a></p>\n");
-        out.println(ServletUtilities.getFooter(ServletUtilities.getContext(request)));
+        ServletUtilities.writeFooter(out, ServletUtilities.getContext(request));
       }
       //failure due to exception
       else {
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<strong>Failure!</strong> I could not reset User Agreement status. Please check the server log for the relevant exception.");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
       query.closeAll();
 
@@ -61,7 +61,7 @@ public class WriteOutScanTask extends HttpServlet {
     String context="context0";
     context=ServletUtilities.getContext(request);
     
-    Shepherd myShepherd = new Shepherd(context);
+    Shepherd myShepherd = ServletUtilities.getRequestShepherd(request);
     PrintWriter out = null;
     GridManager gm = GridManagerFactory.getGridManager();
 
@@ -123,7 +123,6 @@ public class WriteOutScanTask extends HttpServlet {
 
 
         myShepherd.commitDBTransaction();
-        myShepherd.closeDBTransaction();
 
         //let's cleanup after a successful commit
         ThreadPoolExecutor es = SharkGridThreadExecutorService.getExecutorService();
@@ -549,7 +548,6 @@ public class WriteOutScanTask extends HttpServlet {
 
 
         myShepherd.commitDBTransaction();
-        myShepherd.closeDBTransaction();
 
         if (request.getParameter("number").equals("TuningTask")) {
           String resultsURL = ("http://" + CommonConfiguration.getURLLocation(request) + "/appadmin/endTuningTask.jsp?number=TuningTask");
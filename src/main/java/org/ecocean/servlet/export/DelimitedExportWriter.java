@@ -0,0 +1,69 @@
+package org.ecocean.servlet.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Streams rows as comma- or tab-separated text.
+ * Only one sheet can be represented, so subsequent sheets are separated by a blank line and their own header row.
+ */
+public class DelimitedExportWriter implements TabularExportWriter {
+
+  private Writer out;
+  private char delimiter;
+  private int numSheets = 0;
+  private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+
+  public DelimitedExportWriter(Writer out, char delimiter) {
+    this.out = out;
+    this.delimiter = delimiter;
+  }
+
+  public void startSheet(String name, String[] headers) throws IOException {
+    if (numSheets > 0) {
+      out.write("\r\n");
+    }
+    numSheets++;
+    if (headers != null) {
+      writeRow(headers);
+    }
+  }
+
+  public void writeRow(Object[] cells) throws IOException {
+    for (int i = 0; i < cells.length; i++) {
+      if (i > 0) {
+        out.write(delimiter);
+      }
+      Object cell = cells[i];
+      if (cell == null) {
+        continue;
+      }
+      String value = (cell instanceof Date) ? dateFormat.format((Date) cell) : cell.toString();
+      out.write(escape(value));
+    }
+    out.write("\r\n");
+  }
+
+  public void close() throws IOException {
+    out.close();
+  }
+
+  public String getContentType() {
+    return (delimiter == '\t') ? "text/tab-separated-values" : "text/csv";
+  }
+
+  public String getFileExtension() {
+    return (delimiter == '\t') ? ".txt" : ".csv";
+  }
+
+  private String escape(String value) {
+    boolean needsQuotes = (value.indexOf(delimiter) != -1) || (value.indexOf('"') != -1) || (value.indexOf('\n') != -1) || (value.indexOf('\r') != -1);
+    if (!needsQuotes) {
+      return value;
+    }
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+
+}
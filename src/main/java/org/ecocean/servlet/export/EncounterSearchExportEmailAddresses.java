@@ -66,9 +66,9 @@ public class EncounterSearchExportEmailAddresses extends HttpServlet{
 			if (blocked.size() > 0) {
 				response.setContentType("text/html");
 				PrintWriter out = response.getWriter();
-				out.println(ServletUtilities.getHeader(request));  
+				ServletUtilities.writeHeader(out, request);  
 				out.println("<html><body><p><strong>Access denied.</strong></p>");
-				out.println(ServletUtilities.getFooter(context));
+				ServletUtilities.writeFooter(out, context);
 				out.close();
 				return;
 			}
@@ -110,10 +110,10 @@ public class EncounterSearchExportEmailAddresses extends HttpServlet{
       e.printStackTrace();
       response.setContentType("text/html");
       PrintWriter out = response.getWriter();
-      out.println(ServletUtilities.getHeader(request));  
+      ServletUtilities.writeHeader(out, request);  
       out.println("<html><body><p><strong>Error encountered</strong></p>");
         out.println("<p>Please let the webmaster know you encountered an error at: "+this.getServletName()+" servlet</p></body></html>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         out.close();
     }
     myShepherd.rollbackDBTransaction();
@@ -80,9 +80,9 @@ public class EncounterSearchExportGeneGISFormat extends HttpServlet{
 			if (blocked.size() > 0) {
 				response.setContentType("text/html");
 				PrintWriter out = response.getWriter();
-				out.println(ServletUtilities.getHeader(request));  
+				ServletUtilities.writeHeader(out, request);  
 				out.println("<html><body><p><strong>Access denied.</strong></p>");
-				out.println(ServletUtilities.getFooter(context));
+				ServletUtilities.writeFooter(out, context);
 				out.close();
 				return;
 			}
@@ -270,10 +270,10 @@ public class EncounterSearchExportGeneGISFormat extends HttpServlet{
         ioe.printStackTrace();
         response.setContentType("text/html");
         PrintWriter out = response.getWriter();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<html><body><p><strong>Error encountered</strong> with file writing. Check the relevant log.</p>");
         out.println("<p>Please let the webmaster know you encountered an error at: EncounterSearchExportGeneGISFormat servlet</p></body></html>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         out.close();
         outp.close();
         outp=null;
@@ -285,10 +285,10 @@ public class EncounterSearchExportGeneGISFormat extends HttpServlet{
       e.printStackTrace();
       response.setContentType("text/html");
       PrintWriter out = response.getWriter();
-      out.println(ServletUtilities.getHeader(request));  
+      ServletUtilities.writeHeader(out, request);  
       out.println("<html><body><p><strong>Error encountered</strong></p>");
         out.println("<p>Please let the webmaster know you encountered an error at: EncounterSearchExportGeneGISFormat servlet</p></body></html>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         out.close();
     }
     myShepherd.rollbackDBTransaction();
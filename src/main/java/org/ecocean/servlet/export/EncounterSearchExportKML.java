@@ -90,19 +90,23 @@ public class EncounterSearchExportKML extends HttpServlet{
 			if (blocked.size() > 0) {
 				response.setContentType("text/html");
 				PrintWriter out = response.getWriter();
-				out.println(ServletUtilities.getHeader(request));  
+				ServletUtilities.writeHeader(out, request);  
 				out.println("<html><body><p><strong>Access denied.</strong></p>");
-				out.println(ServletUtilities.getFooter(context));
+				ServletUtilities.writeFooter(out, context);
 				out.close();
 				return;
 			}
       
-        int numMatchingEncounters=rEncounters.size();
+        //only encounters with GPS data are indexed, optionally limited to a "minLon,minLat,maxLon,maxLat" bounding box
+        GeoIndex gpsIndex=GeoIndex.forEncounters(new ArrayList<Encounter>(rEncounters));
+        double[] boundingBox=GeoIndex.parseBoundingBox(request.getParameter("bbox"));
+        int[] mappedEncounters=(boundingBox!=null) ? gpsIndex.getWithinBoundingBox(boundingBox) : gpsIndex.getIndices();
+        int numMappedEncounters=mappedEncounters.length;
       
 
-        for(int i=0;i<numMatchingEncounters;i++){
+        for(int i=0;i<numMappedEncounters;i++){
         
-          Encounter enc=(Encounter)rEncounters.get(i);
+          Encounter enc=(Encounter)rEncounters.get(mappedEncounters[i]);
         //populate KML file ====================================================
 
           if ((enc.getDecimalLongitude()!=null) && (enc.getDecimalLatitude() != null)) {
@@ -240,10 +244,10 @@ public class EncounterSearchExportKML extends HttpServlet{
         ioe.printStackTrace();
         response.setContentType("text/html");
         PrintWriter out = response.getWriter();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<html><body><p><strong>Error encountered</strong> with file writing. Check the relevant log.</p>");
         out.println("<p>Please let the webmaster know you encountered an error at: EncounterSearchExportKML servlet</p></body></html>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
       
 
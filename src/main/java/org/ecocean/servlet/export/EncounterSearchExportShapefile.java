@@ -65,7 +65,6 @@ public class EncounterSearchExportShapefile extends HttpServlet{
     //if(!encountersDir.exists()){encountersDir.mkdirs();}
     
     Shepherd myShepherd = new Shepherd(context);
-    Vector rEncounters = new Vector();
     
     //set up the files
     String gisZipFilename = "exportGISShapefiles_" + request.getRemoteUser() + ".zip";
@@ -94,33 +93,37 @@ public class EncounterSearchExportShapefile extends HttpServlet{
       
       try{
       
+        //as before the export was streamed, refuse it all if the user may not see some of the results
+        EncounterQueryIterator check = EncounterQueryProcessor.processQueryIterator(myShepherd, request, "year descending, month descending, day descending", EncounterQueryIterator.DEFAULT_PAGE_SIZE);
+        boolean denied = Encounter.anyBlocked(check, request);
+        check.close();
+        if (denied) {
+          response.setContentType("text/html");
+          PrintWriter out = response.getWriter();
+          ServletUtilities.writeHeader(out, request);
+          out.println("<html><body><p><strong>Access denied.</strong></p>");
+          ServletUtilities.writeFooter(out, context);
+          out.close();
+          myShepherd.rollbackDBTransaction();
+          myShepherd.closeDBTransaction();
+          return;
+        }
       
-        EncounterQueryResult queryResult = EncounterQueryProcessor.processQuery(myShepherd, request, "year descending, month descending, day descending");
-        rEncounters = queryResult.getResult();
-
-				Vector blocked = Encounter.blocked(rEncounters, request);
-				if (blocked.size() > 0) {
-					response.setContentType("text/html");
-					PrintWriter out = response.getWriter();
-					out.println(ServletUtilities.getHeader(request));  
-					out.println("<html><body><p><strong>Access denied.</strong></p>");
-					out.println(ServletUtilities.getFooter(context));
-					out.close();
-					return;
-				}
-      
-      
-        int numMatchingEncounters=rEncounters.size();
-      
+        EncounterQueryIterator rEncounters = EncounterQueryProcessor.processQueryIterator(myShepherd, request, "year descending, month descending, day descending", EncounterQueryIterator.DEFAULT_PAGE_SIZE);
+        SimpleFeatureType featureType=createFeatureType(context);
+        String urlPrefix="http://"+CommonConfiguration.getURLLocation(request)+"/encounters/encounter.jsp?number=";
 
-        for(int i=0;i<numMatchingEncounters;i++){
+        while(rEncounters.hasNext()){
         
-          Encounter enc=(Encounter)rEncounters.get(i);
+          Encounter enc=rEncounters.next();
+
+          //in case the results changed since they were checked
+          if(!enc.canUserAccess(request)){continue;}
           
           if ((enc.getDecimalLongitude()!=null) && (enc.getDecimalLatitude() != null)) {
             //let's also populate the Shapefile
             Point point = geometryFactory.createPoint(new Coordinate(enc.getDecimalLongitudeAsDouble(), enc.getDecimalLatitudeAsDouble()));
-            SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(createFeatureType(context));
+            SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(featureType);
             featureBuilder.add(point);
             featureBuilder.add((new java.sql.Date(enc.getDateInMilliseconds())));
             featureBuilder.add(enc.getCatalogNumber());
@@ -149,7 +152,7 @@ public class EncounterSearchExportShapefile extends HttpServlet{
             
             }
             featureBuilder.add(haploString);
-            featureBuilder.add(("http://"+CommonConfiguration.getURLLocation(request)+"/encounters/encounter.jsp?number="+enc.getCatalogNumber()));
+            featureBuilder.add((urlPrefix+enc.getCatalogNumber()));
             
             featureBuilder.add(enc.getDecimalLatitudeAsDouble());
             featureBuilder.add(enc.getDecimalLongitudeAsDouble());
@@ -175,7 +178,7 @@ public class EncounterSearchExportShapefile extends HttpServlet{
         params.put("url", shapeFile.toURI().toURL());
         params.put("create spatial index", Boolean.TRUE);
         ShapefileDataStore newDataStore = (ShapefileDataStore) dataStoreFactory.createNewDataStore(params);
-        newDataStore.createSchema(createFeatureType(context));
+        newDataStore.createSchema(featureType);
         /*
          * You can comment out this line if you are using the createFeatureType
          * method (at end of class file) rather than DataUtilities.createType
@@ -218,20 +221,20 @@ public class EncounterSearchExportShapefile extends HttpServlet{
                };
                
                // Create a buffer for reading the files
-               byte[] buf = new byte[1024];
+               byte[] buf = new byte[BYTES_DOWNLOAD];
                
                try {
-                   // Create the ZIP file
-                   String outFilename = shapeFile.getParentFile().getAbsolutePath()+File.separator+gisZipFilename;
-                   //System.out.println(outFilename);
-                   ZipOutputStream zipout = new ZipOutputStream(new FileOutputStream(outFilename));
+                   //the shapefile components must be written to disk by GeoTools, but the ZIP is streamed straight to the client
+                   response.setContentType("application/zip");
+                   response.setHeader("Content-Disposition","attachment;filename="+gisZipFilename);
+                   ZipOutputStream zipout = new ZipOutputStream(response.getOutputStream());
                
                    // Compress the files
                    for (int i=0; i<filenames.length; i++) {
-                       FileInputStream in = new FileInputStream(filenames[i]);
-                  System.out.println(filenames[i]);
-                       // Add ZIP entry to output stream.
                        File file2add=new File(filenames[i]);
+                       if(!file2add.exists()){continue;}
+                       FileInputStream in = new FileInputStream(file2add);
+                       // Add ZIP entry to output stream.
                        zipout.putNextEntry(new ZipEntry(file2add.getName()));
                
                        // Transfer bytes from the file to the ZIP file
@@ -243,29 +246,12 @@ public class EncounterSearchExportShapefile extends HttpServlet{
                        // Complete the entry
                        zipout.closeEntry();
                        in.close();
+                       file2add.delete();
                    }
                
                    // Complete the ZIP file
                    zipout.close();
                    
-                   //now write out the file
-                   response.setContentType("application/zip");
-                   response.setHeader("Content-Disposition","attachment;filename="+gisZipFilename);
-                   ServletContext ctx = getServletContext();
-                   //InputStream is = ctx.getResourceAsStream("/encounters/"+gisZipFilename);
-                   InputStream is=new FileInputStream(outFilename);
-                   
-                   int read=0;
-                   byte[] bytes = new byte[BYTES_DOWNLOAD];
-                   OutputStream os = response.getOutputStream();
-                  
-                   while((read = is.read(bytes))!= -1){
-                     os.write(bytes, 0, read);
-                   }
-                   os.flush();
-                   os.close(); 
-                   
-                   
                } 
                catch (IOException e) {
                 e.printStackTrace();
@@ -288,10 +274,10 @@ public class EncounterSearchExportShapefile extends HttpServlet{
         ioe.printStackTrace();
         response.setContentType("text/html");
         PrintWriter out = response.getWriter();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<html><body><p><strong>Error encountered</strong> with file writing. Check the relevant log.</p>");
         out.println("<p>Please let the webmaster know you encountered an error at: "+this.getServletName()+" servlet</p></body></html>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
       }
       
 
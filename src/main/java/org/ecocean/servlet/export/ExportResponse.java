@@ -0,0 +1,66 @@
+package org.ecocean.servlet.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Sets up the servlet response for a streamed file download.
+ * <p/>
+ * Export servlets write directly to the stream returned here instead of writing a file under the data directory and
+ * copying it back to the client. Output is gzip-compressed when the request asks for it:
+ * <ul>
+ * <li><code>gzip=true</code> as a request parameter returns a <code>.gz</code> attachment;</li>
+ * <li>otherwise, a client sending <code>Accept-Encoding: gzip</code> gets the same attachment with
+ * <code>Content-Encoding: gzip</code>, which browsers decompress transparently.</li>
+ * </ul>
+ * The streams must be closed by the caller so that the gzip trailer is written.
+ */
+public class ExportResponse {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  public static OutputStream openStream(HttpServletRequest request, HttpServletResponse response, String contentType, String filename) throws IOException {
+    OutputStream os = response.getOutputStream();
+    if ("true".equals(request.getParameter("gzip"))) {
+      response.setContentType("application/x-gzip");
+      response.setHeader("Content-Disposition", "attachment;filename=" + filename + ".gz");
+      return new GZIPOutputStream(os, BUFFER_SIZE);
+    }
+    response.setContentType(contentType);
+    response.setHeader("Content-Disposition", "attachment;filename=" + filename);
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+    if ((acceptEncoding != null) && (acceptEncoding.indexOf("gzip") != -1)) {
+      response.setHeader("Content-Encoding", "gzip");
+      response.setHeader("Vary", "Accept-Encoding");
+      return new GZIPOutputStream(os, BUFFER_SIZE);
+    }
+    return os;
+  }
+
+  public static Writer openWriter(HttpServletRequest request, HttpServletResponse response, String contentType, String filename) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(openStream(request, response, contentType + "; charset=UTF-8", filename), "UTF-8"), BUFFER_SIZE);
+  }
+
+  /**
+   * Creates the tabular writer requested by the <code>format</code> parameter: <code>csv</code>, <code>tsv</code>, or
+   * SpreadsheetML (the default).
+   */
+  public static TabularExportWriter openTabularWriter(HttpServletRequest request, HttpServletResponse response, String baseFilename) throws IOException {
+    String format = request.getParameter("format");
+    if ("csv".equals(format)) {
+      return new DelimitedExportWriter(openWriter(request, response, "text/csv", baseFilename + ".csv"), ',');
+    }
+    else if ("tsv".equals(format)) {
+      return new DelimitedExportWriter(openWriter(request, response, "text/tab-separated-values", baseFilename + ".txt"), '\t');
+    }
+    return new SpreadsheetMLExportWriter(openWriter(request, response, "application/vnd.ms-excel", baseFilename + ".xml"));
+  }
+
+}
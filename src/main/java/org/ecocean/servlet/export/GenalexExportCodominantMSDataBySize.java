@@ -301,10 +301,10 @@ public class GenalexExportCodominantMSDataBySize extends HttpServlet{
         ioe.printStackTrace();
         response.setContentType("text/html");
         PrintWriter out = response.getWriter();
-        out.println(ServletUtilities.getHeader(request));
+        ServletUtilities.writeHeader(out, request);
         out.println("<html><body><p><strong>Error encountered</strong> with file writing. Check the relevant log.</p>");
         out.println("<p>Please let the webmaster know you encountered an error at: EncounterSearchExportExcelFile servlet</p></body></html>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         out.close();
         outp.close();
         outp=null;
@@ -316,10 +316,10 @@ public class GenalexExportCodominantMSDataBySize extends HttpServlet{
       e.printStackTrace();
       response.setContentType("text/html");
       PrintWriter out = response.getWriter();
-      out.println(ServletUtilities.getHeader(request));  
+      ServletUtilities.writeHeader(out, request);  
       out.println("<html><body><p><strong>Error encountered</strong></p>");
         out.println("<p>Please let the webmaster know you encountered an error at: EncounterSearchExportExcelFile servlet</p></body></html>");
-        out.println(ServletUtilities.getFooter(context));
+        ServletUtilities.writeFooter(out, context);
         out.close();
     }
 
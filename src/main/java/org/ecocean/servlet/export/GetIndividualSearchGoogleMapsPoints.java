@@ -6,12 +6,10 @@ import java.io.PrintWriter;
 import javax.servlet.*;
 import javax.servlet.http.*;
 
-import java.util.Vector;
-import java.util.Random;
-import java.util.Properties;
-import java.util.StringTokenizer;
-import java.util.List;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.json.*;
 import org.ecocean.*;
@@ -33,238 +31,85 @@ public class GetIndividualSearchGoogleMapsPoints extends HttpServlet {
 
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException{
     
-    //set the response
-    response.setContentType("text/html");
-    PrintWriter out = response.getWriter();
-    String langCode=ServletUtilities.getLanguageCode(request);
-    
     String context="context0";
     context=ServletUtilities.getContext(request);
     
-    //let's load encounterSearch.properties
-    
-    Properties map_props = new Properties();
-    //map_props.load(getClass().getResourceAsStream("/bundles/" + langCode + "/individualMappedSearchResults.properties"));
-    map_props=ShepherdProperties.getProperties("individualMappedSearchResults.properties", langCode);
-    
-    Properties haploprops = new Properties();
-    //haploprops.load(getClass().getResourceAsStream("/bundles/haplotypeColorCodes.properties"));
-  haploprops=ShepherdProperties.getProperties("haplotypeColorCodes.properties", "",context);
-
-    Properties localeprops = new Properties();
-   localeprops=ShepherdProperties.getProperties("locationIDGPS.properties", "", context);
-
-   List<String> allSpecies=CommonConfiguration.getIndexedValues("genusSpecies",context);
-   int numSpecies=allSpecies.size();
-  
-   List<String> allSpeciesColors=CommonConfiguration.getIndexedValues("genusSpeciesColor",context);
-   int numSpeciesColors=allSpeciesColors.size();
-   
-   Hashtable<String, String> speciesTable=new Hashtable<String,String>();
-   for(int i=0;i<numSpecies;i++){ 
-     if(i<numSpeciesColors){
-       speciesTable.put(allSpecies.get(i),allSpeciesColors.get(i));
-     }
-   }
-    
-    //get our Shepherd
-    Shepherd myShepherd = new Shepherd(context);
-
-  Random ran= new Random();
-
-  //set up the aspect styles
-
-
-
-    //set up the vector for matching indies
-    Vector rIndividuals = new Vector();
-    
-    myShepherd.beginDBTransaction();
-
-    //start the query and get the results
-    String order = "";
-    
     //determien if we should use locationID to determine some generic mapping points
     boolean useLocales=false;
     if(request.getParameter("useLocales")!=null){
       useLocales=true;
     }
     else{request.setAttribute("gpsOnly", "yes");}
-    MarkedIndividualQueryResult queryResult = IndividualQueryProcessor.processQuery(myShepherd, request, order);
-    rIndividuals = queryResult.getResult();
-    int numIndividuals=rIndividuals.size();
 
-   
- 
-    try {
-
-      //let's start
-      JSONObject indieMappedPoints     = new JSONObject();
-      JSONArray featureList = new JSONArray();
-      indieMappedPoints.put("type", "FeatureCollection");
-      //JSONArray  addresses = new JSONArray();
-      //JSONObject address;
-      indieMappedPoints.put("features", featureList);
-      
-      
-      
-      for(int i=0;i<numIndividuals;i++) {
-        MarkedIndividual indie=(MarkedIndividual)rIndividuals.get(i);
-        
-        Vector rEncounters=indie.returnEncountersWithGPSData(useLocales,true,context); 
-        int numEncs=rEncounters.size();
-        
-        //set up move path
-        JSONArray[] movePathCoords=new JSONArray[numEncs];
-        
-        //set up colors
-        String baseColor="C0C0C0";
-        String sexColor="C0C0C0";
-        String haploColor="C0C0C0";
-        String speciesColor="C0C0C0";
-        
-        //now check if we should show by sex
-        if(indie.getSex()!=null){
-          if(indie.getSex().equals("male")){
-            sexColor="0000FF";
-          }
-          else if(indie.getSex().equals("female")){
-            sexColor="FF00FF";
-          }
-        }
-          
-        //set the haplotype color
-        if((indie.getHaplotype()!=null)&&(haploprops.getProperty(indie.getHaplotype())!=null)){
-            if(!haploprops.getProperty(indie.getHaplotype()).trim().equals("")){ haploColor = haploprops.getProperty(indie.getHaplotype());}
+    //the view: an optional "minLon,minLat,maxLon,maxLat" bounding box and zoom level, or a z/x/y tile
+    double[] boundingBox=GeoIndex.parseBoundingBox(request.getParameter("bbox"));
+    int zoom=-1;
+    try{
+      if(request.getParameter("zoom")!=null){zoom=Integer.parseInt(request.getParameter("zoom"));}
+      if((request.getParameter("z")!=null)&&(request.getParameter("x")!=null)&&(request.getParameter("y")!=null)){
+        zoom=Integer.parseInt(request.getParameter("z"));
+        boundingBox=MapLayer.getTileBoundingBox(zoom, Integer.parseInt(request.getParameter("x")), Integer.parseInt(request.getParameter("y")));
+      }
+    }
+    catch(NumberFormatException nfe){zoom=-1;}
+
+    String rootURL=CommonConfiguration.getURLLocation(request);
+    String fingerprint=getFingerprint(request);
+    String viewKey=zoom+"|"+((boundingBox==null) ? "" : Arrays.toString(boundingBox))+"|"+rootURL;
+
+    String json=MapLayer.getRendered(context, fingerprint, viewKey);
+    if(json==null){
+      MapLayer layer=MapLayer.getCached(context, fingerprint);
+      if(layer==null){
+        Shepherd myShepherd = new Shepherd(context);
+        myShepherd.beginDBTransaction();
+        try {
+          MarkedIndividualQueryResult queryResult = IndividualQueryProcessor.processQuery(myShepherd, request, "");
+          layer=MapLayer.build(context, new ArrayList<MarkedIndividual>(queryResult.getResult()), useLocales);
+          MapLayer.cache(context, fingerprint, layer);
         }
-        //set the species color
-        if(indie.getGenusSpecies()!=null){
-          speciesColor=speciesTable.get(indie.getGenusSpecies());
+        catch(Exception e) {
+          e.printStackTrace();
         }
-        
-        
-        for(int yh=0;yh<numEncs;yh++){
-          Encounter enc=(Encounter)rEncounters.get(yh);
-          Double thisEncLat=null;
-          Double thisEncLong=null;
-       
-        //first check if the Encounter object has lat and long values
-          if((enc.getLatitudeAsDouble()!=null)&&(enc.getLongitudeAsDouble()!=null)){
-            thisEncLat=enc.getLatitudeAsDouble();
-            thisEncLong=enc.getLongitudeAsDouble();
-          }
-          //let's see if locationIDGPS.properties has a location we can use
-          else{
-            if(useLocales){
-                   try {
-                        String lc = enc.getLocationCode();
-                        if (localeprops.getProperty(lc) != null) {
-                          String gps = localeprops.getProperty(lc);
-                          StringTokenizer st = new StringTokenizer(gps, ",");
-                          thisEncLat=(new Double(st.nextToken()))+ran.nextDouble()*0.02;
-                          thisEncLong=(new Double(st.nextToken()))+ran.nextDouble()*0.02;;
-
-                        }
-                      } catch (Exception e) {
-                        e.printStackTrace();
-                        System.out.println("     I hit an error getting locales in individualMappedSearchResults.jsp.");
-                      }
-            }
-          }
-        //test example
-          // {"geometry": {"type": "Point", "coordinates": [-94.149, 36.33]}
-             JSONObject point = new JSONObject();
-             point.put("type", "Point");
-             
-             // construct a JSONArray from a string; can also use an array or list
-             JSONArray coord = new JSONArray("["+thisEncLong.toString()+","+thisEncLat.toString()+"]");
-             movePathCoords[yh]=coord;
-             point.put("coordinates", coord);
-             point.put("catalogNumber",enc.getCatalogNumber());
-             point.put("encSubdir",enc.subdir());
-             point.put("rootURL",CommonConfiguration.getURLLocation(request));
-             point.put("individualID",enc.getIndividualID());
-             point.put("dataDirectoryName",CommonConfiguration.getDataDirectoryName(context));
-             point.put("date",enc.getDate());
-             
-             
-             
-             
-             
-             //end color
-             point.put("color",baseColor);
-             point.put("sexColor",sexColor);
-             point.put("haplotypeColor",haploColor);
-             point.put("speciesColor",speciesColor);
-             
-             JSONObject feature = new JSONObject();
-             feature.put("type", "Feature");
-             JSONObject props = new JSONObject();
-             feature.put("properties", props);
-             
-             feature.put("geometry", point);
-             featureList.put(feature);
-             
-          
+        myShepherd.rollbackDBTransaction();
+        myShepherd.closeDBTransaction();
+      }
+      if(layer!=null){
+        try{
+          json=layer.toGeoJSON(boundingBox, zoom, rootURL, CommonConfiguration.getDataDirectoryName(context)).toString();
+          MapLayer.cacheRendered(context, fingerprint, viewKey, json);
         }
-        
-        //let's do the move path, one per shark
-        if(numEncs>1){
-          JSONObject lineString = new JSONObject();
-          lineString.put("type", "LineString");
-          JSONObject lsFeature = new JSONObject();
-          
-          StringBuffer sumCoords=new StringBuffer("[ ");
-          for(int p=0;p<movePathCoords.length;p++){
-            sumCoords.append((movePathCoords[p].toString()+", "));
-          }
-          sumCoords.append(" ]");
-          JSONArray coord = new JSONArray(sumCoords.toString());
-          
-          
-          lineString.put("type", "LineString");
-          lineString.put("color",baseColor);
-          lineString.put("sexColor",sexColor);
-          lineString.put("haplotypeColor",haploColor);
-          lineString.put("speciesColor",speciesColor);
-          lineString.put("coordinates", coord);
-          
-          //set up feature
-          JSONObject props = new JSONObject();
-          lsFeature.put("properties", props);
-          lsFeature.put("geometry", lineString);
-          lsFeature.put("type", "Feature");
-          featureList.put(lsFeature);
-          
-          
+        catch(JSONException je){
+          je.printStackTrace();
         }
-        
-    
-        
-        
-       
-        
-       } //end for
-   
-
-      myShepherd.commitDBTransaction();
-      myShepherd.closeDBTransaction();
-
-      
-      response.setContentType("application/json");
-      response.getWriter().write(indieMappedPoints.toString());
-      
-
+      }
     }
-    catch(Exception e) {
+
+    if(json==null){
+      response.setContentType("text/html");
+      PrintWriter out = response.getWriter();
       out.println("<p><strong>Error encountered</strong></p>");
-      out.println("<p>Please let the webmaster know you encountered an error at: IndividualSearchExportCapture servlet</p>");
-      e.printStackTrace();
-      myShepherd.rollbackDBTransaction();
-      myShepherd.closeDBTransaction();
+      out.println("<p>Please let the webmaster know you encountered an error at: GetIndividualSearchGoogleMapsPoints servlet</p>");
+      out.close();
+      return;
     }
-    
-    
+    response.setContentType("application/json");
+    response.getWriter().write(json);
+  }
+
+  /**
+   * Identifies the search and the user running it, ignoring the view parameters, so that every view of the same
+   * search shares one MapLayer.
+   */
+  private static String getFingerprint(HttpServletRequest request) {
+    TreeMap<String,String[]> params=new TreeMap<String,String[]>(request.getParameterMap());
+    String[] viewParams=new String[]{"bbox", "zoom", "z", "x", "y"};
+    for(int i=0;i<viewParams.length;i++){params.remove(viewParams[i]);}
+    StringBuffer fingerprint=new StringBuffer(String.valueOf(request.getRemoteUser()));
+    for(Map.Entry<String,String[]> param:params.entrySet()){
+      fingerprint.append("&"+param.getKey()+"="+Arrays.toString(param.getValue()));
+    }
+    return fingerprint.toString();
   }
 
   
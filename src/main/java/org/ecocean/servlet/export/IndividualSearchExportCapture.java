@@ -80,53 +80,43 @@ public class IndividualSearchExportCapture extends HttpServlet{
       out.println("read input data");
       
       
+      //one session per year covered, each spanning startMonth to endMonth
+      String sessionLocCode=null;
+      if((request.getParameter("locationCodeField")!=null)&&(!request.getParameter("locationCodeField").trim().equals(""))){
+        sessionLocCode=locCode;
+      }
+      long[] sessionStarts=new long[Math.max(0, numYearsCovered)];
+      long[] sessionEnds=new long[Math.max(0, numYearsCovered)];
+      for(int f=startYear;f<=(endYear-wrapsYear);f++) {
+        sessionStarts[f-startYear]=CaptureHistory.toMillis(f, startMonth, 1);
+        sessionEnds[f-startYear]=CaptureHistory.toMillis((f+wrapsYear), endMonth, 31);
+      }
+      CaptureHistory captureHistory=new CaptureHistory(sessionStarts, sessionEnds);
+      long periodStart=CaptureHistory.toMillis(startYear, startMonth, 1);
+      long periodEnd=CaptureHistory.toMillis(endYear, endMonth, 31);
+      
       for(int i=0;i<numIndividuals;i++) {
         MarkedIndividual s=rIndividuals.get(i);
 
         boolean wasSightedInRequestedLocation=false;
-        if((request.getParameter("locationCodeField")!=null)&&(!request.getParameter("locationCodeField").trim().equals(""))){
+        if(sessionLocCode!=null){
           wasSightedInRequestedLocation=s.wasSightedInLocationCode(locCode);
         }
         else{
           wasSightedInRequestedLocation=true;
         }
         
-        if((wasSightedInRequestedLocation)&&(s.wasSightedInPeriod(startYear,startMonth,endYear,endMonth))) {
-          boolean wasReleased=false;
-          StringBuffer sb=new StringBuffer();
+        if((wasSightedInRequestedLocation)&&(CaptureHistory.wasSightedBetween(CaptureHistory.getSortedTimestamps(s, null), periodStart, periodEnd))) {
 
           //lets print out each shark's capture history
-          for(int f=startYear;f<=(endYear-wrapsYear);f++) {
-            boolean sharkWasSeen=false;
-            
-
-              
-              if((request.getParameter("locationCodeField")!=null)&&(!request.getParameter("locationCodeField").trim().equals(""))){
-                sharkWasSeen=s.wasSightedInPeriod(f,startMonth,1,(f+wrapsYear),endMonth, 31, locCode);
-              }
-              else{
-                sharkWasSeen=s.wasSightedInPeriod(f,startMonth,1,(f+wrapsYear),endMonth, 31);
-              }
-              
-          
-            if(sharkWasSeen){
-              
-
-              sb.append("1");
-              wasReleased=true;
-            }
-            else{
-              sb.append("0");
-              
-            }
-          }
-          if(wasReleased) {
+          String history=CaptureHistory.toHistoryString(captureHistory.getHistory(CaptureHistory.getSortedTimestamps(s, sessionLocCode)));
+          if(history.indexOf('1')!=-1) {
 
               
               String adjustedID=s.getIndividualID();
               while(adjustedID.length()<maxLengthID){adjustedID+="X";}
             
-              out.println(adjustedID+sb.toString());
+              out.println(adjustedID+history);
        
             numSharks++;
           }
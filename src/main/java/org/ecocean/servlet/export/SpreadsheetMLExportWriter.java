@@ -0,0 +1,115 @@
+package org.ecocean.servlet.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Streams rows as an Excel XML Spreadsheet (SpreadsheetML 2003) document.
+ * <p/>
+ * Unlike jxl's WritableWorkbook, which keeps every cell in memory until the workbook is written, this format is plain XML
+ * and can be written to the response one row at a time. Excel, LibreOffice and most statistics packages open it directly.
+ */
+public class SpreadsheetMLExportWriter implements TabularExportWriter {
+
+  private Writer out;
+  private boolean inSheet = false;
+  private boolean documentStarted = false;
+  private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+  public SpreadsheetMLExportWriter(Writer out) {
+    this.out = out;
+  }
+
+  public void startSheet(String name, String[] headers) throws IOException {
+    if (!documentStarted) {
+      out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
+      out.write("<?mso-application progid=\"Excel.Sheet\"?>\r\n");
+      out.write("<Workbook xmlns=\"urn:schemas-microsoft-com:office:spreadsheet\" xmlns:ss=\"urn:schemas-microsoft-com:office:spreadsheet\">\r\n");
+      out.write("<Styles><Style ss:ID=\"date\"><NumberFormat ss:Format=\"yyyy\\-mm\\-dd\\ hh:mm\"/></Style></Styles>\r\n");
+      documentStarted = true;
+    }
+    endSheet();
+    //worksheet names are limited to 31 characters and may not contain []:*?/\
+    String sheetName = name.replaceAll("[\\[\\]:*?/\\\\]", " ");
+    if (sheetName.length() > 31) {
+      sheetName = sheetName.substring(0, 31);
+    }
+    out.write("<Worksheet ss:Name=\"" + escape(sheetName) + "\"><Table>\r\n");
+    inSheet = true;
+    if (headers != null) {
+      writeRow(headers);
+    }
+  }
+
+  public void writeRow(Object[] cells) throws IOException {
+    StringBuilder row = new StringBuilder(64 * cells.length);
+    row.append("<Row>");
+    for (int i = 0; i < cells.length; i++) {
+      Object cell = cells[i];
+      if (cell == null) {
+        //empty cells must be skipped explicitly so that later cells stay in the right column
+        row.append("<Cell/>");
+      }
+      else if (cell instanceof Number) {
+        row.append("<Cell><Data ss:Type=\"Number\">").append(cell.toString()).append("</Data></Cell>");
+      }
+      else if (cell instanceof Date) {
+        row.append("<Cell ss:StyleID=\"date\"><Data ss:Type=\"DateTime\">").append(dateFormat.format((Date) cell)).append("</Data></Cell>");
+      }
+      else {
+        row.append("<Cell><Data ss:Type=\"String\">").append(escape(cell.toString())).append("</Data></Cell>");
+      }
+    }
+    row.append("</Row>\r\n");
+    out.write(row.toString());
+  }
+
+  public void close() throws IOException {
+    if (!documentStarted) {
+      startSheet("Sheet1", null);
+    }
+    endSheet();
+    out.write("</Workbook>\r\n");
+    out.close();
+  }
+
+  public String getContentType() {
+    return "application/vnd.ms-excel";
+  }
+
+  public String getFileExtension() {
+    return ".xml";
+  }
+
+  private void endSheet() throws IOException {
+    if (inSheet) {
+      out.write("</Table></Worksheet>\r\n");
+      inSheet = false;
+    }
+  }
+
+  private static String escape(String value) {
+    StringBuilder sb = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '<': sb.append("&lt;"); break;
+        case '>': sb.append("&gt;"); break;
+        case '&': sb.append("&amp;"); break;
+        case '"': sb.append("&quot;"); break;
+        case '\n': sb.append("&#10;"); break;
+        case '\r': break;
+        default:
+          //characters below 0x20 other than tab are not legal in XML 1.0
+          if ((c < 0x20) && (c != '\t')) {
+            break;
+          }
+          sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+}
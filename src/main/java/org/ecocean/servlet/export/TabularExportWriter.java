@@ -0,0 +1,29 @@
+package org.ecocean.servlet.export;
+
+import java.io.IOException;
+
+/**
+ * A row-at-a-time writer for tabular exports. Implementations write each row straight to the underlying stream,
+ * so nothing but the current row is held in memory regardless of the size of the export.
+ * <p/>
+ * Usage is strictly sequential: call {@link #startSheet(String, String[])}, any number of {@link #writeRow(Object[])},
+ * optionally start further sheets, and finally {@link #close()}.
+ * Cells may be <code>null</code> (written empty), <code>Number</code>, <code>java.util.Date</code> or any other
+ * object, which is written using its <code>toString()</code> value.
+ */
+public interface TabularExportWriter {
+
+  public void startSheet(String name, String[] headers) throws IOException;
+
+  public void writeRow(Object[] cells) throws IOException;
+
+  /**
+   * Completes the document and closes the underlying stream, which also writes any gzip trailer.
+   */
+  public void close() throws IOException;
+
+  public String getContentType();
+
+  public String getFileExtension();
+
+}
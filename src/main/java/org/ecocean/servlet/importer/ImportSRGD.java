@@ -521,6 +521,8 @@ public class ImportSRGD extends HttpServlet {
           locked = true;
           myShepherd.rollbackDBTransaction();
           myShepherd.closeDBTransaction();
+          //rows committed before the failure are not reported to the in-memory indexes either
+          ContextIndex.invalidateAll(context);
           le.printStackTrace();
         }
 
@@ -528,7 +530,9 @@ public class ImportSRGD extends HttpServlet {
         if (!locked) {
           myShepherd.commitDBTransaction();
           myShepherd.closeDBTransaction();
-          out.println(ServletUtilities.getHeader(request));
+          //the imported encounters, individuals and genetic analyses are not reported to the in-memory indexes
+          ContextIndex.invalidateAll(context);
+          ServletUtilities.writeHeader(out, request);
           out.println("<p><strong>Success!</strong> I have successfully uploaded and imported your SRGD CSV file.</p>");
           
           if(messages.toString().equals("")){messages.append("None");}
@@ -537,21 +541,21 @@ public class ImportSRGD extends HttpServlet {
           out.println("<p><a href=\"appadmin/import.jsp\">Return to the import page</a></p>" );
 
           
-          out.println(ServletUtilities.getFooter(context));
+          ServletUtilities.writeFooter(out, context);
           } 
       
     } 
     catch (IOException lEx) {
       lEx.printStackTrace();
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I was unable to upload your SRGD CSV. Please contact the webmaster about this message.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     } 
     catch (NullPointerException npe) {
       npe.printStackTrace();
-      out.println(ServletUtilities.getHeader(request));
+      ServletUtilities.writeHeader(out, request);
       out.println("<strong>Error:</strong> I was unable to import SRGD data as no file was specified.");
-      out.println(ServletUtilities.getFooter(context));
+      ServletUtilities.writeFooter(out, context);
     }
     out.close();
   }
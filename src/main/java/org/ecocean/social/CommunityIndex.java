@@ -0,0 +1,205 @@
+package org.ecocean.social;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import javax.jdo.Extent;
+import javax.jdo.Query;
+
+import org.ecocean.ContextIndex;
+import org.ecocean.Shepherd;
+
+/**
+ * Which marked individuals belong to which social units, and in which roles, as given by their Relationships.
+ * <p/>
+ * One index is kept per context. It is built from a single pass over the Relationships the first time it is needed,
+ * then kept current by RelationshipCreate and RelationshipDelete, which call
+ * {@link #updateRelationship(String, String, Relationship)} and {@link #removeRelationship(String, String)} after they
+ * commit. Each Relationship is tracked by its persistence ID, so an edit that changes a relationship's roles or social
+ * unit replaces what it contributed before.
+ */
+public class CommunityIndex extends ContextIndex {
+
+  private static final Registry<CommunityIndex> indexes = new Registry<CommunityIndex>() {
+    protected CommunityIndex build(Shepherd myShepherd) {
+      return CommunityIndex.build(myShepherd);
+    }
+  };
+
+  //persistence ID -> {relatedSocialUnitName, markedIndividualName1, markedIndividualRole1, markedIndividualName2, markedIndividualRole2}
+  private HashMap<String, String[]> relationships = new HashMap<String, String[]>();
+  //each of these maps a key to the values it occurs with and the number of Relationships they occur together in
+  private HashMap<String, HashMap<String, int[]>> communityMembers = new HashMap<String, HashMap<String, int[]>>();
+  private HashMap<String, HashMap<String, int[]>> individualCommunities = new HashMap<String, HashMap<String, int[]>>();
+  private HashMap<String, HashMap<String, int[]>> roleMembers = new HashMap<String, HashMap<String, int[]>>();
+  private HashMap<String, HashMap<String, int[]>> individualRoles = new HashMap<String, HashMap<String, int[]>>();
+
+  CommunityIndex() {
+  }
+
+  /**
+   * Returns the index of the Shepherd's context, building it within the Shepherd's current transaction if it does
+   * not exist yet or is due to be rebuilt.
+   */
+  public static CommunityIndex getIndex(Shepherd myShepherd) {
+    return indexes.getIndex(myShepherd);
+  }
+
+  /**
+   * Records a created or edited Relationship. Call this after the change has been committed, while the Relationship
+   * can still be read.
+   */
+  public static void updateRelationship(String context, String persistenceID, Relationship rel) {
+    CommunityIndex index = getBuiltIndex(context);
+    if ((index != null) && (persistenceID != null) && (rel != null)) {
+      index.setRelationship(persistenceID, rel.getRelatedSocialUnitName(), rel.getMarkedIndividualName1(), rel.getMarkedIndividualRole1(), rel.getMarkedIndividualName2(), rel.getMarkedIndividualRole2());
+    }
+  }
+
+  /**
+   * Forgets a deleted Relationship.
+   */
+  public static void removeRelationship(String context, String persistenceID) {
+    CommunityIndex index = getBuiltIndex(context);
+    if ((index != null) && (persistenceID != null)) {
+      index.setRelationship(persistenceID, null, null, null, null, null);
+    }
+  }
+
+  private static CommunityIndex getBuiltIndex(String context) {
+    return indexes.getBuiltIndex(context);
+  }
+
+  private static CommunityIndex build(Shepherd myShepherd) {
+    CommunityIndex index = new CommunityIndex();
+    Extent relClass = myShepherd.getPM().getExtent(Relationship.class, true);
+    Query query = myShepherd.getPM().newQuery(relClass);
+    try {
+      Iterator it = ((java.util.Collection) query.execute()).iterator();
+      while (it.hasNext()) {
+        Relationship rel = (Relationship) it.next();
+        index.setRelationship(myShepherd.getPM().getObjectId(rel).toString(), rel.getRelatedSocialUnitName(), rel.getMarkedIndividualName1(), rel.getMarkedIndividualRole1(), rel.getMarkedIndividualName2(), rel.getMarkedIndividualRole2());
+      }
+    }
+    catch (Exception e) {
+      System.out.println("Exception building the community index!");
+      e.printStackTrace();
+    }
+    finally {
+      query.closeAll();
+    }
+    return index;
+  }
+
+  /**
+   * Replaces what a Relationship contributes to the index. Passing all nulls removes it.
+   */
+  synchronized void setRelationship(String persistenceID, String community, String name1, String role1, String name2, String role2) {
+    String[] old = relationships.remove(persistenceID);
+    if (old != null) {
+      adjust(old, -1);
+    }
+    String[] values = new String[]{community, name1, role1, name2, role2};
+    if ((name1 != null) || (name2 != null)) {
+      relationships.put(persistenceID, values);
+      adjust(values, 1);
+    }
+  }
+
+  private void adjust(String[] values, int delta) {
+    String community = values[0];
+    for (int i = 1; i <= 3; i += 2) {
+      String name = values[i];
+      String role = values[i + 1];
+      if (name == null) {
+        continue;
+      }
+      if (community != null) {
+        increment(communityMembers, community, name, delta);
+        increment(individualCommunities, name, community, delta);
+      }
+      if (role != null) {
+        increment(roleMembers, role, name, delta);
+        increment(individualRoles, name, role, delta);
+      }
+    }
+  }
+
+  private static void increment(HashMap<String, HashMap<String, int[]>> map, String key, String value, int delta) {
+    HashMap<String, int[]> counts = map.get(key);
+    if (counts == null) {
+      counts = new HashMap<String, int[]>();
+      map.put(key, counts);
+    }
+    int[] count = counts.get(value);
+    if (count == null) {
+      count = new int[1];
+      counts.put(value, count);
+    }
+    count[0] += delta;
+    if (count[0] <= 0) {
+      counts.remove(value);
+      if (counts.isEmpty()) {
+        map.remove(key);
+      }
+    }
+  }
+
+  private synchronized HashSet<String> getValues(HashMap<String, HashMap<String, int[]>> map, String key) {
+    HashMap<String, int[]> counts = map.get(key);
+    return (counts == null) ? new HashSet<String>() : new HashSet<String>(counts.keySet());
+  }
+
+  private static ArrayList<String> sorted(HashSet<String> values) {
+    ArrayList<String> list = new ArrayList<String>(values);
+    Collections.sort(list);
+    return list;
+  }
+
+  /**
+   * Returns true if the individual has a Relationship in the social unit.
+   */
+  public synchronized boolean isMember(String communityName, String individualID) {
+    HashMap<String, int[]> members = communityMembers.get(communityName);
+    return (members != null) && members.containsKey(individualID);
+  }
+
+  /**
+   * Returns true if any Relationship names the social unit.
+   */
+  public synchronized boolean hasMembers(String communityName) {
+    return communityMembers.containsKey(communityName);
+  }
+
+  /**
+   * Returns a copy of the IDs of the individuals with a Relationship in the social unit.
+   */
+  public HashSet<String> getMarkedIndividualIDsInCommunity(String communityName) {
+    return getValues(communityMembers, communityName);
+  }
+
+  /**
+   * Returns a copy of the IDs of the individuals holding the role in at least one Relationship.
+   */
+  public HashSet<String> getMarkedIndividualIDsWithRole(String roleName) {
+    return getValues(roleMembers, roleName);
+  }
+
+  /**
+   * Returns the social units the individual has Relationships in, sorted by name.
+   */
+  public ArrayList<String> getCommunities(String individualID) {
+    return sorted(getValues(individualCommunities, individualID));
+  }
+
+  /**
+   * Returns the roles the individual holds in its Relationships, sorted by name.
+   */
+  public ArrayList<String> getRoles(String individualID) {
+    return sorted(getValues(individualRoles, individualID));
+  }
+
+}
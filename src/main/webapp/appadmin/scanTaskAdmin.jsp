@@ -377,6 +377,8 @@ single scan are allowed to exceed the total.</span>
     <td width="71" bgcolor="#CCCCCC">
       <div align="left"><span class="style1">Chunk size</span></div>
     </td>
+    <td bgcolor="#CCCCCC"><span class="style1">Comparisons/sec</span></td>
+    <td bgcolor="#CCCCCC"><span class="style1">Checkout to checkin (s): median / 90% / 99%</span></td>
 
   </tr>
   <%
@@ -395,6 +397,11 @@ single scan are allowed to exceed the total.</span>
     <td><span class="style2"><%=nd.isTargeted()%></span></td>
     <td><span class="style2"><%=nd.getNumComparisons()%></span></td>
     <td><span class="style2"><%=nd.groupSize%></span></td>
+    <td><span class="style2"><%=String.format("%.2f", nd.getComparisonsPerSecond())%></span></td>
+    <%
+      LatencyHistogram nodeLatency = gm.getTelemetry().getNodeLatency(nd.getNodeIdentifier());
+    %>
+    <td><span class="style2"><%=(nodeLatency == null) ? "" : ((nodeLatency.getPercentile(50) / 1000.0) + " / " + (nodeLatency.getPercentile(90) / 1000.0) + " / " + (nodeLatency.getPercentile(99) / 1000.0))%></span></td>
 
 
 
@@ -415,6 +422,43 @@ single scan are allowed to exceed the total.</span>
 <p>Total work items and results in queue: <%=gm.getNumWorkItemsAndResults()%>
   (To-Do: <%=gm.getToDoSize()%> Done: <%=gm.getDoneSize()%>)</p>
 
+<%
+  java.util.TreeMap<String, int[]> remainingWork = gm.getRemainingWorkByTask();
+  if (remainingWork.size() > 0) {
+%>
+<table border="1">
+  <tr>
+    <td bgcolor="#CCCCCC"><span class="style1">Task</span></td>
+    <td bgcolor="#CCCCCC"><span class="style1">Remaining</span></td>
+    <td bgcolor="#CCCCCC"><span class="style1">Checked out</span></td>
+    <td bgcolor="#CCCCCC"><span class="style1">Comparisons/sec</span></td>
+    <td bgcolor="#CCCCCC"><span class="style1">ETA (s)</span></td>
+    <td bgcolor="#CCCCCC"><span class="style1">Checkout to checkin (s): median / 99%</span></td>
+  </tr>
+  <%
+    for (java.util.Map.Entry<String, int[]> taskWork : remainingWork.entrySet()) {
+      double eta = gm.getTelemetry().getTaskETASeconds(taskWork.getKey(), taskWork.getValue()[0]);
+      LatencyHistogram taskLatency = gm.getTelemetry().getTaskLatency(taskWork.getKey());
+  %>
+  <tr>
+    <td><span class="style2"><%=taskWork.getKey()%></span></td>
+    <td><span class="style2"><%=taskWork.getValue()[0]%></span></td>
+    <td><span class="style2"><%=taskWork.getValue()[1]%></span></td>
+    <td><span class="style2"><%=String.format("%.2f", gm.getTelemetry().getTaskComparisonsPerSecond(taskWork.getKey()))%></span></td>
+    <td><span class="style2"><%=(eta < 0) ? "" : Long.toString(Math.round(eta))%></span></td>
+    <td><span class="style2"><%=(taskLatency == null) ? "" : ((taskLatency.getPercentile(50) / 1000.0) + " / " + (taskLatency.getPercentile(99) / 1000.0))%></span></td>
+  </tr>
+  <%
+    }
+  %>
+</table>
+<%
+  }
+%>
+
+<p>Comparisons per minute and queue depth over the last hour, and the measurements above, are available as <a href="../GridStatistics">JSON</a>
+  and in the <a href="../GridStatistics?format=prometheus">Prometheus text format</a>.</p>
+
 <%
   if (request.isUserInRole("admin")) {
 %>
@@ -68,37 +68,14 @@ context=ServletUtilities.getContext(request);
   int numResults = 0;
 
 
-  Vector rEncounters = new Vector();
-
   myShepherd.beginDBTransaction();
 
-  EncounterQueryResult queryResult = EncounterQueryProcessor.processQuery(myShepherd, request, "year descending, month descending, day descending");
-  rEncounters = queryResult.getResult();
-
-
-//--let's estimate the number of results that might be unique
-
-  int numUniqueEncounters = 0;
-  int numUnidentifiedEncounters = 0;
-  int numDuplicateEncounters = 0;
-  ArrayList uniqueEncounters = new ArrayList();
-  for (int q = 0; q < rEncounters.size(); q++) {
-    Encounter rEnc = (Encounter) rEncounters.get(q);
-    if ((rEnc.getIndividualID()!=null)&&(!rEnc.getIndividualID().equals("Unassigned"))) {
-      String assemblage = rEnc.getIndividualID() + ":" + rEnc.getYear() + ":" + rEnc.getMonth() + ":" + rEnc.getDay();
-      if (!uniqueEncounters.contains(assemblage)) {
-        numUniqueEncounters++;
-        uniqueEncounters.add(assemblage);
-      } else {
-        numDuplicateEncounters++;
-      }
-    } else {
-      numUnidentifiedEncounters++;
-    }
+  //only the displayed page of encounters is loaded; the result count is cached in the session while paging
+  EncounterQueryResult queryResult = EncounterQueryProcessor.processQueryPaged(myShepherd, request, "year descending, month descending, day descending", (endNum - startNum + 1), true);
+  List<Encounter> rEncounters = queryResult.getResultList();
+  numResults = rEncounters.size();
 
-  }
 
-//--end unique counting------------------------------------------
 
 %>
 <title><%=CommonConfiguration.getHTMLTitle(context)%>
@@ -264,19 +241,26 @@ context=ServletUtilities.getContext(request);
 
 	ArrayList collabs = Collaboration.collaborationsForCurrentUser(request);
 
-  for (int f = 0; f < rEncounters.size(); f++) {
-    Encounter enc = (Encounter) rEncounters.get(f);
+  //the rows the page query returned, which may be fewer than a count cached earlier in the session
+  List<Encounter> displayed = EncounterQueryProcessor.getPage(request, rEncounters, Math.max(0, startNum - 1), endNum);
+  numResults = rEncounters.size();
+  if (displayed.size() > 0) {
+    EncounterQueryProcessor.logCollaborationAccess(request, displayed, queryResult.getQueryPrettyPrint());
+  }
+
+  for (int d = 0; d < displayed.size(); d++) {
+    int f = Math.max(0, startNum - 1) + d;
+    Encounter enc = displayed.get(d);
 		boolean visible = enc.canUserAccess(request);
 		String encUrlDir = "/" + CommonConfiguration.getDataDirectoryName(context) + enc.dir("");
 
     count++;
-    numResults++;
     //if ((enc.getDWCDecimalLatitude() != null) && (enc.getDWCDecimalLongitude() != null)) {
     //  haveGPSData.add(enc);
     //}
 
 
-    if ((numResults >= startNum) && (numResults <= endNum)) {
+    if (((f + 1) >= startNum) && ((f + 1) <= endNum)) {
 %>
 <tr class="lineitem<%= (visible ? "" : " no-access") %>">
   <td width="100" class="lineitem">
@@ -459,6 +443,13 @@ context=ServletUtilities.getContext(request);
       </strong>: <%=numResults%>
         <%
           if (request.getUserPrincipal()!=null) {
+            //counted over the whole result, so only when shown, and once per search
+            myShepherd.beginDBTransaction();
+            int[] sightingCounts = EncounterQueryProcessor.getSightingCounts(request, rEncounters);
+            myShepherd.rollbackDBTransaction();
+            int numUniqueEncounters = sightingCounts[0];
+            int numUnidentifiedEncounters = sightingCounts[1];
+            int numDuplicateEncounters = sightingCounts[2];
         %>
         <br/>
         <%=numUniqueEncounters%> <%=encprops.getProperty("identifiedUnique")%><br/>
@@ -23,7 +23,7 @@
 <!DOCTYPE html PUBLIC "-//W3C//DTD XHTML 1.0 Transitional//EN" "http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd">
 
 <%@ page contentType="text/html; charset=utf-8" language="java"
-         import="org.ecocean.servlet.ServletUtilities,java.text.DecimalFormat,org.ecocean.Util.MeasurementDesc,org.apache.commons.math.stat.descriptive.SummaryStatistics,java.util.Vector,java.util.Properties,org.ecocean.genetics.*,java.util.*,java.net.URI, org.ecocean.*, org.ecocean.security.Collaboration" %>
+         import="org.ecocean.servlet.ServletUtilities,java.text.DecimalFormat,org.ecocean.Util.MeasurementDesc,org.apache.commons.math3.stat.descriptive.SummaryStatistics,java.util.Vector,java.util.Properties,org.ecocean.genetics.*,java.util.*,java.net.URI, org.ecocean.*, org.ecocean.security.Collaboration" %>
 
 
 
@@ -58,263 +58,26 @@
     //get our Shepherd
     Shepherd myShepherd = new Shepherd(context);
 
-
-    
- 	//prep for measurements summary
- 	List<MeasurementDesc> measurementTypes=Util.findMeasurementDescs("en",context);
- 	int numMeasurementTypes=measurementTypes.size();
- 	SummaryStatistics[] measurementValues=new SummaryStatistics[numMeasurementTypes];
- 	SummaryStatistics[] measurementValuesMales=new SummaryStatistics[numMeasurementTypes];
- 	SummaryStatistics[] measurementValuesFemales=new SummaryStatistics[numMeasurementTypes];
- 	for(int b=0;b<measurementValues.length;b++){
- 		measurementValues[b]=new SummaryStatistics();
- 		measurementValuesMales[b]=new SummaryStatistics();
- 		measurementValuesFemales[b]=new SummaryStatistics();
-
- 	}
-
- 	
- 	//prep for biomeasurements summary
- 	List<MeasurementDesc> bioMeasurementTypes=Util.findBiologicalMeasurementDescs("en",context);
- 	int numBioMeasurementTypes=bioMeasurementTypes.size();
- 	SummaryStatistics[] bioMeasurementValues=new SummaryStatistics[numBioMeasurementTypes];
- 	SummaryStatistics[] bioMeasurementValuesMales=new SummaryStatistics[numBioMeasurementTypes];
- 	SummaryStatistics[] bioMeasurementValuesFemales=new SummaryStatistics[numBioMeasurementTypes];
- 	for(int b=0;b<bioMeasurementValues.length;b++){
- 		bioMeasurementValues[b]=new SummaryStatistics();
- 		bioMeasurementValuesMales[b]=new SummaryStatistics();
- 		bioMeasurementValuesFemales[b]=new SummaryStatistics();
- 	}
-
-
-
-    int numResults = 0;
-
-    //set up the vector for matching encounters
-    Vector rEncounters = new Vector();
-
     //kick off the transaction
     myShepherd.beginDBTransaction();
 
-    //start the query and get the results
+    //start the query; the results are read a page at a time by the analysis below
     String order = "";
-    EncounterQueryResult queryResult = EncounterQueryProcessor.processQuery(myShepherd, request, order);
-    rEncounters = queryResult.getResult();
-
-		Vector blocked = Encounter.blocked(rEncounters, request);
-		boolean accessible = (blocked.size() < 1);
-
-    //let's prep the HashTable for the haplo pie chart
-    ArrayList<String> allHaplos2=myShepherd.getAllHaplotypes(); 
-    int numHaplos2 = allHaplos2.size();
-    Hashtable<String,Integer> pieHashtable = new Hashtable<String,Integer>();
- 	for(int gg=0;gg<numHaplos2;gg++){
- 		String thisHaplo=allHaplos2.get(gg);
- 		pieHashtable.put(thisHaplo, new Integer(0));
- 	}
-    
- 	//let's prep the HashTable for the sex pie chart
- 	Hashtable<String,Integer> sexHashtable = new Hashtable<String,Integer>();
- 	sexHashtable.put("male", new Integer(0));
- 	sexHashtable.put("female", new Integer(0));
- 	sexHashtable.put("unknown", new Integer(0));
- 	
- 	//let's prep the HashTable for the species pie chart
- 	  ArrayList<String> allSpecies2=CommonConfiguration.getSequentialPropertyValues("genusSpecies",context); 
- 	  int numSpecies2 = allSpecies2.size();
- 	  Hashtable<String,Integer> speciesHashtable = new Hashtable<String,Integer>();
- 		for(int gg=0;gg<numSpecies2;gg++){
- 			String thisSpecies=allSpecies2.get(gg);
- 			
- 			StringTokenizer tokenizer=new StringTokenizer(thisSpecies," ");
- 	  		if(tokenizer.countTokens()>=2){
-
- 	  			thisSpecies=tokenizer.nextToken()+" "+tokenizer.nextToken().replaceAll(",","").replaceAll("_"," ");
- 	          	//enc.setGenus(tokenizer.nextToken());
- 	          	//enc.setSpecificEpithet();
-
- 	  	    }
- 			
- 			speciesHashtable.put(thisSpecies, new Integer(0));
- 		}
- 		
- 		
- 		//let's prep the HashTable for the country pie chart
- 		  ArrayList<String> allCountries=myShepherd.getAllCountries(); 
- 		  int numCountries= allCountries.size();
- 		  Hashtable<String,Integer> countriesHashtable = new Hashtable<String,Integer>();
- 			for(int gg=0;gg<numCountries;gg++){
- 				String thisCountry=allCountries.get(gg);
- 				if(thisCountry!=null){
- 					countriesHashtable.put(thisCountry, new Integer(0));
- 				}
- 				
- 			}
- 			
- 			
- 	 		//let's prep the HashTable for the assigned users pie chart
- 	 		  ArrayList<User> allUsers=myShepherd.getAllUsers(); 
- 	 		  int numUsers= allUsers.size();
- 	 		  Hashtable<String,Integer> usersHashtable = new Hashtable<String,Integer>();
- 	 			for(int gg=0;gg<numUsers;gg++){
- 	 				String thisUser=allUsers.get(gg).getUsername();
- 	 				if(thisUser!=null){
- 	 					usersHashtable.put(thisUser, new Integer(0));
- 	 				}
- 	 				
- 	 			}
- 	
- 			
- 			//let's prep the data structures for the discovery curve
- 			Hashtable<Integer,Integer> discoveryCurveInflectionPoints= new Hashtable<Integer,Integer>();
- 			ArrayList<String> dailyDuplicates=new ArrayList<String>();
- 					
- 			//let's prep the data structures for weekly frequency
- 			Hashtable<Integer,Integer> frequencyWeeks = new Hashtable<Integer,Integer>();
- 			ArrayList<String> dailyDuplicates2=new ArrayList<String>();
- 			for(int p=1;p<=53;p++){
- 				frequencyWeeks.put(p, 0);
- 			}	
- 					
- 					
- 	int resultSize=rEncounters.size();
- 	ArrayList<String> markedIndividuals=new ArrayList<String>();
- 	int numUniqueEncounters=0;
- 	 for(int y=0;y<resultSize;y++){
- 		 
- 		 
- 		 Encounter thisEnc=(Encounter)rEncounters.get(y);
- 		numUniqueEncounters++;
- 		 //markedIndividual tabulation
- 		 if((thisEnc.getIndividualID()!=null)&&(!thisEnc.getIndividualID().equals("Unassigned"))&&(!markedIndividuals.contains(thisEnc.getIndividualID().trim()))){
- 			 
- 			 //add this individual to the list
- 			 markedIndividuals.add(thisEnc.getIndividualID().trim());
- 			
- 			 //check for a daily duplicate
- 			 String dailyDuplicateUniqueID=thisEnc.getIndividualID()+":"+thisEnc.getYear()+":"+thisEnc.getMonth()+":"+thisEnc.getDay();
- 			 if(!dailyDuplicates.contains(dailyDuplicateUniqueID)){
- 				dailyDuplicates.add(dailyDuplicateUniqueID);
- 				 //set a discovery curve inflection point
- 				discoveryCurveInflectionPoints.put(numUniqueEncounters, markedIndividuals.size());
- 			 }
- 			 else{numUniqueEncounters--;}
-
- 		 }
- 		 
- 		 //weekly frequency tabulation
- 		 if((thisEnc.getYear()>0)&&(thisEnc.getMonth()>0)&&(thisEnc.getDay()>0)){
- 			 GregorianCalendar cal=new GregorianCalendar(thisEnc.getYear(),thisEnc.getMonth(), thisEnc.getDay());
- 			 int weekOfYear=cal.get(Calendar.WEEK_OF_YEAR);
- 			 Integer valueForWeek=frequencyWeeks.get(weekOfYear)+1;
- 			 frequencyWeeks.put(weekOfYear, valueForWeek);
- 		 }
- 		 	
- 		 
- 		 //haplotype ie chart prep
- 		 	if(thisEnc.getHaplotype()!=null){
-      	   		if(pieHashtable.containsKey(thisEnc.getHaplotype().trim())){
-      		   		Integer thisInt = pieHashtable.get(thisEnc.getHaplotype().trim())+1;
-      		   		pieHashtable.put(thisEnc.getHaplotype().trim(), thisInt);
-      	   		}
- 	 		}
- 		 
- 	    //sex pie chart 
- 	    if(thisEnc.getSex()!=null){
- 			if(thisEnc.getSex().equals("male")){
- 		   		Integer thisInt = sexHashtable.get("male")+1;
-  		   		sexHashtable.put("male", thisInt);
- 			}
- 			else if(thisEnc.getSex().equals("female")){
-  		   		Integer thisInt = sexHashtable.get("female")+1;
-  		   		sexHashtable.put("female", thisInt);
- 			}
- 	    	else{
- 	    		Integer thisInt = sexHashtable.get("unknown")+1;
-   		    	sexHashtable.put("unknown", thisInt);
- 	    	}
- 	    }
- 	    else{
- 	    	Integer thisInt = sexHashtable.get("unknown")+1;
-   		    sexHashtable.put("unknown", thisInt);
- 	    }
- 	    
- 		//check the encounter species
-		 
-		 if((thisEnc.getGenus()!=null)&&(thisEnc.getSpecificEpithet()!=null)){
-			 String encGenusSpecies=thisEnc.getGenus()+" "+thisEnc.getSpecificEpithet();
-			 if(speciesHashtable.containsKey(encGenusSpecies)){
-	      		   Integer thisInt = speciesHashtable.get(encGenusSpecies)+1;
-	      		   speciesHashtable.put(encGenusSpecies, thisInt);
-	      		   //numSpeciesEntries++;
-	      	   }
-			 
-		 }
-		 
-		 
-		 //check the Encounter country
-		 
-		 if(thisEnc.getCountry()!=null){
-			 if(countriesHashtable.containsKey(thisEnc.getCountry())){
-	      		   Integer thisInt = countriesHashtable.get(thisEnc.getCountry())+1;
-	      		   countriesHashtable.put(thisEnc.getCountry(), thisInt);
-	      	 		//numCountryEntries++;  
-			 }
-		 }
-		 
-		 //check the Encounter user
-		 if(thisEnc.getSubmitterID()!=null){
-			 if(usersHashtable.containsKey(thisEnc.getSubmitterID())){
-	      		   Integer thisInt = usersHashtable.get(thisEnc.getSubmitterID())+1;
-	      		   usersHashtable.put(thisEnc.getSubmitterID(), thisInt);
-	      	 		//numCountryEntries++;  
-			 }
-		 }
- 	    
- 		//measurement
-		for(int b=0;b<numMeasurementTypes;b++){
-			if(thisEnc.getMeasurement(measurementTypes.get(b).getType())!=null){
-				
-					measurementValues[b].addValue(thisEnc.getMeasurement(measurementTypes.get(b).getType()).getValue().doubleValue());
-
-					//males versus females analysis
-					if((thisEnc.getSex()!=null)&&(thisEnc.getSex().equals("male"))){
-						measurementValuesMales[b].addValue(thisEnc.getMeasurement(measurementTypes.get(b).getType()).getValue().doubleValue());
-					}
-					else if((thisEnc.getSex()!=null)&&(thisEnc.getSex().equals("female"))){
-						measurementValuesFemales[b].addValue(thisEnc.getMeasurement(measurementTypes.get(b).getType()).getValue().doubleValue());
-					}
-
-			}
-		}
-		
- 		//biomeasurement tabulation
-		for(int b=0;b<numBioMeasurementTypes;b++){
-			if(thisEnc.getBiologicalMeasurement(bioMeasurementTypes.get(b).getType())!=null){
-				
-					bioMeasurementValues[b].addValue(thisEnc.getBiologicalMeasurement(bioMeasurementTypes.get(b).getType()).getValue().doubleValue());
-
-					
-					//males versus females analysis
-					if((thisEnc.getSex()!=null)&&(thisEnc.getSex().equals("male"))){
-						bioMeasurementValuesMales[b].addValue(thisEnc.getBiologicalMeasurement(bioMeasurementTypes.get(b).getType()).getValue().doubleValue());
-					}
-					else if((thisEnc.getSex()!=null)&&(thisEnc.getSex().equals("female"))){
-						bioMeasurementValuesFemales[b].addValue(thisEnc.getBiologicalMeasurement(bioMeasurementTypes.get(b).getType()).getValue().doubleValue());
-					}
-					
-
-					
-			}
-		}
- 	    
- 	    
- 		 
- 	 }	
- 	 
- 	 
- 	 
- 	 
+    EncounterQueryResult queryResult = EncounterQueryProcessor.processQueryPaged(myShepherd, request, order, PagedQueryList.DEFAULT_PAGE_SIZE, false);
+    List<Encounter> rEncounters = queryResult.getResultList();
+
+    //tabulate every chart and summary in a single pass over the results
+    EncounterSearchAnalysis analysis = EncounterSearchAnalysis.forContext(myShepherd, context);
+    analysis.analyze(rEncounters, request);
+    boolean accessible = (analysis.getNumBlocked() < 1);
+    myShepherd.rollbackDBTransaction();
+    myShepherd.closeDBTransaction();
+
+    List<MeasurementDesc> measurementTypes = analysis.getMeasurementTypes();
+    int numMeasurementTypes = measurementTypes.size();
+    List<MeasurementDesc> bioMeasurementTypes = analysis.getBioMeasurementTypes();
+    int numBioMeasurementTypes = bioMeasurementTypes.size();
+    int resultSize = analysis.getNumEncounters();
   %>
 
   <title><%=CommonConfiguration.getHTMLTitle(context)%>
@@ -425,14 +188,14 @@
         data.addColumn('number', 'No. Recorded');
         data.addRows([
           <%
-          ArrayList<String> allHaplos=myShepherd.getAllHaplotypes(); 
+          List<String> allHaplos=analysis.getHaplotypes().getValues(); 
           int numHaplos = allHaplos.size();
           
 
           
           for(int hh=0;hh<numHaplos;hh++){
           %>
-          ['<%=allHaplos.get(hh)%>',    <%=pieHashtable.get(allHaplos.get(hh))%>]
+          ['<%=allHaplos.get(hh)%>',    <%=analysis.getHaplotypes().get(allHaplos.get(hh))%>]
 		  <%
 		  if(hh<(numHaplos-1)){
 		  %>
@@ -481,9 +244,9 @@
         data.addColumn('number', 'No. Recorded');
         data.addRows([
 
-          ['male',    <%=sexHashtable.get("male")%>],
-           ['female',    <%=sexHashtable.get("female")%>],
-           ['unknown',    <%=sexHashtable.get("unknown")%>]
+          ['male',    <%=analysis.getSexes().get("male")%>],
+           ['female',    <%=analysis.getSexes().get("female")%>],
+           ['unknown',    <%=analysis.getSexes().get("unknown")%>]
           
         ]);
 
@@ -511,17 +274,15 @@
         speciesData.addColumn('number', 'No. Recorded');
         speciesData.addRows([
           <%
-          ArrayList<String> allSpecies=CommonConfiguration.getSequentialPropertyValues("genusSpecies",context); 
-          int numSpecies = speciesHashtable.size();
-          Enumeration<String> speciesKeys=speciesHashtable.keys();
+          Iterator<String> speciesKeys=analysis.getSpecies().getValues().iterator();
 
-          while(speciesKeys.hasMoreElements()){
-        	  String keyName=speciesKeys.nextElement();
+          while(speciesKeys.hasNext()){
+        	  String keyName=speciesKeys.next();
         	  //System.out.println(keyName);
           %>
-          ['<%=keyName%>',    <%=speciesHashtable.get(keyName) %>]
+          ['<%=keyName%>',    <%=analysis.getSpecies().get(keyName) %>]
 		  <%
-		  if(speciesKeys.hasMoreElements()){
+		  if(speciesKeys.hasNext()){
 		  %>
 		  ,
 		  <%
@@ -548,17 +309,15 @@
         countriesData.addColumn('number', 'No. Recorded');
         countriesData.addRows([
           <%
-          //ArrayList<String> allCountries=myShepherd.getAllCountries(); 
-          //int numSpecies = speciesHashtable.size();
-          Enumeration<String> countriesKeys=countriesHashtable.keys();
+          Iterator<String> countriesKeys=analysis.getCountries().getValues().iterator();
 
-          while(countriesKeys.hasMoreElements()){
-        	  String keyName=countriesKeys.nextElement();
+          while(countriesKeys.hasNext()){
+        	  String keyName=countriesKeys.next();
         	  //System.out.println(keyName);
           %>
-          ['<%=keyName%>',    <%=countriesHashtable.get(keyName) %>]
+          ['<%=keyName%>',    <%=analysis.getCountries().get(keyName) %>]
 		  <%
-		  if(countriesKeys.hasMoreElements()){
+		  if(countriesKeys.hasNext()){
 		  %>
 		  ,
 		  <%
@@ -584,14 +343,14 @@
        usersData.addColumn('number', 'No. Encounters Assigned');
        usersData.addRows([
          <%
-         Enumeration<String> usersKeys=usersHashtable.keys();
+         Iterator<String> usersKeys=analysis.getUsers().getValues().iterator();
 
-         while(usersKeys.hasMoreElements()){
-       	  String keyName=usersKeys.nextElement();
+         while(usersKeys.hasNext()){
+       	  String keyName=usersKeys.next();
        	 %>
-         ['<%=keyName%>',    <%=usersHashtable.get(keyName) %>]
+         ['<%=keyName%>',    <%=analysis.getUsers().get(keyName) %>]
 		  <%
-		  if(usersKeys.hasMoreElements()){
+		  if(usersKeys.hasNext()){
 		  %>
 		  ,
 		  <%
@@ -618,15 +377,13 @@
        discoveryCurveData.addColumn('number', 'No. Marked Individuals');
        discoveryCurveData.addRows([
          <%
-         Enumeration<Integer> discoveryKeys=discoveryCurveInflectionPoints.keys();
+         int numDiscoveryPoints=analysis.getNumDiscoveryPoints();
 
-         while(discoveryKeys.hasMoreElements()){
-       	  Integer keyName=discoveryKeys.nextElement();
-       	  //System.out.println(keyName);
+         for(int d=0;d<numDiscoveryPoints;d++){
          %>
-         [<%=keyName.toString()%>,<%=discoveryCurveInflectionPoints.get(keyName).toString() %>]
+         [<%=analysis.getDiscoveryPointEncounters(d)%>,<%=analysis.getDiscoveryPointIndividuals(d) %>]
 		  <%
-		  if(discoveryKeys.hasMoreElements()){
+		  if(d<(numDiscoveryPoints-1)){
 		  %>
 		  ,
 		  <%
@@ -637,7 +394,7 @@
        ]);
     var discoveryCurveOptions = {
          width: 450, height: 300,
-         title: 'Discovery Curve of Marked Individuals (n=<%=markedIndividuals.size()%>)',
+         title: 'Discovery Curve of Marked Individuals (n=<%=analysis.getNumMarkedIndividuals()%>)',
          hAxis: {title: 'No. Encounters (daily duplicates removed)'},
          vAxis: {title: 'No. Marked Individuals'},
          pointSize: 3,
@@ -654,13 +411,9 @@
       frequencyData.addColumn('number', 'No. Encounters');
       frequencyData.addRows([
         <%
-        //Enumeration<Integer> discoveryKeys=discoveryCurveInflectionPoints.keys();
-
         for(int q=1;q<=53;q++){
-      	  //Integer keyName=discoveryKeys.nextElement();
-      	  //System.out.println(keyName);
         %>
-        [<%=q%>,<%=frequencyWeeks.get(new Integer(q)).toString() %>]
+        [<%=q%>,<%=analysis.getWeeklyFrequency(q) %>]
 		  <%
 		  if(q<53){
 		  %>
@@ -744,12 +497,12 @@
 				<% 
 				
 				//now report averages
-				if(measurementValues[b].getN()>0){
+				if(analysis.getMeasurementStatistics(b).getN()>0){
 				%>
-				&nbsp;<%=df.format(measurementValues[b].getMean()) %>&nbsp;<%=measurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(measurementValues[b].getStandardDeviation()) %>) N=<%=measurementValues[b].getN() %><br />
+				&nbsp;<%=df.format(analysis.getMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(analysis.getMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getMeasurementStatistics(b).getN() %><br />
 				<ul>
-					<li>Mean for males: <%=df.format(measurementValuesMales[b].getMean()) %>&nbsp;<%=measurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(measurementValuesMales[b].getStandardDeviation()) %>) N=<%=measurementValuesMales[b].getN() %></li>
-					<li>Mean for females: <%=df.format(measurementValuesFemales[b].getMean()) %>&nbsp;<%=measurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(measurementValuesFemales[b].getStandardDeviation()) %>) N=<%=measurementValuesFemales[b].getN() %></li>
+					<li>Mean for males: <%=df.format(analysis.getMaleMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(analysis.getMaleMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getMaleMeasurementStatistics(b).getN() %></li>
+					<li>Mean for females: <%=df.format(analysis.getFemaleMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(analysis.getFemaleMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getFemaleMeasurementStatistics(b).getN() %></li>
 				</ul>
 				<%
 				}
@@ -781,12 +534,12 @@
 				<% 
 				
 				//now report averages
-				if(bioMeasurementValues[b].getN()>0){
+				if(analysis.getBioMeasurementStatistics(b).getN()>0){
 				%>
-				&nbsp;<%=df.format(bioMeasurementValues[b].getMean()) %>&nbsp;<%=bioMeasurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(bioMeasurementValues[b].getStandardDeviation()) %>) N=<%=bioMeasurementValues[b].getN() %><br />
+				&nbsp;<%=df.format(analysis.getBioMeasurementStatistics(b).getMean()) %>&nbsp;<%=bioMeasurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(analysis.getBioMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getBioMeasurementStatistics(b).getN() %><br />
 				<ul>
-					<li>Mean for males: <%=df.format(bioMeasurementValuesMales[b].getMean()) %>&nbsp;<%=bioMeasurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(bioMeasurementValuesMales[b].getStandardDeviation()) %>) N=<%=bioMeasurementValuesMales[b].getN() %></li>
-					<li>Mean for females: <%=df.format(bioMeasurementValuesFemales[b].getMean()) %>&nbsp;<%=bioMeasurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(bioMeasurementValuesFemales[b].getStandardDeviation()) %>) N=<%=bioMeasurementValuesFemales[b].getN() %></li>
+					<li>Mean for males: <%=df.format(analysis.getMaleBioMeasurementStatistics(b).getMean()) %>&nbsp;<%=bioMeasurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(analysis.getMaleBioMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getMaleBioMeasurementStatistics(b).getN() %></li>
+					<li>Mean for females: <%=df.format(analysis.getFemaleBioMeasurementStatistics(b).getMean()) %>&nbsp;<%=bioMeasurementTypes.get(b).getUnits() %> (Std. Dev. <%=df.format(analysis.getFemaleBioMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getFemaleBioMeasurementStatistics(b).getN() %></li>
 					</ul>
 				<%
 				}
@@ -845,9 +598,6 @@
 
  
  
-   myShepherd.rollbackDBTransaction();
-   myShepherd.closeDBTransaction();
-   rEncounters = null;
  
 %>
 
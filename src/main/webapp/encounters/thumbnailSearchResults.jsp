@@ -98,9 +98,21 @@
 
 
     if (request.getParameter("noQuery") == null) {
-	  queryResult = EncounterQueryProcessor.processQuery(myShepherd, request, "year descending, month descending, day descending");
+	  queryResult = EncounterQueryProcessor.processQueryPaged(myShepherd, request, "year descending, month descending, day descending", PagedQueryList.DEFAULT_PAGE_SIZE, true);
 	
-    rEncounters=myShepherd.getThumbnails(request, queryResult.getResult().iterator(), startNum, endNum, keywords);
+    //page the images of the matching encounters in the datastore rather than walking every encounter
+    GalleryQuery gallery = myShepherd.getEncounterGallery(request, (PagedQueryList<Encounter>)queryResult.getResultList(), keywords);
+    rEncounters=gallery.getPage(startNum, endNum);
+
+    //log collaboration access only for the encounters whose images are displayed
+    ArrayList<Encounter> displayedEncounters = new ArrayList<Encounter>();
+    HashSet<String> displayedNumbers = new HashSet<String>();
+    for (SinglePhotoVideo spv : rEncounters) {
+      if (displayedNumbers.add(spv.getCorrespondingEncounterNumber()) && myShepherd.isEncounter(spv.getCorrespondingEncounterNumber())) {
+        displayedEncounters.add(myShepherd.getEncounter(spv.getCorrespondingEncounterNumber()));
+      }
+    }
+    EncounterQueryProcessor.logCollaborationAccess(request, displayedEncounters, queryResult.getQueryPrettyPrint());
     }
     else{
     	Query allQuery=myShepherd.getPM().newQuery("SELECT from org.ecocean.SinglePhotoVideo WHERE correspondingEncounterNumber != null");    	
@@ -34,9 +34,9 @@
 <div id="footer">
  
 
-          <p align="left"><a href="http://<%=CommonConfiguration.getURLLocation(request)%>/<%=ContextConfiguration.getDataDirForContext(context) %>/rss.xml"><img src="http://<%=CommonConfiguration.getURLLocation(request)%>/images/rssfeed.gif"
+          <p align="left"><a href="http://<%=CommonConfiguration.getURLLocation(request)%>/NewsFeed?format=rss&context=<%=context%>"><img src="http://<%=CommonConfiguration.getURLLocation(request)%>/images/rssfeed.gif"
                                                  width="80" height="15" border="0"
-                                                 alt="RSS News Feed"/></a> &nbsp;<a href="http://<%=CommonConfiguration.getURLLocation(request)%>/<%=ContextConfiguration.getDataDirForContext(context) %>/atom.xml"><img
+                                                 alt="RSS News Feed"/></a> &nbsp;<a href="http://<%=CommonConfiguration.getURLLocation(request)%>/NewsFeed?format=atom&context=<%=context%>"><img
             src="http://<%=CommonConfiguration.getURLLocation(request)%>/images/atom-feed-icon.gif" border="0" alt="ATOM News Feed"/></a></p>
   
   <p class="credit">This software is distributed under the <a
@@ -215,6 +215,10 @@ margin-bottom: 8px !important;
     var filename = "http://<%=CommonConfiguration.getURLLocation(request)%>/GetIndividualSearchGoogleMapsPoints?<%=request.getQueryString()%>";
     var overlays = [];
     var overlaysSet=false;
+    //large results come back clustered for the map's zoom level, and are then reloaded for each view the map settles on
+    var viewDependent=false;
+    var loadedView=null;
+    var fitToResults=true;
     
 
     
@@ -228,6 +232,7 @@ margin-bottom: 8px !important;
     	  
 
     	  iw.open(map);
+    	  google.maps.event.addListener(map, 'idle', reloadView);
     	  
   	  //adding the fullscreen control to exit fullscreen
   	  var fsControlDiv = document.createElement('DIV');
@@ -263,6 +268,8 @@ margin-bottom: 8px !important;
     		//hide header
     		$("#header_menu").hide();
     		
+    		fitToResults=true;
+    		loadedView=null;
     		if(overlaysSet){overlaysSet=false;setOverlays();}
     		//alert("Trying to execute fullscreen!");
     	}
@@ -273,6 +280,8 @@ margin-bottom: 8px !important;
     		$("#map_canvas").removeClass('full_screen_map');
 
     		initialize();
+    		fitToResults=true;
+    		loadedView=null;
     		if(overlaysSet){overlaysSet=false;setOverlays();}
     		//alert("Trying to execute exitFullScreen!");
     	}
@@ -353,7 +362,7 @@ function loadIndividualMapData(localResults,aspect){
 			};
 	  //alert("Results: "+localResults);
 	  //alert("Aspect is: "+aspect);
-	  currentFeature_or_Features = new GeoJSON(jQuery.parseJSON(localResults), googleOptions, map, bounds,aspect);
+	  currentFeature_or_Features = new GeoJSON(jQuery.parseJSON(localResults), googleOptions, map, (fitToResults ? bounds : null),aspect);
 	  	if (currentFeature_or_Features.type && currentFeature_or_Features.type == "Error"){
 			alert("GeoJSON read error: "+ currentFeature_or_Features.message);
 			//return;
@@ -521,6 +530,44 @@ function setInfoWindow (feature) {
 	});
 }
 
+function hasClusters(localResults){
+	var features = jQuery.parseJSON(localResults).features;
+	for (var i = 0; i < features.length; i++){
+		if(features[i].geometry.cluster){return true;}
+	}
+	return false;
+}
+
+//the zoom level and "minLon,minLat,maxLon,maxLat" bounding box of the map, as read by GetIndividualSearchGoogleMapsPoints
+function getViewParameters(){
+	var view="&zoom="+map.getZoom();
+	var mapBounds=map.getBounds();
+	if(mapBounds){
+		var sw=mapBounds.getSouthWest();
+		var ne=mapBounds.getNorthEast();
+		view+="&bbox="+sw.lng()+","+sw.lat()+","+ne.lng()+","+ne.lat();
+	}
+	return view;
+}
+
+function reloadView(){
+	if(!viewDependent){return;}
+	var view=getViewParameters();
+	if(view==loadedView){return;}
+	loadedView=view;
+	var xhr = new XMLHttpRequest();
+	xhr.open('GET', filename+view, true);
+	xhr.onload = function() {
+		//skip responses for views the map has already left
+		if(view!=loadedView){return;}
+		geoJSONResults=this.responseText;
+		fitToResults=false;
+		clearMap();
+		loadIndividualMapData(geoJSONResults,aspect);
+	};
+	xhr.send();
+}
+
 function setOverlays() {
 	  
 	  if(!overlaysSet){
@@ -530,12 +577,14 @@ function setOverlays() {
 			//alert("Reading GeoJSON...");
 			var xhr = new XMLHttpRequest();
 			//alert("Filename is: "+filename);
-			xhr.open('GET', filename, true);
+			loadedView="&zoom="+map.getZoom();
+			xhr.open('GET', filename+loadedView, true);
 			//alert("xhr is open...");
 			xhr.onload = function() {
 				//alert(this.responseText);
 				iw.close();
 				geoJSONResults=this.responseText;
+				viewDependent=hasClusters(geoJSONResults);
 				loadIndividualMapData(geoJSONResults,aspect);
 				
 				
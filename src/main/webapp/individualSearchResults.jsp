@@ -20,7 +20,7 @@
 <!DOCTYPE html PUBLIC "-//W3C//DTD XHTML 1.0 Transitional//EN"
 "http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd">
 <%@ page contentType="text/html; charset=utf-8" language="java"
-         import="org.ecocean.servlet.ServletUtilities,org.ecocean.*, java.util.Properties, java.util.Vector,java.util.ArrayList, org.ecocean.security.Collaboration" %>
+         import="org.ecocean.servlet.ServletUtilities,org.ecocean.*, java.util.Properties, java.util.Vector,java.util.ArrayList,java.util.List, org.ecocean.security.Collaboration" %>
 <%@ taglib uri="http://www.sunwesttek.com/di" prefix="di" %>
 
 
@@ -85,12 +85,13 @@
     int numResults = 0;
 
 
-    Vector<MarkedIndividual> rIndividuals = new Vector<MarkedIndividual>();
+    //a lazily paged list: only the individuals on the displayed page are loaded
+    List<MarkedIndividual> rIndividuals = new ArrayList<MarkedIndividual>();
     myShepherd.beginDBTransaction();
     String order ="";
 
     MarkedIndividualQueryResult result = IndividualQueryProcessor.processQuery(myShepherd, request, order);
-    rIndividuals = result.getResult();
+    rIndividuals = result.getResultList();
 
 
     if (rIndividuals.size() < listNum) {
@@ -20,7 +20,7 @@
 <!DOCTYPE html PUBLIC "-//W3C//DTD XHTML 1.0 Transitional//EN" "http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd">
 
 <%@ page contentType="text/html; charset=utf-8" language="java"
-         import="org.ecocean.servlet.ServletUtilities,java.text.DecimalFormat,javax.jdo.*,org.ecocean.genetics.*,java.util.*,java.net.URI, org.ecocean.*,org.ecocean.Util.MeasurementDesc,org.apache.commons.math.stat.descriptive.SynchronizedSummaryStatistics" %>
+         import="org.ecocean.servlet.ServletUtilities,java.text.DecimalFormat,javax.jdo.*,org.ecocean.genetics.*,java.util.*,java.net.URI, org.ecocean.*,org.ecocean.Util.MeasurementDesc,org.apache.commons.math3.stat.descriptive.SummaryStatistics" %>
 
 
 
@@ -60,53 +60,6 @@
     
     DecimalFormat df = new DecimalFormat("#.##");
 
-    int numResults = 0;
-    int numResultsWithTissueSamples=0;
-    int numResultsWithGeneticSex=0;
-    int numResultsWithMsMarkers=0;
-    int numResultsWithHaplotype=0;
-    
-	//prep for measurements summary
-	List<MeasurementDesc> measurementTypes=Util.findMeasurementDescs("en",context);
-	int numMeasurementTypes=measurementTypes.size();
-	SynchronizedSummaryStatistics[] measurementValues=new SynchronizedSummaryStatistics[numMeasurementTypes];
-	SynchronizedSummaryStatistics[] measurementValuesMales=new SynchronizedSummaryStatistics[numMeasurementTypes];
-	SynchronizedSummaryStatistics[] measurementValuesFemales=new SynchronizedSummaryStatistics[numMeasurementTypes];
-	SynchronizedSummaryStatistics[] measurementValuesNew=new SynchronizedSummaryStatistics[numMeasurementTypes];
-	SynchronizedSummaryStatistics[] measurementValuesResights=new SynchronizedSummaryStatistics[numMeasurementTypes];
-	String[] smallestIndies=new String[numMeasurementTypes];
-	String[] largestIndies=new String[numMeasurementTypes];
-	for(int b=0;b<measurementValues.length;b++){
-		measurementValues[b]=new SynchronizedSummaryStatistics();
-		measurementValuesMales[b]=new SynchronizedSummaryStatistics();
-		measurementValuesFemales[b]=new SynchronizedSummaryStatistics();
-		measurementValuesNew[b]=new SynchronizedSummaryStatistics();
-		measurementValuesResights[b]=new SynchronizedSummaryStatistics();
-		smallestIndies[b]="";
-		largestIndies[b]="";
-	}
-
-	
-	//prep for biomeasurements summary
-	List<MeasurementDesc> bioMeasurementTypes=Util.findBiologicalMeasurementDescs("en",context);
-	int numBioMeasurementTypes=bioMeasurementTypes.size();
-	SynchronizedSummaryStatistics[] bioMeasurementValues=new SynchronizedSummaryStatistics[numBioMeasurementTypes];
-	SynchronizedSummaryStatistics[] bioMeasurementValuesMales=new SynchronizedSummaryStatistics[numBioMeasurementTypes];
-	SynchronizedSummaryStatistics[] bioMeasurementValuesFemales=new SynchronizedSummaryStatistics[numBioMeasurementTypes];
-	SynchronizedSummaryStatistics[] bioMeasurementValuesNew=new SynchronizedSummaryStatistics[numBioMeasurementTypes];
-	SynchronizedSummaryStatistics[] bioMeasurementValuesResights=new SynchronizedSummaryStatistics[numBioMeasurementTypes];
-	String[] bioSmallestIndies=new String[numBioMeasurementTypes];
-	String[] bioLargestIndies=new String[numBioMeasurementTypes];
-	for(int b=0;b<bioMeasurementValues.length;b++){
-		bioMeasurementValues[b]=new SynchronizedSummaryStatistics();
-		bioMeasurementValuesMales[b]=new SynchronizedSummaryStatistics();
-		bioMeasurementValuesFemales[b]=new SynchronizedSummaryStatistics();
-		bioMeasurementValuesNew[b]=new SynchronizedSummaryStatistics();
-		bioMeasurementValuesResights[b]=new SynchronizedSummaryStatistics();
-		bioSmallestIndies[b]="";
-		bioLargestIndies[b]="";
-	}
-	
 	//retrieve dates from the URL
  int day1 = 1, day2 = 31, month1 = 1, month2 = 12, year1 = 0, year2 = 3000;
     try {
@@ -126,28 +79,15 @@
     } catch (NumberFormatException nfe) {
     }
 
-	
-	
+
     //kick off the transaction
     myShepherd.beginDBTransaction();
 
     //start the query and get the results
     String order = "";
-    Vector<MarkedIndividual> rIndividuals = new Vector<MarkedIndividual>();
-    myShepherd.beginDBTransaction();
-
     MarkedIndividualQueryResult result = IndividualQueryProcessor.processQuery(myShepherd, request, order);
-    rIndividuals = result.getResult();
-    
-    //let's prep the HashTable for the haplo pie chart
-    ArrayList<String> allHaplos2=myShepherd.getAllHaplotypes(); 
-    int numHaplos2 = allHaplos2.size();
-    Hashtable<String,Integer> pieHashtable = new Hashtable<String,Integer>();
- 	for(int gg=0;gg<numHaplos2;gg++){
- 		String thisHaplo=allHaplos2.get(gg);
- 		pieHashtable.put(thisHaplo, new Integer(0));
- 	}
- 	
+    List<MarkedIndividual> rIndividuals = result.getResultList();
+
  	//let's prep the max years between sightings column chart
 	Query yearsCoverageQuery=myShepherd.getPM().newQuery(result.getJDOQLRepresentation().replaceFirst("SELECT FROM","SELECT max(maxYearsBetweenResightings) FROM"));
  	int numYearsCoverage=0;
@@ -156,177 +96,19 @@
  		e.printStackTrace();
  		yearsCoverageQuery.closeAll();
  	}
- 	int[] resightingYearsArray=new int[numYearsCoverage];
- 	for(int t=0;t<numYearsCoverage;t++){
- 		resightingYearsArray[t]=0;
- 	}
-    
- 	//let's prep the HashTable for the sex pie chart
- 	Hashtable<String,Integer> sexHashtable = new Hashtable<String,Integer>();
- 	sexHashtable.put("male", new Integer(0));
- 	sexHashtable.put("female", new Integer(0));
- 	sexHashtable.put("unknown", new Integer(0));
- 	
- 	//let's prep for the firstSightings table
- 	Hashtable<String,Integer> firstSightingsHashtable = new Hashtable<String,Integer>();
- 	firstSightingsHashtable.put("First sighting", new Integer(0));
- 	firstSightingsHashtable.put("Previously sighted", new Integer(0));
-
-	 Float maxTravelDistance=new Float(0);
-	 long maxTimeBetweenResights=0;
-	 String longestResightedIndividual="";
-	 String farthestTravelingIndividual="";
-	 
-
-	 
- 	int resultSize=rIndividuals.size();
- 	 for(int y=0;y<resultSize;y++){
- 		MarkedIndividual thisEnc=(MarkedIndividual)rIndividuals.get(y);
- 		 
- 		//genetic analysis checks
- 		//and haplotype ie chart prep
- 		 if(thisEnc.getHaplotype()!=null){
-      	   if(pieHashtable.containsKey(thisEnc.getHaplotype().trim())){
-      		   Integer thisInt = pieHashtable.get(thisEnc.getHaplotype().trim())+1;
-      		   pieHashtable.put(thisEnc.getHaplotype().trim(), thisInt);
-      		   numResultsWithHaplotype++;
-      	   }
- 	 	} 
- 		if(thisEnc.hasMsMarkers()){numResultsWithMsMarkers++;} 
- 		if(thisEnc.hasGeneticSex()){numResultsWithGeneticSex++;}
- 		
- 		//measurement
-		for(int b=0;b<numMeasurementTypes;b++){
-			if(thisEnc.getAverageMeasurementInPeriod(year1, month1, year2, month2, measurementTypes.get(b).getType())!=null){
-				
-					measurementValues[b].addValue(thisEnc.getAverageMeasurementInPeriod(year1, month1, year2, month2, measurementTypes.get(b).getType()).doubleValue());
-					
-					//smallest vs largest analysis
-					if(thisEnc.getAverageMeasurementInPeriod(year1, month1, year2, month2, measurementTypes.get(b).getType()).doubleValue()<=measurementValues[b].getMin()){
-						smallestIndies[b]=thisEnc.getIndividualID();
-					}
-					else if(thisEnc.getAverageMeasurementInPeriod(year1, month1, year2, month2, measurementTypes.get(b).getType()).doubleValue()>=measurementValues[b].getMax()){
-						largestIndies[b]=thisEnc.getIndividualID();
-					}
-					
-					//males versus females analysis
-					if((thisEnc.getSex()!=null)&&(thisEnc.getSex().equals("male"))){
-						measurementValuesMales[b].addValue(thisEnc.getAverageMeasurementInPeriod(year1, month1, year2, month2, measurementTypes.get(b).getType()).doubleValue());
-					}
-					else if((thisEnc.getSex()!=null)&&(thisEnc.getSex().equals("female"))){
-						measurementValuesFemales[b].addValue(thisEnc.getAverageMeasurementInPeriod(year1, month1, year2, month2, measurementTypes.get(b).getType()).doubleValue());
-					}
-					
-					//first sights vs resights analysis
-					 if(thisEnc.getEarliestSightingTime()<(new GregorianCalendar(year1,month1,day1)).getTimeInMillis()){
-						 measurementValuesResights[b].addValue(thisEnc.getAverageMeasurementInPeriod(year1, month1, year2, month2, measurementTypes.get(b).getType()).doubleValue());
-							
-				 		   
-					 }
-					 else{
-						 measurementValuesNew[b].addValue(thisEnc.getAverageMeasurementInPeriod(year1, month1, year2, month2, measurementTypes.get(b).getType()).doubleValue());
-							
-					 }
-					
-					
-					
-			}
-		}
-		
- 		//biomeasurement tabulation
-		for(int b=0;b<numBioMeasurementTypes;b++){
-			if(thisEnc.getAverageBiologicalMeasurementInPeriod(year1, month1, year2, month2, bioMeasurementTypes.get(b).getType())!=null){
-				
-					double val=thisEnc.getAverageBiologicalMeasurementInPeriod(year1, month1, year2, month2, bioMeasurementTypes.get(b).getType()).doubleValue();
-				
-					bioMeasurementValues[b].addValue(val);
-					//System.out.println(bioMeasurementTypes.get(b).getType()+":"+val);
-					//smallest vs largest analysis
-					if(val<=bioMeasurementValues[b].getMin()){
-						bioSmallestIndies[b]=thisEnc.getIndividualID();
-					}
-					else if(val>=bioMeasurementValues[b].getMax()){
-						bioLargestIndies[b]=thisEnc.getIndividualID();
-					}
-					
-					//males versus females analysis
-					if((thisEnc.getSex()!=null)&&(thisEnc.getSex().equals("male"))){
-						bioMeasurementValuesMales[b].addValue(val);
-					}
-					else if((thisEnc.getSex()!=null)&&(thisEnc.getSex().equals("female"))){
-						bioMeasurementValuesFemales[b].addValue(val);
-					}
-					
-					//first sights vs resights analysis
-					 if(thisEnc.getEarliestSightingTime()<(new GregorianCalendar(year1,month1,day1)).getTimeInMillis()){
-						 bioMeasurementValuesResights[b].addValue(val);
-							
-				 		   
-					 }
-					 else{
-						 bioMeasurementValuesNew[b].addValue(val);
-							
-					 }
-					
-					
-					
-			}
-		}
-		
- 		 
- 	    //sex pie chart 	
- 	    if(thisEnc.getSex()!=null){
- 			if(thisEnc.getSex().equals("male")){
- 		   		Integer thisInt = sexHashtable.get("male")+1;
-  		   		sexHashtable.put("male", thisInt);
- 			}
- 			else if(thisEnc.getSex().equals("female")){
-  		   		Integer thisInt = sexHashtable.get("female")+1;
-  		   		sexHashtable.put("female", thisInt);
- 			}
- 	   		else{
- 	    		Integer thisInt = sexHashtable.get("unknown")+1;
-   		    	sexHashtable.put("unknown", thisInt);
- 	    	}
- 	    }
- 	    else{
- 	    	Integer thisInt = sexHashtable.get("unknown")+1;
-   		    sexHashtable.put("unknown", thisInt);
- 	    }
- 	    
-		 //max distance calc
-		 if (thisEnc.getMaxDistanceBetweenTwoSightings()>maxTravelDistance){
-			 maxTravelDistance=thisEnc.getMaxDistanceBetweenTwoSightings();
-			 farthestTravelingIndividual=thisEnc.getIndividualID();
-		 }
-		 
-		 //max time calc
-		 if (thisEnc.getMaxTimeBetweenTwoSightings()>maxTimeBetweenResights){
-			 maxTimeBetweenResights=thisEnc.getMaxTimeBetweenTwoSightings();
-			 longestResightedIndividual=thisEnc.getIndividualID();
-		 }
-		 
-		 //maxYearsBetweenSightings calc
-		 resightingYearsArray[thisEnc.getMaxNumYearsBetweenSightings()]++;
-		 
-		 //firstSightings distribution
-		 if(thisEnc.getEarliestSightingTime()<(new GregorianCalendar(year1,month1,day1)).getTimeInMillis()){
-	 		   Integer thisInt = firstSightingsHashtable.get("Previously sighted")+1;
-	  		   firstSightingsHashtable.put("Previously sighted", thisInt);
-	 		   
-		 }
-		 else{
-			 Integer thisInt = firstSightingsHashtable.get("First sighting")+1;
-	  		   firstSightingsHashtable.put("First sighting", thisInt);
-		 }
-		 
- 		 
- 	 }	
- 	 
-
-
- 	 
- 	 
+
+    //tabulate every chart and summary, walking each individual's encounters once
+    IndividualSearchAnalysis analysis = new IndividualSearchAnalysis(year1, month1, day1, year2, month2, myShepherd.getAllHaplotypes(), Util.findMeasurementDescs("en",context), Util.findBiologicalMeasurementDescs("en",context));
+    analysis.setMaxYearsBetweenResightings(numYearsCoverage-1);
+    analysis.analyze(rIndividuals);
+
+    List<MeasurementDesc> measurementTypes = analysis.getMeasurementTypes();
+    int numMeasurementTypes = measurementTypes.size();
+    List<MeasurementDesc> bioMeasurementTypes = analysis.getBioMeasurementTypes();
+    int numBioMeasurementTypes = bioMeasurementTypes.size();
+    int resultSize = analysis.getNumIndividuals();
+    float maxTravelDistance = analysis.getMaxTravelDistance();
+    long maxTimeBetweenResights = analysis.getMaxTimeBetweenResights();
   %>
 
   <title><%=CommonConfiguration.getHTMLTitle(context)%>
@@ -436,14 +218,14 @@
         data.addColumn('number', 'No. Recorded');
         data.addRows([
           <%
-          ArrayList<String> allHaplos=myShepherd.getAllHaplotypes(); 
+          List<String> allHaplos=analysis.getHaplotypes().getValues(); 
           int numHaplos = allHaplos.size();
           
 
           
           for(int hh=0;hh<numHaplos;hh++){
           %>
-          ['<%=allHaplos.get(hh)%>',    <%=pieHashtable.get(allHaplos.get(hh))%>]
+          ['<%=allHaplos.get(hh)%>',    <%=analysis.getHaplotypes().get(allHaplos.get(hh))%>]
 		  <%
 		  if(hh<(numHaplos-1)){
 		  %>
@@ -492,9 +274,9 @@
         data.addColumn('number', '<%=encprops.getProperty("numberRecorded") %>');
         data.addRows([
 
-          ['<%=encprops.getProperty("male") %>',    <%=sexHashtable.get("male")%>],
-           ['<%=encprops.getProperty("female") %>',    <%=sexHashtable.get("female")%>],
-           ['<%=encprops.getProperty("unknown") %>',    <%=sexHashtable.get("unknown")%>]
+          ['<%=encprops.getProperty("male") %>',    <%=analysis.getSexes().get("male")%>],
+           ['<%=encprops.getProperty("female") %>',    <%=analysis.getSexes().get("female")%>],
+           ['<%=encprops.getProperty("unknown") %>',    <%=analysis.getSexes().get("unknown")%>]
           
         ]);
 
@@ -523,8 +305,8 @@
         data.addColumn('number', '<%=encprops.getProperty("numberRecorded") %>');
         data.addRows([
 
-          ['<%=encprops.getProperty("firstSighting") %>',    <%=firstSightingsHashtable.get("First sighting")%>],
-           ['<%=encprops.getProperty("previouslyIdentified") %>',    <%=firstSightingsHashtable.get("Previously sighted")%>]
+          ['<%=encprops.getProperty("firstSighting") %>',    <%=analysis.getFirstSightings().get(IndividualSearchAnalysis.FIRST_SIGHTING)%>],
+           ['<%=encprops.getProperty("previouslyIdentified") %>',    <%=analysis.getFirstSightings().get(IndividualSearchAnalysis.PREVIOUSLY_SIGHTED)%>]
            
 
         ]);
@@ -557,7 +339,7 @@
         <%              
         for(int p=0;p<numYearsCoverage;p++){
         %>
-          ['<%=p%>', <%=resightingYearsArray[p]%>]
+          ['<%=p%>', <%=analysis.getResightingYears(p)%>]
 		<%
 		if(p<(numYearsCoverage-1)){
 		%>
@@ -628,24 +410,22 @@ if (request.getQueryString() != null) {
 
 <p><%=encprops.getProperty("numberMarkedIndividuals") %> <%=resultSize %>
 <ul>
-<li><%=encprops.getProperty("numberGenotype") %> <%=numResultsWithMsMarkers %>
-<li><%=encprops.getProperty("numberHaplotype") %> <%=numResultsWithHaplotype %></li>
-<li><%=encprops.getProperty("numberGeneticSex") %> <%=numResultsWithGeneticSex %></li>
+<li><%=encprops.getProperty("numberGenotype") %> <%=analysis.getNumWithMsMarkers() %>
+<li><%=encprops.getProperty("numberHaplotype") %> <%=analysis.getNumWithHaplotype() %></li>
+<li><%=encprops.getProperty("numberGeneticSex") %> <%=analysis.getNumWithGeneticSex() %></li>
 </ul>
 </p>
 <%
 
 if(maxTravelDistance>0){
 %>
-<p><%=encprops.getProperty("individualLargestDistance") %> <a href="individuals.jsp?number=<%=farthestTravelingIndividual %>"><%=farthestTravelingIndividual %></a> (<%=df.format(maxTravelDistance/1000) %> km)</p>
+<p><%=encprops.getProperty("individualLargestDistance") %> <a href="individuals.jsp?number=<%=analysis.getFarthestTravelingIndividual() %>"><%=analysis.getFarthestTravelingIndividual() %></a> (<%=df.format(maxTravelDistance/1000) %> km)</p>
  <%
 }
 if(maxTimeBetweenResights>0){
-	 //long maxTimeBetweenResights=0;
-	 //String longestResightedIndividual="";
 	 double bigTime=((double)maxTimeBetweenResights/1000/60/60/24/365);
 %>
-<p><%=encprops.getProperty("individualLongestTime") %> <a href="individuals.jsp?number=<%=longestResightedIndividual %>"><%=longestResightedIndividual %></a> (<%=df.format(bigTime) %> years)</p>
+<p><%=encprops.getProperty("individualLongestTime") %> <a href="individuals.jsp?number=<%=analysis.getLongestResightedIndividual() %>"><%=analysis.getLongestResightedIndividual() %></a> (<%=df.format(bigTime) %> years)</p>
  <%
 }
 %>
@@ -660,16 +440,16 @@ if(maxTimeBetweenResights>0){
 				<% 
 				
 				//now report averages
-				if(measurementValues[b].getN()>0){
+				if(analysis.getMeasurementStatistics(b).getN()>0){
 				%>
-				&nbsp;<%=df.format(measurementValues[b].getMean()) %>&nbsp;<%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(measurementValues[b].getStandardDeviation()) %>) N=<%=measurementValues[b].getN() %><br />
+				&nbsp;<%=df.format(analysis.getMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(analysis.getMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getMeasurementStatistics(b).getN() %><br />
 				<ul>
-					<li><%=encprops.getProperty("largest") %> <%=df.format(measurementValues[b].getMax()) %> <%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<a href="individuals.jsp?number=<%=largestIndies[b] %>"><%=largestIndies[b] %></a>)</li>
-					<li><%=encprops.getProperty("smallest") %> <%=df.format(measurementValues[b].getMin()) %> <%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<a href="individuals.jsp?number=<%=smallestIndies[b] %>"><%=smallestIndies[b] %></a>)</li>
-					<li><%=encprops.getProperty("meanMales") %> <%=df.format(measurementValuesMales[b].getMean()) %>&nbsp;<%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(measurementValuesMales[b].getStandardDeviation()) %>) N=<%=measurementValuesMales[b].getN() %></li>
-					<li><%=encprops.getProperty("meanFemales") %> <%=df.format(measurementValuesFemales[b].getMean()) %>&nbsp;<%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(measurementValuesFemales[b].getStandardDeviation()) %>) N=<%=measurementValuesFemales[b].getN() %></li>
-					<li><%=encprops.getProperty("meanNew") %> <%=df.format(measurementValuesNew[b].getMean()) %>&nbsp;<%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(measurementValuesNew[b].getStandardDeviation()) %>) N=<%=measurementValuesNew[b].getN() %></li>
-					<li><%=encprops.getProperty("meanResight") %> <%=df.format(measurementValuesResights[b].getMean()) %>&nbsp;<%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(measurementValuesResights[b].getStandardDeviation()) %>) N=<%=measurementValuesResights[b].getN() %></li>	
+					<li><%=encprops.getProperty("largest") %> <%=df.format(analysis.getMeasurementStatistics(b).getMax()) %> <%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<a href="individuals.jsp?number=<%=analysis.getLargestIndividual(b) %>"><%=analysis.getLargestIndividual(b) %></a>)</li>
+					<li><%=encprops.getProperty("smallest") %> <%=df.format(analysis.getMeasurementStatistics(b).getMin()) %> <%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<a href="individuals.jsp?number=<%=analysis.getSmallestIndividual(b) %>"><%=analysis.getSmallestIndividual(b) %></a>)</li>
+					<li><%=encprops.getProperty("meanMales") %> <%=df.format(analysis.getMaleMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(analysis.getMaleMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getMaleMeasurementStatistics(b).getN() %></li>
+					<li><%=encprops.getProperty("meanFemales") %> <%=df.format(analysis.getFemaleMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(analysis.getFemaleMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getFemaleMeasurementStatistics(b).getN() %></li>
+					<li><%=encprops.getProperty("meanNew") %> <%=df.format(analysis.getNewMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(analysis.getNewMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getNewMeasurementStatistics(b).getN() %></li>
+					<li><%=encprops.getProperty("meanResight") %> <%=df.format(analysis.getResightMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementLabels.getProperty(measurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(analysis.getResightMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getResightMeasurementStatistics(b).getN() %></li>	
 				</ul>
 				<%
 				}
@@ -702,16 +482,16 @@ if(maxTimeBetweenResights>0){
 				<% 
 				
 				//now report averages
-				if(bioMeasurementValues[b].getN()>0){
+				if(analysis.getBioMeasurementStatistics(b).getN()>0){
 				%>
-				&nbsp;<%=df.format(bioMeasurementValues[b].getMean()) %>&nbsp;<%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(bioMeasurementValues[b].getStandardDeviation()) %>) N=<%=bioMeasurementValues[b].getN() %><br />
+				&nbsp;<%=df.format(analysis.getBioMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(analysis.getBioMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getBioMeasurementStatistics(b).getN() %><br />
 				<ul>
-					<li><%=encprops.getProperty("largest") %> <%=df.format(bioMeasurementValues[b].getMax()) %> <%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<a href="individuals.jsp?number=<%=bioLargestIndies[b] %>"><%=bioLargestIndies[b] %></a>)</li>
-					<li><%=encprops.getProperty("smallest") %> <%=df.format(bioMeasurementValues[b].getMin()) %> <%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<a href="individuals.jsp?number=<%=bioSmallestIndies[b] %>"><%=bioSmallestIndies[b] %></a>)</li>
-					<li><%=encprops.getProperty("meanMales") %> <%=df.format(bioMeasurementValuesMales[b].getMean()) %>&nbsp;<%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(bioMeasurementValuesMales[b].getStandardDeviation()) %>) N=<%=bioMeasurementValuesMales[b].getN() %></li>
-					<li><%=encprops.getProperty("meanFemales") %> <%=df.format(bioMeasurementValuesFemales[b].getMean()) %>&nbsp;<%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(bioMeasurementValuesFemales[b].getStandardDeviation()) %>) N=<%=bioMeasurementValuesFemales[b].getN() %></li>
-					<li><%=encprops.getProperty("meanNew") %> <%=df.format(bioMeasurementValuesNew[b].getMean()) %>&nbsp;<%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(bioMeasurementValuesNew[b].getStandardDeviation()) %>) N=<%=bioMeasurementValuesNew[b].getN() %></li>
-					<li><%=encprops.getProperty("meanResight") %> <%=df.format(bioMeasurementValuesResights[b].getMean()) %>&nbsp;<%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(bioMeasurementValuesResights[b].getStandardDeviation()) %>) N=<%=bioMeasurementValuesResights[b].getN() %></li>	
+					<li><%=encprops.getProperty("largest") %> <%=df.format(analysis.getBioMeasurementStatistics(b).getMax()) %> <%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<a href="individuals.jsp?number=<%=analysis.getBioLargestIndividual(b) %>"><%=analysis.getBioLargestIndividual(b) %></a>)</li>
+					<li><%=encprops.getProperty("smallest") %> <%=df.format(analysis.getBioMeasurementStatistics(b).getMin()) %> <%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<a href="individuals.jsp?number=<%=analysis.getBioSmallestIndividual(b) %>"><%=analysis.getBioSmallestIndividual(b) %></a>)</li>
+					<li><%=encprops.getProperty("meanMales") %> <%=df.format(analysis.getMaleBioMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(analysis.getMaleBioMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getMaleBioMeasurementStatistics(b).getN() %></li>
+					<li><%=encprops.getProperty("meanFemales") %> <%=df.format(analysis.getFemaleBioMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(analysis.getFemaleBioMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getFemaleBioMeasurementStatistics(b).getN() %></li>
+					<li><%=encprops.getProperty("meanNew") %> <%=df.format(analysis.getNewBioMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(analysis.getNewBioMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getNewBioMeasurementStatistics(b).getN() %></li>
+					<li><%=encprops.getProperty("meanResight") %> <%=df.format(analysis.getResightBioMeasurementStatistics(b).getMean()) %>&nbsp;<%=measurementLabels.getProperty(bioMeasurementTypes.get(b).getUnits()+".label") %> (<%=encprops.getProperty("standardDeviation") %> <%=df.format(analysis.getResightBioMeasurementStatistics(b).getStandardDeviation()) %>) N=<%=analysis.getResightBioMeasurementStatistics(b).getN() %></li>	
 				</ul>
 				<%
 				}
@@ -10,28 +10,40 @@ var GeoJSON = function( geojson, options, map, bounds,aspect ){
 				opts.position = new google.maps.LatLng(geojsonGeometry.coordinates[1], geojsonGeometry.coordinates[0]);
 				googleObj = new google.maps.Marker(opts);
 				
+				//a cluster of points is labeled with their number
+				var pinLabel = geojsonGeometry.cluster ? geojsonGeometry.count : '';
 				if(aspect == "sex"){
-					googleObj.setIcon('https://chart.googleapis.com/chart?chst=d_map_pin_letter&chld=|'+geojsonGeometry.sexColor);
+					googleObj.setIcon('https://chart.googleapis.com/chart?chst=d_map_pin_letter&chld='+pinLabel+'|'+geojsonGeometry.sexColor);
 				}
 				else if(aspect == "haplotype"){
-					googleObj.setIcon('https://chart.googleapis.com/chart?chst=d_map_pin_letter&chld=|'+geojsonGeometry.haplotypeColor);
+					googleObj.setIcon('https://chart.googleapis.com/chart?chst=d_map_pin_letter&chld='+pinLabel+'|'+geojsonGeometry.haplotypeColor);
 				}
 				else if(aspect == "species"){
-									googleObj.setIcon('https://chart.googleapis.com/chart?chst=d_map_pin_letter&chld=|'+geojsonGeometry.speciesColor);
+									googleObj.setIcon('https://chart.googleapis.com/chart?chst=d_map_pin_letter&chld='+pinLabel+'|'+geojsonGeometry.speciesColor);
 				}
 				else{
-					googleObj.setIcon('https://chart.googleapis.com/chart?chst=d_map_pin_letter&chld=|'+geojsonGeometry.color);
+					googleObj.setIcon('https://chart.googleapis.com/chart?chst=d_map_pin_letter&chld='+pinLabel+'|'+geojsonGeometry.color);
 				}
 				
 				
 					 
-				//reset bounds
-				bounds.extend(googleObj.getPosition());
-				map.fitBounds(bounds);
-				google.maps.event.addListener(googleObj,'click', function() {
-					(new google.maps.InfoWindow({content: '<strong><a target=\"_blank\" href=\"http://'+geojsonGeometry.rootURL+'/individuals.jsp?number='+geojsonGeometry.individualID+'\">'+geojsonGeometry.individualID+'</a></strong><br /><table><tr><td><img align=\"top\" border=\"1\" src=\"/'+geojsonGeometry.dataDirectoryName+'/encounters/'+geojsonGeometry.encSubdir+'/thumb.jpg\"></td><td>Date: '+geojsonGeometry.date+'<br /><br /><a target=\"_blank\" href=\"http://'+geojsonGeometry.rootURL+'/encounters/encounter.jsp?number='+geojsonGeometry.catalogNumber+'\" >Go to encounter</a></td></tr></table>'})).open(map, this);		
+				//reset bounds, unless the features are for the current view
+				if(bounds){
+					bounds.extend(googleObj.getPosition());
+					map.fitBounds(bounds);
+				}
+				if(geojsonGeometry.cluster){
+					google.maps.event.addListener(googleObj,'click', function() {
+						map.setCenter(this.getPosition());
+						map.setZoom(map.getZoom()+2);
+					});
+				}
+				else{
+					google.maps.event.addListener(googleObj,'click', function() {
+						(new google.maps.InfoWindow({content: '<strong><a target=\"_blank\" href=\"http://'+geojsonGeometry.rootURL+'/individuals.jsp?number='+geojsonGeometry.individualID+'\">'+geojsonGeometry.individualID+'</a></strong><br /><table><tr><td><img align=\"top\" border=\"1\" src=\"/'+geojsonGeometry.dataDirectoryName+'/encounters/'+geojsonGeometry.encSubdir+'/thumb.jpg\"></td><td>Date: '+geojsonGeometry.date+'<br /><br /><a target=\"_blank\" href=\"http://'+geojsonGeometry.rootURL+'/encounters/encounter.jsp?number='+geojsonGeometry.catalogNumber+'\" >Go to encounter</a></td></tr></table>'})).open(map, this);		
 					
-				});
+					});
+				}
 
 
 				if (geojsonProperties) {
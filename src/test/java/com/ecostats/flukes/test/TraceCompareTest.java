@@ -2,6 +2,9 @@ package com.ecostats.flukes.test;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.TreeSet;
 
 import org.apache.commons.math3.linear.ArrayRealVector;
@@ -14,6 +17,8 @@ import org.junit.Test;
 
 import com.ecostats.flukes.Fluke;
 import com.ecostats.flukes.FinTrace;
+import com.ecostats.flukes.FlukeIndex;
+import com.ecostats.flukes.FlukeMatch;
 import com.ecostats.flukes.Flukes;
 import com.ecostats.flukes.Matrix2D;
 import com.ecostats.flukes.TraceCompare;
@@ -40,6 +45,10 @@ public class TraceCompareTest {
   double[] dist_index_left = {1444.2,1861.2}; //{0.7407, 0.8102};
   double[] dist_index_right = {1942.8}; //{0.8238};
 
+  // a mark type for every tracing point, as stored for catalog flukes
+  double[] marktypes_left = {-1, 1, 4, 5, 1, 2, 3, 6, 7, 6, 7, 2, 3, 0};
+  double[] marktypes_right = {-1, 4, 5, 2, 3, 4, 5, 0};
+
 
   FinTrace ft_left;
   FinTrace ft_right;
@@ -183,6 +192,22 @@ public class TraceCompareTest {
     assertEquals(d, 0.0, 0.001);
   }
   
+  @Test
+  public void testComputeIndex() {
+    TraceCompare t = new TraceCompare();
+    FlukeIndex index = t.computeIndex(this.fluke);
+    // the index holds the same values as computing them from the tracing
+    assertTrue(index.isCurrent());
+    assertArrayEquals(t.tracingDistanceIndex(this.fluke).toArray(), index.getDistances().toArray(), 0.0);
+    assertArrayEquals(t.markTypesNoNotchTip(this.fluke).toArray(), index.getMarkTypes().toArray(), 0.0);
+    assertArrayEquals(this.fluke.notchCurl(), index.getNotchCurl(), 0.0);
+    assertEquals(t.getFlukePt(this.fluke), index.getPt(), 0.0);
+    // changing the tracing discards the stored index
+    this.fluke.setIndex(index);
+    this.fluke.setLeftFluke(this.ft_left);
+    assertNull(this.fluke.getIndex());
+  }
+
   /*
   @Test
   public void testProcessCatalog() {
@@ -209,5 +234,114 @@ public class TraceCompareTest {
     assertEquals(0.0962,ts.first().getMatchValue(),0.0001);
   }
   */
-  
+
+  /**
+   * Returns a catalog fluke with a mark type at every point, and its left tracing moved by shift to vary its score
+   */
+  private Fluke catalogFluke(int n, double shift) {
+    double[] y = yy_left.clone();
+    y[5] += shift;
+    y[9] -= shift/2;
+    Fluke f = new Fluke(new FinTrace(xx_left,y,marktypes_left),new FinTrace(xx_right,yy_right,marktypes_right));
+    f.setId(String.format("%024x", n));
+    f.setEncounter("E"+n);
+    return f;
+  }
+
+  @Test
+  public void testScoreCatalogMatchesProcessCatalog() {
+    TraceCompare t = new TraceCompare();
+    Fluke test_fluke = catalogFluke(1000, 0);
+    List<Fluke> catalog = new ArrayList<Fluke>();
+    for (int i=0;i<10;i++){
+      catalog.add(catalogFluke(i, i*2.0));
+    }
+    List<FlukeMatch> matches = t.scoreCatalog(catalog, test_fluke, 0);
+    // processCatalog sets the match value of every fluke it compares
+    t.processCatalog(catalog, test_fluke);
+    HashMap<String,Double> values = new HashMap<String,Double>();
+    for (Fluke f : catalog){
+      if (!Double.isNaN(f.getMatchValue())){
+        values.put(String.valueOf(f.getId()), f.getMatchValue());
+      }
+    }
+    assertFalse(values.isEmpty());
+    assertEquals(values.size(), matches.size());
+    for (int i=0;i<matches.size();i++){
+      FlukeMatch match = matches.get(i);
+      assertEquals(values.get(match.getFlukeId()), match.getScore(), 0.0);
+      if (i>0){
+        assertTrue(matches.get(i-1).getScore()>=match.getScore());
+      }
+    }
+  }
+
+  @Test
+  public void testScoreCatalogReturnsTies() {
+    TraceCompare t = new TraceCompare();
+    Fluke test_fluke = catalogFluke(1000, 0);
+    Fluke known = catalogFluke(0, 1.0);
+    List<Fluke> catalog = new ArrayList<Fluke>();
+    catalog.add(known);
+    for (int i=1;i<6;i++){
+      Fluke copy = new Fluke(known);
+      copy.setId(String.format("%024x", i));
+      catalog.add(copy);
+    }
+    List<FlukeMatch> matches = t.scoreCatalog(catalog, test_fluke, 0);
+    assertEquals(6, matches.size());
+    for (FlukeMatch match : matches){
+      assertEquals(matches.get(0).getScore(), match.getScore(), 0.0);
+    }
+    assertEquals(6, t.scoreCatalog(catalog, test_fluke, 6).size());
+    // unlike processCatalog, which keeps one fluke per match value
+    assertEquals(1, t.processCatalog(catalog, test_fluke).size());
+  }
+
+  @Test
+  public void testScoreCatalogTopK() {
+    TraceCompare t = new TraceCompare();
+    Fluke test_fluke = catalogFluke(1000, 0);
+    // enough flukes to be split between several tasks, whose best matches are then merged
+    List<Fluke> catalog = new ArrayList<Fluke>();
+    for (int i=0;i<300;i++){
+      catalog.add(catalogFluke(i, (i%50)*0.3));
+    }
+    List<FlukeMatch> all = t.scoreCatalog(catalog, test_fluke, 0);
+    assertTrue(all.size()>128);
+    int[] ks = {1, 10, 100};
+    for (int k : ks){
+      List<FlukeMatch> top = t.scoreCatalog(catalog, test_fluke, k);
+      assertEquals(all.subList(0, k), top);
+    }
+  }
+
+  @Test
+  public void testScoreCatalogSkipsFailedFlukes() {
+    TraceCompare t = new TraceCompare();
+    Fluke test_fluke = catalogFluke(1000, 0);
+    List<Fluke> catalog = new ArrayList<Fluke>();
+    for (int i=0;i<3;i++){
+      catalog.add(catalogFluke(i, i*2.0));
+    }
+    FlukeIndex index = t.computeIndex(catalogFluke(3, 0));
+    // a fluke whose score is NaN
+    Fluke nan = catalogFluke(3, 0);
+    nan.setIndex(new FlukeIndex(true, index.getDistances().toArray(), index.getMarkTypes().toArray(), index.getNotchCurl(), Double.NaN));
+    catalog.add(nan);
+    // a fluke that fails to score, with a mark type outside the comparison tables
+    Fluke bad = catalogFluke(4, 0);
+    double[] distances = {0.5};
+    double[] mark_types = {200};
+    bad.setIndex(new FlukeIndex(true, distances, mark_types, index.getNotchCurl(), 1.0));
+    catalog.add(bad);
+    List<FlukeMatch> matches = t.scoreCatalog(catalog, test_fluke, 0);
+    assertEquals(3, matches.size());
+    for (FlukeMatch match : matches){
+      assertFalse(match.getFlukeId().equals(String.valueOf(nan.getId())));
+      assertFalse(match.getFlukeId().equals(String.valueOf(bad.getId())));
+      assertFalse(Double.isNaN(match.getScore()));
+    }
+  }
+
 }
@@ -0,0 +1,52 @@
+package org.ecocean;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class AssociationIndexTest {
+
+  @Test
+  public void testCountsAndHalfWeightIndex() {
+    AssociationIndex index = new AssociationIndex();
+    index.setOccurrence("o1", Arrays.asList("A", "B", "C"));
+    index.setOccurrence("o2", Arrays.asList("A", "B", "B"));
+    index.setOccurrence("o3", Arrays.asList("A"));
+
+    assertEquals(2, index.getNumCooccurrences("A", "B"));
+    assertEquals(2, index.getNumCooccurrences("B", "A"));
+    assertEquals(1, index.getNumCooccurrences("B", "C"));
+    assertEquals(0, index.getNumCooccurrences("A", "D"));
+    assertEquals(3, index.getNumOccurrences("A"));
+    assertEquals(2, index.getNumOccurrences("B"));
+
+    //x=2, ya=1, yb=0
+    assertEquals(2.0 / 2.5, index.getHalfWeightIndex("A", "B"), 1e-9);
+    assertEquals(0, index.getHalfWeightIndex("C", "D"), 0);
+
+    ArrayList<Map.Entry> associates = index.getAssociates("A");
+    assertEquals(2, associates.size());
+    assertEquals("B", associates.get(0).getKey());
+    assertEquals(2, associates.get(0).getValue());
+    assertEquals("C", associates.get(1).getKey());
+  }
+
+  @Test
+  public void testUpdatesReplacePreviousMembers() {
+    AssociationIndex index = new AssociationIndex();
+    index.setOccurrence("o1", Arrays.asList("A", "B"));
+    index.setOccurrence("o1", Arrays.asList("A", "C"));
+    assertEquals(0, index.getNumCooccurrences("A", "B"));
+    assertEquals(1, index.getNumCooccurrences("A", "C"));
+    assertEquals(0, index.getNumOccurrences("B"));
+
+    index.setOccurrence("o1", new ArrayList<String>());
+    assertEquals(0, index.getNumOccurrences("A"));
+    assertTrue(index.getAssociates("A").isEmpty());
+  }
+
+}
@@ -0,0 +1,30 @@
+package org.ecocean;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CacheStatisticsTest {
+
+  @Test
+  public void testCountsAndRatios() {
+    CacheStatistics stats = new CacheStatistics();
+    stats.record("org.ecocean.User", true);
+    stats.record("org.ecocean.User", true);
+    stats.record("org.ecocean.User", false);
+    stats.record("org.ecocean.Encounter", false);
+
+    assertEquals(2, stats.getHits("org.ecocean.User"));
+    assertEquals(1, stats.getMisses("org.ecocean.User"));
+    assertEquals(2.0 / 3, stats.getHitRatio("org.ecocean.User"), 1e-9);
+    assertEquals(0, stats.getHitRatio("org.ecocean.Keyword"), 0);
+    assertEquals(2, stats.getTotalHits());
+    assertEquals(2, stats.getTotalMisses());
+    assertEquals(0.5, stats.getTotalHitRatio(), 1e-9);
+
+    stats.reset();
+    assertEquals(0, stats.getTotalHits());
+    assertEquals(0, stats.getMisses("org.ecocean.Encounter"));
+  }
+
+}
@@ -0,0 +1,41 @@
+package org.ecocean;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CaptureHistoryTest {
+
+  @Test
+  public void testHistoryMatchesSessions() {
+    CaptureHistory history = new CaptureHistory(new long[]{0, 100, 200}, new long[]{50, 150, 250});
+    assertEquals("101", CaptureHistory.toHistoryString(history.getHistory(new long[]{10, 20, 250})));
+    assertEquals("000", CaptureHistory.toHistoryString(history.getHistory(new long[]{60, 175, 300})));
+    assertEquals("000", CaptureHistory.toHistoryString(history.getHistory(new long[0])));
+  }
+
+  @Test
+  public void testBoundsAreInclusive() {
+    CaptureHistory history = new CaptureHistory(new long[]{100}, new long[]{200});
+    assertTrue(history.getHistory(new long[]{100})[0]);
+    assertTrue(history.getHistory(new long[]{200})[0]);
+    assertFalse(history.getHistory(new long[]{99, 201})[0]);
+  }
+
+  @Test
+  public void testUnorderedAndOverlappingSessions() {
+    CaptureHistory history = new CaptureHistory(new long[]{300, 0, 50}, new long[]{400, 100, 350});
+    assertEquals("011", CaptureHistory.toHistoryString(history.getHistory(new long[]{75})));
+    assertEquals("101", CaptureHistory.toHistoryString(history.getHistory(new long[]{320})));
+  }
+
+  @Test
+  public void testWasSightedBetween() {
+    long[] timestamps = new long[]{10, 20, 30};
+    assertTrue(CaptureHistory.wasSightedBetween(timestamps, 20, 20));
+    assertTrue(CaptureHistory.wasSightedBetween(timestamps, 15, 25));
+    assertFalse(CaptureHistory.wasSightedBetween(timestamps, 21, 29));
+    assertFalse(CaptureHistory.wasSightedBetween(timestamps, 31, 100));
+  }
+
+}
@@ -0,0 +1,66 @@
+package org.ecocean;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class FacetIndexTest {
+
+  private static String[] values(String locationID, String country) {
+    String[] values = new String[FacetIndex.ENCOUNTER_FIELDS.length];
+    values[0] = locationID;
+    values[1] = country;
+    return values;
+  }
+
+  @Test
+  public void testIncrementalUpdates() {
+    FacetIndex index = new FacetIndex();
+    index.setEncounter("1", values("B", "Mexico"));
+    index.setEncounter("2", values("A", "Mexico"));
+    index.setEncounter("3", values("B", null));
+
+    assertEquals(Arrays.asList("A", "B"), index.getValues("locationID"));
+    assertEquals(Arrays.asList("Mexico"), index.getValues("country"));
+    assertEquals(2, index.getCount("locationID", "B"));
+    assertTrue(index.getValues("genus").isEmpty());
+
+    //moving an encounter drops a value no other encounter has
+    index.setEncounter("2", values("C", "Belize"));
+    assertEquals(Arrays.asList("B", "C"), index.getValues("locationID"));
+    assertEquals(Arrays.asList("Belize", "Mexico"), index.getValues("country"));
+
+    index.setEncounter("1", null);
+    assertEquals(1, index.getCount("locationID", "B"));
+    assertEquals(Arrays.asList("Belize"), index.getValues("country"));
+  }
+
+  @Test
+  public void testValuesDifferingInCase() {
+    FacetIndex index = new FacetIndex();
+    index.setEncounter("1", values("b", null));
+    index.setEncounter("2", values("A", null));
+    index.setEncounter("3", values("C", null));
+    index.setEncounter("4", values("B", null));
+
+    //ordered ignoring case, but every spelling is listed and counted, as searches match them exactly
+    assertEquals(Arrays.asList("A", "B", "b", "C"), index.getValues("locationID"));
+    assertEquals(1, index.getCount("locationID", "B"));
+    assertEquals(1, index.getCount("locationID", "b"));
+
+    //a spelling no encounter has any more is dropped
+    index.setEncounter("1", null);
+    assertEquals(Arrays.asList("A", "B", "C"), index.getValues("locationID"));
+    assertEquals(0, index.getCount("locationID", "b"));
+    index.setEncounter("4", null);
+    assertEquals(Arrays.asList("A", "C"), index.getValues("locationID"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownField() {
+    new FacetIndex().getValues("individualID");
+  }
+
+}
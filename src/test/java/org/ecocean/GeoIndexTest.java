@@ -0,0 +1,114 @@
+package org.ecocean;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GeoIndexTest {
+
+  private static final Random random = new Random(42);
+
+  private static double[] randomCoordinates(int n, double min, double max) {
+    double[] values = new double[n];
+    for (int i = 0; i < n; i++) {
+      values[i] = min + random.nextDouble() * (max - min);
+    }
+    return values;
+  }
+
+  private static float bruteForceMax(double[] lats, double[] lons) {
+    float max = 0;
+    for (int y = 0; y < lats.length; y++) {
+      for (int z = y + 1; z < lats.length; z++) {
+        max = Math.max(max, GeoIndex.distance((float) lats[y], (float) lons[y], (float) lats[z], (float) lons[z]));
+      }
+    }
+    return max;
+  }
+
+  private static float[] toFloats(double[] values) {
+    float[] floats = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      floats[i] = (float) values[i];
+    }
+    return floats;
+  }
+
+  @Test
+  public void testMaxDistanceMatchesPairwise() {
+    //a regional track, which is pruned to its hull, and a global one, which is compared pairwise
+    double[][] ranges = new double[][]{{-30, -20, 110, 125}, {-80, 80, -180, 180}};
+    for (double[] range : ranges) {
+      for (int trial = 0; trial < 20; trial++) {
+        double[] lats = randomCoordinates(60, range[0], range[1]);
+        double[] lons = randomCoordinates(60, range[2], range[3]);
+        float expected = bruteForceMax(lats, lons);
+        assertEquals(expected, GeoIndex.getMaxDistance(toFloats(lats), toFloats(lons), lats.length), expected * 1e-5);
+        assertEquals(expected, new GeoIndex(lats, lons).getMaxDistance(), expected * 1e-5);
+      }
+    }
+  }
+
+  @Test
+  public void testMaxDistanceOfDegeneratePoints() {
+    assertEquals(0, GeoIndex.getMaxDistance(new float[]{10}, new float[]{20}, 1), 0);
+    assertEquals(0, GeoIndex.getMaxDistance(new float[]{10, 10, 10}, new float[]{20, 20, 20}, 3), 0);
+    float[] lats = new float[]{0, 0, 0};
+    float[] lons = new float[]{0, 1, 2};
+    assertEquals(GeoIndex.distance(0, 0, 0, 2), GeoIndex.getMaxDistance(lats, lons, 3), 1e-3);
+  }
+
+  @Test
+  public void testBoundingBoxAndRadius() {
+    double[] lats = randomCoordinates(500, -60, 60);
+    double[] lons = randomCoordinates(500, -180, 180);
+    lats[7] = Double.NaN;
+    GeoIndex index = new GeoIndex(lats, lons, 5);
+    assertEquals(499, index.size());
+
+    int[] inBox = index.getWithinBoundingBox(-10, 170, 10, -170);
+    int expected = 0;
+    for (int i = 0; i < lats.length; i++) {
+      if ((lats[i] >= -10) && (lats[i] <= 10) && ((lons[i] >= 170) || (lons[i] <= -170))) {
+        assertTrue(Arrays.binarySearch(inBox, i) >= 0);
+        expected++;
+      }
+    }
+    assertEquals(expected, inBox.length);
+
+    int[] inRadius = index.getWithinRadius(0, 179, 1500000);
+    expected = 0;
+    for (int i = 0; i < lats.length; i++) {
+      if (!Double.isNaN(lats[i]) && (GeoIndex.distance(0, 179, (float) lats[i], (float) lons[i]) <= 1500000)) {
+        assertTrue(Arrays.binarySearch(inRadius, i) >= 0);
+        expected++;
+      }
+    }
+    assertEquals(expected, inRadius.length);
+  }
+
+  @Test
+  public void testNearestAndMinDistance() {
+    double[] lats = randomCoordinates(300, -70, 70);
+    double[] lons = randomCoordinates(300, -180, 180);
+    GeoIndex index = new GeoIndex(lats, lons);
+    double[] otherLats = randomCoordinates(40, -85, 85);
+    double[] otherLons = randomCoordinates(40, -180, 180);
+
+    float expectedMin = Float.MAX_VALUE;
+    for (int p = 0; p < otherLats.length; p++) {
+      float nearest = Float.MAX_VALUE;
+      for (int i = 0; i < lats.length; i++) {
+        nearest = Math.min(nearest, GeoIndex.distance((float) otherLats[p], (float) otherLons[p], (float) lats[i], (float) lons[i]));
+      }
+      assertEquals(nearest, index.getNearestDistance(otherLats[p], otherLons[p]), 1e-3);
+      expectedMin = Math.min(expectedMin, nearest);
+    }
+    assertEquals(expectedMin, index.getMinDistance(new GeoIndex(otherLats, otherLons)), 1);
+    assertEquals(-1, index.getMinDistance(new GeoIndex(new double[0], new double[0])), 0);
+  }
+
+}
@@ -0,0 +1,163 @@
+package org.ecocean;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class MapLayerTest {
+
+  private static final String[] COLORS = {"0000FF", "C0C0C0", "C0C0C0"};
+
+  //one individual per entry of sizes, its points taken in order from lats and lons
+  private static MapLayer layer(int[] sizes, double[] lats, double[] lons) {
+    String[] individualIDs = new String[sizes.length];
+    String[][] colors = new String[sizes.length][];
+    int[] firstPoint = new int[sizes.length + 1];
+    for (int i = 0; i < sizes.length; i++) {
+      individualIDs[i] = "I" + i;
+      colors[i] = COLORS;
+      firstPoint[i + 1] = firstPoint[i] + sizes[i];
+    }
+    String[] catalogNumbers = new String[lats.length];
+    for (int p = 0; p < lats.length; p++) {
+      catalogNumbers[p] = "E" + p;
+    }
+    return new MapLayer(individualIDs, colors, firstPoint, lats, lons, catalogNumbers, new String[lats.length], new String[lats.length]);
+  }
+
+  private static int countGeometries(JSONArray features, String type) throws Exception {
+    int count = 0;
+    for (int f = 0; f < features.length(); f++) {
+      if (features.getJSONObject(f).getJSONObject("geometry").getString("type").equals(type)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public void testTileBoundingBox() {
+    double[] world = MapLayer.getTileBoundingBox(0, 0, 0);
+    assertEquals(-85.0511, world[0], 1e-4);
+    assertEquals(-180, world[1], 1e-9);
+    assertEquals(85.0511, world[2], 1e-4);
+    assertEquals(180, world[3], 1e-9);
+
+    //the north-east quarter at zoom 1
+    double[] northEast = MapLayer.getTileBoundingBox(1, 1, 0);
+    assertEquals(0, northEast[0], 1e-9);
+    assertEquals(0, northEast[1], 1e-9);
+    assertEquals(85.0511, northEast[2], 1e-4);
+    assertEquals(180, northEast[3], 1e-9);
+
+    //the south-west corner tile at zoom 2
+    double[] corner = MapLayer.getTileBoundingBox(2, 0, 3);
+    assertEquals(-85.0511, corner[0], 1e-4);
+    assertEquals(-180, corner[1], 1e-9);
+    assertEquals(-66.5133, corner[2], 1e-4);
+    assertEquals(-90, corner[3], 1e-9);
+  }
+
+  @Test
+  public void testBoxReturnsWholeIndividuals() throws Exception {
+    MapLayer layer = layer(new int[]{3, 1}, new double[]{10, 20, 30, -10}, new double[]{10, 20, 30, -10});
+
+    JSONArray all = layer.toGeoJSON(null, -1, "localhost", "data").getJSONArray("features");
+    assertEquals(4, countGeometries(all, "Point"));
+    assertEquals(1, countGeometries(all, "LineString"));
+
+    //a box around one point of I0 returns all of I0's points and its path, and nothing of I1
+    JSONArray boxed = layer.toGeoJSON(new double[]{15, 15, 25, 25}, -1, "localhost", "data").getJSONArray("features");
+    assertEquals(3, countGeometries(boxed, "Point"));
+    assertEquals(1, countGeometries(boxed, "LineString"));
+    for (int f = 0; f < boxed.length(); f++) {
+      JSONObject geometry = boxed.getJSONObject(f).getJSONObject("geometry");
+      if (geometry.getString("type").equals("Point")) {
+        assertEquals("I0", geometry.getString("individualID"));
+      }
+    }
+  }
+
+  @Test
+  public void testClustering() throws Exception {
+    Random random = new Random(7);
+    int numPoints = MapLayer.MIN_CLUSTER_POINTS + 100;
+    double[] lats = new double[numPoints];
+    double[] lons = new double[numPoints];
+    for (int p = 0; p < numPoints; p++) {
+      if (p < MapLayer.MIN_CLUSTER_POINTS) {
+        //a tight group, well inside one cell at low zoom
+        lats[p] = 10 + random.nextDouble() * 0.01;
+        lons[p] = 10 + random.nextDouble() * 0.01;
+      }
+      else {
+        lats[p] = -60 + random.nextDouble() * 120;
+        lons[p] = -170 + random.nextDouble() * 340;
+      }
+    }
+    lats[numPoints - 1] = -30;
+    lons[numPoints - 1] = -30;
+    MapLayer layer = layer(new int[]{numPoints}, lats, lons);
+
+    JSONArray clustered = layer.toGeoJSON(null, 3, "localhost", "data").getJSONArray("features");
+    assertEquals(0, countGeometries(clustered, "LineString"));
+    int total = 0;
+    int largest = 0;
+    for (int f = 0; f < clustered.length(); f++) {
+      JSONObject geometry = clustered.getJSONObject(f).getJSONObject("geometry");
+      int count = geometry.optBoolean("cluster") ? geometry.getInt("count") : 1;
+      total += count;
+      largest = Math.max(largest, count);
+    }
+    assertEquals(numPoints, total);
+    assertTrue(largest >= MapLayer.MIN_CLUSTER_POINTS);
+    assertTrue(clustered.length() < numPoints);
+
+    //from MAX_CLUSTER_ZOOM in, and below MIN_CLUSTER_POINTS in the box, every point is returned
+    JSONArray close = layer.toGeoJSON(null, MapLayer.MAX_CLUSTER_ZOOM, "localhost", "data").getJSONArray("features");
+    assertEquals(numPoints, countGeometries(close, "Point"));
+    JSONArray boxed = layer.toGeoJSON(new double[]{-90, -180, 0, 0}, 3, "localhost", "data").getJSONArray("features");
+    assertEquals(numPoints, countGeometries(boxed, "Point"));
+    for (int f = 0; f < boxed.length(); f++) {
+      assertFalse(boxed.getJSONObject(f).getJSONObject("geometry").optBoolean("cluster"));
+    }
+  }
+
+  @Test
+  public void testRenderedCacheIsBoundedByLength() {
+    MapLayer.invalidate("MapLayerTest");
+    MapLayer.cache("MapLayerTest", "search", layer(new int[]{1}, new double[]{10}, new double[]{10}));
+    long before = MapLayer.getRenderedChars();
+
+    //a rendering that is too long is not cached
+    char[] chars = new char[MapLayer.MAX_RENDERED_LENGTH + 1];
+    MapLayer.cacheRendered("MapLayerTest", "search", "huge", new String(chars));
+    assertNull(MapLayer.getRendered("MapLayerTest", "search", "huge"));
+    assertEquals(before, MapLayer.getRenderedChars());
+
+    //replacing a rendering counts only the new one
+    String small = "{\"type\":\"FeatureCollection\"}";
+    MapLayer.cacheRendered("MapLayerTest", "search", "small", "{}");
+    MapLayer.cacheRendered("MapLayerTest", "search", "small", small);
+    assertEquals(before + small.length(), MapLayer.getRenderedChars());
+
+    //filling the cache pushes out the least recently used renderings
+    String large = new String(new char[MapLayer.MAX_RENDERED_LENGTH]);
+    int fit = (int) (MapLayer.MAX_RENDERED_CHARS / MapLayer.MAX_RENDERED_LENGTH);
+    for (int i = 0; i <= fit; i++) {
+      MapLayer.cacheRendered("MapLayerTest", "search", "large" + i, large);
+    }
+    assertTrue(MapLayer.getRenderedChars() <= MapLayer.MAX_RENDERED_CHARS);
+    assertNull(MapLayer.getRendered("MapLayerTest", "search", "small"));
+    assertNotNull(MapLayer.getRendered("MapLayerTest", "search", "large" + fit));
+
+    MapLayer.invalidate("MapLayerTest");
+    assertNull(MapLayer.getRendered("MapLayerTest", "search", "large" + fit));
+    assertEquals(before, MapLayer.getRenderedChars());
+  }
+
+}
@@ -0,0 +1,117 @@
+package org.ecocean;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MediaIngestTest {
+
+  private File dir;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("MediaIngestTest").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (int i = 0; i < files.length; i++) {
+        files[i].delete();
+      }
+    }
+    dir.delete();
+  }
+
+  private static byte[] randomBytes(int n) {
+    byte[] bytes = new byte[n];
+    new Random(42).nextBytes(bytes);
+    return bytes;
+  }
+
+  private MediaIngest.StagedMedia stage(byte[] bytes) throws Exception {
+    return MediaIngest.stage(new ByteArrayInputStream(bytes), "photo.jpg", dir);
+  }
+
+  @Test
+  public void testToHex() {
+    byte[] bytes = {0x00, 0x0f, (byte) 0xa5, (byte) 0xff};
+    assertEquals("000fa5ff", MediaIngest.toHex(bytes));
+    assertEquals("", MediaIngest.toHex(new byte[0]));
+  }
+
+  @Test
+  public void testStage() throws Exception {
+    //more than one buffer's worth, ending part way through one
+    byte[] bytes = randomBytes(200 * 1024 + 17);
+    MediaIngest.StagedMedia media = stage(bytes);
+    assertEquals("photo.jpg", media.getOriginalName());
+    assertEquals(dir, media.getFile().getParentFile());
+    assertEquals(bytes.length, media.getSize());
+    assertEquals(MediaIngest.toHex(MessageDigest.getInstance("SHA-256").digest(bytes)), media.getContentHash());
+    assertTrue(Arrays.equals(bytes, Files.readAllBytes(media.getFile().toPath())));
+  }
+
+  @Test
+  public void testStageEmpty() throws Exception {
+    MediaIngest.StagedMedia media = stage(new byte[0]);
+    assertEquals(0, media.getSize());
+    assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", media.getContentHash());
+    assertEquals(0, media.getFile().length());
+  }
+
+  @Test
+  public void testPlaceLinksExistingMedia() throws Exception {
+    byte[] bytes = randomBytes(1000);
+    File existing = new File(dir, "existing.jpg");
+    Files.write(existing.toPath(), bytes);
+    MediaIngest.StagedMedia media = stage(bytes);
+    File file = new File(dir, "photo.jpg");
+    assertTrue(MediaIngest.place(media, file, existing));
+    assertTrue(Files.isSameFile(existing.toPath(), file.toPath()));
+    assertFalse(media.getFile().exists());
+  }
+
+  @Test
+  public void testPlaceMovesNewMedia() throws Exception {
+    byte[] bytes = randomBytes(1000);
+    MediaIngest.StagedMedia media = stage(bytes);
+    File file = new File(dir, "photo.jpg");
+    assertFalse(MediaIngest.place(media, file, null));
+    assertTrue(Arrays.equals(bytes, Files.readAllBytes(file.toPath())));
+    assertFalse(media.getFile().exists());
+  }
+
+  @Test
+  public void testPlaceMovesWhenLinkFails() throws Exception {
+    byte[] bytes = randomBytes(1000);
+    MediaIngest.StagedMedia media = stage(bytes);
+    File file = new File(dir, "photo.jpg");
+    //a stored file that has since gone cannot be linked to
+    assertFalse(MediaIngest.place(media, file, new File(dir, "missing.jpg")));
+    assertTrue(Arrays.equals(bytes, Files.readAllBytes(file.toPath())));
+    assertFalse(media.getFile().exists());
+  }
+
+  @Test
+  public void testPlaceReplacesItself() throws Exception {
+    File file = new File(dir, "photo.jpg");
+    Files.write(file.toPath(), randomBytes(10));
+    byte[] bytes = randomBytes(1000);
+    MediaIngest.StagedMedia media = stage(bytes);
+    //the same media uploaded again for the same encounter is moved over the stored file, not linked to itself
+    assertFalse(MediaIngest.place(media, file, file));
+    assertTrue(Arrays.equals(bytes, Files.readAllBytes(file.toPath())));
+  }
+
+}
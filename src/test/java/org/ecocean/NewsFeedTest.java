@@ -0,0 +1,53 @@
+package org.ecocean;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NewsFeedTest {
+
+  private File dir;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("NewsFeedTest").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (int i = 0; i < files.length; i++) {
+        files[i].delete();
+      }
+    }
+    dir.delete();
+  }
+
+  @Test
+  public void testUnreadableFileIsLeftAlone() throws Exception {
+    File file = new File(dir, "atom.xml");
+    byte[] bytes = "<feed><entry>truncated".getBytes("UTF-8");
+    Files.write(file.toPath(), bytes);
+    NewsFeed feed = NewsFeed.getFeed(file);
+    assertFalse(feed.isEnabled());
+    assertEquals("application/atom+xml", feed.getContentType());
+    feed.addEntry("New encounter", "http://example.org/encounters/1", "A new encounter", null, null);
+    NewsFeed.flushAll();
+    assertTrue(Arrays.equals(bytes, Files.readAllBytes(file.toPath())));
+  }
+
+  @Test
+  public void testMissingFile() {
+    NewsFeed feed = NewsFeed.getFeed(new File(dir, "rss.xml"));
+    assertFalse(feed.isEnabled());
+    assertEquals("application/rss+xml", feed.getContentType());
+  }
+
+}
@@ -0,0 +1,86 @@
+package org.ecocean;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jdo.PersistenceManager;
+
+import org.junit.Test;
+
+public class PagedQueryListTest {
+
+  //a PersistenceManager that ignores the evictions of released pages
+  private static final PersistenceManager pm = (PersistenceManager) Proxy.newProxyInstance(PersistenceManager.class.getClassLoader(), new Class[]{PersistenceManager.class}, new InvocationHandler() {
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      return null;
+    }
+  });
+
+  //pages through a list in memory instead of running the query
+  private static class ListBackedQuery extends PagedQueryList<String> {
+    private final List<String> results;
+
+    ListBackedQuery(List<String> results, int pageSize) {
+      super(pm, "SELECT FROM org.ecocean.Encounter", "catalogNumber ascending", null, pageSize, null);
+      this.results = results;
+    }
+
+    List<String> fetch(long start, long end) {
+      return new ArrayList<String>(results.subList((int) Math.min(start, results.size()), (int) Math.min(end, results.size())));
+    }
+  }
+
+  private static List<String> results(int n) {
+    List<String> results = new ArrayList<String>();
+    for (int i = 0; i < n; i++) {
+      results.add("E" + i);
+    }
+    return results;
+  }
+
+  @Test
+  public void testGetRange() {
+    PagedQueryList<String> list = new ListBackedQuery(results(25), 10);
+    List<String> page = list.getRange(10, 20);
+    assertEquals(10, page.size());
+    assertEquals("E10", page.get(0));
+    assertEquals("E19", page.get(9));
+    assertEquals(5, list.getRange(20, 30).size());
+  }
+
+  @Test
+  public void testGetRangeWithStaleCachedSize() {
+    //the count cached in the session still includes 5 encounters that have left the result
+    PagedQueryList<String> list = new ListBackedQuery(results(25), 10);
+    list.setCachedSize(30);
+    assertEquals(30, list.size());
+    List<String> page = list.getRange(20, 30);
+    assertEquals(5, page.size());
+    assertEquals("E24", page.get(4));
+    //the stale size is dropped, so it is counted again
+    assertFalse(list.isSizeKnown());
+    assertTrue(list.getRange(30, 40).isEmpty());
+  }
+
+  @Test
+  public void testGetRangeKeepsCurrentCachedSize() {
+    PagedQueryList<String> list = new ListBackedQuery(results(25), 10);
+    list.setCachedSize(25);
+    assertEquals(5, list.getRange(20, 30).size());
+    assertTrue(list.isSizeKnown());
+    assertEquals(25, list.size());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGetPastEnd() {
+    PagedQueryList<String> list = new ListBackedQuery(results(25), 10);
+    list.setCachedSize(30);
+    list.get(27);
+  }
+
+}
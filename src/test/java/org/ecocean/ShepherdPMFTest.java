@@ -0,0 +1,100 @@
+package org.ecocean;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+
+import org.datanucleus.api.jdo.JDODataStoreCache;
+import org.datanucleus.cache.Level2Cache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShepherdPMFTest {
+
+  private PersistenceManagerFactory pmf;
+
+  @Before
+  public void setUp() {
+    Properties props = new Properties();
+    props.setProperty("javax.jdo.PersistenceManagerFactoryClass", "org.datanucleus.api.jdo.JDOPersistenceManagerFactory");
+    props.setProperty("datanucleus.ConnectionDriverName", "org.apache.derby.jdbc.EmbeddedDriver");
+    props.setProperty("datanucleus.ConnectionURL", "jdbc:derby:memory:ShepherdPMFTest;create=true");
+    props.setProperty("datanucleus.schema.autoCreateAll", "true");
+    props.setProperty("datanucleus.storeManagerType", "rdbms");
+    //the same cache type as jdoconfig.properties
+    props.setProperty("datanucleus.cache.level2.type", "soft");
+    pmf = JDOHelper.getPersistenceManagerFactory(props);
+  }
+
+  @After
+  public void tearDown() {
+    pmf.close();
+  }
+
+  private Object persist(Object pc) {
+    PersistenceManager pm = pmf.getPersistenceManager();
+    try {
+      pm.currentTransaction().begin();
+      pm.makePersistent(pc);
+      pm.currentTransaction().commit();
+      return pm.getObjectId(pc);
+    }
+    finally {
+      pm.close();
+    }
+  }
+
+  //loads an object into the level 2 cache
+  private void load(Object id) {
+    PersistenceManager pm = pmf.getPersistenceManager();
+    try {
+      assertNotNull(pm.getObjectById(id));
+    }
+    finally {
+      pm.close();
+    }
+  }
+
+  @Test
+  public void testPinnedClassSurvivesEviction() {
+    //pinned before anything is loaded, as getPMF does
+    ShepherdPMF.pinClasses(pmf, "org.ecocean.Keyword, org.ecocean.NoSuchClass");
+    Object keyword = persist(new Keyword("dorsal fin nick"));
+    Object role = persist(new Role("tester", "researcher"));
+    load(keyword);
+    load(role);
+
+    Level2Cache cache = ((JDODataStoreCache) pmf.getDataStoreCache()).getLevel2Cache();
+    assertTrue(cache.containsOid(keyword));
+    assertTrue(cache.containsOid(role));
+    assertEquals(1, cache.getNumberOfPinnedObjects());
+
+    pmf.getDataStoreCache().evictAll(false, Role.class);
+    pmf.getDataStoreCache().evictAll(false, Keyword.class);
+    assertFalse(cache.containsOid(role));
+    assertTrue(cache.containsOid(keyword));
+
+    //fill the heap until the soft references of unpinned objects are cleared
+    load(role);
+    List<byte[]> garbage = new ArrayList<byte[]>();
+    try {
+      while (true) {
+        garbage.add(new byte[1024 * 1024]);
+      }
+    }
+    catch (OutOfMemoryError e) {
+      garbage = null;
+    }
+    System.gc();
+    assertTrue(cache.containsOid(keyword));
+    assertEquals(1, cache.getNumberOfPinnedObjects());
+  }
+
+}
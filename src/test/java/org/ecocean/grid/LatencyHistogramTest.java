@@ -0,0 +1,66 @@
+package org.ecocean.grid;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketsCoverEveryDuration() {
+    for (long millis = 0; millis < 100000; millis++) {
+      int bucket = LatencyHistogram.getBucket(millis);
+      assertTrue(millis <= LatencyHistogram.getBucketUpperBound(bucket));
+      assertTrue((bucket == 0) || (millis > LatencyHistogram.getBucketUpperBound(bucket - 1)));
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentile(50));
+    for (long millis = 1; millis <= 1000; millis++) {
+      histogram.record(millis);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1, histogram.getMin());
+    assertEquals(1000, histogram.getMax());
+    assertEquals(500.5, histogram.getMean(), 1e-9);
+
+    //within the 12.5% width of a bucket
+    assertEquals(500, histogram.getPercentile(50), 500 * 0.125);
+    assertEquals(990, histogram.getPercentile(99), 990 * 0.125);
+    assertEquals(1000, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void testPrometheusBucketsAreCumulative() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(3);
+    histogram.record(300);
+    StringBuffer out = new StringBuffer();
+    histogram.writePrometheus(out, "latency_seconds", "node=\"a\"");
+    String text = out.toString();
+    assertTrue(text.contains("latency_seconds_bucket{node=\"a\",le=\"0.004\"} 1\n"));
+    assertTrue(text.contains("latency_seconds_bucket{node=\"a\",le=\"0.512\"} 2\n"));
+    assertTrue(text.contains("latency_seconds_bucket{node=\"a\",le=\"+Inf\"} 2\n"));
+    assertTrue(text.contains("latency_seconds_count{node=\"a\"} 2\n"));
+  }
+
+  @Test
+  public void testPrometheusBucketsIncludeTheirBound() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1);
+    histogram.record(4);
+    histogram.record(5);
+    StringBuffer out = new StringBuffer();
+    histogram.writePrometheus(out, "latency_seconds", "");
+    String text = out.toString();
+    assertTrue(text.contains("latency_seconds_bucket{le=\"0.001\"} 1\n"));
+    assertTrue(text.contains("latency_seconds_bucket{le=\"0.002\"} 1\n"));
+    assertTrue(text.contains("latency_seconds_bucket{le=\"0.004\"} 2\n"));
+    assertTrue(text.contains("latency_seconds_bucket{le=\"0.008\"} 3\n"));
+    assertTrue(text.contains("latency_seconds_count 3\n"));
+  }
+
+}
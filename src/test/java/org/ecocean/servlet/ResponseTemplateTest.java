@@ -0,0 +1,58 @@
+package org.ecocean.servlet;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class ResponseTemplateTest {
+
+  private static final String TEMPLATE = "<html><head><link href=\"CSSURL\"/><link href=\"CSSURL\"/></head>"
+    + "<body><img src=\"TOPGRAPHIC\"/><p>INSERT_HERE</p><img src=\"BOTTOMGRAPHIC\"/></body></html>";
+
+  private static String write(ResponseTemplate.Segments segments, String[] values) throws IOException {
+    StringWriter out = new StringWriter();
+    segments.write(out, values);
+    return out.toString();
+  }
+
+  @Test
+  public void testCompile() throws IOException {
+    ResponseTemplate.Compiled compiled = ResponseTemplate.compile(TEMPLATE, 42);
+    assertEquals(42, compiled.lastModified);
+    String[] header = {"<html><head><link href=\"", "\"/><link href=\"", "\"/></head><body><img src=\"", "\"/><p>"};
+    int[] headerFields = {0, 0, 1};
+    assertArrayEquals(header, compiled.header.text);
+    assertArrayEquals(headerFields, compiled.header.fields);
+    String[] footer = {"</p><img src=\"", "\"/></body></html>"};
+    int[] footerFields = {0};
+    assertArrayEquals(footer, compiled.footer.text);
+    assertArrayEquals(footerFields, compiled.footer.fields);
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    ResponseTemplate.Compiled compiled = ResponseTemplate.compile(TEMPLATE, 0);
+    //values are written literally, and a missing one as nothing
+    String[] headerValues = {"http://example.org/$1.css", null};
+    assertEquals("<html><head><link href=\"http://example.org/$1.css\"/><link href=\"http://example.org/$1.css\"/></head><body><img src=\"\"/><p>", write(compiled.header, headerValues));
+    String[] footerValues = {"footer.gif"};
+    assertEquals("</p><img src=\"footer.gif\"/></body></html>", write(compiled.footer, footerValues));
+  }
+
+  @Test
+  public void testCompileWithoutPlaceholders() throws IOException {
+    ResponseTemplate.Compiled compiled = ResponseTemplate.compile("headINSERT_HEREfoot", 0);
+    assertEquals(0, compiled.header.fields.length);
+    assertEquals("head", write(compiled.header, new String[2]));
+    assertEquals("foot", write(compiled.footer, new String[1]));
+  }
+
+  @Test(expected = IOException.class)
+  public void testCompileWithoutInsertHere() throws IOException {
+    ResponseTemplate.compile("CSSURL", 0);
+  }
+
+}
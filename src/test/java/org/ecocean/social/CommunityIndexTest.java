@@ -0,0 +1,45 @@
+package org.ecocean.social;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CommunityIndexTest {
+
+  @Test
+  public void testMembershipAndRoles() {
+    CommunityIndex index = new CommunityIndex();
+    index.setRelationship("1", "pod A", "A", "mother", "B", "calf");
+    index.setRelationship("2", "pod A", "A", "mother", "C", "calf");
+    index.setRelationship("3", null, "C", "escort", "D", null);
+
+    assertTrue(index.isMember("pod A", "A"));
+    assertTrue(index.isMember("pod A", "C"));
+    assertFalse(index.isMember("pod A", "D"));
+    assertEquals(3, index.getMarkedIndividualIDsInCommunity("pod A").size());
+    assertEquals(Arrays.asList("pod A"), index.getCommunities("C"));
+    assertEquals(Arrays.asList("calf", "escort"), index.getRoles("C"));
+    assertEquals(2, index.getMarkedIndividualIDsWithRole("calf").size());
+    assertTrue(index.getCommunities("D").isEmpty());
+  }
+
+  @Test
+  public void testEditsAndDeletesReplaceContributions() {
+    CommunityIndex index = new CommunityIndex();
+    index.setRelationship("1", "pod A", "A", "mother", "B", "calf");
+    index.setRelationship("2", "pod A", "A", "mother", "C", "calf");
+
+    //A stays a member through relationship 2 when relationship 1 moves to another social unit
+    index.setRelationship("1", "pod B", "A", "mother", "B", "calf");
+    assertTrue(index.isMember("pod A", "A"));
+    assertFalse(index.isMember("pod A", "B"));
+    assertTrue(index.isMember("pod B", "B"));
+
+    index.setRelationship("2", null, null, null, null, null);
+    assertFalse(index.hasMembers("pod A"));
+    assertEquals(Arrays.asList("pod B"), index.getCommunities("A"));
+  }
+
+}